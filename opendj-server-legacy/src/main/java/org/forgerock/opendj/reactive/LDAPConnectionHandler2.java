@@ -271,6 +271,13 @@ public final class LDAPConnectionHandler2 extends ConnectionHandler<LDAPConnecti
         // * tcp reuse address
         // * num request handler
 
+        // The tcp keep alive and no delay are only applied when the listener is restarted.
+        if (currentConfig.isUseTCPKeepAlive() != config.isUseTCPKeepAlive()
+                || currentConfig.isUseTCPNoDelay() != config.isUseTCPNoDelay()) {
+            ccr.setAdminActionRequired(true);
+            ccr.addMessage(ERR_CONNHANDLER_CONFIG_CHANGES_REQUIRE_RESTART.get(protocol));
+        }
+
         // Clear the stat tracker if LDAPv2 is being enabled.
         if (currentConfig.isAllowLDAPV2() != config.isAllowLDAPV2() && config.isAllowLDAPV2()) {
             statTracker.clearStatistics();
@@ -667,12 +674,24 @@ public final class LDAPConnectionHandler2 extends ConnectionHandler<LDAPConnecti
                             }
                         };
                     }
-                }, Options.defaultOptions()
-                          .set(LDAPListener.CONNECT_MAX_BACKLOG, backlog)
-                          .set(LDAPListener.REQUEST_MAX_SIZE_IN_BYTES, (int) currentConfig.getMaxRequestSize()));
+                }, getListenerOptions());
         logger.info(NOTE_CONNHANDLER_STARTED_LISTENING, handlerName);
     }
 
+    /**
+     * Returns the options of the LDAP listener, which are applied when it starts.
+     *
+     * @return The options of the LDAP listener.
+     */
+    Options getListenerOptions() {
+        return Options.defaultOptions()
+                      .set(LDAPListener.CONNECT_MAX_BACKLOG, backlog)
+                      .set(LDAPListener.REQUEST_MAX_SIZE_IN_BYTES, (int) currentConfig.getMaxRequestSize())
+                      .set(LDAPListener.SO_REUSE_ADDRESS, allowReuseAddress)
+                      .set(LDAPListener.SO_KEEPALIVE, currentConfig.isUseTCPKeepAlive())
+                      .set(LDAPListener.TCP_NO_DELAY, currentConfig.isUseTCPNoDelay());
+    }
+
     /**
      * Operates in a loop, accepting new connections and ensuring that requests on those connections are handled
      * properly.
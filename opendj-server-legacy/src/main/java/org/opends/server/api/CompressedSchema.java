@@ -196,11 +196,29 @@ public class CompressedSchema
    */
   public final Attribute decodeAttribute(final ByteSequenceReader reader)
       throws DirectoryException
+  {
+    return decodeAttributeValues(reader, decodeAttributeDescription(reader));
+  }
+
+  /**
+   * Decodes the description of an attribute encoded at the current position, leaving the reader positioned on the
+   * values of the attribute. The values can then be decoded with
+   * {@link #decodeAttributeValues(ByteSequenceReader, AttributeDescription)} or skipped with
+   * {@link #skipAttributeValues(ByteSequenceReader)}.
+   *
+   * @param reader
+   *          The byte string reader containing the encoded entry.
+   * @return The decoded attribute description.
+   * @throws DirectoryException
+   *           If the attribute description could not be decoded properly for some reason.
+   */
+  public final AttributeDescription decodeAttributeDescription(final ByteSequenceReader reader)
+      throws DirectoryException
   {
     // First decode the encoded attribute description id.
     final int adId = decodeId(reader);
 
-    // Before returning the attribute, make sure that the attribute type is not stale.
+    // Before returning the attribute description, make sure that the attribute type is not stale.
     final Mappings mappings = reloadMappingsIfSchemaChanged();
     final AttributeDescription ad = mappings.adDecodeMap.get(adId);
     if (ad == null)
@@ -208,7 +226,24 @@ public class CompressedSchema
       throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
           ERR_COMPRESSEDSCHEMA_UNRECOGNIZED_AD_TOKEN.get(adId));
     }
+    return ad;
+  }
 
+  /**
+   * Decodes the values of an attribute whose description has been decoded by
+   * {@link #decodeAttributeDescription(ByteSequenceReader)}.
+   * <p>
+   * The values are sub-sequences of the reader's underlying byte sequence when it is a {@link ByteString}, so that
+   * they are not copied.
+   *
+   * @param reader
+   *          The byte string reader positioned on the values of the attribute.
+   * @param ad
+   *          The description of the attribute.
+   * @return The decoded attribute.
+   */
+  public final Attribute decodeAttributeValues(final ByteSequenceReader reader, final AttributeDescription ad)
+  {
     AttributeType attrType = ad.getAttributeType();
 
     // Determine the number of values for the attribute.
@@ -232,6 +267,22 @@ public class CompressedSchema
     }
   }
 
+  /**
+   * Skips the values of an attribute whose description has been decoded by
+   * {@link #decodeAttributeDescription(ByteSequenceReader)}, without decoding them.
+   *
+   * @param reader
+   *          The byte string reader positioned on the values of the attribute.
+   */
+  public final void skipAttributeValues(final ByteSequenceReader reader)
+  {
+    final int numValues = reader.readBERLength();
+    for (int i = 0; i < numValues; i++)
+    {
+      reader.skip(reader.readBERLength());
+    }
+  }
+
   private ByteString readValue(final ByteSequenceReader reader)
   {
     return reader.readByteSequence(reader.readBERLength()).toByteString();
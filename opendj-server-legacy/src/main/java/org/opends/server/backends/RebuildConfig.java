@@ -42,6 +42,7 @@ public class RebuildConfig
   private final List<String> rebuildList = new ArrayList<>();
   private String tmpDirectory;
   private boolean isClearDegradedState;
+  private boolean isOnline;
 
   /**
    * Get the base DN to rebuild.
@@ -228,4 +229,26 @@ public class RebuildConfig
     this.isClearDegradedState = isClearDegradedState;
   }
 
+  /**
+   * Returns {@code true} if indexes should be rebuilt while the backend
+   * remains enabled.
+   *
+   * @return {@code true} if indexes should be rebuilt online.
+   */
+  public boolean isOnline()
+  {
+    return isOnline;
+  }
+
+  /**
+   * Sets whether indexes should be rebuilt while the backend remains enabled.
+   *
+   * @param isOnline
+   *          {@code true} if indexes should be rebuilt online.
+   */
+  public void setOnline(boolean isOnline)
+  {
+    this.isOnline = isOnline;
+  }
+
 }
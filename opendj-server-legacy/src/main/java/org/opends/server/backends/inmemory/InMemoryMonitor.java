@@ -0,0 +1,49 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.inmemory;
+
+import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorData;
+import org.opends.server.api.MonitorProvider;
+
+/** Monitoring class for the in-memory storage, populating cn=monitor statistics. */
+final class InMemoryMonitor extends MonitorProvider<MonitorProviderCfg>
+{
+  private final String name;
+  private final InMemoryStorage storage;
+
+  InMemoryMonitor(String name, InMemoryStorage storage)
+  {
+    this.name = name;
+    this.storage = storage;
+  }
+
+  @Override
+  public String getMonitorInstanceName()
+  {
+    return name;
+  }
+
+  @Override
+  public MonitorData getMonitorData()
+  {
+    final MonitorData monitorAttrs = new MonitorData(3);
+    monitorAttrs.add("InMemoryTreeCount", storage.getTreeCount());
+    monitorAttrs.add("InMemoryCommitCount", storage.getCommitCount());
+    monitorAttrs.add("InMemoryConflictCount", storage.getConflictCount());
+    return monitorAttrs;
+  }
+}
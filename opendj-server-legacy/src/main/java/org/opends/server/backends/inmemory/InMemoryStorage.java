@@ -0,0 +1,1139 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.inmemory;
+
+import static org.opends.messages.BackendMessages.*;
+import static org.opends.messages.UtilityMessages.*;
+import static org.opends.server.backends.pluggable.spi.StorageUtils.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.config.server.ConfigurationChangeListener;
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.server.config.server.InMemoryBackendCfg;
+import org.forgerock.util.Reject;
+import org.opends.server.api.Backupable;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.Importer;
+import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.SequentialCursor;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.StorageStatus;
+import org.opends.server.backends.pluggable.spi.StorageUtils;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.UpdateFunction;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.BackupConfig;
+import org.opends.server.types.BackupDirectory;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.RestoreConfig;
+import org.opends.server.util.BackupManager;
+
+/**
+ * In-memory implementation of the {@link Storage} engine, keeping the records of each tree in a concurrent skip list.
+ * <p>
+ * Write transactions are optimistic: their changes are kept private until they commit, when the committed values
+ * they read are checked to be unchanged before their changes are applied, otherwise the write operation is retried.
+ * The changes made through {@link WriteableTransaction#update(TreeName, ByteSequence, UpdateFunction)} do not count
+ * as reads: their update functions are applied again to the latest committed values when the transaction commits,
+ * so that concurrent updates of the same index keys do not conflict. Readers never block, but they may see a
+ * transaction partially committed, like with the read committed isolation of the other storage engines.
+ * <p>
+ * The content of the storage is lost when the JVM exits, unless snapshots are enabled. The content is then saved to
+ * a snapshot file when the storage is closed, and loaded back from it when the storage is opened.
+ */
+public final class InMemoryStorage implements Storage, Backupable, ConfigurationChangeListener<InMemoryBackendCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  private static final double MAX_SLEEP_ON_RETRY_MS = 5.0;
+  private static final String SNAPSHOT_FILE_NAME = "snapshot";
+  /** "ODJM" in ASCII. */
+  private static final int SNAPSHOT_MAGIC = 0x4F444A4D;
+  private static final int SNAPSHOT_VERSION = 1;
+  /** The records of a tree which does not exist. It must never be modified. */
+  private static final ConcurrentNavigableMap<ByteString, ByteString> EMPTY_TREE = new ConcurrentSkipListMap<>();
+
+  /** Cursor on the records of a tree, as seen by a transaction. */
+  private abstract static class AbstractCursor implements Cursor<ByteString, ByteString>
+  {
+    /** The key after which {@link #next()} moves, {@code null} to move to the first record. */
+    private ByteString position;
+    private Map.Entry<ByteString, ByteString> current;
+
+    /**
+     * Returns the first record whose key is greater than (or equal to, if inclusive) the provided key, or the first
+     * record if the key is {@code null}.
+     */
+    abstract Map.Entry<ByteString, ByteString> ceilingRecord(ByteString key, boolean inclusive);
+
+    abstract Map.Entry<ByteString, ByteString> lastRecord();
+
+    abstract void deleteRecord(ByteString key);
+
+    @Override
+    public boolean next()
+    {
+      return setCurrent(ceilingRecord(position, false));
+    }
+
+    @Override
+    public boolean positionToKey(ByteSequence key)
+    {
+      position = key.toByteString();
+      final Map.Entry<ByteString, ByteString> record = ceilingRecord(position, true);
+      current = record != null && record.getKey().equals(position) ? record : null;
+      return current != null;
+    }
+
+    @Override
+    public boolean positionToKeyOrNext(ByteSequence key)
+    {
+      position = key.toByteString();
+      return setCurrent(ceilingRecord(position, true));
+    }
+
+    @Override
+    public boolean positionToLastKey()
+    {
+      return setCurrent(lastRecord());
+    }
+
+    @Override
+    public boolean positionToIndex(int index)
+    {
+      position = null;
+      current = null;
+      for (int i = 0; i <= index; i++)
+      {
+        if (!next())
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean setCurrent(Map.Entry<ByteString, ByteString> record)
+    {
+      current = record;
+      if (record != null)
+      {
+        position = record.getKey();
+      }
+      return record != null;
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return current != null;
+    }
+
+    @Override
+    public ByteString getKey()
+    {
+      throwIfUndefined();
+      return current.getKey();
+    }
+
+    @Override
+    public ByteString getValue()
+    {
+      throwIfUndefined();
+      return current.getValue();
+    }
+
+    @Override
+    public void delete()
+    {
+      throwIfUndefined();
+      deleteRecord(current.getKey());
+    }
+
+    @Override
+    public void close()
+    {
+      current = null;
+    }
+
+    private void throwIfUndefined()
+    {
+      if (!isDefined())
+      {
+        throw new NoSuchElementException();
+      }
+    }
+  }
+
+  /** Cursor on the committed records of a tree. */
+  private static final class CommittedCursor extends AbstractCursor
+  {
+    private final ConcurrentNavigableMap<ByteString, ByteString> tree;
+    private final boolean isWriteable;
+
+    private CommittedCursor(ConcurrentNavigableMap<ByteString, ByteString> tree, boolean isWriteable)
+    {
+      this.tree = tree;
+      this.isWriteable = isWriteable;
+    }
+
+    @Override
+    Map.Entry<ByteString, ByteString> ceilingRecord(ByteString key, boolean inclusive)
+    {
+      return ceilingEntry(tree, key, inclusive);
+    }
+
+    @Override
+    Map.Entry<ByteString, ByteString> lastRecord()
+    {
+      return tree.lastEntry();
+    }
+
+    @Override
+    void deleteRecord(ByteString key)
+    {
+      if (!isWriteable)
+      {
+        throw new ReadOnlyStorageException();
+      }
+      tree.remove(key);
+    }
+  }
+
+  /** The change made by a write transaction to a record. */
+  private static final class Change
+  {
+    /** The value of the record as seen by the transaction, {@code null} if it is deleted. */
+    private ByteString value;
+    /**
+     * The update functions which computed the value from the committed value, {@code null} if the value does not
+     * depend on the committed value.
+     */
+    private List<UpdateFunction> updates;
+    /** The committed value the update functions were first applied to. */
+    private ByteString committedValue;
+  }
+
+  /** The changes made by a write transaction to a tree. */
+  private final class TreeChanges
+  {
+    private final TreeName treeName;
+    /** Whether the transaction deleted the tree, hiding its committed records. */
+    private boolean isDeleted;
+    private final NavigableMap<ByteString, Change> changes = new TreeMap<>();
+    /** The committed values read by the transaction, which must be unchanged when it commits. */
+    private final Map<ByteString, ByteString> reads = new HashMap<>();
+
+    private TreeChanges(TreeName treeName)
+    {
+      this.treeName = treeName;
+    }
+
+    private ConcurrentNavigableMap<ByteString, ByteString> committedRecords()
+    {
+      return isDeleted ? EMPTY_TREE : getTree(treeName);
+    }
+
+    /** Returns the committed value which the transaction sees, without recording it as read. */
+    private ByteString getCommitted(ByteString key)
+    {
+      if (isDeleted)
+      {
+        return null;
+      }
+      return reads.containsKey(key) ? reads.get(key) : getTree(treeName).get(key);
+    }
+
+    private void recordRead(ByteString key, ByteString committedValue)
+    {
+      // Once the transaction deleted the tree, its records do not depend on the committed ones anymore
+      if (!isDeleted && !reads.containsKey(key))
+      {
+        reads.put(key, committedValue);
+      }
+    }
+
+    /** Returns the value seen by the transaction, recording it as read if it depends on the committed value. */
+    private ByteString read(ByteString key)
+    {
+      final Change change = changes.get(key);
+      if (change == null)
+      {
+        final ByteString value = getCommitted(key);
+        recordRead(key, value);
+        return value;
+      }
+      if (change.updates != null)
+      {
+        recordRead(key, change.committedValue);
+      }
+      return change.value;
+    }
+
+    private Change getOrCreateChange(ByteString key)
+    {
+      Change change = changes.get(key);
+      if (change == null)
+      {
+        change = new Change();
+        changes.put(key, change);
+      }
+      return change;
+    }
+  }
+
+  /** Cursor on the records of a tree as seen by a write transaction, including its own changes. */
+  private final class TransactionCursor extends AbstractCursor
+  {
+    private final WriteableTransactionImpl txn;
+    private final TreeChanges treeChanges;
+
+    private TransactionCursor(WriteableTransactionImpl txn, TreeChanges treeChanges)
+    {
+      this.txn = txn;
+      this.treeChanges = treeChanges;
+    }
+
+    @Override
+    Map.Entry<ByteString, ByteString> ceilingRecord(ByteString key, boolean inclusive)
+    {
+      final ConcurrentNavigableMap<ByteString, ByteString> committed = treeChanges.committedRecords();
+      ByteString from = key;
+      boolean fromInclusive = inclusive;
+      for (;;)
+      {
+        final Map.Entry<ByteString, ByteString> record = ceilingEntry(committed, from, fromInclusive);
+        final Map.Entry<ByteString, Change> change = ceilingEntry(treeChanges.changes, from, fromInclusive);
+        if (change == null || (record != null && record.getKey().compareTo(change.getKey()) < 0))
+        {
+          return record;
+        }
+        final ByteString value = change.getValue().value;
+        if (value != null)
+        {
+          return new SimpleImmutableEntry<>(change.getKey(), value);
+        }
+        // Skip the record deleted by the transaction
+        from = change.getKey();
+        fromInclusive = false;
+      }
+    }
+
+    @Override
+    Map.Entry<ByteString, ByteString> lastRecord()
+    {
+      final ConcurrentNavigableMap<ByteString, ByteString> committed = treeChanges.committedRecords();
+      ByteString before = null;
+      for (;;)
+      {
+        final Map.Entry<ByteString, ByteString> record =
+            before == null ? committed.lastEntry() : committed.lowerEntry(before);
+        final Map.Entry<ByteString, Change> change =
+            before == null ? treeChanges.changes.lastEntry() : treeChanges.changes.lowerEntry(before);
+        if (change == null || (record != null && record.getKey().compareTo(change.getKey()) > 0))
+        {
+          return record;
+        }
+        final ByteString value = change.getValue().value;
+        if (value != null)
+        {
+          return new SimpleImmutableEntry<>(change.getKey(), value);
+        }
+        before = change.getKey();
+      }
+    }
+
+    @Override
+    void deleteRecord(ByteString key)
+    {
+      txn.delete(treeChanges.treeName, key);
+    }
+  }
+
+  /** In-memory implementation of the {@link WriteableTransaction} interface, buffering the changes until commit. */
+  private final class WriteableTransactionImpl implements WriteableTransaction
+  {
+    private final Map<TreeName, TreeChanges> treeChanges = new HashMap<>();
+
+    private TreeChanges getTreeChanges(TreeName treeName)
+    {
+      TreeChanges changes = treeChanges.get(treeName);
+      if (changes == null)
+      {
+        changes = new TreeChanges(treeName);
+        treeChanges.put(treeName, changes);
+      }
+      return changes;
+    }
+
+    @Override
+    public ByteString read(TreeName treeName, ByteSequence key)
+    {
+      return getTreeChanges(treeName).read(key.toByteString());
+    }
+
+    @Override
+    public Cursor<ByteString, ByteString> openCursor(TreeName treeName)
+    {
+      return new TransactionCursor(this, getTreeChanges(treeName));
+    }
+
+    @Override
+    public long getRecordCount(TreeName treeName)
+    {
+      try (final Cursor<?, ?> cursor = openCursor(treeName))
+      {
+        long count = 0;
+        while (cursor.next())
+        {
+          count++;
+        }
+        return count;
+      }
+    }
+
+    @Override
+    public void openTree(TreeName treeName, boolean createOnDemand)
+    {
+      if (createOnDemand)
+      {
+        getOrCreateTree(treeName);
+      }
+    }
+
+    @Override
+    public void deleteTree(TreeName treeName)
+    {
+      final TreeChanges changes = getTreeChanges(treeName);
+      changes.isDeleted = true;
+      changes.changes.clear();
+    }
+
+    @Override
+    public void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      final Change change = getTreeChanges(treeName).getOrCreateChange(key.toByteString());
+      change.value = value.toByteString();
+      change.updates = null;
+    }
+
+    @Override
+    public boolean update(TreeName treeName, ByteSequence key, UpdateFunction f)
+    {
+      final TreeChanges changes = getTreeChanges(treeName);
+      final ByteString k = key.toByteString();
+      Change change = changes.changes.get(k);
+      if (change == null)
+      {
+        change = changes.getOrCreateChange(k);
+        change.committedValue = changes.getCommitted(k);
+        change.value = change.committedValue;
+        change.updates = new ArrayList<>();
+      }
+      final ByteString oldValue = change.value;
+      final ByteSequence newValue = f.computeNewValue(oldValue);
+      if (change.updates != null)
+      {
+        change.updates.add(f);
+      }
+      if (Objects.equals(newValue, oldValue))
+      {
+        return false;
+      }
+      change.value = newValue != null ? newValue.toByteString() : null;
+      return true;
+    }
+
+    @Override
+    public boolean delete(TreeName treeName, ByteSequence key)
+    {
+      final TreeChanges changes = getTreeChanges(treeName);
+      final ByteString k = key.toByteString();
+      final boolean exists = changes.read(k) != null;
+      final Change change = changes.getOrCreateChange(k);
+      change.value = null;
+      change.updates = null;
+      return exists;
+    }
+  }
+
+  /** In-memory implementation of the read-only transactions, reading the committed records. */
+  private final class ReadOnlyTransactionImpl implements WriteableTransaction
+  {
+    @Override
+    public ByteString read(TreeName treeName, ByteSequence key)
+    {
+      return getTree(treeName).get(key.toByteString());
+    }
+
+    @Override
+    public Cursor<ByteString, ByteString> openCursor(TreeName treeName)
+    {
+      return new CommittedCursor(getTree(treeName), false);
+    }
+
+    @Override
+    public long getRecordCount(TreeName treeName)
+    {
+      return getTree(treeName).size();
+    }
+
+    @Override
+    public void openTree(TreeName treeName, boolean createOnDemand)
+    {
+      if (createOnDemand)
+      {
+        throw new ReadOnlyStorageException();
+      }
+    }
+
+    @Override
+    public void deleteTree(TreeName treeName)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public boolean update(TreeName treeName, ByteSequence key, UpdateFunction f)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public boolean delete(TreeName treeName, ByteSequence key)
+    {
+      throw new ReadOnlyStorageException();
+    }
+  }
+
+  /** In-memory implementation of the {@link Importer} interface, writing directly to the trees. */
+  private final class ImporterImpl implements Importer
+  {
+    @Override
+    public void clearTree(TreeName treeName)
+    {
+      trees.put(treeName, new ConcurrentSkipListMap<ByteString, ByteString>());
+    }
+
+    @Override
+    public void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      getOrCreateTree(treeName).put(key.toByteString(), value.toByteString());
+    }
+
+    @Override
+    public ByteString read(TreeName treeName, ByteSequence key)
+    {
+      return getTree(treeName).get(key.toByteString());
+    }
+
+    @Override
+    public SequentialCursor<ByteString, ByteString> openCursor(TreeName treeName)
+    {
+      return new CommittedCursor(getTree(treeName), true);
+    }
+
+    @Override
+    public void close()
+    {
+      InMemoryStorage.this.close();
+    }
+  }
+
+  /** Filter to retrieve the snapshot file to backup. */
+  private static final FileFilter BACKUP_FILES_FILTER = new FileFilter()
+  {
+    @Override
+    public boolean accept(File file)
+    {
+      return SNAPSHOT_FILE_NAME.equals(file.getName());
+    }
+  };
+
+  private final ConcurrentMap<TreeName, ConcurrentNavigableMap<ByteString, ByteString>> trees =
+      new ConcurrentHashMap<>();
+  /** Serializes the validation and application of the changes of the write transactions. */
+  private final ReentrantLock commitLock = new ReentrantLock();
+  private final AtomicLong nbCommits = new AtomicLong();
+  private final AtomicLong nbConflicts = new AtomicLong();
+  private InMemoryBackendCfg config;
+  private AccessMode accessMode;
+  private boolean isOpen;
+  /** Whether {@link #trees} holds the current content of the storage, otherwise it is in the snapshot file. */
+  private boolean isLoaded;
+  private InMemoryMonitor monitor;
+
+  /**
+   * Creates a new in-memory storage with the provided configuration.
+   *
+   * @param cfg
+   *          The configuration.
+   */
+  InMemoryStorage(InMemoryBackendCfg cfg)
+  {
+    config = cfg;
+    isLoaded = !cfg.isSnapshotEnabled();
+    cfg.addInMemoryChangeListener(this);
+  }
+
+  private ConcurrentNavigableMap<ByteString, ByteString> getTree(TreeName treeName)
+  {
+    final ConcurrentNavigableMap<ByteString, ByteString> tree = trees.get(treeName);
+    return tree != null ? tree : EMPTY_TREE;
+  }
+
+  private ConcurrentNavigableMap<ByteString, ByteString> getOrCreateTree(TreeName treeName)
+  {
+    ConcurrentNavigableMap<ByteString, ByteString> tree = trees.get(treeName);
+    if (tree == null)
+    {
+      final ConcurrentNavigableMap<ByteString, ByteString> newTree = new ConcurrentSkipListMap<>();
+      tree = trees.putIfAbsent(treeName, newTree);
+      if (tree == null)
+      {
+        tree = newTree;
+      }
+    }
+    return tree;
+  }
+
+  private static <V> Map.Entry<ByteString, V> ceilingEntry(NavigableMap<ByteString, V> map, ByteString key,
+      boolean inclusive)
+  {
+    if (key == null)
+    {
+      return map.firstEntry();
+    }
+    return inclusive ? map.ceilingEntry(key) : map.higherEntry(key);
+  }
+
+  @Override
+  public void open(AccessMode accessMode) throws ConfigException, StorageRuntimeException
+  {
+    Reject.ifNull(accessMode, "accessMode must not be null");
+    open0(accessMode);
+  }
+
+  private void open0(AccessMode accessMode)
+  {
+    if (isOpen)
+    {
+      throw new IllegalStateException(
+          "Storage is already open, either the backend is enabled or an import is currently running.");
+    }
+    if (!isLoaded)
+    {
+      loadSnapshot();
+    }
+    this.accessMode = accessMode;
+    isOpen = true;
+    monitor = new InMemoryMonitor(config.getBackendId() + " In-memory Database", this);
+    DirectoryServer.registerMonitorProvider(monitor);
+  }
+
+  @Override
+  public Importer startImport() throws ConfigException, StorageRuntimeException
+  {
+    open0(AccessMode.READ_WRITE);
+    return new ImporterImpl();
+  }
+
+  @Override
+  public void close()
+  {
+    if (isOpen)
+    {
+      isOpen = false;
+      DirectoryServer.deregisterMonitorProvider(monitor);
+      monitor = null;
+      if (config.isSnapshotEnabled() && (!accessMode.isWriteable() || saveSnapshotOrLogError()))
+      {
+        // The content is safe in the snapshot file, release the memory until the storage is opened again
+        trees.clear();
+        isLoaded = false;
+      }
+    }
+    config.removeInMemoryChangeListener(this);
+  }
+
+  private boolean saveSnapshotOrLogError()
+  {
+    try
+    {
+      saveSnapshot();
+      return true;
+    }
+    catch (IOException e)
+    {
+      logger.traceException(e);
+      logger.error(ERR_IN_MEMORY_CANNOT_SAVE_SNAPSHOT, config.getBackendId(), getSnapshotFile(),
+          stackTraceToSingleLineString(e));
+      return false;
+    }
+  }
+
+  @Override
+  public <T> T read(ReadOperation<T> operation) throws Exception
+  {
+    try
+    {
+      return operation.run(new ReadOnlyTransactionImpl());
+    }
+    catch (final StorageRuntimeException e)
+    {
+      throw unwrap(e);
+    }
+  }
+
+  @Override
+  public void write(WriteOperation operation) throws Exception
+  {
+    try
+    {
+      if (!accessMode.isWriteable())
+      {
+        operation.run(new ReadOnlyTransactionImpl());
+        return;
+      }
+      for (;;)
+      {
+        final WriteableTransactionImpl txn = new WriteableTransactionImpl();
+        operation.run(txn);
+        if (commit(txn))
+        {
+          return;
+        }
+        // retry after random sleep (reduces transactions collision. Drawback: increased latency)
+        nbConflicts.incrementAndGet();
+        Thread.sleep((long) (Math.random() * MAX_SLEEP_ON_RETRY_MS));
+      }
+    }
+    catch (final StorageRuntimeException e)
+    {
+      throw unwrap(e);
+    }
+  }
+
+  private Exception unwrap(StorageRuntimeException e) throws Exception
+  {
+    if (e.getCause() != null)
+    {
+      throw (Exception) e.getCause();
+    }
+    throw e;
+  }
+
+  /**
+   * Commits the changes of the provided transaction, unless some of the committed values it read have been changed by
+   * another transaction meanwhile.
+   */
+  private boolean commit(WriteableTransactionImpl txn)
+  {
+    commitLock.lock();
+    try
+    {
+      for (TreeChanges changes : txn.treeChanges.values())
+      {
+        final ConcurrentNavigableMap<ByteString, ByteString> tree = getTree(changes.treeName);
+        for (Map.Entry<ByteString, ByteString> read : changes.reads.entrySet())
+        {
+          // Values are never modified in place, so comparing references is enough
+          if (tree.get(read.getKey()) != read.getValue())
+          {
+            return false;
+          }
+        }
+      }
+      for (TreeChanges changes : txn.treeChanges.values())
+      {
+        apply(changes);
+      }
+      nbCommits.incrementAndGet();
+      return true;
+    }
+    finally
+    {
+      commitLock.unlock();
+    }
+  }
+
+  private void apply(TreeChanges changes)
+  {
+    if (changes.isDeleted)
+    {
+      trees.remove(changes.treeName);
+    }
+    if (changes.changes.isEmpty())
+    {
+      return;
+    }
+    final ConcurrentNavigableMap<ByteString, ByteString> tree = getOrCreateTree(changes.treeName);
+    for (Map.Entry<ByteString, Change> entry : changes.changes.entrySet())
+    {
+      final ByteString key = entry.getKey();
+      final Change change = entry.getValue();
+      ByteString value = change.value;
+      if (change.updates != null && !changes.reads.containsKey(key))
+      {
+        value = applyUpdates(tree.get(key), change.updates);
+      }
+      if (value != null)
+      {
+        tree.put(key, value);
+      }
+      else
+      {
+        tree.remove(key);
+      }
+    }
+  }
+
+  private static ByteString applyUpdates(ByteString committedValue, List<UpdateFunction> updates)
+  {
+    ByteString value = committedValue;
+    for (UpdateFunction f : updates)
+    {
+      final ByteSequence newValue = f.computeNewValue(value);
+      if (!Objects.equals(newValue, value))
+      {
+        value = newValue != null ? newValue.toByteString() : null;
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public void removeStorageFiles() throws StorageRuntimeException
+  {
+    trees.clear();
+    isLoaded = true;
+    StorageUtils.removeStorageFiles(getDirectory());
+  }
+
+  @Override
+  public StorageStatus getStorageStatus()
+  {
+    return StorageStatus.working();
+  }
+
+  @Override
+  public Set<TreeName> listTrees()
+  {
+    return new HashSet<>(trees.keySet());
+  }
+
+  long getCommitCount()
+  {
+    return nbCommits.get();
+  }
+
+  long getConflictCount()
+  {
+    return nbConflicts.get();
+  }
+
+  int getTreeCount()
+  {
+    return trees.size();
+  }
+
+  private File getSnapshotFile()
+  {
+    return new File(getDirectory(), SNAPSHOT_FILE_NAME);
+  }
+
+  /** Saves the committed content of the storage to the snapshot file, blocking commits meanwhile. */
+  private void saveSnapshot() throws IOException
+  {
+    final File directory = getDirectory();
+    try
+    {
+      setupStorageFiles(directory, config.getDBDirectoryPermissions(), config.dn());
+    }
+    catch (ConfigException e)
+    {
+      throw new IOException(e);
+    }
+    final File tmpFile = new File(directory, SNAPSHOT_FILE_NAME + ".tmp");
+    commitLock.lock();
+    try (final FileOutputStream fileOut = new FileOutputStream(tmpFile))
+    {
+      final CheckedOutputStream checkedOut =
+          new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32());
+      final DataOutputStream out = new DataOutputStream(checkedOut);
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(SNAPSHOT_VERSION);
+      for (Map.Entry<TreeName, ConcurrentNavigableMap<ByteString, ByteString>> tree : trees.entrySet())
+      {
+        out.writeBoolean(true);
+        out.writeUTF(tree.getKey().toString());
+        for (Map.Entry<ByteString, ByteString> record : tree.getValue().entrySet())
+        {
+          writeBytes(out, record.getKey());
+          writeBytes(out, record.getValue());
+        }
+        out.writeInt(-1);
+      }
+      out.writeBoolean(false);
+      out.writeLong(checkedOut.getChecksum().getValue());
+      out.flush();
+      fileOut.getFD().sync();
+    }
+    finally
+    {
+      commitLock.unlock();
+    }
+    Files.move(tmpFile.toPath(), getSnapshotFile().toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void writeBytes(DataOutputStream out, ByteString bytes) throws IOException
+  {
+    out.writeInt(bytes.length());
+    bytes.copyTo(out);
+  }
+
+  /** Replaces the content of the storage by the content of the snapshot file, if any. */
+  private void loadSnapshot()
+  {
+    trees.clear();
+    final File snapshotFile = getSnapshotFile();
+    if (snapshotFile.exists())
+    {
+      try (final CheckedInputStream checkedIn =
+          new CheckedInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)), new CRC32()))
+      {
+        final DataInputStream in = new DataInputStream(checkedIn);
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+        {
+          throw new IOException("Unsupported snapshot file format");
+        }
+        long nbRecords = 0;
+        while (in.readBoolean())
+        {
+          final ConcurrentNavigableMap<ByteString, ByteString> tree = new ConcurrentSkipListMap<>();
+          trees.put(TreeName.valueOf(in.readUTF()), tree);
+          for (ByteString key = readBytes(in); key != null; key = readBytes(in))
+          {
+            tree.put(key, readBytes(in));
+            nbRecords++;
+          }
+        }
+        final long checksum = checkedIn.getChecksum().getValue();
+        if (in.readLong() != checksum)
+        {
+          throw new IOException("Invalid snapshot file checksum");
+        }
+        logger.info(NOTE_IN_MEMORY_SNAPSHOT_LOADED, config.getBackendId(), nbRecords, snapshotFile);
+      }
+      catch (IOException e)
+      {
+        trees.clear();
+        throw new StorageRuntimeException(ERR_IN_MEMORY_CANNOT_LOAD_SNAPSHOT.get(
+            config.getBackendId(), snapshotFile, stackTraceToSingleLineString(e)).toString(), e);
+      }
+    }
+    isLoaded = true;
+  }
+
+  private static ByteString readBytes(DataInputStream in) throws IOException
+  {
+    final int length = in.readInt();
+    if (length < 0)
+    {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return ByteString.wrap(bytes);
+  }
+
+  @Override
+  public boolean supportsBackupAndRestore()
+  {
+    return true;
+  }
+
+  @Override
+  public File getDirectory()
+  {
+    return getDBDirectory(config.getDBDirectory(), config.getBackendId());
+  }
+
+  @Override
+  public ListIterator<Path> getFilesToBackup() throws DirectoryException
+  {
+    return BackupManager.getFiles(getDirectory(), BACKUP_FILES_FILTER, config.getBackendId()).listIterator();
+  }
+
+  @Override
+  public boolean isDirectRestore()
+  {
+    // restore is done in an intermediate directory
+    return false;
+  }
+
+  @Override
+  public Path beforeRestore() throws DirectoryException
+  {
+    return null;
+  }
+
+  @Override
+  public void afterRestore(Path restoreDirectory, Path saveDirectory) throws DirectoryException
+  {
+    // intermediate directory content is moved to database directory
+    final File targetDirectory = getDirectory();
+    recursiveDelete(targetDirectory);
+    try
+    {
+      Files.move(restoreDirectory, targetDirectory.toPath());
+    }
+    catch (IOException e)
+    {
+      LocalizableMessage msg = ERR_CANNOT_RENAME_RESTORE_DIRECTORY.get(restoreDirectory, targetDirectory.getPath());
+      throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), msg);
+    }
+    if (isOpen)
+    {
+      loadSnapshot();
+    }
+    else
+    {
+      isLoaded = false;
+    }
+  }
+
+  @Override
+  public void createBackup(BackupConfig backupConfig) throws DirectoryException
+  {
+    if (isLoaded)
+    {
+      try
+      {
+        saveSnapshot();
+      }
+      catch (IOException e)
+      {
+        logger.traceException(e);
+        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+            ERR_IN_MEMORY_CANNOT_SAVE_SNAPSHOT.get(
+                config.getBackendId(), getSnapshotFile(), stackTraceToSingleLineString(e)), e);
+      }
+    }
+    new BackupManager(config.getBackendId()).createBackup(this, backupConfig);
+  }
+
+  @Override
+  public void removeBackup(BackupDirectory backupDirectory, String backupID) throws DirectoryException
+  {
+    new BackupManager(config.getBackendId()).removeBackup(backupDirectory, backupID);
+  }
+
+  @Override
+  public void restoreBackup(RestoreConfig restoreConfig) throws DirectoryException
+  {
+    new BackupManager(config.getBackendId()).restoreBackup(this, restoreConfig);
+  }
+
+  /**
+   * Checks newly created backend has a valid configuration.
+   * @param cfg the new configuration
+   * @param unacceptableReasons the list of accumulated errors and their messages
+   * @return true if newly created backend has a valid configuration
+   */
+  static boolean isConfigurationAcceptable(InMemoryBackendCfg cfg, List<LocalizableMessage> unacceptableReasons)
+  {
+    final ConfigChangeResult ccr = new ConfigChangeResult();
+    checkDBDirPermissions(cfg.getDBDirectoryPermissions(), cfg.dn(), ccr);
+    if (!ccr.getMessages().isEmpty())
+    {
+      unacceptableReasons.addAll(ccr.getMessages());
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(InMemoryBackendCfg newCfg,
+      List<LocalizableMessage> unacceptableReasons)
+  {
+    return isConfigurationAcceptable(newCfg, unacceptableReasons);
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(InMemoryBackendCfg cfg)
+  {
+    final ConfigChangeResult ccr = new ConfigChangeResult();
+    if (!cfg.getDBDirectory().equals(config.getDBDirectory()))
+    {
+      ccr.setAdminActionRequired(true);
+      ccr.addMessage(NOTE_CONFIG_DB_DIR_REQUIRES_RESTART.get(config.getDBDirectory(), cfg.getDBDirectory()));
+    }
+    config = cfg;
+    return ccr;
+  }
+}
@@ -22,6 +22,7 @@ import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.opends.server.api.MonitorData;
 import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
 import org.opends.server.api.MonitorProvider;
+import org.opends.server.backends.pluggable.spi.GroupCommitter;
 
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.JEVersion;
@@ -36,11 +37,14 @@ final class JEMonitor extends MonitorProvider<MonitorProviderCfg>
   private final String name;
   /** The environment to be monitored. */
   private final Environment env;
+  /** The group committer of the environment, {@code null} if commits are not durable. */
+  private final GroupCommitter groupCommitter;
 
-  JEMonitor(String name, Environment env)
+  JEMonitor(String name, Environment env, GroupCommitter groupCommitter)
   {
     this.name = name;
     this.env = env;
+    this.groupCommitter = groupCommitter;
   }
 
   @Override
@@ -60,6 +64,11 @@ final class JEMonitor extends MonitorProvider<MonitorProviderCfg>
       monitorAttrs.add("JEVersion", JEVersion.CURRENT_VERSION.getVersionString());
       monitorAttrs.addBean(env.getStats(statsConfig), "Environment");
       monitorAttrs.addBean(env.getTransactionStats(statsConfig), "Transaction");
+      if (groupCommitter != null)
+      {
+        monitorAttrs.add("GroupCommitCount", groupCommitter.getCommitCount());
+        monitorAttrs.add("GroupCommitFlushCount", groupCommitter.getFlushCount());
+      }
       return monitorAttrs;
     }
     catch (Exception e)
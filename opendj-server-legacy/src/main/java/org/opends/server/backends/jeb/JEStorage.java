@@ -59,6 +59,7 @@ import org.opends.server.api.DiskSpaceMonitorHandler;
 import org.opends.server.backends.pluggable.spi.EmptyCursor;
 import org.opends.server.backends.pluggable.spi.AccessMode;
 import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.GroupCommitter;
 import org.opends.server.backends.pluggable.spi.Importer;
 import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
 import org.opends.server.backends.pluggable.spi.ReadOperation;
@@ -668,6 +669,8 @@ public final class JEStorage implements Storage, Backupable, ConfigurationChange
   private EnvironmentConfig envConfig;
   private MemoryQuota memQuota;
   private JEMonitor monitor;
+  /** Non {@code null} when write transactions must be durable, to group their flushes to disk. */
+  private GroupCommitter groupCommitter;
   private DiskSpaceMonitor diskMonitor;
   private StorageStatus storageStatus = StorageStatus.working();
   private final ConcurrentMap<TreeName, Database> trees = new ConcurrentHashMap<>();
@@ -765,6 +768,7 @@ public final class JEStorage implements Storage, Backupable, ConfigurationChange
     {
       DirectoryServer.deregisterMonitorProvider(monitor);
       monitor = null;
+      groupCommitter = null;
       try
       {
         env.close();
@@ -839,7 +843,8 @@ public final class JEStorage implements Storage, Backupable, ConfigurationChange
             "Database is already open, either the backend is enabled or an import is currently running.");
       }
       env = new Environment(backendDirectory, envConfig);
-      monitor = new JEMonitor(config.getBackendId() + " JE Database", env);
+      groupCommitter = newGroupCommitter();
+      monitor = new JEMonitor(config.getBackendId() + " JE Database", env, groupCommitter);
       DirectoryServer.registerMonitorProvider(monitor);
     }
     catch (DatabaseException e)
@@ -849,6 +854,23 @@ public final class JEStorage implements Storage, Backupable, ConfigurationChange
     registerMonitoredDirectory(config);
   }
 
+  private GroupCommitter newGroupCommitter()
+  {
+    if (!envConfig.getTransactional() || config.isDBTxnNoSync() || config.isDBTxnWriteNoSync())
+    {
+      return null;
+    }
+    final Environment environment = env;
+    return new GroupCommitter(new GroupCommitter.LogFlusher()
+    {
+      @Override
+      public void flush()
+      {
+        environment.flushLog(true);
+      }
+    }, config.getDBTxnGroupCommitDelay(), TimeUnit.MILLISECONDS);
+  }
+
   @Override
   public <T> T read(final ReadOperation<T> operation) throws Exception
   {
@@ -913,12 +935,22 @@ public final class JEStorage implements Storage, Backupable, ConfigurationChange
     return null;
   }
 
-  private void commit(final Transaction txn)
+  private void commit(final Transaction txn) throws Exception
   {
     if (txn != null)
     {
-      txn.commit();
-      logger.trace("commit txnid=%d", txn.getId());
+      if (groupCommitter != null)
+      {
+        // Write the commit record without waiting, then share the flush to disk with the concurrent transactions
+        txn.commit(Durability.COMMIT_NO_SYNC);
+        logger.trace("commit txnid=%d", txn.getId());
+        groupCommitter.awaitDurable();
+      }
+      else
+      {
+        txn.commit();
+        logger.trace("commit txnid=%d", txn.getId());
+      }
     }
   }
 
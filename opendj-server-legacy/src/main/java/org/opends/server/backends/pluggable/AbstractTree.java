@@ -63,7 +63,7 @@ abstract class AbstractTree implements Tree
   }
 
   @Override
-  public final long getRecordCount(ReadableTransaction txn) throws StorageRuntimeException
+  public long getRecordCount(ReadableTransaction txn) throws StorageRuntimeException
   {
     return txn.getRecordCount(name);
   }
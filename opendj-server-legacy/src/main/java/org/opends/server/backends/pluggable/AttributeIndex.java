@@ -765,6 +765,29 @@ class AttributeIndex implements ConfigurationChangeListener<BackendIndexCfg>, Cl
     }
   }
 
+  /**
+   * Estimates the cost of retrieving the entry IDs that might match a filter, without reading the indexes.
+   *
+   * @param indexQueryFactory the index query factory to use for the estimation
+   * @param indexFilterType the index type filter
+   * @param filter The filter.
+   * @return The estimated cost of {@link #evaluateFilter}
+   */
+  static IndexQueryCost estimateFilterCost(IndexQueryFactory<IndexQuery> indexQueryFactory,
+      IndexFilterType indexFilterType, SearchFilter filter)
+  {
+    try
+    {
+      return getIndexQuery(indexQueryFactory, indexFilterType, filter).estimateCost();
+    }
+    catch (DecodeException e)
+    {
+      // evaluateFilter() returns an empty set
+      logger.traceException(e);
+      return IndexQueryCost.of(0, 0);
+    }
+  }
+
   private static IndexQuery getIndexQuery(IndexQueryFactory<IndexQuery> indexQueryFactory,
       IndexFilterType indexFilterType, SearchFilter filter) throws DecodeException
   {
@@ -102,6 +102,8 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends LocalBa
 
   /** The underlying storage engine. */
   private Storage storage;
+  /** The I/O metrics of the trees of the storage, which are kept while the backend is reconfigured. */
+  private final StorageMetrics storageMetrics = new StorageMetrics();
 
   /** The controls supported by this backend. */
   private static final Set<String> supportedControls = CollectionUtils.newHashSet(
@@ -168,7 +170,8 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends LocalBa
     this.cfg = cfg;
     this.serverContext = serverContext;
     baseDNs = new HashSet<>(cfg.getBaseDN());
-    storage = new TracedStorage(configureStorage(cfg, serverContext), cfg.getBackendId());
+    storage = new TracedStorage(
+        new MeteredStorage(configureStorage(cfg, serverContext), storageMetrics), cfg.getBackendId());
   }
 
   @Override
@@ -473,6 +476,7 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends LocalBa
     finally
     {
       ec.sharedLock.unlock();
+      ec.splitVLVIndexRanges();
       accessEnd();
     }
   }
@@ -518,6 +522,7 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends LocalBa
     finally
     {
       ec.sharedLock.unlock();
+      ec.splitVLVIndexRanges();
       accessEnd();
     }
   }
@@ -549,6 +554,7 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends LocalBa
     finally
     {
       currentContainer.sharedLock.unlock();
+      currentContainer.splitVLVIndexRanges();
       accessEnd();
     }
   }
@@ -644,7 +650,8 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends LocalBa
     {
       try
       {
-        if (importConfig.clearBackend())
+        // a resumed import continues from the content written by the interrupted import
+        if (importConfig.clearBackend() && !OnDiskMergeImporter.StrategyImpl.canResumeImport(cfg, importConfig))
         {
           // clear all files before opening the root container
           storage.removeStorageFiles();
@@ -960,7 +967,7 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends LocalBa
           throws ConfigException, InitializationException {
     // Open the storage
     try {
-      final RootContainer rc = new RootContainer(getBackendID(), serverContext, storage, cfg);
+      final RootContainer rc = new RootContainer(getBackendID(), serverContext, storage, storageMetrics, cfg);
       rc.open(accessMode);
       return rc;
     }
@@ -16,6 +16,9 @@
  */
 package org.opends.server.backends.pluggable;
 
+import static java.util.concurrent.TimeUnit.*;
+
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -23,9 +26,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
+import org.opends.server.backends.pluggable.StorageMetrics.TreeMetrics;
+import org.opends.server.backends.pluggable.spi.TreeName;
 import org.opends.server.api.MonitorData;
 import org.opends.server.api.MonitorProvider;
 import org.opends.server.types.SearchFilter;
@@ -69,6 +75,56 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
     }
   }
 
+  /**
+   * Tracks the resources used by one search while it is processed: the time needed to return its first entry and the
+   * memory held by its candidate entry IDs. Must be closed once the search is processed.
+   */
+  final class SearchTracker implements Closeable
+  {
+    private final long startTime = System.nanoTime();
+    private boolean firstEntryReturned;
+    private long candidatesSize;
+
+    private SearchTracker()
+    {
+      searchesInProgress.incrementAndGet();
+    }
+
+    /**
+     * Records the memory held by the candidate entry IDs of the search.
+     *
+     * @param size the estimated size in bytes of the candidate entry IDs
+     */
+    void candidatesEvaluated(long size)
+    {
+      final long total = candidatesSizeInProgress.addAndGet(size - candidatesSize);
+      candidatesSize = size;
+      updateMax(maxCandidatesSize, size);
+      updateMax(maxCandidatesSizeInProgress, total);
+    }
+
+    /** Records that an entry is about to be returned to the client. */
+    void entryReturned()
+    {
+      if (!firstEntryReturned)
+      {
+        firstEntryReturned = true;
+        final long elapsed = System.nanoTime() - startTime;
+        timeToFirstEntryCount.incrementAndGet();
+        timeToFirstEntryTotal.addAndGet(elapsed);
+        updateMax(timeToFirstEntryMax, elapsed);
+      }
+    }
+
+    @Override
+    public void close()
+    {
+      candidatesSizeInProgress.addAndGet(-candidatesSize);
+      candidatesSize = 0;
+      searchesInProgress.decrementAndGet();
+    }
+  }
+
   /** The name of this monitor instance. */
   private final String name;
   /** The root container to be monitored. */
@@ -81,6 +137,14 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
   private final AtomicInteger indexedSearchCount = new AtomicInteger();
   private final AtomicInteger unindexedSearchCount = new AtomicInteger();
 
+  private final AtomicInteger searchesInProgress = new AtomicInteger();
+  private final AtomicLong candidatesSizeInProgress = new AtomicLong();
+  private final AtomicLong maxCandidatesSizeInProgress = new AtomicLong();
+  private final AtomicLong maxCandidatesSize = new AtomicLong();
+  private final AtomicLong timeToFirstEntryCount = new AtomicLong();
+  private final AtomicLong timeToFirstEntryTotal = new AtomicLong();
+  private final AtomicLong timeToFirstEntryMax = new AtomicLong();
+
   /**
    * Creates a new backend monitor.
    * @param name The monitor instance name.
@@ -102,7 +166,7 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
   @Override
   public MonitorData getMonitorData()
   {
-    MonitorData monitorAttrs = new MonitorData(5);
+    MonitorData monitorAttrs = new MonitorData(12);
 
     Collection<String> needReindexValues = createNeedReindexValues();
     if (!needReindexValues.isEmpty())
@@ -118,9 +182,43 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
       monitorAttrs.add("filter-use-unindexed", unindexedSearchCount);
     }
 
+    monitorAttrs.add("search-in-progress", searchesInProgress.get());
+    monitorAttrs.add("search-in-progress-candidates-bytes", candidatesSizeInProgress.get());
+    monitorAttrs.add("search-in-progress-max-candidates-bytes", maxCandidatesSizeInProgress.get());
+    monitorAttrs.add("search-max-candidates-bytes", maxCandidatesSize.get());
+    final long nbFirstEntries = timeToFirstEntryCount.get();
+    final long averageTimeToFirstEntry = nbFirstEntries != 0 ? timeToFirstEntryTotal.get() / nbFirstEntries : 0;
+    monitorAttrs.add("search-time-to-first-entry-average-micros", NANOSECONDS.toMicros(averageTimeToFirstEntry));
+    monitorAttrs.add("search-time-to-first-entry-max-micros", NANOSECONDS.toMicros(timeToFirstEntryMax.get()));
+
+    final Collection<String> treeIOValues = createTreeIOValues();
+    if (!treeIOValues.isEmpty())
+    {
+      monitorAttrs.add("tree-io", treeIOValues);
+    }
+
     return monitorAttrs;
   }
 
+  /**
+   * Starts tracking the resources used by a search.
+   *
+   * @return the tracker of the search, which must be closed once the search is processed
+   */
+  SearchTracker startSearch()
+  {
+    return new SearchTracker();
+  }
+
+  private static void updateMax(AtomicLong max, long value)
+  {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value))
+    {
+      current = max.get();
+    }
+  }
+
   private Collection<String> createNeedReindexValues()
   {
     Collection<String> values = new ArrayList<>();
@@ -137,6 +235,17 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
     return values;
   }
 
+  /** Returns the I/O metrics of each tree of the storage, in the same format as the filter use statistics. */
+  private Collection<String> createTreeIOValues()
+  {
+    final Collection<String> values = new ArrayList<>();
+    for (Map.Entry<TreeName, TreeMetrics> entry : rootContainer.getStorageMetrics().getTreeMetrics().entrySet())
+    {
+      values.add(entry.getKey() + " " + entry.getValue());
+    }
+    return values;
+  }
+
   private List<String> createFilterUseValues()
   {
     List<String> values = new ArrayList<>();
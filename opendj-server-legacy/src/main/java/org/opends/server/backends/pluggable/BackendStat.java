@@ -43,6 +43,7 @@ import org.forgerock.opendj.server.config.server.PluggableBackendCfg;
 import org.forgerock.util.Option;
 import org.forgerock.util.Options;
 import org.opends.server.api.LocalBackend;
+import org.opends.server.backends.pluggable.StorageMetrics.TreeMetrics;
 import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.ReadOperation;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
@@ -169,7 +170,7 @@ public class BackendStat
     private BackendTreeKeyValue(Tree tree)
     {
       this.tree = tree;
-      this.name = tree.getName();
+      this.name = tree instanceof DefaultIndex ? ((DefaultIndex) tree).getRecordsTreeName() : tree.getName();
     }
 
     @Override
@@ -235,6 +236,7 @@ public class BackendStat
   private static final String DUMP_INDEX = "dump-index";
   private static final String LIST_RAW_DBS = "list-raw-dbs";
   private static final String DUMP_RAW_DB = "dump-raw-db";
+  private static final String SHOW_STORAGE_METRICS = "show-storage-metrics";
 
   private static final String BACKENDID_NAME = "backendid";
   private static final String BACKENDID = "backendID";
@@ -433,6 +435,15 @@ public class BackendStat
               .description(INFO_DESCRIPTION_BACKEND_TOOL_SUBCMD_SINGLE_LINE.get())
               .buildArgument());
 
+      // show-storage-metrics
+      final SubCommand showStorageMetrics = new SubCommand(
+              parser, SHOW_STORAGE_METRICS, INFO_DESCRIPTION_BACKEND_TOOL_SUBCMD_SHOW_STORAGE_METRICS.get());
+      addBackendArgument(showStorageMetrics);
+      showStorageMetrics.addArgument(BooleanArgument.builder(USESIUNITS)
+              .shortIdentifier('u')
+              .description(INFO_DESCRIPTION_BACKEND_TOOL_USE_SI_UNITS.get())
+              .buildArgument());
+
       subCommandsInitialized = true;
     }
   }
@@ -618,6 +629,8 @@ public class BackendStat
         return dumpTree(rootContainer, backend, subCommand, true);
       case SHOW_INDEX_STATUS:
         return showIndexStatus(rootContainer, backend, subCommand.getArgument(BASEDN_NAME));
+      case SHOW_STORAGE_METRICS:
+        return showStorageMetrics(rootContainer, subCommand.getArgument(USESIUNITS_NAME));
       default:
         return 1;
       }
@@ -788,16 +801,64 @@ public class BackendStat
     }
   }
 
-  private void appendStorageTreeStats(TableBuilder builder, RootContainer rc, TreeKeyValue targetTree,
-      boolean useSIUnit)
+  private int showStorageMetrics(RootContainer rc, Argument useSIUnits)
+  {
+    try
+    {
+      // Read all the records of each tree, the storage records the cost of reading each of them.
+      SortedSet<TreeName> treeNames = new TreeSet<>(rc.getStorage().listTrees());
+      for (TreeName tree : treeNames)
+      {
+        cursorTreeToDump(rc, new StorageTreeKeyValue(tree), newStatsOnlyOptions());
+      }
+
+      TableBuilder builder = new TableBuilder();
+      builder.appendHeading(INFO_LABEL_BACKEND_TOOL_RAW_DB_NAME.get());
+      builder.appendHeading(INFO_LABEL_BACKEND_TOOL_CURSOR_STEPS.get());
+      builder.appendHeading(INFO_LABEL_BACKEND_TOOL_BYTES_READ.get());
+      builder.appendHeading(INFO_LABEL_BACKEND_TOOL_AVERAGE_LATENCY.get());
+      builder.appendHeading(INFO_LABEL_BACKEND_TOOL_P99_LATENCY.get());
+      builder.appendHeading(INFO_LABEL_BACKEND_TOOL_MAX_LATENCY.get());
+
+      Map<TreeName, TreeMetrics> treeMetrics = rc.getStorageMetrics().getTreeMetrics();
+      for (Map.Entry<TreeName, TreeMetrics> entry : treeMetrics.entrySet())
+      {
+        TreeMetrics metrics = entry.getValue();
+        builder.startRow();
+        builder.appendCell(entry.getKey());
+        builder.appendCell(metrics.cursorSteps.get());
+        builder.appendCell(appendKeyValueSize(metrics.bytesRead.get(), useSIUnits.isPresent()));
+        builder.appendCell(metrics.cursorLatencies.getAverageMicros());
+        builder.appendCell(metrics.cursorLatencies.getPercentileMicros(99));
+        builder.appendCell(metrics.cursorLatencies.getMaxMicros());
+      }
+
+      builder.print(new TextTablePrinter(out));
+      out.print(INFO_LABEL_BACKEND_TOOL_TOTAL.get(treeMetrics.size()).toString());
+      return 0;
+    }
+    catch (Exception e)
+    {
+      printWrappedText(err, ERR_BACKEND_TOOL_ERROR_READING_TREE.get(stackTraceToSingleLineString(e)));
+      return 1;
+    }
+  }
+
+  private Options newStatsOnlyOptions() throws ArgumentException
   {
     Options options = Options.defaultOptions();
     options.set(DUMP_STATS_ONLY, true);
+    options.set(DUMP_MIN_KEY_VALUE, newMinKeyValueArg());
+    options.set(DUMP_MAX_KEY_VALUE, newMaxKeyValueArg());
+    return options;
+  }
+
+  private void appendStorageTreeStats(TableBuilder builder, RootContainer rc, TreeKeyValue targetTree,
+      boolean useSIUnit)
+  {
     try
     {
-      options.set(DUMP_MIN_KEY_VALUE, newMinKeyValueArg());
-      options.set(DUMP_MAX_KEY_VALUE, newMaxKeyValueArg());
-      TreeStats treeStats = cursorTreeToDump(rc, targetTree, options);
+      TreeStats treeStats = cursorTreeToDump(rc, targetTree, newStatsOnlyOptions());
       builder.appendCell(treeStats.count);
       builder.appendCell(appendKeyValueSize(treeStats.totalKeySize, useSIUnit));
       builder.appendCell(appendKeyValueSize(treeStats.totalDataSize, useSIUnit));
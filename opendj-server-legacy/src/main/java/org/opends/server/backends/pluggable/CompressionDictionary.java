@@ -0,0 +1,60 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+/**
+ * Content shared by all the entries of a backend, which compression codecs can reference instead of repeating it in
+ * each compressed entry. Dictionaries are immutable: once an entry has been compressed with a dictionary, the same
+ * dictionary is needed to decompress it.
+ */
+final class CompressionDictionary
+{
+  /** The identifier stored in entries compressed without dictionary. */
+  static final int NO_DICTIONARY = 0;
+
+  private final int id;
+  private final byte[] bytes;
+
+  /**
+   * Creates a new compression dictionary.
+   *
+   * @param id
+   *          the identifier of the dictionary, stored in each entry compressed with it
+   * @param bytes
+   *          the content of the dictionary, which must not be modified afterwards
+   */
+  CompressionDictionary(int id, byte[] bytes)
+  {
+    this.id = id;
+    this.bytes = bytes;
+  }
+
+  int getID()
+  {
+    return id;
+  }
+
+  byte[] getBytes()
+  {
+    return bytes;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "CompressionDictionary(id=" + id + ", size=" + bytes.length + ")";
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+
+/**
+ * Builds a {@link CompressionDictionary} from sample entries.
+ * <p>
+ * The dictionary is made of the segments of the samples containing the byte sequences found in the most samples, such
+ * as the attribute descriptions, object classes and the values common to many entries. Segments are selected greedily:
+ * once a segment has been selected, the sequences it contains no longer count for the other segments. The best segments
+ * are placed at the end of the dictionary, closest to the compressed data.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class CompressionDictionaryTrainer
+{
+  /** Maximum size of the dictionaries, which must be reachable by the codecs' match offsets. */
+  static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+  private static final int MAX_SAMPLES = 2000;
+  private static final int MAX_SAMPLES_SIZE = 1 << 20;
+  /** Length of the byte sequences whose frequency is measured. */
+  private static final int GRAM_SIZE = 8;
+  private static final int SEGMENT_SIZE = 32;
+  private static final int SEGMENT_STEP = 8;
+  private static final int NB_GRAMS_PER_SEGMENT = SEGMENT_SIZE - GRAM_SIZE + 1;
+  /** Segments whose byte sequences are found on average in less samples than this are not worth selecting. */
+  private static final int MIN_AVERAGE_FREQUENCY = 4;
+  private static final int HASH_LOG = 20;
+
+  private final ByteStringBuilder samples = new ByteStringBuilder();
+  private int[] sampleEnds = new int[64];
+  private int nbSamples;
+
+  /**
+   * Adds a sample to train the dictionary with.
+   *
+   * @param sample
+   *          the sample, typically an encoded entry
+   * @return {@code true} if enough samples have been collected to train the dictionary
+   */
+  boolean addSample(ByteSequence sample)
+  {
+    if (!isComplete())
+    {
+      samples.appendBytes(sample);
+      if (nbSamples == sampleEnds.length)
+      {
+        sampleEnds = Arrays.copyOf(sampleEnds, nbSamples * 2);
+      }
+      sampleEnds[nbSamples++] = samples.length();
+    }
+    return isComplete();
+  }
+
+  /**
+   * Indicates whether enough samples have been collected to train the dictionary.
+   *
+   * @return {@code true} if enough samples have been collected
+   */
+  boolean isComplete()
+  {
+    return nbSamples >= MAX_SAMPLES || samples.length() >= MAX_SAMPLES_SIZE;
+  }
+
+  /**
+   * Trains a dictionary from the collected samples.
+   *
+   * @return the content of the dictionary, or {@code null} if the samples do not have enough content in common
+   */
+  byte[] train()
+  {
+    final byte[] data = samples.toByteArray();
+    final int[] frequencies = computeSampleFrequencies(data);
+
+    // Candidate segments, ranked by decreasing score
+    final List<Integer> candidates = new ArrayList<>();
+    final PriorityQueue<Long> queue = new PriorityQueue<>(1024, Collections.<Long> reverseOrder());
+    for (int sample = 0, start = 0; sample < nbSamples; start = sampleEnds[sample++])
+    {
+      for (int pos = start; pos + SEGMENT_SIZE <= sampleEnds[sample]; pos += SEGMENT_STEP)
+      {
+        final int score = score(data, pos, frequencies);
+        if (score >= MIN_AVERAGE_FREQUENCY * NB_GRAMS_PER_SEGMENT)
+        {
+          queue.add(rank(score, candidates.size()));
+          candidates.add(pos);
+        }
+      }
+    }
+
+    final List<Integer> selected = new ArrayList<>();
+    while (!queue.isEmpty() && (selected.size() + 1) * SEGMENT_SIZE <= MAX_DICTIONARY_SIZE)
+    {
+      final long ranked = queue.poll();
+      final int pos = candidates.get((int) ranked);
+      final int score = score(data, pos, frequencies);
+      if (score < MIN_AVERAGE_FREQUENCY * NB_GRAMS_PER_SEGMENT)
+      {
+        continue;
+      }
+      if (score < (ranked >>> 32) && !queue.isEmpty() && score < (queue.peek() >>> 32))
+      {
+        // The score decreased since it was ranked: rank it again
+        queue.add(rank(score, (int) ranked));
+        continue;
+      }
+      selected.add(pos);
+      for (int i = 0; i < NB_GRAMS_PER_SEGMENT; i++)
+      {
+        frequencies[hash(data, pos + i)] = 0;
+      }
+    }
+    if (selected.isEmpty())
+    {
+      return null;
+    }
+
+    final ByteStringBuilder dictionary = new ByteStringBuilder(selected.size() * SEGMENT_SIZE);
+    for (int i = selected.size() - 1; i >= 0; i--)
+    {
+      dictionary.appendBytes(data, selected.get(i), SEGMENT_SIZE);
+    }
+    return dictionary.toByteArray();
+  }
+
+  /** Returns, for each byte sequence hash, the number of samples containing it. */
+  private int[] computeSampleFrequencies(byte[] data)
+  {
+    final int[] frequencies = new int[1 << HASH_LOG];
+    final int[] lastSample = new int[1 << HASH_LOG];
+    Arrays.fill(lastSample, -1);
+    for (int sample = 0, start = 0; sample < nbSamples; start = sampleEnds[sample++])
+    {
+      for (int pos = start; pos + GRAM_SIZE <= sampleEnds[sample]; pos++)
+      {
+        final int h = hash(data, pos);
+        if (lastSample[h] != sample)
+        {
+          lastSample[h] = sample;
+          frequencies[h]++;
+        }
+      }
+    }
+    return frequencies;
+  }
+
+  private static int score(byte[] data, int pos, int[] frequencies)
+  {
+    int score = 0;
+    for (int i = 0; i < NB_GRAMS_PER_SEGMENT; i++)
+    {
+      final int frequency = frequencies[hash(data, pos + i)];
+      if (frequency > 1)
+      {
+        score += frequency;
+      }
+    }
+    return score;
+  }
+
+  private static long rank(int score, int candidate)
+  {
+    return ((long) score << 32) | candidate;
+  }
+
+  private static int hash(byte[] data, int pos)
+  {
+    long gram = 0;
+    for (int i = 0; i < GRAM_SIZE; i++)
+    {
+      gram = (gram << 8) | (data[pos + i] & 0xFF);
+    }
+    return (int) ((gram * 0x9E3779B97F4A7C15L) >>> (64 - HASH_LOG));
+  }
+}
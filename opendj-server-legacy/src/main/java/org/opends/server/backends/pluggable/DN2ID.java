@@ -18,6 +18,7 @@ package org.opends.server.backends.pluggable;
 
 import static org.opends.server.backends.pluggable.CursorTransformer.*;
 import static org.opends.server.backends.pluggable.DnKeyFormat.*;
+import static org.opends.server.backends.pluggable.State.IndexFlag.*;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -46,36 +47,78 @@ import org.opends.server.types.Operation;
  * This class represents the dn2id index, which has one record
  * for each entry.  The key is the normalized entry DN and the value
  * is the entry ID.
+ * <p>
+ * Entry IDs are stored as compact unsigned longs in the trees created, imported or rebuilt since this encoding is
+ * available, which is recorded by the {@link State.IndexFlag#COMPACT_ENTRY_IDS} flag. Older trees keep storing them
+ * as 8 bytes longs until they are rebuilt or imported again.
  */
 @SuppressWarnings("javadoc")
 class DN2ID extends AbstractTree
 {
   private static final Function<ByteString, Void, NeverThrowsException> TO_VOID_KEY = Functions.returns(null);
 
-  private static final CursorTransformer.ValueTransformer<ByteString, ByteString, EntryID, NeverThrowsException>
-     TO_ENTRY_ID =
+  private final CursorTransformer.ValueTransformer<ByteString, ByteString, EntryID, NeverThrowsException>
+     toEntryIDTransformer =
           new CursorTransformer.ValueTransformer<ByteString, ByteString, EntryID, NeverThrowsException>()
           {
             @Override
             public EntryID transform(ByteString key, ByteString value)
             {
-              return new EntryID(value);
+              return toEntryID(value);
             }
           };
 
   private final DN baseDN;
+  private final State state;
+  /** Whether the entry IDs are stored as compact unsigned longs rather than as 8 bytes longs. */
+  private boolean compactEntryIDs;
 
   /**
    * Create a DN2ID instance for in a given entryContainer.
    *
    * @param treeName The name of the DN tree.
    * @param baseDN The base DN of the tree.
+   * @param state The state tree recording the encoding of the entry IDs.
    * @throws StorageRuntimeException If an error occurs in the storage.
    */
-  DN2ID(TreeName treeName, DN baseDN) throws StorageRuntimeException
+  DN2ID(TreeName treeName, DN baseDN, State state) throws StorageRuntimeException
   {
     super(treeName);
     this.baseDN = baseDN;
+    this.state = state;
+  }
+
+  @Override
+  void afterOpen(WriteableTransaction txn, boolean createOnDemand) throws StorageRuntimeException
+  {
+    compactEntryIDs = state.getIndexFlags(txn, getName()).contains(COMPACT_ENTRY_IDS);
+    if (createOnDemand && !compactEntryIDs && isEmpty(txn))
+    {
+      // There is no record to migrate in an empty tree.
+      initializeEmpty(txn);
+    }
+  }
+
+  private boolean isEmpty(ReadableTransaction txn)
+  {
+    try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
+    {
+      return !cursor.next();
+    }
+  }
+
+  /**
+   * Switches this tree to the compact encoding of the entry IDs. This is how existing trees are migrated to the new
+   * encoding, so it must only be called while the tree is empty: when it is created or when it has just been cleared
+   * for an import or a rebuild.
+   *
+   * @param txn a non null transaction
+   * @throws StorageRuntimeException If an error occurs in the storage.
+   */
+  void initializeEmpty(WriteableTransaction txn) throws StorageRuntimeException
+  {
+    state.addFlagsToIndex(txn, getName(), COMPACT_ENTRY_IDS);
+    compactEntryIDs = true;
   }
 
   /**
@@ -98,10 +141,25 @@ class DN2ID extends AbstractTree
 
   private ByteString toValue(final EntryID entryID)
   {
-    // TODO JNR do we want to use compacted longs?
+    if (compactEntryIDs)
+    {
+      return new ByteStringBuilder(ByteStringBuilder.MAX_COMPACT_SIZE)
+          .appendCompactUnsigned(entryID.longValue()).toByteString();
+    }
     return entryID.toByteString();
   }
 
+  /**
+   * Decodes the entry ID stored as the value of a record of this tree.
+   *
+   * @param value The value of a record of this tree.
+   * @return The entry ID stored in the value.
+   */
+  EntryID toEntryID(ByteString value)
+  {
+    return compactEntryIDs ? new EntryID(value.asReader().readCompactUnsignedLong()) : new EntryID(value);
+  }
+
   /**
    * Remove a record from the DN tree.
    * @param txn a non null transaction
@@ -125,18 +183,18 @@ class DN2ID extends AbstractTree
   EntryID get(ReadableTransaction txn, DN dn) throws StorageRuntimeException
   {
     final ByteString value = txn.read(getName(), toKey(dn));
-    return value != null ? new EntryID(value) : null;
+    return value != null ? toEntryID(value) : null;
   }
 
   <V> SequentialCursor<ByteString, ByteString> openCursor(SequentialCursor<ByteString, ByteString> dn2IdCursor,
       TreeVisitor<V> treeVisitor)
   {
-    return new TreeVisitorCursor<>(dn2IdCursor, treeVisitor);
+    return new TreeVisitorCursor<>(this, dn2IdCursor, treeVisitor);
   }
 
   Cursor<Void, EntryID> openCursor(ReadableTransaction txn, DN dn)
   {
-    return transformKeysAndValues(openCursor0(txn, dn), TO_VOID_KEY, TO_ENTRY_ID);
+    return transformKeysAndValues(openCursor0(txn, dn), TO_VOID_KEY, toEntryIDTransformer);
   }
 
   private Cursor<ByteString, ByteString> openCursor0(ReadableTransaction txn, DN dn) {
@@ -147,11 +205,11 @@ class DN2ID extends AbstractTree
 
   SequentialCursor<Void, EntryID> openChildrenCursor(ReadableTransaction txn, DN dn)
   {
-    return transformKeysAndValues(new ChildrenCursor(openCursor0(txn, dn)), TO_VOID_KEY, TO_ENTRY_ID);
+    return transformKeysAndValues(new ChildrenCursor(openCursor0(txn, dn)), TO_VOID_KEY, toEntryIDTransformer);
   }
 
   SequentialCursor<Void, EntryID> openSubordinatesCursor(ReadableTransaction txn, DN dn) {
-    return transformKeysAndValues(new SubtreeCursor(openCursor0(txn, dn)), TO_VOID_KEY, TO_ENTRY_ID);
+    return transformKeysAndValues(new SubtreeCursor(openCursor0(txn, dn)), TO_VOID_KEY, toEntryIDTransformer);
   }
 
   List<Pair<Long, Long>> renameSubtree(WriteableTransaction txn,
@@ -171,13 +229,13 @@ class DN2ID extends AbstractTree
       do
       {
         ByteString currentDnKey = cursor.getKey();
-        EntryID oldID = new EntryID(cursor.getValue());
+        EntryID oldID = toEntryID(cursor.getValue());
         cursor.delete();
 
         ByteString newDnKeySuffix = currentDnKey.subSequence(oldTargetDnKeyLength, currentDnKey.length());
         ByteSequence newDnKey = new ByteStringBuilder(newTargetDnKey).appendBytes(newDnKeySuffix);
         EntryID newID = renumberEntryIDs ? rootContainer.getNextEntryID() : oldID;
-        txn.put(getName(), newDnKey, newID.toByteString());
+        txn.put(getName(), newDnKey, toValue(newID));
 
         renamedEntryIDs.add(Pair.of(oldID.longValue(), newID.longValue()));
 
@@ -201,7 +259,7 @@ class DN2ID extends AbstractTree
   @Override
   public String valueToString(ByteString value)
   {
-    return new EntryID(value).toString();
+    return toEntryID(value).toString();
   }
 
   @Override
@@ -304,12 +362,14 @@ class DN2ID extends AbstractTree
   /** Perform dn2id cursoring to expose parent and children to the {@link TreeVisitor}. */
   private static final class TreeVisitorCursor<V> implements SequentialCursor<ByteString, ByteString>
   {
+    private final DN2ID dn2id;
     private final SequentialCursor<ByteString, ByteString> delegate;
     private final LinkedList<ParentInfo<V>> parentsInfoStack;
     private final TreeVisitor<V> visitor;
 
-    TreeVisitorCursor(SequentialCursor<ByteString, ByteString> delegate, TreeVisitor<V> visitor)
+    TreeVisitorCursor(DN2ID dn2id, SequentialCursor<ByteString, ByteString> delegate, TreeVisitor<V> visitor)
     {
+      this.dn2id = dn2id;
       this.delegate = delegate;
       this.parentsInfoStack = new LinkedList<>();
       this.visitor = visitor;
@@ -321,7 +381,7 @@ class DN2ID extends AbstractTree
       if (delegate.next())
       {
         final ByteString dn = delegate.getKey();
-        final EntryID entryID = new EntryID(delegate.getValue());
+        final EntryID entryID = dn2id.toEntryID(delegate.getValue());
         popCompleteParents(dn);
         notifyChild(entryID);
         pushNewParent(dn, entryID);
@@ -0,0 +1,214 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.RDN;
+
+/**
+ * Caches the entry IDs of the upper levels of the DIT of an entry container, so that the parent and search base
+ * lookups performed by the operations do not read the DN tree again and again for the same few entries.
+ * <p>
+ * The cache is a trie of RDNs rooted at the base DN. Only the entries up to a maximum depth below the base DN are
+ * cached, and the number of cached entries is bounded: once the cache is full, other entries are simply not cached.
+ * Only existing entries are cached.
+ * <p>
+ * Searches read the DN tree without taking any lock, so a read may race with a write removing or renaming the entry
+ * which has been read. To prevent caching such stale entry IDs, writers invalidate the subtree they change before and
+ * after writing it, and every invalidation increments a generation number: readers capture the generation before
+ * reading the DN tree, and only cache what they have read if the generation has not changed in the meantime.
+ */
+final class DN2IDCache
+{
+  /** A node of the trie, holding the entry ID of a DN if it is cached. */
+  private static final class Node
+  {
+    private final ConcurrentMap<RDN, Node> children = new ConcurrentHashMap<>();
+    private volatile EntryID entryID;
+  }
+
+  private final DN baseDN;
+  private final int maxDepth;
+  private final int maxSize;
+  private final Node root = new Node();
+  /** Number of entry IDs cached in the trie. Guarded by this. */
+  private int size;
+  private volatile long generation;
+
+  /**
+   * Creates a new empty cache.
+   *
+   * @param baseDN
+   *          the base DN of the entry container
+   * @param maxDepth
+   *          the number of levels below the base DN which are cached, the base entry being at depth 0
+   * @param maxSize
+   *          the maximum number of cached entry IDs
+   */
+  DN2IDCache(DN baseDN, int maxDepth, int maxSize)
+  {
+    this.baseDN = baseDN;
+    this.maxDepth = maxDepth;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the current generation of the cache, which must be captured before reading the DN tree and passed back to
+   * {@link #put(DN, EntryID, long)}.
+   *
+   * @return the current generation of the cache
+   */
+  long getGeneration()
+  {
+    return generation;
+  }
+
+  /**
+   * Returns the cached entry ID of the provided DN.
+   *
+   * @param dn
+   *          the DN of an entry of the entry container
+   * @return the cached entry ID, or {@code null} if the entry is not cached
+   */
+  EntryID get(DN dn)
+  {
+    final Node node = findNode(dn);
+    return node != null ? node.entryID : null;
+  }
+
+  private Node findNode(DN dn)
+  {
+    final int depth = depthOf(dn);
+    if (depth < 0 || depth > maxDepth)
+    {
+      return null;
+    }
+    Node node = root;
+    for (int i = depth - 1; i >= 0 && node != null; i--)
+    {
+      node = node.children.get(dn.rdn(i));
+    }
+    return node;
+  }
+
+  /**
+   * Caches the entry ID of the provided DN, unless the cache has been invalidated since the provided generation, the
+   * DN is too deep or the cache is full.
+   *
+   * @param dn
+   *          the DN of an existing entry of the entry container
+   * @param entryID
+   *          the entry ID read from the DN tree
+   * @param readGeneration
+   *          the generation of the cache captured before reading the entry ID from the DN tree
+   */
+  synchronized void put(DN dn, EntryID entryID, long readGeneration)
+  {
+    final int depth = depthOf(dn);
+    if (readGeneration != generation || depth < 0 || depth > maxDepth || size >= maxSize)
+    {
+      return;
+    }
+    Node node = root;
+    for (int i = depth - 1; i >= 0; i--)
+    {
+      final RDN rdn = dn.rdn(i);
+      Node child = node.children.get(rdn);
+      if (child == null)
+      {
+        child = new Node();
+        node.children.put(rdn, child);
+      }
+      node = child;
+    }
+    if (node.entryID == null)
+    {
+      size++;
+    }
+    node.entryID = entryID;
+  }
+
+  /**
+   * Removes the provided DN and all its subordinates from the cache. Writers must call this method before and after
+   * removing or renaming entries in the DN tree.
+   *
+   * @param dn
+   *          the DN of the removed or renamed entry
+   */
+  synchronized void invalidateSubtree(DN dn)
+  {
+    generation++;
+    final int depth = depthOf(dn);
+    if (depth == 0)
+    {
+      clear0();
+    }
+    else if (depth > 0 && depth <= maxDepth)
+    {
+      final Node parent = findNode(dn.parent());
+      if (parent != null)
+      {
+        final Node removed = parent.children.remove(dn.rdn());
+        if (removed != null)
+        {
+          size -= count(removed);
+        }
+      }
+    }
+  }
+
+  private static int count(Node node)
+  {
+    int count = node.entryID != null ? 1 : 0;
+    for (Node child : node.children.values())
+    {
+      count += count(child);
+    }
+    return count;
+  }
+
+  /** Removes all the entries from the cache, when the whole DN tree is changed by an import, a rebuild or a clear. */
+  synchronized void clear()
+  {
+    generation++;
+    clear0();
+  }
+
+  private void clear0()
+  {
+    root.entryID = null;
+    root.children.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns the number of entry IDs in the cache.
+   *
+   * @return the number of entry IDs in the cache
+   */
+  synchronized int size()
+  {
+    return size;
+  }
+
+  private int depthOf(DN dn)
+  {
+    return dn.isSubordinateOrEqualTo(baseDN) ? dn.size() - baseDN.size() : -1;
+  }
+}
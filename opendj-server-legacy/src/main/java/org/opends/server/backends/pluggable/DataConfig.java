@@ -37,6 +37,7 @@ final class DataConfig
     private boolean compactEncoding;
     private CompressedSchema compressedSchema;
     private CryptoSuite cryptoSuite;
+    private EntryCompressionCodec compressionCodec = EntryCompressionCodec.DEFLATE;
 
     Builder()
     {
@@ -55,6 +56,12 @@ final class DataConfig
       return this;
     }
 
+    public Builder compressionCodec(EntryCompressionCodec codec)
+    {
+      this.compressionCodec = codec;
+      return this;
+    }
+
     public Builder encrypt(boolean enabled)
     {
       this.encrypted = enabled;
@@ -81,6 +88,9 @@ final class DataConfig
   /** Indicates whether data should be compressed before writing to the storage. */
   private final boolean compressed;
 
+  /** The codec used to compress data. */
+  private final EntryCompressionCodec compressionCodec;
+
   /** The configuration to use when encoding entries in the tree. */
   private final EntryEncodeConfig encodeConfig;
 
@@ -95,6 +105,7 @@ final class DataConfig
   private DataConfig(Builder builder)
   {
     this.compressed = builder.compressed;
+    this.compressionCodec = builder.compressionCodec;
     this.encrypted = builder.encrypted;
     this.cryptoSuite = builder.cryptoSuite;
 
@@ -115,6 +126,11 @@ final class DataConfig
     return compressed;
   }
 
+  EntryCompressionCodec getCompressionCodec()
+  {
+    return compressionCodec;
+  }
+
   boolean isEncrypted()
   {
     return encrypted;
@@ -136,6 +152,11 @@ final class DataConfig
     final StringBuilder builder = new StringBuilder();
     builder.append("DataConfig(compressed=");
     builder.append(compressed);
+    if (compressed)
+    {
+      builder.append(", codec=");
+      builder.append(compressionCodec);
+    }
     builder.append(", encrypted=");
     builder.append(encrypted);
     builder.append(", ");
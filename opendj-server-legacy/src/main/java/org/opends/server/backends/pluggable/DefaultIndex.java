@@ -29,6 +29,7 @@ import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.opends.server.backends.pluggable.CursorTransformer.ValueTransformer;
 import org.opends.server.backends.pluggable.EntryIDSet.EntryIDSetCodec;
+import org.opends.server.backends.pluggable.OnlineIndexRebuilder.DeltaLog;
 import org.opends.server.backends.pluggable.State.IndexFlag;
 import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
@@ -47,6 +48,9 @@ class DefaultIndex extends AbstractTree implements Index
 {
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
+  /** Suffix of the name of the tree where the index is rebuilt online when its records are in its own tree. */
+  private static final String SHADOW_TREE_SUFFIX = ".shadow";
+
   private final State state;
   private final EntryContainer entryContainer;
   /** The limit on the number of entry IDs that may be indexed by one key. */
@@ -67,6 +71,37 @@ class DefaultIndex extends AbstractTree implements Index
    */
   private volatile boolean trusted;
 
+  /** Approximate statistics about the keys of this index, or null if they are unknown. */
+  private volatile IndexStatistics statistics;
+
+  /** Records the changes made to this index while it is rebuilt online, or null if it is not. */
+  private volatile DeltaLog deltaLog;
+
+  /**
+   * The name of the tree holding the records of this index: either the name of this index or the name of its shadow
+   * tree. Online rebuilds write into the other one and switch to it once done.
+   */
+  private volatile TreeName recordsTreeName;
+
+  /** The tree this index is being rebuilt online into, or null if it is not. */
+  private volatile RebuildTarget rebuildTarget;
+
+  /** The tree an index is rebuilt online into, along with the encoding and the statistics of its records. */
+  private static final class RebuildTarget
+  {
+    private final TreeName treeName;
+    private final EnumSet<IndexFlag> flags;
+    private final EntryIDSetCodec codec;
+    private final IndexStatistics statistics = new IndexStatistics();
+
+    private RebuildTarget(TreeName treeName, EnumSet<IndexFlag> flags, EntryIDSetCodec codec)
+    {
+      this.treeName = treeName;
+      this.flags = flags;
+      this.codec = codec;
+    }
+  }
+
   /**
    * Create a new index object.
    *
@@ -90,26 +125,152 @@ class DefaultIndex extends AbstractTree implements Index
     this.state = state;
     this.entryContainer = entryContainer;
     this.cryptoSuite = cryptoSuite;
+    this.recordsTreeName = name;
   }
 
   @Override
   final void afterOpen(WriteableTransaction txn, boolean createOnDemand)
   {
     final EnumSet<IndexFlag> flags = state.getIndexFlags(txn, getName());
-    codec = flags.contains(COMPACTED) ? CODEC_V2 : CODEC_V1;
-    if (cryptoSuite.isEncrypted())
+    if (flags.contains(SHADOW_TREE))
+    {
+      recordsTreeName = getShadowTreeName();
+      txn.openTree(recordsTreeName, createOnDemand);
+    }
+    else
     {
-      codec = new EntryIDSet.EntryIDSetCodecV3(codec, cryptoSuite);
+      recordsTreeName = getName();
     }
+    codec = newCodec(flags);
     trusted = flags.contains(TRUSTED);
+    statistics = state.getIndexStatistics(txn, getName());
     if (createOnDemand && !trusted && entryContainer.isEmpty(txn))
     {
       // If there are no entries in the entry container then there
-      // is no reason why this index can't be upgraded to trusted.
+      // is no reason why this index can't be upgraded to trusted
+      // nor use the configured encoding.
       setTrusted(txn, true);
+      initializeEmpty(txn);
+    }
+  }
+
+  /**
+   * Switches this index to the entry ID set encoding configured for the backend and to its own tree, in case it was
+   * rebuilt online into its shadow tree, and resets its statistics. This is how existing indexes are migrated to a new
+   * encoding, so it must only be called while the index is empty: when it is created or when it has just been cleared
+   * for a rebuild.
+   *
+   * @param txn
+   *          a non null transaction
+   * @throws StorageRuntimeException
+   *           If an error occurs in the storage.
+   */
+  final void initializeEmpty(WriteableTransaction txn) throws StorageRuntimeException
+  {
+    if (!recordsTreeName.equals(getName()))
+    {
+      txn.deleteTree(recordsTreeName);
+      recordsTreeName = getName();
+    }
+    state.removeFlagsFromIndex(txn, getName(), SHADOW_TREE);
+    if (entryContainer.isIndexBitmapEncodingEnabled())
+    {
+      state.addFlagsToIndex(txn, getName(), COMPACTED, BITMAP);
+    }
+    else
+    {
+      state.removeFlagsFromIndex(txn, getName(), BITMAP);
+    }
+    codec = newCodec(state.getIndexFlags(txn, getName()));
+    statistics = new IndexStatistics();
+    state.putIndexStatistics(txn, getName(), statistics);
+  }
+
+  /**
+   * Returns the approximate statistics about the keys of this index.
+   *
+   * @return the statistics of this index, or {@code null} if they are unknown because the index has not been
+   *         created or rebuilt since statistics are maintained
+   */
+  final IndexStatistics getStatistics()
+  {
+    return statistics;
+  }
+
+  /**
+   * Replaces the statistics of this index, typically after it has been imported or rebuilt.
+   *
+   * @param statistics
+   *          the statistics computed over the whole content of this index
+   */
+  final void setStatistics(IndexStatistics statistics)
+  {
+    this.statistics = statistics;
+  }
+
+  /**
+   * Persists the statistics of this index if they changed since they were last persisted.
+   *
+   * @param txn
+   *          a non null transaction
+   * @throws StorageRuntimeException
+   *           If an error occurs in the storage.
+   */
+  final void saveStatistics(WriteableTransaction txn) throws StorageRuntimeException
+  {
+    final IndexStatistics stats = statistics;
+    if (stats != null && stats.isModified())
+    {
+      state.putIndexStatistics(txn, getName(), stats);
+    }
+  }
+
+  @Override
+  final void beforeDelete(WriteableTransaction txn) throws StorageRuntimeException
+  {
+    if (!recordsTreeName.equals(getName()))
+    {
+      txn.deleteTree(recordsTreeName);
+      recordsTreeName = getName();
     }
   }
 
+  @Override
+  public final long getRecordCount(ReadableTransaction txn) throws StorageRuntimeException
+  {
+    return txn.getRecordCount(recordsTreeName);
+  }
+
+  /**
+   * Returns the name of the tree holding the records of this index, which is not the name of this index after it has
+   * been rebuilt online into its shadow tree.
+   *
+   * @return the name of the tree holding the records of this index
+   */
+  final TreeName getRecordsTreeName()
+  {
+    return recordsTreeName;
+  }
+
+  private TreeName getShadowTreeName()
+  {
+    return new TreeName(getName().getBaseDN(), getName().getIndexId() + SHADOW_TREE_SUFFIX);
+  }
+
+  private EntryIDSetCodec newCodec(EnumSet<IndexFlag> flags)
+  {
+    final EntryIDSetCodec newCodec;
+    if (flags.contains(BITMAP))
+    {
+      newCodec = CODEC_V4;
+    }
+    else
+    {
+      newCodec = flags.contains(COMPACTED) ? CODEC_V2 : CODEC_V1;
+    }
+    return cryptoSuite.isEncrypted() ? new EntryIDSet.EntryIDSetCodecV3(newCodec, cryptoSuite) : newCodec;
+  }
+
   @Override
   public String valueToString(ByteString value)
   {
@@ -131,7 +292,7 @@ class DefaultIndex extends AbstractTree implements Index
   public final Cursor<ByteString, EntryIDSet> openCursor(ReadableTransaction txn)
   {
     checkNotNull(txn, "txn must not be null");
-    return CursorTransformer.transformValues(txn.openCursor(getName()),
+    return CursorTransformer.transformValues(txn.openCursor(recordsTreeName),
         new ValueTransformer<ByteString, ByteString, EntryIDSet, NeverThrowsException>()
         {
           @Override
@@ -175,6 +336,12 @@ class DefaultIndex extends AbstractTree implements Index
       return;
     }
 
+    final DeltaLog log = deltaLog;
+    if (log != null)
+    {
+      log.record(this, key, deletedIDs, addedIDs);
+    }
+
     /*
      * Avoid taking a write lock on a record which has hit all IDs because it is likely to be a
      * point of contention.
@@ -183,22 +350,186 @@ class DefaultIndex extends AbstractTree implements Index
     {
       return;
     }
+    updateRecord(txn, recordsTreeName, codec, statistics, key, deletedIDs, addedIDs, false);
+  }
+
+  /**
+   * Starts rebuilding this index online into the tree which does not hold its records, so that searches keep using
+   * the current records until the rebuilt ones replace them. The rebuilt records use the encoding configured for the
+   * backend. This must be called while holding the exclusive lock of the entry container.
+   *
+   * @param txn
+   *          a non null transaction
+   * @throws StorageRuntimeException
+   *           If an error occurs in the storage.
+   */
+  final void startOnlineRebuild(WriteableTransaction txn) throws StorageRuntimeException
+  {
+    final boolean toShadowTree = recordsTreeName.equals(getName());
+    final TreeName targetTreeName = toShadowTree ? getShadowTreeName() : getName();
+    // Discard what an interrupted rebuild may have left behind
+    txn.deleteTree(targetTreeName);
+    txn.openTree(targetTreeName, true);
+
+    final EnumSet<IndexFlag> flags = state.getIndexFlags(txn, getName());
+    flags.add(TRUSTED);
+    if (entryContainer.isIndexBitmapEncodingEnabled())
+    {
+      flags.add(COMPACTED);
+      flags.add(BITMAP);
+    }
+    else
+    {
+      flags.remove(BITMAP);
+    }
+    if (toShadowTree)
+    {
+      flags.add(SHADOW_TREE);
+    }
+    else
+    {
+      flags.remove(SHADOW_TREE);
+    }
+    rebuildTarget = new RebuildTarget(targetTreeName, flags, newCodec(flags));
+  }
+
+  /**
+   * Updates the entry IDs of a key in the tree this index is being rebuilt online into. Unlike
+   * {@link #update(WriteableTransaction, ByteString, EntryIDSet, EntryIDSet)}, the key is created if it does not
+   * exist, since the rebuilt records are trusted once the rebuild is over.
+   *
+   * @param txn
+   *          a non null transaction
+   * @param key
+   *          the index key
+   * @param deletedIDs
+   *          the entry IDs to remove from the key, may be null
+   * @param addedIDs
+   *          the entry IDs to add to the key, may be null
+   * @throws StorageRuntimeException
+   *           If an error occurs in the storage.
+   */
+  final void rebuildUpdate(WriteableTransaction txn, ByteString key, EntryIDSet deletedIDs, EntryIDSet addedIDs)
+      throws StorageRuntimeException
+  {
+    if (!isNullOrEmpty(deletedIDs) || !isNullOrEmpty(addedIDs))
+    {
+      final RebuildTarget target = rebuildTarget;
+      updateRecord(txn, target.treeName, target.codec, target.statistics, key, deletedIDs, addedIDs, true);
+    }
+  }
+
+  /**
+   * Persists the flags and the statistics of the records this index has been rebuilt online into, so that they are
+   * used from now on. This must be called while holding the exclusive lock of the entry container, once all the
+   * changes made concurrently to the rebuild have been reconciled.
+   *
+   * @param txn
+   *          a non null transaction
+   * @throws StorageRuntimeException
+   *           If an error occurs in the storage.
+   */
+  final void finishOnlineRebuild(WriteableTransaction txn) throws StorageRuntimeException
+  {
+    final RebuildTarget target = rebuildTarget;
+    final EnumSet<IndexFlag> removedFlags = EnumSet.of(COMPACTED, BITMAP, SHADOW_TREE);
+    removedFlags.removeAll(target.flags);
+    state.addFlagsToIndex(txn, getName(), target.flags.toArray(new IndexFlag[target.flags.size()]));
+    state.removeFlagsFromIndex(txn, getName(), removedFlags.toArray(new IndexFlag[removedFlags.size()]));
+    state.putIndexStatistics(txn, getName(), target.statistics);
+  }
+
+  /**
+   * Switches this index to the records it has been rebuilt online into, once
+   * {@link #finishOnlineRebuild(WriteableTransaction)} has been committed and before the exclusive lock of the entry
+   * container is released.
+   *
+   * @return the name of the tree holding the previous records of this index, which must be cleared
+   */
+  final synchronized TreeName useRebuiltTree()
+  {
+    final RebuildTarget target = rebuildTarget;
+    final TreeName previousTreeName = recordsTreeName;
+    recordsTreeName = target.treeName;
+    codec = target.codec;
+    statistics = target.statistics;
+    trusted = true;
+    rebuildTarget = null;
+    return previousTreeName;
+  }
+
+  /**
+   * Abandons the online rebuild of this index, which keeps using its current records.
+   *
+   * @return the name of the tree this index was being rebuilt into, which must be cleared, or {@code null} if it was
+   *         not being rebuilt
+   */
+  final TreeName stopOnlineRebuild()
+  {
+    final RebuildTarget target = rebuildTarget;
+    rebuildTarget = null;
+    return target != null ? target.treeName : null;
+  }
+
+  /**
+   * Removes the records of a tree of this index which is not used anymore, after an online rebuild.
+   *
+   * @param txn
+   *          a non null transaction
+   * @param treeName
+   *          the name of the unused tree, returned by {@link #useRebuiltTree()} or {@link #stopOnlineRebuild()}
+   * @throws StorageRuntimeException
+   *           If an error occurs in the storage.
+   */
+  final void clearUnusedTree(WriteableTransaction txn, TreeName treeName) throws StorageRuntimeException
+  {
+    txn.deleteTree(treeName);
+    if (treeName.equals(getName()))
+    {
+      // The tree named after this index must always exist, even when it does not hold the records
+      txn.openTree(treeName, true);
+    }
+  }
 
+  private void updateRecord(final WriteableTransaction txn, final TreeName treeName, final EntryIDSetCodec codec,
+      final IndexStatistics stats, final ByteString key, final EntryIDSet deletedIDs, final EntryIDSet addedIDs,
+      final boolean rebuilding)
+  {
     // The record is going to be changed in some way.
-    txn.update(getName(), key, new UpdateFunction()
+    // The update function may be invoked several times: only record the sizes of the last invocation.
+    final long[] oldAndNewSizes = new long[2];
+    final boolean updated = txn.update(treeName, key, new UpdateFunction()
     {
       @Override
       public ByteSequence computeNewValue(final ByteSequence oldValue)
       {
+        oldAndNewSizes[0] = IndexStatistics.NO_KEY;
+        oldAndNewSizes[1] = IndexStatistics.NO_KEY;
         if (oldValue != null)
         {
-          EntryIDSet entryIDSet = computeEntryIDSet(key, oldValue.toByteString(), deletedIDs, addedIDs);
+          final EntryIDSet oldIDs = codec.decode(key, oldValue.toByteString());
+          oldAndNewSizes[0] = IndexStatistics.sizeOf(oldIDs);
+          EntryIDSet entryIDSet = computeEntryIDSet(key, oldIDs, deletedIDs, addedIDs);
           /*
            * If there are no more IDs then return null indicating that the record should be removed.
            * If index is not trusted then this will cause all subsequent reads for this key to
            * return undefined set.
            */
-          return entryIDSet.size() == 0 ? null : toValue(entryIDSet);
+          if (entryIDSet.size() == 0)
+          {
+            return null;
+          }
+          oldAndNewSizes[1] = IndexStatistics.sizeOf(entryIDSet);
+          return codec.encode(entryIDSet);
+        }
+        else if (rebuilding)
+        {
+          if (isNotEmpty(addedIDs))
+          {
+            final EntryIDSet entryIDSet = computeEntryIDSet(key, newDefinedSet(), null, addedIDs);
+            oldAndNewSizes[1] = IndexStatistics.sizeOf(entryIDSet);
+            return codec.encode(entryIDSet);
+          }
         }
         else if (trusted)
         {
@@ -208,12 +539,49 @@ class DefaultIndex extends AbstractTree implements Index
           }
           if (isNotEmpty(addedIDs))
           {
-            return toValue(addedIDs);
+            oldAndNewSizes[1] = addedIDs.size();
+            return codec.encode(addedIDs);
           }
         }
         return null; // no change.
       }
     });
+
+    if (updated && stats != null)
+    {
+      stats.recordChange(oldAndNewSizes[0], oldAndNewSizes[1]);
+    }
+  }
+
+  /**
+   * Starts recording the changes made to this index in the provided delta log, before it is rebuilt online.
+   *
+   * @param log
+   *          the delta log of the online rebuild
+   * @return {@code false} if this index is already being rebuilt online
+   */
+  final synchronized boolean startRecordingChanges(DeltaLog log)
+  {
+    if (deltaLog != null)
+    {
+      return false;
+    }
+    deltaLog = log;
+    return true;
+  }
+
+  /**
+   * Stops recording the changes made to this index, once its online rebuild is over.
+   *
+   * @param log
+   *          the delta log of the online rebuild, which must be the one the changes are recorded into
+   */
+  final synchronized void stopRecordingChanges(DeltaLog log)
+  {
+    if (deltaLog == log)
+    {
+      deltaLog = null;
+    }
   }
 
   private static boolean isNullOrEmpty(EntryIDSet entryIDSet)
@@ -226,9 +594,9 @@ class DefaultIndex extends AbstractTree implements Index
     return entryIDSet != null && entryIDSet.size() > 0;
   }
 
-  private EntryIDSet computeEntryIDSet(ByteString key, ByteString value, EntryIDSet deletedIDs, EntryIDSet addedIDs)
+  private EntryIDSet computeEntryIDSet(ByteString key, EntryIDSet entryIDSet, EntryIDSet deletedIDs,
+      EntryIDSet addedIDs)
   {
-    EntryIDSet entryIDSet = decodeValue(key, value);
     if (addedIDs != null)
     {
       if (entryIDSet.isDefined() && indexEntryLimit > 0)
@@ -271,7 +639,7 @@ class DefaultIndex extends AbstractTree implements Index
   {
     try
     {
-      ByteString value = txn.read(getName(), key);
+      ByteString value = txn.read(recordsTreeName, key);
       if (value != null)
       {
         return decodeValue(key, value);
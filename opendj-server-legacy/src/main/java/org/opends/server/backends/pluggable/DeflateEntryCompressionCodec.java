@@ -0,0 +1,120 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.messages.BackendMessages.*;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DecodeException;
+
+/**
+ * The Deflate codec, producing the same zlib format as the {@code DeflaterOutputStream} historically used to compress
+ * entries. Entries compressed by this codec are stored in the historical format, so that they can be read by previous
+ * versions: this is why this codec does not use dictionaries.
+ */
+final class DeflateEntryCompressionCodec extends EntryCompressionCodec
+{
+  private static final byte ID = 0x01;
+
+  @Override
+  byte getID()
+  {
+    return ID;
+  }
+
+  @Override
+  boolean supportsDictionaries()
+  {
+    return false;
+  }
+
+  @Override
+  void compress(ByteSequence data, CompressionDictionary dictionary, ByteStringBuilder output)
+  {
+    final Deflater deflater = new Deflater();
+    try
+    {
+      if (dictionary != null)
+      {
+        deflater.setDictionary(dictionary.getBytes());
+      }
+      deflater.setInput(data.toByteArray());
+      deflater.finish();
+      final int chunkLength = Math.max(64, data.length() / 2);
+      while (!deflater.finished())
+      {
+        final int offset = output.length();
+        output.setLength(offset + chunkLength);
+        final int length = deflater.deflate(output.getBackingArray(), offset, chunkLength);
+        output.setLength(offset + length);
+      }
+    }
+    finally
+    {
+      deflater.end();
+    }
+  }
+
+  @Override
+  void decompress(ByteSequence data, CompressionDictionary dictionary, int uncompressedLength,
+      ByteStringBuilder output) throws DecodeException
+  {
+    final Inflater inflater = new Inflater();
+    try
+    {
+      inflater.setInput(data.toByteArray());
+      final int offset = output.length();
+      output.setLength(offset + uncompressedLength);
+      int position = offset;
+      while (position < offset + uncompressedLength)
+      {
+        final int length = inflater.inflate(output.getBackingArray(), position, offset + uncompressedLength - position);
+        if (length == 0 && inflater.needsDictionary())
+        {
+          if (dictionary == null)
+          {
+            throw DecodeException.error(ERR_CANNOT_DECOMPRESS_ENTRY.get("missing dictionary"));
+          }
+          inflater.setDictionary(dictionary.getBytes());
+        }
+        else if (length == 0 && (inflater.finished() || inflater.needsInput()))
+        {
+          throw DecodeException.error(ERR_CANNOT_DECOMPRESS_ENTRY.get("unexpected end of data"));
+        }
+        position += length;
+      }
+    }
+    catch (DataFormatException e)
+    {
+      throw DecodeException.error(ERR_CANNOT_DECOMPRESS_ENTRY.get(e.getMessage()), e);
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return "deflate";
+  }
+}
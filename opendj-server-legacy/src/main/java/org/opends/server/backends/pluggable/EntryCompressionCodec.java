@@ -0,0 +1,122 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.messages.BackendMessages.*;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.server.config.meta.PluggableBackendCfgDefn.EntriesCompressionCodec;
+
+/**
+ * Compression algorithm applied to the entries stored in the entry tree.
+ * <p>
+ * Each codec is identified by a byte stored with the entries it compressed, so that entries compressed by different
+ * codecs, for example before and after a configuration change, can always be read. Codecs supporting dictionaries can
+ * reference the content of a {@link CompressionDictionary} shared by all the entries of the backend, which makes them
+ * efficient even on small entries. Implementations must be thread-safe.
+ */
+abstract class EntryCompressionCodec
+{
+  /** The Deflate codec, historically used to compress entries. */
+  static final EntryCompressionCodec DEFLATE = new DeflateEntryCompressionCodec();
+  /** A fast LZ77 codec, supporting dictionaries. */
+  static final EntryCompressionCodec LZ = new LZEntryCompressionCodec();
+
+  /**
+   * Returns the codec selected by the backend configuration.
+   *
+   * @param codec
+   *          the configured codec
+   * @return the codec
+   */
+  static EntryCompressionCodec valueOf(EntriesCompressionCodec codec)
+  {
+    switch (codec)
+    {
+    case LZ:
+      return LZ;
+    default:
+      return DEFLATE;
+    }
+  }
+
+  /**
+   * Returns the codec having the provided identifier.
+   *
+   * @param id
+   *          the identifier stored with a compressed entry
+   * @return the codec
+   * @throws DecodeException
+   *           if there is no codec with this identifier
+   */
+  static EntryCompressionCodec valueOf(byte id) throws DecodeException
+  {
+    if (id == DEFLATE.getID())
+    {
+      return DEFLATE;
+    }
+    else if (id == LZ.getID())
+    {
+      return LZ;
+    }
+    throw DecodeException.error(ERR_UNKNOWN_ENTRY_COMPRESSION_CODEC.get(id));
+  }
+
+  /**
+   * Returns the identifier of this codec, stored with the entries it compressed.
+   *
+   * @return the identifier of this codec
+   */
+  abstract byte getID();
+
+  /**
+   * Indicates whether this codec can use a {@link CompressionDictionary}.
+   *
+   * @return {@code true} if this codec can use a dictionary
+   */
+  abstract boolean supportsDictionaries();
+
+  /**
+   * Compresses data.
+   *
+   * @param data
+   *          the data to compress
+   * @param dictionary
+   *          the dictionary to use, or {@code null}
+   * @param output
+   *          the builder where to append the compressed data
+   */
+  abstract void compress(ByteSequence data, CompressionDictionary dictionary, ByteStringBuilder output);
+
+  /**
+   * Decompresses data.
+   *
+   * @param data
+   *          the compressed data
+   * @param dictionary
+   *          the dictionary used to compress the data, or {@code null}
+   * @param uncompressedLength
+   *          the length of the data before it was compressed
+   * @param output
+   *          the builder where to append the decompressed data
+   * @throws DecodeException
+   *           if the compressed data is corrupted
+   */
+  abstract void decompress(ByteSequence data, CompressionDictionary dictionary, int uncompressedLength,
+      ByteStringBuilder output) throws DecodeException;
+}
@@ -27,6 +27,8 @@ import static org.opends.server.protocols.ldap.LDAPResultCode.*;
 import static org.opends.server.types.AdditionalLogItem.*;
 import static org.opends.server.util.StaticUtils.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -36,7 +38,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -66,6 +68,7 @@ import org.opends.server.api.EntryCache;
 import org.opends.server.api.VirtualAttributeProvider;
 import org.opends.server.api.plugin.PluginResult.SubordinateDelete;
 import org.opends.server.api.plugin.PluginResult.SubordinateModifyDN;
+import org.opends.server.backends.pluggable.BackendMonitor.SearchTracker;
 import org.opends.server.backends.pluggable.spi.AccessMode;
 import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.ReadOperation;
@@ -125,6 +128,17 @@ public class EntryContainer
   /** The name of the state tree. */
   private static final String STATE_TREE_NAME = STATE_INDEX_NAME;
 
+  /** Maximum number of dn2id records read to compute the search scope, per candidate entry. */
+  private static final long SCOPE_READS_PER_CANDIDATE = 8;
+  /** Initial capacity of the entry ID sets read from dn2id to compute the search scope. */
+  private static final int INITIAL_SCOPE_ID_SET_CAPACITY = 1024;
+  /** Directory where the search results which do not fit in memory are sorted, relative to the instance root. */
+  private static final String SORT_TMP_DIR = "sort-tmp";
+  /** Number of levels of the DIT below the base DN whose entry IDs are cached. */
+  private static final int DN_CACHE_MAX_DEPTH = 4;
+  /** Maximum number of entry IDs cached for the upper levels of the DIT. */
+  private static final int DN_CACHE_MAX_SIZE = 10000;
+
   /** The attribute index configuration manager. */
   private final AttributeIndexCfgManager attributeIndexCfgManager;
   /** The vlv index configuration manager. */
@@ -141,8 +155,10 @@ public class EntryContainer
   /** The tree storage. */
   private final Storage storage;
 
-  /** The DN tree maps a normalized DN string to an entry ID (8 bytes). */
+  /** The DN tree maps a normalized DN string to an entry ID. */
   private final DN2ID dn2id;
+  /** Caches the entry IDs of the upper levels of the DIT, which are the parents and search bases of most operations. */
+  private final DN2IDCache dn2idCache;
   /** The entry tree maps an entry ID (8 bytes) to a complete encoded entry. */
   private ID2Entry id2entry;
   /** Store the number of children for each entry. */
@@ -358,9 +374,10 @@ public class EntryContainer
     this.serverContext = serverContext;
     this.treePrefix = baseDN.toNormalizedUrlSafeString();
     this.id2childrenCount = new ID2ChildrenCount(getIndexName(ID2CHILDREN_COUNT_TREE_NAME));
-    this.dn2id = new DN2ID(getIndexName(DN2ID_TREE_NAME), baseDN);
-    this.dn2uri = new DN2URI(getIndexName(REFERRAL_TREE_NAME), this);
     this.state = new State(getIndexName(STATE_TREE_NAME));
+    this.dn2id = new DN2ID(getIndexName(DN2ID_TREE_NAME), baseDN, state);
+    this.dn2idCache = new DN2IDCache(baseDN, DN_CACHE_MAX_DEPTH, DN_CACHE_MAX_SIZE);
+    this.dn2uri = new DN2URI(getIndexName(REFERRAL_TREE_NAME), this);
 
     config.addPluggableChangeListener(this);
 
@@ -388,6 +405,7 @@ public class EntryContainer
   {
     return new DataConfig.Builder()
         .compress(config.isEntriesCompressed())
+        .compressionCodec(EntryCompressionCodec.valueOf(config.getEntriesCompressionCodec()))
         .encode(config.isCompactEncoding())
         .encrypt(config.isConfidentialityEnabled())
         .cryptoSuite(serverContext.getCryptoManager().newCryptoSuite(config.getCipherTransformation(),
@@ -396,6 +414,17 @@ public class EntryContainer
         .build();
   }
 
+  /**
+   * Indicates whether attribute indexes created or rebuilt from now on must store their entry ID sets as compressed
+   * bitmaps.
+   *
+   * @return {@code true} if attribute indexes must use the compressed bitmap encoding
+   */
+  boolean isIndexBitmapEncodingEnabled()
+  {
+    return config.isIndexBitmapEncodingEnabled();
+  }
+
   private TreeName getIndexName(String indexId)
   {
     return new TreeName(treePrefix, indexId);
@@ -412,13 +441,15 @@ public class EntryContainer
   void open(WriteableTransaction txn, AccessMode accessMode) throws StorageRuntimeException, ConfigException
   {
     boolean shouldCreate = accessMode.isWriteable();
+    dn2idCache.clear();
     try
     {
       id2entry = new ID2Entry(getIndexName(ID2ENTRY_TREE_NAME), newDataConfig(config));
       id2entry.open(txn, shouldCreate);
       id2childrenCount.open(txn, shouldCreate);
-      dn2id.open(txn, shouldCreate);
+      // The state tree records the encoding of the DN tree.
       state.open(txn, shouldCreate);
+      dn2id.open(txn, shouldCreate);
       dn2uri.open(txn, shouldCreate);
 
       final boolean isNotEmpty = !isEmpty(txn);
@@ -472,6 +503,7 @@ public class EntryContainer
   @Override
   public void close() throws StorageRuntimeException
   {
+    saveIndexStatistics();
     closeSilently(attrIndexMap.values());
     closeSilently(vlvIndexMap.values());
 
@@ -483,6 +515,47 @@ public class EntryContainer
     config.removeBackendVLVIndexDeleteListener(vlvIndexCfgManager);
   }
 
+  /** Persists the statistics of the attribute indexes, which are otherwise only maintained in memory. */
+  private void saveIndexStatistics()
+  {
+    final List<DefaultIndex> modifiedIndexes = new ArrayList<>();
+    for (AttributeIndex attributeIndex : attrIndexMap.values())
+    {
+      for (DefaultIndex index : attributeIndex.getNameToIndexes().values())
+      {
+        final IndexStatistics statistics = index.getStatistics();
+        if (statistics != null && statistics.isModified())
+        {
+          modifiedIndexes.add(index);
+        }
+      }
+    }
+    if (modifiedIndexes.isEmpty())
+    {
+      return;
+    }
+
+    try
+    {
+      storage.write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (DefaultIndex index : modifiedIndexes)
+          {
+            index.saveStatistics(txn);
+          }
+        }
+      });
+    }
+    catch (Exception e)
+    {
+      // Statistics are approximate: failing to persist them only makes search plans less accurate.
+      logger.traceException(e);
+    }
+  }
+
   /**
    * Retrieves a reference to the root container in which this entry container
    * exists.
@@ -667,6 +740,7 @@ public class EntryContainer
   void search(final SearchOperation searchOperation)
   throws DirectoryException, StorageRuntimeException, CanceledOperationException
   {
+    final SearchTracker tracker = rootContainer.getMonitorProvider().startSearch();
     try
     {
       storage.read(new ReadOperation<Void>()
@@ -759,8 +833,44 @@ public class EntryContainer
           // Combining server-side sort with paged result controls
           // requires us to use an entryIDSet where the entryIDs are ordered
           // so further paging can restart where it previously stopped
-          long[] reorderedCandidateEntryIDs;
-          if (candidateEntryIDs == null)
+          long[] reorderedCandidateEntryIDs = null;
+          // Without sort nor debug information, the candidates are combined from the indexes while they are returned
+          EntryIDCursor lazyCandidateEntryIDs = null;
+          final boolean isIndexed;
+          if (candidateEntryIDs == null && sortRequest == null && debugBuffer == null)
+          {
+            if (processSearchWithVirtualAttributeRule(searchOperation, true))
+            {
+              return null;
+            }
+
+            IndexFilter indexFilter = new IndexFilter(
+                EntryContainer.this, txn, searchOperation, debugBuffer, rootContainer.getMonitorProvider());
+            lazyCandidateEntryIDs = indexFilter.evaluateLazily();
+            if (lazyCandidateEntryIDs != null && isWholeContainer(aBaseDN, searchScope))
+            {
+              // Every entry of this container is in scope: there is no need to read dn2id.
+              candidatesAreInScope = true;
+            }
+            else if (lazyCandidateEntryIDs == null || !isBelowFilterThreshold(lazyCandidateEntryIDs))
+            {
+              final int idSetLimit = lazyCandidateEntryIDs != null
+                  ? getScopeIDSetLimit(searchOperation, lazyCandidateEntryIDs.getMaximumSize())
+                  : getEntryIDSetLimit(searchOperation);
+              // dn2id returns the entry IDs in DN order: the scope is read as a whole before being intersected
+              final EntryIDSet scopeSet = getIDSetFromScope(txn, aBaseDN, searchScope, idSetLimit);
+              if (scopeSet.isDefined())
+              {
+                lazyCandidateEntryIDs = lazyCandidateEntryIDs != null
+                    ? EntryIDCursor.intersection(Arrays.asList(lazyCandidateEntryIDs, EntryIDCursor.of(scopeSet)))
+                    : EntryIDCursor.of(scopeSet);
+                // In this case we know that every candidate is in scope.
+                candidatesAreInScope = true;
+              }
+            }
+            isIndexed = lazyCandidateEntryIDs != null;
+          }
+          else if (candidateEntryIDs == null)
           {
             if (processSearchWithVirtualAttributeRule(searchOperation, true))
             {
@@ -773,9 +883,18 @@ public class EntryContainer
 
             // Evaluate the filter against the attribute indexes.
             candidateEntryIDs = indexFilter.evaluate();
-            if (!isBelowFilterThreshold(candidateEntryIDs))
+            if (candidateEntryIDs.isDefined() && isWholeContainer(aBaseDN, searchScope))
+            {
+              // Every entry of this container is in scope: there is no need to read dn2id.
+              candidatesAreInScope = true;
+              if (debugBuffer != null)
+              {
+                debugBuffer.append(" scope=").append(searchScope).append("[ALL-IN-SCOPE]");
+              }
+            }
+            else if (!isBelowFilterThreshold(candidateEntryIDs))
             {
-              final int idSetLimit = getEntryIDSetLimit(searchOperation);
+              final int idSetLimit = getScopeIDSetLimit(searchOperation, candidateEntryIDs);
               final EntryIDSet scopeSet = getIDSetFromScope(txn, aBaseDN, searchScope, idSetLimit);
               candidateEntryIDs.retainAll(scopeSet);
               if (debugBuffer != null)
@@ -798,7 +917,8 @@ public class EntryContainer
               try
               {
                 List<SortKey> sortKeys = sortRequest.getSortKeys();
-                reorderedCandidateEntryIDs = sort(txn, candidateEntryIDs, searchOperation, sortKeys, vlvRequest);
+                reorderedCandidateEntryIDs =
+                    sort(txn, candidateEntryIDs, searchOperation, sortKeys, vlvRequest, pageRequest);
               }
               catch (DirectoryException de)
               {
@@ -827,15 +947,18 @@ public class EntryContainer
               {
                 serverSideSortControlError(searchOperation, sortRequest, de);
               }
+              isIndexed = reorderedCandidateEntryIDs != null;
             }
             else
             {
-              reorderedCandidateEntryIDs = candidateEntryIDs.toLongArray();
+              // Candidates are iterated in ID order from the candidate set itself, without expanding it.
+              isIndexed = candidateEntryIDs.isDefined();
             }
           }
           else
           {
             reorderedCandidateEntryIDs = candidateEntryIDs.toLongArray();
+            isIndexed = reorderedCandidateEntryIDs != null;
           }
 
           // If requested, construct and return a fictitious entry containing
@@ -850,10 +973,35 @@ public class EntryContainer
             return null;
           }
 
-          if (reorderedCandidateEntryIDs != null)
+          if (isIndexed)
           {
+            final EntryIDCursor candidates;
+            long candidatesSize;
+            if (lazyCandidateEntryIDs != null)
+            {
+              candidates = lazyCandidateEntryIDs;
+              candidatesSize = lazyCandidateEntryIDs.getEstimatedHeapSize();
+            }
+            else if (reorderedCandidateEntryIDs != null)
+            {
+              candidates = new ReorderedEntryIDCursor(reorderedCandidateEntryIDs);
+              candidatesSize = candidateEntryIDs.getEstimatedHeapSize() + reorderedCandidateEntryIDs.length * 8L;
+            }
+            else
+            {
+              candidates = EntryIDCursor.of(candidateEntryIDs);
+              candidatesSize = candidateEntryIDs.getEstimatedHeapSize();
+            }
+            tracker.candidatesEvaluated(candidatesSize);
             rootContainer.getMonitorProvider().incrementIndexedSearchCount();
-            searchIndexed(txn, reorderedCandidateEntryIDs, candidatesAreInScope, searchOperation, pageRequest);
+            try
+            {
+              searchIndexed(txn, candidates, candidatesAreInScope, searchOperation, pageRequest, tracker);
+            }
+            finally
+            {
+              candidates.close();
+            }
           }
           else
           {
@@ -873,18 +1021,35 @@ public class EntryContainer
                   ResultCode.INSUFFICIENT_ACCESS_RIGHTS, ERR_SEARCH_UNINDEXED_INSUFFICIENT_PRIVILEGES.get());
             }
 
-            if (sortRequest != null)
+            if (sortRequest != null && sortRequest.containsSortKeys())
             {
-              // FIXME OPENDJ-2628: Add support for sorting unindexed searches using indexes like DSEE currently does
-              addServerSideSortControl(searchOperation, UNWILLING_TO_PERFORM);
-              if (sortRequest.isCritical())
+              long[] sortedEntryIDs = null;
+              try
+              {
+                sortedEntryIDs =
+                    sortNotIndexed(txn, searchOperation, sortRequest.getSortKeys(), vlvRequest, pageRequest);
+              }
+              catch (DirectoryException de)
+              {
+                serverSideSortControlError(searchOperation, sortRequest, de);
+              }
+              if (sortedEntryIDs != null)
               {
-                throw new DirectoryException(
-                    ResultCode.UNAVAILABLE_CRITICAL_EXTENSION, ERR_SEARCH_CANNOT_SORT_UNINDEXED.get());
+                final EntryIDCursor candidates = new ReorderedEntryIDCursor(sortedEntryIDs);
+                tracker.candidatesEvaluated(sortedEntryIDs.length * 8L);
+                try
+                {
+                  searchIndexed(txn, candidates, true, searchOperation, pageRequest, tracker);
+                }
+                finally
+                {
+                  candidates.close();
+                }
+                return null;
               }
             }
 
-            searchNotIndexed(txn, searchOperation, pageRequest);
+            searchNotIndexed(txn, searchOperation, pageRequest, tracker);
           }
           return null;
         }
@@ -896,6 +1061,31 @@ public class EntryContainer
           return lookThroughLimit > 0 ? Math.min(indexLimit, lookThroughLimit) : indexLimit;
         }
 
+        /**
+         * When the indexes already returned candidates, reading the scope from dn2id is only worth it while it is
+         * cheaper than checking the scope of each candidate entry. Past this limit, the scope is checked on entries.
+         */
+        private int getScopeIDSetLimit(final SearchOperation searchOperation, EntryIDSet candidateEntryIDs)
+        {
+          if (candidateEntryIDs.isDefined())
+          {
+            return getScopeIDSetLimit(searchOperation, candidateEntryIDs.size());
+          }
+          return getEntryIDSetLimit(searchOperation);
+        }
+
+        private int getScopeIDSetLimit(final SearchOperation searchOperation, long maximumNbCandidates)
+        {
+          final int idSetLimit = getEntryIDSetLimit(searchOperation);
+          final long scopeReads = Math.min(idSetLimit, maximumNbCandidates) * SCOPE_READS_PER_CANDIDATE;
+          return (int) Math.max(1, Math.min(idSetLimit, scopeReads));
+        }
+
+        private boolean isWholeContainer(DN aBaseDN, SearchScope searchScope)
+        {
+          return searchScope == SearchScope.WHOLE_SUBTREE && aBaseDN.equals(baseDN);
+        }
+
         private void searchBaseObject(ReadableTransaction txn, SearchOperation searchOperation,
             PagedResultsControl pageRequest) throws DirectoryException
         {
@@ -907,6 +1097,7 @@ public class EntryContainer
 
           if (searchOperation.getFilter().matchesEntry(baseEntry))
           {
+            tracker.entryReturned();
             searchOperation.returnEntry(baseEntry, null);
           }
 
@@ -974,12 +1165,17 @@ public class EntryContainer
     {
       throwAllowedExceptionTypes(e, DirectoryException.class, CanceledOperationException.class);
     }
+    finally
+    {
+      tracker.close();
+    }
   }
 
   private static EntryIDSet newIDSetFromCursor(SequentialCursor<?, EntryID> cursor, boolean includeCurrent,
       int idSetLimit)
   {
-    long entryIDs[] = new long[idSetLimit];
+    // Grow the array on demand: the limit is usually much larger than the number of IDs read.
+    long entryIDs[] = new long[Math.min(idSetLimit, INITIAL_SCOPE_ID_SET_CAPACITY)];
     int offset = 0;
     if (includeCurrent)
     {
@@ -988,6 +1184,10 @@ public class EntryContainer
 
     while(offset < idSetLimit && cursor.next())
     {
+      if (offset == entryIDs.length)
+      {
+        entryIDs = Arrays.copyOf(entryIDs, (int) Math.min(idSetLimit, entryIDs.length * 2L));
+      }
       entryIDs[offset++] = cursor.getValue().longValue();
     }
 
@@ -995,7 +1195,7 @@ public class EntryContainer
     {
       return EntryIDSet.newUndefinedSet();
     }
-    else if (offset != idSetLimit)
+    else if (offset != entryIDs.length)
     {
       entryIDs = Arrays.copyOf(entryIDs, offset);
     }
@@ -1071,11 +1271,12 @@ public class EntryContainer
    *
    * @param searchOperation The search operation.
    * @param pageRequest A Paged Results control, or null if none.
+   * @param tracker The tracker of the search.
    * @throws DirectoryException If an error prevented the search from being
    * processed.
    */
   private void searchNotIndexed(ReadableTransaction txn, SearchOperation searchOperation,
-      PagedResultsControl pageRequest) throws DirectoryException, CanceledOperationException
+      PagedResultsControl pageRequest, SearchTracker tracker) throws DirectoryException, CanceledOperationException
   {
     DN aBaseDN = searchOperation.getBaseDN();
     SearchScope searchScope = searchOperation.getScope();
@@ -1096,6 +1297,7 @@ public class EntryContainer
       if (searchScope == SearchScope.WHOLE_SUBTREE
           && searchOperation.getFilter().matchesEntry(baseEntry))
       {
+        tracker.entryReturned();
         searchOperation.returnEntry(baseEntry, null);
       }
 
@@ -1140,6 +1342,14 @@ public class EntryContainer
       begin = beforeFirstChild;
     }
 
+    final ExecutorService searchExecutor = rootContainer.getSearchExecutor();
+    if (searchExecutor != null)
+    {
+      searchNotIndexedInParallel(txn, searchOperation, pageRequest, tracker, searchExecutor,
+          baseDNKey, begin, afterLastChild);
+      return;
+    }
+
     int lookthroughCount = 0;
     int lookthroughLimit = searchOperation.getClientConnection().getLookthroughLimit();
 
@@ -1160,7 +1370,7 @@ public class EntryContainer
         }
 
         // We have found a subordinate entry.
-        EntryID entryID = new EntryID(cursor.getValue());
+        EntryID entryID = dn2id.toEntryID(cursor.getValue());
         boolean isInScope =
             searchScope != SearchScope.SINGLE_LEVEL
                 // Check if this entry is an immediate child.
@@ -1208,6 +1418,120 @@ public class EntryContainer
     addPagedResultsControl(searchOperation, pageRequest, null);
   }
 
+  /**
+   * Iterates through the subtree range of the DN tree like {@code searchNotIndexed()}, but the candidate entries are
+   * decoded and filtered by the provided pool of threads while this thread keeps reading them. Matching entries are
+   * still returned in DN order, and paging cookies are the same as when a single thread processes the search.
+   */
+  private void searchNotIndexedInParallel(ReadableTransaction txn, SearchOperation searchOperation,
+      PagedResultsControl pageRequest, SearchTracker tracker, ExecutorService searchExecutor, ByteString baseDNKey,
+      ByteSequence begin, ByteSequence afterLastChild) throws DirectoryException, CanceledOperationException
+  {
+    SearchScope searchScope = searchOperation.getScope();
+    int lookthroughCount = 0;
+    int lookthroughLimit = searchOperation.getClientConnection().getLookthroughLimit();
+    final EntryCache<?> entryCache = getEntryCache();
+
+    try (final Cursor<ByteString, ByteString> cursor = txn.openCursor(dn2id.getName());
+        final ParallelEntryFilter entryFilter = new ParallelEntryFilter(searchExecutor,
+            config.getUnindexedSearchParallelism(), id2entry, entryCache, backendID, searchOperation.getFilter(),
+            isManageDsaITOperation(searchOperation)))
+    {
+      // Initialize the cursor very close to the starting value.
+      boolean success = cursor.positionToKeyOrNext(begin);
+
+      // Step forward until we pass the ending value.
+      while (success && cursor.getKey().compareTo(afterLastChild) < 0)
+      {
+        if (lookthroughLimit > 0 && lookthroughCount > lookthroughLimit)
+        {
+          // Return the entries read before the limit was exceeded
+          entryFilter.flush();
+          if (returnMatchingEntries(searchOperation, pageRequest, tracker, entryFilter, true))
+          {
+            // Lookthrough limit exceeded
+            searchOperation.setResultCode(ResultCode.ADMIN_LIMIT_EXCEEDED);
+            searchOperation.appendErrorMessage(NOTE_LOOKTHROUGH_LIMIT_EXCEEDED.get(lookthroughLimit));
+          }
+          return;
+        }
+
+        // We have found a subordinate entry.
+        EntryID entryID = dn2id.toEntryID(cursor.getValue());
+        boolean isInScope =
+            searchScope != SearchScope.SINGLE_LEVEL
+                // Check if this entry is an immediate child.
+                || findDNKeyParent(cursor.getKey()) == baseDNKey.length();
+        if (isInScope)
+        {
+          // Read the candidate entry, it is decoded and filtered by the pool.
+          final Entry cachedEntry = entryCache.getEntry(backendID, entryID.longValue());
+          final ByteString encodedEntry =
+              cachedEntry == null ? txn.read(id2entry.getName(), entryID.toByteString()) : null;
+          if (cachedEntry != null || encodedEntry != null)
+          {
+            lookthroughCount++;
+            entryFilter.add(entryID, cursor.getKey(), cachedEntry, encodedEntry);
+            if (!returnMatchingEntries(searchOperation, pageRequest, tracker, entryFilter, false))
+            {
+              return;
+            }
+          }
+        }
+
+        searchOperation.checkIfCanceled(false);
+
+        // Move to the next record.
+        success = cursor.next();
+      }
+
+      entryFilter.flush();
+      if (!returnMatchingEntries(searchOperation, pageRequest, tracker, entryFilter, true))
+      {
+        return;
+      }
+    }
+    catch (StorageRuntimeException e)
+    {
+      logger.traceException(e);
+    }
+
+    // Indicate no more pages.
+    addPagedResultsControl(searchOperation, pageRequest, null);
+  }
+
+  /**
+   * Returns the entries which matched the search filter so far.
+   *
+   * @return {@code true} if the search must continue, {@code false} if it must stop
+   */
+  private boolean returnMatchingEntries(SearchOperation searchOperation, PagedResultsControl pageRequest,
+      SearchTracker tracker, ParallelEntryFilter entryFilter, boolean waitForAll)
+      throws DirectoryException, CanceledOperationException
+  {
+    ParallelEntryFilter.Match match;
+    while ((match = entryFilter.next(waitForAll)) != null)
+    {
+      if (isPageFull(searchOperation, pageRequest))
+      {
+        // Set the cookie to remember where we were.
+        addPagedResultsControl(searchOperation, pageRequest, match.getCookie());
+        return false;
+      }
+
+      tracker.entryReturned();
+      if (!searchOperation.returnEntry(match.getEntry(), null))
+      {
+        // We have been told to discontinue processing of the search.
+        // This could be due to size limit exceeded or operation cancelled
+        return false;
+      }
+      // Many matches may be returned at once: do not wait for the next candidate to check
+      searchOperation.checkIfCanceled(false);
+    }
+    return true;
+  }
+
   private boolean isPageFull(SearchOperation searchOperation, PagedResultsControl pageRequest)
   {
     return pageRequest != null && searchOperation.getEntriesSent() == pageRequest.getSize();
@@ -1263,20 +1587,22 @@ public class EntryContainer
    * <li>return entry if it matches the filter
    * </ul>
    *
-   * @param entryIDReorderedSet
-   *          The candidate entry IDs.
+   * @param candidates
+   *          The cursor over the candidate entry IDs.
    * @param candidatesAreInScope
    *          true if it is certain that every candidate entry is in the search scope.
    * @param searchOperation
    *          The search operation.
    * @param pageRequest
    *          A Paged Results control, or null if none.
+   * @param tracker
+   *          The tracker of the search.
    * @throws DirectoryException
    *           If an error prevented the search from being processed.
    */
-  private void searchIndexed(ReadableTransaction txn, long[] entryIDReorderedSet, boolean candidatesAreInScope,
-      SearchOperation searchOperation, PagedResultsControl pageRequest) throws DirectoryException,
-      CanceledOperationException
+  private void searchIndexed(ReadableTransaction txn, EntryIDCursor candidates, boolean candidatesAreInScope,
+      SearchOperation searchOperation, PagedResultsControl pageRequest, SearchTracker tracker)
+      throws DirectoryException, CanceledOperationException
   {
     SearchScope searchScope = searchOperation.getScope();
     DN aBaseDN = searchOperation.getBaseDN();
@@ -1307,7 +1633,13 @@ public class EntryContainer
     // Make sure the candidate list is smaller than the lookthrough limit
     int lookthroughLimit =
       searchOperation.getClientConnection().getLookthroughLimit();
-    if (lookthroughLimit > 0 && entryIDReorderedSet.length > lookthroughLimit)
+    EntryIDCursor cursor = candidates;
+    if (lookthroughLimit > 0 && !cursor.isMaximumSizeExact() && cursor.getMaximumSize() > lookthroughLimit)
+    {
+      // Only an upper bound of the number of lazily combined candidates is known: count them up to the limit
+      cursor = EntryIDCursor.of(cursor.toLongArray((int) Math.min(Integer.MAX_VALUE, lookthroughLimit + 1L)));
+    }
+    if (lookthroughLimit > 0 && cursor.getMaximumSize() > lookthroughLimit)
     {
       //Lookthrough limit exceeded
       searchOperation.setResultCode(ResultCode.ADMIN_LIMIT_EXCEEDED);
@@ -1319,9 +1651,10 @@ public class EntryContainer
     if (continueSearch)
     {
       final SearchFilter filter = searchOperation.getFilter();
-      for (int i = findStartIndex(beginEntryID, entryIDReorderedSet); i < entryIDReorderedSet.length; i++)
+      boolean hasCandidate = beginEntryID != null ? cursor.skipTo(beginEntryID) : cursor.next();
+      for (; hasCandidate; hasCandidate = cursor.next())
       {
-        EntryID entryID = new EntryID(entryIDReorderedSet[i]);
+        EntryID entryID = new EntryID(cursor.getEntryID());
         Entry entry;
         try
         {
@@ -1346,6 +1679,7 @@ public class EntryContainer
               return;
             }
 
+            tracker.entryReturned();
             if (!searchOperation.returnEntry(entry, null))
             {
               // We have been told to discontinue processing of the search.
@@ -1374,21 +1708,121 @@ public class EntryContainer
     addPagedResultsControl(searchOperation, pageRequest, null);
   }
 
-  private int findStartIndex(Long beginEntryID, long[] entryIDReorderedSet)
+  /**
+   * Cursor over candidate entry IDs reordered by a server-side sort. Since the entry IDs are not in ascending order,
+   * {@link #skipTo(long)} positions the cursor on the provided entry ID if it is a candidate, or else on the first one.
+   */
+  private static final class ReorderedEntryIDCursor extends EntryIDCursor
+  {
+    private final long[] entryIDs;
+    private int index = -1;
+
+    private ReorderedEntryIDCursor(long[] entryIDs)
+    {
+      this.entryIDs = entryIDs;
+    }
+
+    @Override
+    boolean next()
+    {
+      if (index < entryIDs.length)
+      {
+        index++;
+      }
+      return isDefined();
+    }
+
+    @Override
+    boolean isDefined()
+    {
+      return index >= 0 && index < entryIDs.length;
+    }
+
+    @Override
+    long getEntryID()
+    {
+      if (!isDefined())
+      {
+        throw new NoSuchElementException();
+      }
+      return entryIDs[index];
+    }
+
+    @Override
+    long getMaximumSize()
+    {
+      return entryIDs.length;
+    }
+
+    @Override
+    boolean skipTo(long entryID)
+    {
+      index = 0;
+      for (int i = 0; i < entryIDs.length; i++)
+      {
+        if (entryIDs[i] == entryID)
+        {
+          index = i;
+          break;
+        }
+      }
+      return isDefined();
+    }
+  }
+
+  /** Cursor over the IDs of the entries in the scope of a search, read from the DN tree in DN order. */
+  private static final class ScopeEntryIDCursor extends EntryIDCursor
   {
-    if (beginEntryID == null)
+    private final SequentialCursor<Void, EntryID> cursor;
+    /** Whether the cursor is positioned on the base entry, which is in scope of whole subtree searches. */
+    private boolean includeCurrent;
+
+    private ScopeEntryIDCursor(SequentialCursor<Void, EntryID> cursor, boolean includeCurrent)
     {
-      return 0;
+      this.cursor = cursor;
+      this.includeCurrent = includeCurrent;
     }
-    final long begin = beginEntryID.longValue();
-    for (int i = 0; i < entryIDReorderedSet.length; i++)
+
+    @Override
+    boolean next()
     {
-      if (entryIDReorderedSet[i] == begin)
+      if (includeCurrent)
       {
-        return i;
+        includeCurrent = false;
+        return cursor.isDefined();
       }
+      return cursor.next();
+    }
+
+    @Override
+    boolean isDefined()
+    {
+      return cursor.isDefined();
+    }
+
+    @Override
+    long getEntryID()
+    {
+      return cursor.getValue().longValue();
+    }
+
+    @Override
+    long getMaximumSize()
+    {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    boolean isMaximumSizeExact()
+    {
+      return false;
+    }
+
+    @Override
+    public void close()
+    {
+      cursor.close();
     }
-    return 0;
   }
 
   private boolean isInScope(boolean candidatesAreInScope, SearchScope searchScope, DN aBaseDN, Entry entry)
@@ -1453,7 +1887,7 @@ public class EntryContainer
 
     try
     {
-      storage.write(new WriteOperation()
+      writeUpdate(new WriteOperation()
       {
         @Override
         public void run(WriteableTransaction txn) throws Exception
@@ -1474,7 +1908,7 @@ public class EntryContainer
               // Check for referral entries above the target.
               dn2uri.targetEntryReferrals(txn, entry.getName(), null);
 
-              parentID = dn2id.get(txn, parentDN);
+              parentID = getCachedEntryID(txn, parentDN);
               if (parentID == null)
               {
                 throw new DirectoryException(ResultCode.NO_SUCH_OBJECT,
@@ -1577,9 +2011,11 @@ public class EntryContainer
           throws DirectoryException, StorageRuntimeException, CanceledOperationException
   {
     final IndexBuffer indexBuffer = new IndexBuffer();
+    // Readers must not cache the entries being deleted: they may have read them before the delete.
+    invalidateDNCache(entryDN);
     try
     {
-      storage.write(new WriteOperation()
+      writeUpdate(new WriteOperation()
       {
         @Override
         public void run(WriteableTransaction txn) throws Exception
@@ -1596,7 +2032,7 @@ public class EntryContainer
             EntryID parentID = null;
             if (parentDN != null)
             {
-              parentID = dn2id.get(txn, parentDN);
+              parentID = getCachedEntryID(txn, parentDN);
               if (parentID == null)
               {
                 throw new DirectoryException(ResultCode.NO_SUCH_OBJECT,
@@ -1729,6 +2165,10 @@ public class EntryContainer
       writeTrustState(indexBuffer);
       throwAllowedExceptionTypes(e, DirectoryException.class, CanceledOperationException.class);
     }
+    finally
+    {
+      invalidateDNCache(entryDN);
+    }
   }
 
   /**
@@ -1812,7 +2252,40 @@ public class EntryContainer
     }
   }
 
+  /**
+   * Returns the entry ID of an entry of the upper levels of the DIT, such as the parent of an entry or the base of a
+   * subtree search, trying the DN cache first, then the DN tree.
+   */
+  private EntryID getCachedEntryID(ReadableTransaction txn, DN entryDN) throws StorageRuntimeException
+  {
+    EntryID entryID = dn2idCache.get(entryDN);
+    if (entryID == null)
+    {
+      final long generation = dn2idCache.getGeneration();
+      entryID = dn2id.get(txn, entryDN);
+      if (entryID != null)
+      {
+        dn2idCache.put(entryDN, entryID, generation);
+      }
+    }
+    return entryID;
+  }
+
+  private void invalidateDNCache(DN... entryDNs)
+  {
+    for (DN entryDN : entryDNs)
+    {
+      dn2idCache.invalidateSubtree(entryDN);
+    }
+  }
+
   private Entry getEntry0(ReadableTransaction txn, final DN entryDN) throws StorageRuntimeException, DirectoryException
+  {
+    return getEntry0(txn, entryDN, false);
+  }
+
+  private Entry getEntry0(ReadableTransaction txn, final DN entryDN, boolean useDNCache)
+      throws StorageRuntimeException, DirectoryException
   {
     final EntryCache<?> entryCache = DirectoryServer.getEntryCache();
     if (entryCache != null)
@@ -1824,7 +2297,7 @@ public class EntryContainer
       }
     }
 
-    final EntryID entryID = dn2id.get(txn, entryDN);
+    final EntryID entryID = useDNCache ? getCachedEntryID(txn, entryDN) : dn2id.get(txn, entryDN);
     if (entryID == null)
     {
       return null;
@@ -1862,7 +2335,7 @@ public class EntryContainer
     final ByteString encodedNewEntry = id2entry.encode(newEntry);
     try
     {
-      storage.write(new WriteOperation()
+      writeUpdate(new WriteOperation()
       {
         @Override
         public void run(WriteableTransaction txn) throws Exception
@@ -1952,9 +2425,11 @@ public class EntryContainer
       throws StorageRuntimeException, DirectoryException, CanceledOperationException
   {
     final IndexBuffer indexBuffer = new IndexBuffer();
+    // Readers must not cache the entries being renamed: they may have read them before the rename.
+    invalidateDNCache(oldTargetDN, newTargetEntry.getName());
     try
     {
-      storage.write(new WriteOperation()
+      writeUpdate(new WriteOperation()
       {
         @Override
         public void run(WriteableTransaction txn) throws Exception
@@ -1967,7 +2442,7 @@ public class EntryContainer
             final DN oldSuperiorDN = getParentWithinBase(oldTargetDN);
             final DN newSuperiorDN = getParentWithinBase(newTargetDN);
 
-            final EntryID oldSuperiorID = oldSuperiorDN != null ? dn2id.get(txn, oldSuperiorDN) : null;
+            final EntryID oldSuperiorID = oldSuperiorDN != null ? getCachedEntryID(txn, oldSuperiorDN) : null;
             final EntryID oldTargetID = dn2id.get(txn, oldTargetDN);
             if ((oldSuperiorDN != null && oldSuperiorID == null) || oldTargetID == null)
             {
@@ -1979,7 +2454,7 @@ public class EntryContainer
                                            null);
             }
 
-            final EntryID newSuperiorID = newSuperiorDN != null ? dn2id.get(txn, newSuperiorDN) : null;
+            final EntryID newSuperiorID = newSuperiorDN != null ? getCachedEntryID(txn, newSuperiorDN) : null;
             if (newSuperiorDN != null && newSuperiorID == null)
             {
               throw new DirectoryException(ResultCode.NO_SUCH_OBJECT,
@@ -2168,6 +2643,10 @@ public class EntryContainer
       writeTrustState(indexBuffer);
       throwAllowedExceptionTypes(e, DirectoryException.class, CanceledOperationException.class);
     }
+    finally
+    {
+      invalidateDNCache(oldTargetDN, newTargetEntry.getName());
+    }
   }
 
   /**
@@ -2304,6 +2783,7 @@ public class EntryContainer
    */
   void delete(WriteableTransaction txn) throws StorageRuntimeException
   {
+    dn2idCache.clear();
     for (Tree tree : listTrees())
     {
       tree.delete(txn);
@@ -2467,6 +2947,10 @@ public class EntryContainer
     {
       throw new StorageRuntimeException(e);
     }
+    finally
+    {
+      dn2idCache.clear();
+    }
   }
 
   List<Tree> listTrees()
@@ -2525,7 +3009,8 @@ public class EntryContainer
   private Entry fetchBaseEntry(ReadableTransaction txn, DN searchBaseDN, SearchScope searchScope)
       throws DirectoryException
   {
-    Entry baseEntry = getEntry0(txn, searchBaseDN);
+    // The base of a one-level or subtree search is usually one of the upper entries of the DIT.
+    Entry baseEntry = getEntry0(txn, searchBaseDN, searchScope != SearchScope.BASE_OBJECT);
     if (baseEntry == null)
     {
       // Check for referral entries above the base entry.
@@ -2537,96 +3022,220 @@ public class EntryContainer
   }
 
   private long[] sort(ReadableTransaction txn, EntryIDSet entryIDSet, SearchOperation searchOperation,
-      List<SortKey> sortKeys, VLVRequestControl vlvRequest) throws DirectoryException
+      List<SortKey> sortKeys, VLVRequestControl vlvRequest, PagedResultsControl pageRequest)
+      throws DirectoryException
   {
     if (!entryIDSet.isDefined())
     {
       return null;
     }
 
+    try (final EntryIDCursor candidates = EntryIDCursor.of(entryIDSet))
+    {
+      // The candidate set is already smaller than the lookthrough limit.
+      return sort(txn, candidates, searchOperation, sortKeys, vlvRequest, pageRequest, 0);
+    }
+  }
+
+  /**
+   * Sorts the entries in the scope of an unindexed search, whose IDs are read from the DN tree, so that the search
+   * can be sorted without a VLV index matching its sort order.
+   */
+  private long[] sortNotIndexed(ReadableTransaction txn, SearchOperation searchOperation, List<SortKey> sortKeys,
+      VLVRequestControl vlvRequest, PagedResultsControl pageRequest) throws DirectoryException
+  {
+    final DN aBaseDN = searchOperation.getBaseDN();
+    final SearchScope searchScope = searchOperation.getScope();
+    final int lookthroughLimit = searchOperation.getClientConnection().getLookthroughLimit();
+    try (final SequentialCursor<Void, EntryID> scopeCursor = searchScope == SearchScope.SINGLE_LEVEL
+             ? dn2id.openChildrenCursor(txn, aBaseDN)
+             : dn2id.openSubordinatesCursor(txn, aBaseDN);
+         final EntryIDCursor candidates =
+             new ScopeEntryIDCursor(scopeCursor, searchScope == SearchScope.WHOLE_SUBTREE))
+    {
+      return sort(txn, candidates, searchOperation, sortKeys, vlvRequest, pageRequest, lookthroughLimit);
+    }
+    catch (NoSuchElementException e)
+    {
+      throw new DirectoryException(ResultCode.NO_SUCH_OBJECT, ERR_SEARCH_NO_SUCH_OBJECT.get(aBaseDN),
+          getMatchedDN(txn, aBaseDN), e);
+    }
+  }
+
+  private long[] sort(ReadableTransaction txn, EntryIDCursor candidates, SearchOperation searchOperation,
+      List<SortKey> sortKeys, VLVRequestControl vlvRequest, PagedResultsControl pageRequest, int lookthroughLimit)
+      throws DirectoryException
+  {
     final DN baseDN = searchOperation.getBaseDN();
     final SearchScope scope = searchOperation.getScope();
     final SearchFilter filter = searchOperation.getFilter();
+    final boolean manageDsaIT = isManageDsaITOperation(searchOperation);
+
+    // A page following a cookie only needs the entries sorting after the entry referenced by the cookie.
+    final ByteString pageStartKey = vlvRequest == null ? getPageStartKey(txn, sortKeys, pageRequest) : null;
+    final boolean canBoundPage = pageRequest != null && (pageRequest.getCookie().length() == 0 || pageStartKey != null);
+    final int maxRetained = getMaxRetainedSortedEntries(searchOperation, vlvRequest, canBoundPage ? pageRequest : null);
 
-    final TreeMap<ByteString, EntryID> sortMap = new TreeMap<>();
-    for (EntryID id : entryIDSet)
+    final File tempDir = new File(getFileForPath(SORT_TMP_DIR), backendID);
+    try (final EntryIDSorter sorter =
+        new EntryIDSorter(backendID, tempDir, config.getServerSideSortMemorySize(), maxRetained))
     {
-      try
+      int lookthroughCount = 0;
+      while (candidates.next())
       {
-        Entry e = getEntry(txn, id);
-        if (e.matchesBaseAndScope(baseDN, scope) && filter.matchesEntry(e))
+        if (lookthroughLimit > 0 && ++lookthroughCount > lookthroughLimit)
+        {
+          throw new DirectoryException(
+              ResultCode.ADMIN_LIMIT_EXCEEDED, NOTE_LOOKTHROUGH_LIMIT_EXCEEDED.get(lookthroughLimit));
+        }
+
+        final EntryID id = new EntryID(candidates.getEntryID());
+        final ByteString sortKey;
+        try
+        {
+          Entry e = getEntry(txn, id);
+          if (e == null
+              || !e.matchesBaseAndScope(baseDN, scope)
+              || (!manageDsaIT && e.getReferralURLs() != null)
+              || !filter.matchesEntry(e))
+          {
+            continue;
+          }
+          sortKey = encodeVLVKey(sortKeys, e, id.longValue());
+        }
+        catch (Exception e)
+        {
+          LocalizableMessage message = ERR_ENTRYIDSORTER_CANNOT_EXAMINE_ENTRY.get(id, getExceptionMessage(e));
+          throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), message, e);
+        }
+        if (pageStartKey == null || sortKey.compareTo(pageStartKey) >= 0)
         {
-          sortMap.put(encodeVLVKey(sortKeys, e, id.longValue()), id);
+          sorter.add(sortKey, id);
         }
       }
-      catch (Exception e)
+
+      if (sorter.isSpilled())
+      {
+        searchOperation.addAdditionalLogItem(keyOnly(getClass(), "sortSpilled"));
+      }
+
+      // See if there is a VLV request to further pare down the set of results, and if there is where it should be
+      // processed by offset or assertion value.
+      if (vlvRequest == null)
+      {
+        return toArray(sorter, maxRetained);
+      }
+
+      if (vlvRequest.getTargetType() == VLVRequestControl.TYPE_TARGET_BYOFFSET)
       {
-        LocalizableMessage message = ERR_ENTRYIDSORTER_CANNOT_EXAMINE_ENTRY.get(id, getExceptionMessage(e));
-        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), message, e);
+        return sortByOffset(searchOperation, vlvRequest, sorter);
       }
+      return sortByGreaterThanOrEqualAssertion(searchOperation, vlvRequest, sortKeys, sorter);
+    }
+    catch (IOException | StorageRuntimeException e)
+    {
+      logger.traceException(e);
+      throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+          ERR_ENTRYIDSORTER_CANNOT_SORT_ON_DISK.get(tempDir, getExceptionMessage(e)), e);
     }
+  }
 
-    // See if there is a VLV request to further pare down the set of results, and if there is where it should be
-    // processed by offset or assertion value.
-    if (vlvRequest == null)
+  /** Returns the sort key of the entry referenced by the cookie of a paged search, or {@code null} if unknown. */
+  private ByteString getPageStartKey(ReadableTransaction txn, List<SortKey> sortKeys, PagedResultsControl pageRequest)
+      throws DirectoryException
+  {
+    if (pageRequest == null || pageRequest.getCookie().length() != 8)
     {
-      return toArray(sortMap.values());
+      // No cookie, or an invalid one which will be reported by searchIndexed()
+      return null;
     }
+    final EntryID cookieID = new EntryID(pageRequest.getCookie());
+    final Entry cookieEntry = getEntry(txn, cookieID);
+    return cookieEntry != null ? encodeVLVKey(sortKeys, cookieEntry, cookieID.longValue()) : null;
+  }
 
-    if (vlvRequest.getTargetType() == VLVRequestControl.TYPE_TARGET_BYOFFSET)
+  /**
+   * Returns how many entries from the start of the sorted list are needed to answer the search. The sort only retains
+   * these entries, whatever the number of entries matching the search.
+   */
+  private static int getMaxRetainedSortedEntries(SearchOperation searchOperation, VLVRequestControl vlvRequest,
+      PagedResultsControl pageRequest)
+  {
+    long maxRetained = Integer.MAX_VALUE;
+    if (vlvRequest != null)
+    {
+      // The position of an assertion target is only known once all the entries are sorted.
+      if (vlvRequest.getTargetType() == VLVRequestControl.TYPE_TARGET_BYOFFSET)
+      {
+        maxRetained = Math.max(vlvRequest.getOffset(), 1) + (long) vlvRequest.getAfterCount();
+      }
+      return (int) Math.min(maxRetained, Integer.MAX_VALUE);
+    }
+    if (pageRequest != null)
     {
-      return sortByOffset(searchOperation, vlvRequest, sortMap);
+      // The entry following the page is the cookie of the next page.
+      maxRetained = pageRequest.getSize() + 1L;
     }
-    return sortByGreaterThanOrEqualAssertion(searchOperation, vlvRequest, sortKeys, sortMap);
+    if (searchOperation.getSizeLimit() > 0)
+    {
+      // The entry following the size limit tells that the limit is exceeded.
+      maxRetained = Math.min(maxRetained, searchOperation.getSizeLimit() + 1L);
+    }
+    return (int) Math.min(maxRetained, Integer.MAX_VALUE);
   }
 
-  private static final long[] toArray(Collection<EntryID> entryIDs)
+  private static final long[] toArray(EntryIDSorter sorter, int maxRetained)
   {
-    final long[] array = new long[entryIDs.size()];
-    int i = 0;
-    for (EntryID entryID : entryIDs)
+    final long[] array = new long[(int) Math.min(sorter.getCount(), maxRetained)];
+    try (final SequentialCursor<ByteString, ByteString> cursor = sorter.openCursor())
     {
-      array[i++] = entryID.longValue();
+      int i = 0;
+      while (cursor.next())
+      {
+        array[i++] = cursor.getValue().toLong();
+      }
     }
     return array;
   }
 
   private static final long[] sortByGreaterThanOrEqualAssertion(SearchOperation searchOperation,
-      VLVRequestControl vlvRequest, List<SortKey> sortKeys, final TreeMap<ByteString, EntryID> sortMap)
-      throws DirectoryException
+      VLVRequestControl vlvRequest, List<SortKey> sortKeys, EntryIDSorter sorter) throws DirectoryException
   {
+    final int contentCount = (int) sorter.getCount();
     ByteString assertionValue = vlvRequest.getGreaterThanOrEqualAssertion();
     ByteSequence encodedTargetAssertion =
-        encodeTargetAssertion(sortKeys, assertionValue, searchOperation, sortMap.size());
+        encodeTargetAssertion(sortKeys, assertionValue, searchOperation, contentCount);
 
     boolean targetFound = false;
     int index = 0;
     int targetIndex = 0;
     int startIndex = 0;
     int includedAfterCount = 0;
-    long[] idSet = new long[sortMap.size()];
-    for (Map.Entry<ByteString, EntryID> entry : sortMap.entrySet())
+    long[] idSet = new long[contentCount];
+    try (final SequentialCursor<ByteString, ByteString> cursor = sorter.openCursor())
     {
-      ByteString vlvKey = entry.getKey();
-      EntryID id = entry.getValue();
-      idSet[index++] = id.longValue();
-
-      if (targetFound)
+      while (cursor.next())
       {
-        includedAfterCount++;
-        if (includedAfterCount >= vlvRequest.getAfterCount())
+        ByteString vlvKey = cursor.getKey();
+        idSet[index++] = cursor.getValue().toLong();
+
+        if (targetFound)
         {
-          break;
+          includedAfterCount++;
+          if (includedAfterCount >= vlvRequest.getAfterCount())
+          {
+            break;
+          }
         }
-      }
-      else
-      {
-        targetFound = vlvKey.compareTo(encodedTargetAssertion) >= 0;
-        if (targetFound)
+        else
         {
-          startIndex = Math.max(0, targetIndex - vlvRequest.getBeforeCount());
+          targetFound = vlvKey.compareTo(encodedTargetAssertion) >= 0;
+          if (targetFound)
+          {
+            startIndex = Math.max(0, targetIndex - vlvRequest.getBeforeCount());
+          }
+          targetIndex++;
         }
-        targetIndex++;
       }
     }
 
@@ -2643,21 +3252,22 @@ public class EntryContainer
        * No entry was found to be greater than or equal to the sort key, so the target offset will
        * be one greater than the content count.
        */
-      targetIndex = sortMap.size() + 1;
+      targetIndex = contentCount + 1;
       result = new long[0];
     }
-    addVLVResponseControl(searchOperation, targetIndex, sortMap.size(), SUCCESS);
+    addVLVResponseControl(searchOperation, targetIndex, contentCount, SUCCESS);
     return result;
   }
 
   private static final long[] sortByOffset(SearchOperation searchOperation, VLVRequestControl vlvRequest,
-      TreeMap<ByteString, EntryID> sortMap) throws DirectoryException
+      EntryIDSorter sorter) throws DirectoryException
   {
+    final int contentCount = (int) sorter.getCount();
     int targetOffset = vlvRequest.getOffset();
     if (targetOffset < 0)
     {
       // The client specified a negative target offset. This should never be allowed.
-      addVLVResponseControl(searchOperation, targetOffset, sortMap.size(), OFFSET_RANGE_ERROR);
+      addVLVResponseControl(searchOperation, targetOffset, contentCount, OFFSET_RANGE_ERROR);
 
       LocalizableMessage message = ERR_ENTRYIDSORTER_NEGATIVE_START_POS.get();
       throw new DirectoryException(ResultCode.VIRTUAL_LIST_VIEW_ERROR, message);
@@ -2678,12 +3288,12 @@ public class EntryContainer
       startPos = 0;
       beforeCount = listOffset;
     }
-    else if (startPos >= sortMap.size())
+    else if (startPos >= contentCount)
     {
       // The start position is beyond the end of the list. In this case, we'll assume that the start position was
       // one greater than the size of the list and will only return the beforeCount entries.
-      targetOffset = sortMap.size() + 1;
-      listOffset = sortMap.size();
+      targetOffset = contentCount + 1;
+      listOffset = contentCount;
       startPos = listOffset - beforeCount;
       afterCount = 0;
     }
@@ -2692,17 +3302,20 @@ public class EntryContainer
     long[] sortedIDs = new long[count];
     int treePos = 0;
     int arrayPos = 0;
-    for (EntryID id : sortMap.values())
+    try (final SequentialCursor<ByteString, ByteString> cursor = sorter.openCursor())
     {
-      if (treePos++ < startPos)
+      while (cursor.next())
       {
-        continue;
-      }
+        if (treePos++ < startPos)
+        {
+          continue;
+        }
 
-      sortedIDs[arrayPos++] = id.longValue();
-      if (arrayPos >= count)
-      {
-        break;
+        sortedIDs[arrayPos++] = cursor.getValue().toLong();
+        if (arrayPos >= count)
+        {
+          break;
+        }
       }
     }
 
@@ -2712,7 +3325,7 @@ public class EntryContainer
       sortedIDs = Arrays.copyOf(sortedIDs, arrayPos);
     }
 
-    addVLVResponseControl(searchOperation, targetOffset, sortMap.size(), SUCCESS);
+    addVLVResponseControl(searchOperation, targetOffset, contentCount, SUCCESS);
     return sortedIDs;
   }
 
@@ -2734,6 +3347,63 @@ public class EntryContainer
     exclusiveLock.unlock();
   }
 
+  /**
+   * Splits the key ranges of the VLV indexes which have grown too large. The updates of the entries wait for the splits
+   * to be committed, but the searches do not. A failed split is retried after a later update.
+   */
+  void splitVLVIndexRanges()
+  {
+    sharedLock.lock();
+    try
+    {
+      for (VLVIndex vlvIndex : vlvIndexMap.values())
+      {
+        if (vlvIndex.hasRangesToSplit())
+        {
+          try
+          {
+            vlvIndex.splitRanges();
+          }
+          catch (Exception e)
+          {
+            // The ranges are only larger than expected: the update which made them grow must not fail
+            logger.traceException(e);
+            logger.error(ERR_VLV_INDEX_CANNOT_SPLIT_RANGES, vlvIndex.getName(), stackTraceToSingleLineString(e));
+          }
+        }
+      }
+    }
+    finally
+    {
+      sharedLock.unlock();
+    }
+  }
+
+  /**
+   * Runs an update of the entries, preventing the key ranges of the VLV indexes from being split until it is
+   * committed.
+   */
+  private void writeUpdate(WriteOperation updateOperation) throws Exception
+  {
+    final List<Lock> rangesLocks = new ArrayList<>(vlvIndexMap.size());
+    try
+    {
+      for (VLVIndex vlvIndex : vlvIndexMap.values())
+      {
+        vlvIndex.rangesSharedLock.lock();
+        rangesLocks.add(vlvIndex.rangesSharedLock);
+      }
+      storage.write(updateOperation);
+    }
+    finally
+    {
+      for (Lock rangesLock : rangesLocks)
+      {
+        rangesLock.unlock();
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return treePrefix;
@@ -0,0 +1,1109 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.forgerock.util.Reject.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+
+import com.forgerock.opendj.util.PackedLong;
+
+/**
+ * Compressed bitmap of entry IDs, organized like a "Roaring" bitmap.
+ * <p>
+ * Entry IDs are partitioned by their 48 high-order bits. Each partition stores the 16 low-order bits of its IDs in a
+ * container which is either a sorted array (sparse partitions) or a 65536 bits bitmap (dense partitions). Set
+ * operations are performed container by container so that intersecting or merging two large sets never requires
+ * expanding them into arrays of longs. When serialized, containers made of a few long sequences of consecutive IDs are
+ * stored as runs.
+ */
+final class EntryIDBitmap implements Iterable<EntryID>
+{
+  /** Containers holding more values than this are stored as bitmaps. */
+  static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+
+  private static final int BITMAP_NB_WORDS = 1024;
+  private static final int LOW_BITS = 16;
+  private static final int LOW_MASK = 0xFFFF;
+
+  private static final byte ARRAY_CONTAINER = 0x01;
+  private static final byte BITMAP_CONTAINER = 0x02;
+  private static final byte RUN_CONTAINER = 0x03;
+
+  /** Sorted high-order bits of each partition. */
+  private long[] keys;
+  /** Containers for the partitions, in the same order as {@link #keys}. */
+  private Container[] containers;
+  private int nbContainers;
+
+  private EntryIDBitmap(long[] keys, Container[] containers, int nbContainers)
+  {
+    this.keys = keys;
+    this.containers = containers;
+    this.nbContainers = nbContainers;
+  }
+
+  /**
+   * Creates a new empty bitmap.
+   *
+   * @return a new empty bitmap
+   */
+  static EntryIDBitmap newEmptyBitmap()
+  {
+    return new EntryIDBitmap(new long[4], new Container[4], 0);
+  }
+
+  /**
+   * Creates a new bitmap holding the provided entry IDs.
+   *
+   * @param sortedIDs
+   *          the entry IDs, sorted in ascending order without duplicates
+   * @return a new bitmap holding the provided entry IDs
+   */
+  static EntryIDBitmap valueOf(long[] sortedIDs)
+  {
+    checkNotNull(sortedIDs, "sortedIDs must not be null");
+    final EntryIDBitmap bitmap = newEmptyBitmap();
+    int start = 0;
+    while (start < sortedIDs.length)
+    {
+      final long key = high(sortedIDs[start]);
+      int end = start + 1;
+      while (end < sortedIDs.length && high(sortedIDs[end]) == key)
+      {
+        end++;
+      }
+      final int size = end - start;
+      final Container container;
+      if (size > ARRAY_CONTAINER_MAX_SIZE)
+      {
+        final BitmapContainer bc = new BitmapContainer();
+        for (int i = start; i < end; i++)
+        {
+          bc.set(low(sortedIDs[i]));
+        }
+        container = bc;
+      }
+      else
+      {
+        final char[] values = new char[size];
+        for (int i = start; i < end; i++)
+        {
+          values[i - start] = (char) low(sortedIDs[i]);
+        }
+        container = new ArrayContainer(values, size);
+      }
+      bitmap.append(key, container);
+      start = end;
+    }
+    return bitmap;
+  }
+
+  /**
+   * Computes the intersection of two bitmaps.
+   *
+   * @param a
+   *          the first bitmap
+   * @param b
+   *          the second bitmap
+   * @return a new bitmap holding the entry IDs present in both bitmaps
+   */
+  static EntryIDBitmap and(EntryIDBitmap a, EntryIDBitmap b)
+  {
+    final EntryIDBitmap result = new EntryIDBitmap(
+        new long[Math.max(1, Math.min(a.nbContainers, b.nbContainers))],
+        new Container[Math.max(1, Math.min(a.nbContainers, b.nbContainers))], 0);
+    int ia = 0, ib = 0;
+    while (ia < a.nbContainers && ib < b.nbContainers)
+    {
+      final long ka = a.keys[ia];
+      final long kb = b.keys[ib];
+      if (ka < kb)
+      {
+        ia++;
+      }
+      else if (ka > kb)
+      {
+        ib++;
+      }
+      else
+      {
+        result.appendIfNotEmpty(ka, a.containers[ia++].and(b.containers[ib++]));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes the union of two bitmaps.
+   *
+   * @param a
+   *          the first bitmap
+   * @param b
+   *          the second bitmap
+   * @return a new bitmap holding the entry IDs present in any of the two bitmaps
+   */
+  static EntryIDBitmap or(EntryIDBitmap a, EntryIDBitmap b)
+  {
+    final int capacity = Math.max(1, a.nbContainers + b.nbContainers);
+    final EntryIDBitmap result = new EntryIDBitmap(new long[capacity], new Container[capacity], 0);
+    int ia = 0, ib = 0;
+    while (ia < a.nbContainers && ib < b.nbContainers)
+    {
+      final long ka = a.keys[ia];
+      final long kb = b.keys[ib];
+      if (ka < kb)
+      {
+        result.append(ka, a.containers[ia++].copy());
+      }
+      else if (ka > kb)
+      {
+        result.append(kb, b.containers[ib++].copy());
+      }
+      else
+      {
+        result.append(ka, a.containers[ia++].or(b.containers[ib++]));
+      }
+    }
+    for (; ia < a.nbContainers; ia++)
+    {
+      result.append(a.keys[ia], a.containers[ia].copy());
+    }
+    for (; ib < b.nbContainers; ib++)
+    {
+      result.append(b.keys[ib], b.containers[ib].copy());
+    }
+    return result;
+  }
+
+  /**
+   * Computes the difference of two bitmaps.
+   *
+   * @param a
+   *          the bitmap to subtract from
+   * @param b
+   *          the bitmap holding the entry IDs to subtract
+   * @return a new bitmap holding the entry IDs present in {@code a} but not in {@code b}
+   */
+  static EntryIDBitmap andNot(EntryIDBitmap a, EntryIDBitmap b)
+  {
+    final int capacity = Math.max(1, a.nbContainers);
+    final EntryIDBitmap result = new EntryIDBitmap(new long[capacity], new Container[capacity], 0);
+    int ia = 0, ib = 0;
+    while (ia < a.nbContainers)
+    {
+      final long ka = a.keys[ia];
+      while (ib < b.nbContainers && b.keys[ib] < ka)
+      {
+        ib++;
+      }
+      if (ib < b.nbContainers && b.keys[ib] == ka)
+      {
+        result.appendIfNotEmpty(ka, a.containers[ia].andNot(b.containers[ib]));
+      }
+      else
+      {
+        result.append(ka, a.containers[ia].copy());
+      }
+      ia++;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of entry IDs held in this bitmap.
+   *
+   * @return the number of entry IDs held in this bitmap
+   */
+  long cardinality()
+  {
+    long cardinality = 0;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      cardinality += containers[i].cardinality();
+    }
+    return cardinality;
+  }
+
+  boolean isEmpty()
+  {
+    return nbContainers == 0;
+  }
+
+  /**
+   * Returns the lowest entry ID of this bitmap. The bitmap must not be empty.
+   *
+   * @return the lowest entry ID of this bitmap
+   */
+  long first()
+  {
+    return (keys[0] << LOW_BITS) | containers[0].first();
+  }
+
+  /**
+   * Returns the highest entry ID of this bitmap. The bitmap must not be empty.
+   *
+   * @return the highest entry ID of this bitmap
+   */
+  long last()
+  {
+    return (keys[nbContainers - 1] << LOW_BITS) | containers[nbContainers - 1].last();
+  }
+
+  boolean contains(long id)
+  {
+    final int pos = Arrays.binarySearch(keys, 0, nbContainers, high(id));
+    return pos >= 0 && containers[pos].contains(low(id));
+  }
+
+  /**
+   * Adds an entry ID to this bitmap.
+   *
+   * @param id
+   *          the entry ID to add
+   * @return {@code true} if this bitmap has been modified
+   */
+  boolean add(long id)
+  {
+    final long key = high(id);
+    final int pos = Arrays.binarySearch(keys, 0, nbContainers, key);
+    if (pos >= 0)
+    {
+      final Container container = containers[pos];
+      final int cardinality = container.cardinality();
+      containers[pos] = container.add(low(id));
+      return containers[pos].cardinality() != cardinality;
+    }
+    insertAt(-(pos + 1), key, new ArrayContainer(new char[] { (char) low(id) }, 1));
+    return true;
+  }
+
+  /**
+   * Removes an entry ID from this bitmap.
+   *
+   * @param id
+   *          the entry ID to remove
+   * @return {@code true} if this bitmap has been modified
+   */
+  boolean remove(long id)
+  {
+    final int pos = Arrays.binarySearch(keys, 0, nbContainers, high(id));
+    if (pos < 0)
+    {
+      return false;
+    }
+    final Container container = containers[pos];
+    final int cardinality = container.cardinality();
+    final Container updated = container.remove(low(id));
+    if (updated.cardinality() == 0)
+    {
+      removeAt(pos);
+    }
+    else
+    {
+      containers[pos] = updated;
+    }
+    return updated.cardinality() != cardinality;
+  }
+
+  /**
+   * Returns the entry IDs of this bitmap as a sorted array of longs.
+   *
+   * @return a new sorted array of longs holding the entry IDs of this bitmap
+   */
+  long[] toLongArray()
+  {
+    final long[] ids = new long[(int) cardinality()];
+    int offset = 0;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      offset = containers[i].copyTo(keys[i] << LOW_BITS, ids, offset);
+    }
+    return ids;
+  }
+
+  @Override
+  public Iterator<EntryID> iterator()
+  {
+    return new BitmapIterator();
+  }
+
+  /**
+   * Serializes this bitmap to the provided builder.
+   *
+   * @param builder
+   *          the builder where to append this bitmap
+   * @return the provided builder
+   */
+  ByteStringBuilder appendTo(ByteStringBuilder builder)
+  {
+    builder.appendCompactUnsigned(nbContainers);
+    long previousKey = 0;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      builder.appendCompactUnsigned(keys[i] - previousKey);
+      previousKey = keys[i];
+      containers[i].appendTo(builder);
+    }
+    return builder;
+  }
+
+  /**
+   * Returns the exact number of bytes written by {@link #appendTo(ByteStringBuilder)}.
+   *
+   * @return the exact number of bytes written by {@link #appendTo(ByteStringBuilder)}
+   */
+  int getSerializedSize()
+  {
+    int size = PackedLong.getEncodedSize(nbContainers);
+    long previousKey = 0;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      size += PackedLong.getEncodedSize(keys[i] - previousKey) + containers[i].getSerializedSize();
+      previousKey = keys[i];
+    }
+    return size;
+  }
+
+  /**
+   * Reads a bitmap previously written with {@link #appendTo(ByteStringBuilder)}.
+   *
+   * @param reader
+   *          the reader positioned at the start of the serialized bitmap
+   * @return the bitmap read from the provided reader
+   */
+  static EntryIDBitmap readFrom(ByteSequenceReader reader)
+  {
+    final int nbContainers = reader.readCompactUnsignedInt();
+    final EntryIDBitmap bitmap = new EntryIDBitmap(
+        new long[Math.max(1, nbContainers)], new Container[Math.max(1, nbContainers)], 0);
+    long key = 0;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      key += reader.readCompactUnsignedLong();
+      bitmap.append(key, readContainer(reader));
+    }
+    return bitmap;
+  }
+
+  private static Container readContainer(ByteSequenceReader reader)
+  {
+    final byte type = reader.readByte();
+    switch (type)
+    {
+    case ARRAY_CONTAINER:
+      final int size = reader.readCompactUnsignedInt();
+      final char[] values = new char[size];
+      for (int i = 0; i < size; i++)
+      {
+        values[i] = (char) reader.readShort();
+      }
+      return new ArrayContainer(values, size);
+    case BITMAP_CONTAINER:
+      final long[] words = new long[BITMAP_NB_WORDS];
+      for (int i = 0; i < BITMAP_NB_WORDS; i++)
+      {
+        words[i] = reader.readLong();
+      }
+      return new BitmapContainer(words);
+    case RUN_CONTAINER:
+      return readRuns(reader);
+    default:
+      throw new IllegalArgumentException("Unknown container type " + type);
+    }
+  }
+
+  private static Container readRuns(ByteSequenceReader reader)
+  {
+    final int nbRuns = reader.readCompactUnsignedInt();
+    final int[] starts = new int[nbRuns];
+    final int[] lengths = new int[nbRuns];
+    int cardinality = 0;
+    for (int i = 0; i < nbRuns; i++)
+    {
+      starts[i] = reader.readShort() & LOW_MASK;
+      lengths[i] = (reader.readShort() & LOW_MASK) + 1;
+      cardinality += lengths[i];
+    }
+    if (cardinality > ARRAY_CONTAINER_MAX_SIZE)
+    {
+      final BitmapContainer bc = new BitmapContainer();
+      for (int i = 0; i < nbRuns; i++)
+      {
+        bc.setRange(starts[i], starts[i] + lengths[i]);
+      }
+      return bc;
+    }
+    final char[] values = new char[cardinality];
+    int pos = 0;
+    for (int i = 0; i < nbRuns; i++)
+    {
+      for (int v = starts[i]; v < starts[i] + lengths[i]; v++)
+      {
+        values[pos++] = (char) v;
+      }
+    }
+    return new ArrayContainer(values, cardinality);
+  }
+
+  private void append(long key, Container container)
+  {
+    if (nbContainers == keys.length)
+    {
+      keys = Arrays.copyOf(keys, keys.length * 2);
+      containers = Arrays.copyOf(containers, containers.length * 2);
+    }
+    keys[nbContainers] = key;
+    containers[nbContainers++] = container;
+  }
+
+  private void appendIfNotEmpty(long key, Container container)
+  {
+    if (container.cardinality() > 0)
+    {
+      append(key, container);
+    }
+  }
+
+  private void insertAt(int pos, long key, Container container)
+  {
+    if (nbContainers == keys.length)
+    {
+      keys = Arrays.copyOf(keys, keys.length * 2);
+      containers = Arrays.copyOf(containers, containers.length * 2);
+    }
+    System.arraycopy(keys, pos, keys, pos + 1, nbContainers - pos);
+    System.arraycopy(containers, pos, containers, pos + 1, nbContainers - pos);
+    keys[pos] = key;
+    containers[pos] = container;
+    nbContainers++;
+  }
+
+  private void removeAt(int pos)
+  {
+    System.arraycopy(keys, pos + 1, keys, pos, nbContainers - pos - 1);
+    System.arraycopy(containers, pos + 1, containers, pos, nbContainers - pos - 1);
+    containers[--nbContainers] = null;
+  }
+
+  private static long high(long id)
+  {
+    return id >>> LOW_BITS;
+  }
+
+  private static int low(long id)
+  {
+    return (int) (id & LOW_MASK);
+  }
+
+  /** Iterates over the entry IDs of the bitmap in ascending order. */
+  private final class BitmapIterator implements Iterator<EntryID>
+  {
+    private int containerIndex;
+    /** Next low-order value to return in the current container, or -1 if the current container is exhausted. */
+    private int nextLow = nbContainers > 0 ? containers[0].nextValue(0) : -1;
+
+    @Override
+    public boolean hasNext()
+    {
+      return nextLow >= 0;
+    }
+
+    @Override
+    public EntryID next()
+    {
+      if (!hasNext())
+      {
+        throw new NoSuchElementException();
+      }
+      final EntryID next = new EntryID((keys[containerIndex] << LOW_BITS) | nextLow);
+      nextLow = nextLow < LOW_MASK ? containers[containerIndex].nextValue(nextLow + 1) : -1;
+      while (nextLow < 0 && ++containerIndex < nbContainers)
+      {
+        nextLow = containers[containerIndex].nextValue(0);
+      }
+      return next;
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /** Holds the 16 low-order bits of the entry IDs sharing the same high-order bits. */
+  private abstract static class Container
+  {
+    abstract int cardinality();
+
+    abstract boolean contains(int value);
+
+    /** Returns the container holding the result, which may be this container. */
+    abstract Container add(int value);
+
+    /** Returns the container holding the result, which may be this container. */
+    abstract Container remove(int value);
+
+    abstract Container and(Container other);
+
+    abstract Container or(Container other);
+
+    abstract Container andNot(Container other);
+
+    abstract int first();
+
+    abstract int last();
+
+    /** Returns the smallest value greater than or equal to {@code from}, or -1 if there is none. */
+    abstract int nextValue(int from);
+
+    abstract int copyTo(long base, long[] dest, int offset);
+
+    abstract Container copy();
+
+    abstract BitmapContainer toBitmapContainer();
+
+    /** Returns the number of runs of consecutive values held by this container. */
+    abstract int nbRuns();
+
+    final int getSerializedSize()
+    {
+      final int cardinality = cardinality();
+      final int nbRuns = nbRuns();
+      final int runSize = 1 + PackedLong.getEncodedSize(nbRuns) + nbRuns * 4;
+      final int plainSize = cardinality > ARRAY_CONTAINER_MAX_SIZE
+          ? 1 + BITMAP_NB_WORDS * 8
+          : 1 + PackedLong.getEncodedSize(cardinality) + cardinality * 2;
+      return Math.min(runSize, plainSize);
+    }
+
+    final void appendTo(ByteStringBuilder builder)
+    {
+      final int cardinality = cardinality();
+      final int nbRuns = nbRuns();
+      final int runSize = PackedLong.getEncodedSize(nbRuns) + nbRuns * 4;
+      final int plainSize = cardinality > ARRAY_CONTAINER_MAX_SIZE
+          ? BITMAP_NB_WORDS * 8
+          : PackedLong.getEncodedSize(cardinality) + cardinality * 2;
+      if (runSize < plainSize)
+      {
+        appendRunsTo(builder.appendByte(RUN_CONTAINER).appendCompactUnsigned(nbRuns));
+      }
+      else
+      {
+        appendPlainTo(builder);
+      }
+    }
+
+    private void appendRunsTo(ByteStringBuilder builder)
+    {
+      int start = nextValue(0);
+      while (start >= 0)
+      {
+        int end = start;
+        while (end < LOW_MASK && contains(end + 1))
+        {
+          end++;
+        }
+        builder.appendShort(start).appendShort(end - start);
+        start = end < LOW_MASK ? nextValue(end + 1) : -1;
+      }
+    }
+
+    abstract void appendPlainTo(ByteStringBuilder builder);
+  }
+
+  /** Container storing its values in a sorted array. */
+  private static final class ArrayContainer extends Container
+  {
+    private char[] values;
+    private int size;
+
+    ArrayContainer(char[] values, int size)
+    {
+      this.values = values;
+      this.size = size;
+    }
+
+    @Override
+    int cardinality()
+    {
+      return size;
+    }
+
+    @Override
+    boolean contains(int value)
+    {
+      return Arrays.binarySearch(values, 0, size, (char) value) >= 0;
+    }
+
+    @Override
+    Container add(int value)
+    {
+      int pos = Arrays.binarySearch(values, 0, size, (char) value);
+      if (pos >= 0)
+      {
+        return this;
+      }
+      if (size == ARRAY_CONTAINER_MAX_SIZE)
+      {
+        return toBitmapContainer().add(value);
+      }
+      pos = -(pos + 1);
+      if (size == values.length)
+      {
+        values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_MAX_SIZE, Math.max(4, size * 2)));
+      }
+      System.arraycopy(values, pos, values, pos + 1, size - pos);
+      values[pos] = (char) value;
+      size++;
+      return this;
+    }
+
+    @Override
+    Container remove(int value)
+    {
+      final int pos = Arrays.binarySearch(values, 0, size, (char) value);
+      if (pos >= 0)
+      {
+        System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+        size--;
+      }
+      return this;
+    }
+
+    @Override
+    Container and(Container other)
+    {
+      final char[] result = new char[size];
+      int resultSize = 0;
+      if (other instanceof ArrayContainer)
+      {
+        final ArrayContainer that = (ArrayContainer) other;
+        int i = 0, j = 0;
+        while (i < size && j < that.size)
+        {
+          if (values[i] < that.values[j])
+          {
+            i++;
+          }
+          else if (values[i] > that.values[j])
+          {
+            j++;
+          }
+          else
+          {
+            result[resultSize++] = values[i++];
+            j++;
+          }
+        }
+      }
+      else
+      {
+        for (int i = 0; i < size; i++)
+        {
+          if (other.contains(values[i]))
+          {
+            result[resultSize++] = values[i];
+          }
+        }
+      }
+      return new ArrayContainer(result, resultSize);
+    }
+
+    @Override
+    Container or(Container other)
+    {
+      if (!(other instanceof ArrayContainer))
+      {
+        return other.or(this);
+      }
+      final ArrayContainer that = (ArrayContainer) other;
+      final char[] result = new char[size + that.size];
+      int i = 0, j = 0, resultSize = 0;
+      while (i < size && j < that.size)
+      {
+        if (values[i] < that.values[j])
+        {
+          result[resultSize++] = values[i++];
+        }
+        else if (values[i] > that.values[j])
+        {
+          result[resultSize++] = that.values[j++];
+        }
+        else
+        {
+          result[resultSize++] = values[i++];
+          j++;
+        }
+      }
+      while (i < size)
+      {
+        result[resultSize++] = values[i++];
+      }
+      while (j < that.size)
+      {
+        result[resultSize++] = that.values[j++];
+      }
+      final ArrayContainer union = new ArrayContainer(result, resultSize);
+      return resultSize > ARRAY_CONTAINER_MAX_SIZE ? union.toBitmapContainer() : union;
+    }
+
+    @Override
+    Container andNot(Container other)
+    {
+      final char[] result = new char[size];
+      int resultSize = 0;
+      for (int i = 0; i < size; i++)
+      {
+        if (!other.contains(values[i]))
+        {
+          result[resultSize++] = values[i];
+        }
+      }
+      return new ArrayContainer(result, resultSize);
+    }
+
+    @Override
+    int first()
+    {
+      return values[0];
+    }
+
+    @Override
+    int last()
+    {
+      return values[size - 1];
+    }
+
+    @Override
+    int nextValue(int from)
+    {
+      int pos = Arrays.binarySearch(values, 0, size, (char) from);
+      if (pos < 0)
+      {
+        pos = -(pos + 1);
+      }
+      return pos < size ? values[pos] : -1;
+    }
+
+    @Override
+    int copyTo(long base, long[] dest, int offset)
+    {
+      for (int i = 0; i < size; i++)
+      {
+        dest[offset++] = base | values[i];
+      }
+      return offset;
+    }
+
+    @Override
+    Container copy()
+    {
+      return new ArrayContainer(Arrays.copyOf(values, size), size);
+    }
+
+    @Override
+    BitmapContainer toBitmapContainer()
+    {
+      final BitmapContainer bc = new BitmapContainer();
+      for (int i = 0; i < size; i++)
+      {
+        bc.set(values[i]);
+      }
+      return bc;
+    }
+
+    @Override
+    int nbRuns()
+    {
+      int nbRuns = 0;
+      for (int i = 0; i < size; i++)
+      {
+        if (i == 0 || values[i] != values[i - 1] + 1)
+        {
+          nbRuns++;
+        }
+      }
+      return nbRuns;
+    }
+
+    @Override
+    void appendPlainTo(ByteStringBuilder builder)
+    {
+      builder.appendByte(ARRAY_CONTAINER).appendCompactUnsigned(size);
+      for (int i = 0; i < size; i++)
+      {
+        builder.appendShort(values[i]);
+      }
+    }
+  }
+
+  /** Container storing its values in a 65536 bits bitmap. */
+  private static final class BitmapContainer extends Container
+  {
+    private final long[] words;
+    private int cardinality;
+
+    BitmapContainer()
+    {
+      this.words = new long[BITMAP_NB_WORDS];
+    }
+
+    BitmapContainer(long[] words)
+    {
+      this.words = words;
+      for (long word : words)
+      {
+        cardinality += Long.bitCount(word);
+      }
+    }
+
+    void set(int value)
+    {
+      final long before = words[value >>> 6];
+      final long after = before | (1L << value);
+      words[value >>> 6] = after;
+      if (before != after)
+      {
+        cardinality++;
+      }
+    }
+
+    /** Sets all the values between start (inclusive) and end (exclusive). */
+    void setRange(int start, int end)
+    {
+      for (int v = start; v < end; v++)
+      {
+        set(v);
+      }
+    }
+
+    @Override
+    int cardinality()
+    {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int value)
+    {
+      return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    Container add(int value)
+    {
+      set(value);
+      return this;
+    }
+
+    @Override
+    Container remove(int value)
+    {
+      if (contains(value))
+      {
+        words[value >>> 6] &= ~(1L << value);
+        cardinality--;
+        if (cardinality <= ARRAY_CONTAINER_MAX_SIZE)
+        {
+          return toArrayContainer();
+        }
+      }
+      return this;
+    }
+
+    @Override
+    Container and(Container other)
+    {
+      if (!(other instanceof BitmapContainer))
+      {
+        return other.and(this);
+      }
+      final long[] result = new long[BITMAP_NB_WORDS];
+      final long[] otherWords = ((BitmapContainer) other).words;
+      for (int i = 0; i < BITMAP_NB_WORDS; i++)
+      {
+        result[i] = words[i] & otherWords[i];
+      }
+      return shrinkIfSparse(new BitmapContainer(result));
+    }
+
+    @Override
+    Container or(Container other)
+    {
+      final long[] result = Arrays.copyOf(words, BITMAP_NB_WORDS);
+      if (other instanceof BitmapContainer)
+      {
+        final long[] otherWords = ((BitmapContainer) other).words;
+        for (int i = 0; i < BITMAP_NB_WORDS; i++)
+        {
+          result[i] |= otherWords[i];
+        }
+      }
+      else
+      {
+        final ArrayContainer that = (ArrayContainer) other;
+        for (int i = 0; i < that.size; i++)
+        {
+          result[that.values[i] >>> 6] |= 1L << that.values[i];
+        }
+      }
+      return new BitmapContainer(result);
+    }
+
+    @Override
+    Container andNot(Container other)
+    {
+      final long[] result = Arrays.copyOf(words, BITMAP_NB_WORDS);
+      if (other instanceof BitmapContainer)
+      {
+        final long[] otherWords = ((BitmapContainer) other).words;
+        for (int i = 0; i < BITMAP_NB_WORDS; i++)
+        {
+          result[i] &= ~otherWords[i];
+        }
+      }
+      else
+      {
+        final ArrayContainer that = (ArrayContainer) other;
+        for (int i = 0; i < that.size; i++)
+        {
+          result[that.values[i] >>> 6] &= ~(1L << that.values[i]);
+        }
+      }
+      return shrinkIfSparse(new BitmapContainer(result));
+    }
+
+    private static Container shrinkIfSparse(BitmapContainer container)
+    {
+      return container.cardinality <= ARRAY_CONTAINER_MAX_SIZE ? container.toArrayContainer() : container;
+    }
+
+    @Override
+    int first()
+    {
+      return nextValue(0);
+    }
+
+    @Override
+    int last()
+    {
+      for (int i = BITMAP_NB_WORDS - 1; i >= 0; i--)
+      {
+        if (words[i] != 0)
+        {
+          return i * 64 + 63 - Long.numberOfLeadingZeros(words[i]);
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    int nextValue(int from)
+    {
+      int i = from >>> 6;
+      long word = words[i] & (-1L << from);
+      while (true)
+      {
+        if (word != 0)
+        {
+          return i * 64 + Long.numberOfTrailingZeros(word);
+        }
+        if (++i == BITMAP_NB_WORDS)
+        {
+          return -1;
+        }
+        word = words[i];
+      }
+    }
+
+    @Override
+    int copyTo(long base, long[] dest, int offset)
+    {
+      for (int i = 0; i < BITMAP_NB_WORDS; i++)
+      {
+        long word = words[i];
+        while (word != 0)
+        {
+          dest[offset++] = base | (i * 64 + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return offset;
+    }
+
+    @Override
+    Container copy()
+    {
+      return new BitmapContainer(Arrays.copyOf(words, BITMAP_NB_WORDS));
+    }
+
+    @Override
+    BitmapContainer toBitmapContainer()
+    {
+      return this;
+    }
+
+    private ArrayContainer toArrayContainer()
+    {
+      final char[] values = new char[cardinality];
+      int pos = 0;
+      for (int i = 0; i < BITMAP_NB_WORDS; i++)
+      {
+        long word = words[i];
+        while (word != 0)
+        {
+          values[pos++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new ArrayContainer(values, cardinality);
+    }
+
+    @Override
+    int nbRuns()
+    {
+      // A run starts at every set bit whose predecessor is not set.
+      int nbRuns = 0;
+      long previousWord = 0;
+      for (int i = 0; i < BITMAP_NB_WORDS; i++)
+      {
+        final long word = words[i];
+        final long shifted = (word << 1) | (previousWord >>> 63);
+        nbRuns += Long.bitCount(word & ~shifted);
+        previousWord = word;
+      }
+      return nbRuns;
+    }
+
+    @Override
+    void appendPlainTo(ByteStringBuilder builder)
+    {
+      builder.appendByte(BITMAP_CONTAINER);
+      for (long word : words)
+      {
+        builder.appendLong(word);
+      }
+    }
+  }
+}
@@ -0,0 +1,578 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.forgerock.util.Reject.*;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.forgerock.util.Utils;
+
+/**
+ * Pull-based cursor over the candidate entry IDs of an indexed search, in ascending order.
+ * <p>
+ * Cursors can be combined with {@link #intersection(List)} and {@link #union(List)}: the combined cursors are only
+ * moved while the resulting cursor is moved, so the first candidates are returned without computing the whole
+ * intersection or union, and without allocating memory for its entry IDs.
+ */
+abstract class EntryIDCursor implements Closeable
+{
+  /** Orders cursors by their current entry ID. */
+  private static final Comparator<EntryIDCursor> BY_ENTRY_ID = new Comparator<EntryIDCursor>()
+  {
+    @Override
+    public int compare(EntryIDCursor c1, EntryIDCursor c2)
+    {
+      return Long.compare(c1.getEntryID(), c2.getEntryID());
+    }
+  };
+
+  /**
+   * Moves this cursor to the next entry ID.
+   *
+   * @return {@code true} if the cursor has moved to the next entry ID, {@code false} if there is no more entry IDs
+   */
+  abstract boolean next();
+
+  /**
+   * Indicates whether this cursor is positioned on an entry ID.
+   *
+   * @return {@code true} if {@link #getEntryID()} can be called
+   */
+  abstract boolean isDefined();
+
+  /**
+   * Returns the entry ID on which this cursor is positioned.
+   *
+   * @return the current entry ID
+   * @throws NoSuchElementException
+   *           if this cursor is not defined
+   */
+  abstract long getEntryID();
+
+  /**
+   * Returns an upper bound of the number of entry IDs this cursor can return.
+   *
+   * @return an upper bound of the number of entry IDs returned by this cursor
+   */
+  abstract long getMaximumSize();
+
+  /**
+   * Indicates whether {@link #getMaximumSize()} is the exact number of entry IDs returned by this cursor.
+   *
+   * @return {@code true} if this cursor returns exactly {@link #getMaximumSize()} entry IDs
+   */
+  boolean isMaximumSizeExact()
+  {
+    return true;
+  }
+
+  /**
+   * Returns an estimation of the memory held by this cursor for the entry IDs it returns.
+   *
+   * @return the estimated size in bytes
+   */
+  long getEstimatedHeapSize()
+  {
+    return 0;
+  }
+
+  /**
+   * Moves this cursor forward to the first entry ID greater than or equal to the provided one. The cursor does not
+   * move if it is already positioned on such an entry ID.
+   *
+   * @param entryID
+   *          the entry ID to move to
+   * @return {@code true} if the cursor is positioned on an entry ID, {@code false} if there is no more entry IDs
+   */
+  boolean skipTo(long entryID)
+  {
+    if (isDefined() && getEntryID() >= entryID)
+    {
+      return true;
+    }
+    while (next())
+    {
+      if (getEntryID() >= entryID)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the next entry IDs of this cursor.
+   *
+   * @param limit
+   *          the maximum number of entry IDs to read
+   * @return the entry IDs read, at most {@code limit}
+   */
+  long[] toLongArray(int limit)
+  {
+    long[] entryIDs = new long[(int) Math.min(limit, Math.min(getMaximumSize(), 1024))];
+    int size = 0;
+    while (size < limit && next())
+    {
+      if (size == entryIDs.length)
+      {
+        entryIDs = Arrays.copyOf(entryIDs, (int) Math.min(limit, Math.max(16, entryIDs.length * 2L)));
+      }
+      entryIDs[size++] = getEntryID();
+    }
+    return size == entryIDs.length ? entryIDs : Arrays.copyOf(entryIDs, size);
+  }
+
+  @Override
+  public void close()
+  {
+    // Nothing to release by default
+  }
+
+  /**
+   * Returns a cursor over the entry IDs of a defined set.
+   *
+   * @param entryIDSet
+   *          the defined entry ID set
+   * @return a cursor over the entry IDs of the set
+   */
+  static EntryIDCursor of(EntryIDSet entryIDSet)
+  {
+    checkNotNull(entryIDSet, "entryIDSet must not be null");
+    ifFalse(entryIDSet.isDefined(), "entryIDSet must be defined");
+    return new EntryIDSetCursor(entryIDSet);
+  }
+
+  /**
+   * Returns a cursor over the provided entry IDs.
+   *
+   * @param sortedEntryIDs
+   *          the entry IDs, in ascending order
+   * @return a cursor over the entry IDs
+   */
+  static EntryIDCursor of(long... sortedEntryIDs)
+  {
+    return new ArrayCursor(sortedEntryIDs);
+  }
+
+  /**
+   * Returns a cursor over the entry IDs returned by all the provided cursors.
+   *
+   * @param cursors
+   *          the non empty list of cursors to intersect, they are closed with the returned cursor
+   * @return a cursor lazily evaluating the intersection of the provided cursors
+   */
+  static EntryIDCursor intersection(List<EntryIDCursor> cursors)
+  {
+    ifFalse(!cursors.isEmpty(), "cursors must not be empty");
+    return cursors.size() == 1 ? cursors.get(0) : new IntersectionCursor(cursors);
+  }
+
+  /**
+   * Returns a cursor over the entry IDs returned by any of the provided cursors.
+   *
+   * @param cursors
+   *          the cursors to merge, they are closed with the returned cursor
+   * @return a cursor lazily evaluating the union of the provided cursors
+   */
+  static EntryIDCursor union(List<EntryIDCursor> cursors)
+  {
+    return cursors.size() == 1 ? cursors.get(0) : new UnionCursor(cursors);
+  }
+
+  /** Cursor over a defined {@link EntryIDSet}, iterating compressed sets without expanding them. */
+  private static final class EntryIDSetCursor extends EntryIDCursor
+  {
+    private final EntryIDSet entryIDSet;
+    private final Iterator<EntryID> iterator;
+    private EntryID current;
+
+    private EntryIDSetCursor(EntryIDSet entryIDSet)
+    {
+      this.entryIDSet = entryIDSet;
+      this.iterator = entryIDSet.iterator();
+    }
+
+    @Override
+    boolean next()
+    {
+      current = iterator.hasNext() ? iterator.next() : null;
+      return current != null;
+    }
+
+    @Override
+    boolean isDefined()
+    {
+      return current != null;
+    }
+
+    @Override
+    long getEntryID()
+    {
+      if (current == null)
+      {
+        throw new NoSuchElementException();
+      }
+      return current.longValue();
+    }
+
+    @Override
+    long getMaximumSize()
+    {
+      return entryIDSet.size();
+    }
+
+    @Override
+    long getEstimatedHeapSize()
+    {
+      return entryIDSet.getEstimatedHeapSize();
+    }
+  }
+
+  /** Cursor over an array of entry IDs sorted in ascending order. */
+  private static final class ArrayCursor extends EntryIDCursor
+  {
+    private final long[] entryIDs;
+    private int index = -1;
+
+    private ArrayCursor(long[] entryIDs)
+    {
+      this.entryIDs = entryIDs;
+    }
+
+    @Override
+    boolean next()
+    {
+      if (index < entryIDs.length)
+      {
+        index++;
+      }
+      return isDefined();
+    }
+
+    @Override
+    boolean isDefined()
+    {
+      return index >= 0 && index < entryIDs.length;
+    }
+
+    @Override
+    long getEntryID()
+    {
+      if (!isDefined())
+      {
+        throw new NoSuchElementException();
+      }
+      return entryIDs[index];
+    }
+
+    @Override
+    long getMaximumSize()
+    {
+      return entryIDs.length;
+    }
+
+    @Override
+    long getEstimatedHeapSize()
+    {
+      return entryIDs.length * 8L;
+    }
+
+    @Override
+    boolean skipTo(long entryID)
+    {
+      if (isDefined() && entryIDs[index] >= entryID)
+      {
+        return true;
+      }
+      final int from = Math.max(0, index + 1);
+      if (from >= entryIDs.length)
+      {
+        index = entryIDs.length;
+        return false;
+      }
+      final int pos = Arrays.binarySearch(entryIDs, from, entryIDs.length, entryID);
+      index = pos >= 0 ? pos : -(pos + 1);
+      return isDefined();
+    }
+  }
+
+  /** Leapfrog intersection: each cursor skips to the greatest entry ID seen until all of them agree. */
+  private static final class IntersectionCursor extends EntryIDCursor
+  {
+    private final EntryIDCursor[] cursors;
+    private boolean defined;
+    private boolean exhausted;
+
+    private IntersectionCursor(List<EntryIDCursor> cursors)
+    {
+      this.cursors = cursors.toArray(new EntryIDCursor[cursors.size()]);
+    }
+
+    @Override
+    boolean next()
+    {
+      if (exhausted || !cursors[0].next())
+      {
+        return exhausted();
+      }
+      return align(cursors[0].getEntryID());
+    }
+
+    @Override
+    boolean skipTo(long entryID)
+    {
+      if (defined && getEntryID() >= entryID)
+      {
+        return true;
+      }
+      if (exhausted || !cursors[0].skipTo(entryID))
+      {
+        return exhausted();
+      }
+      return align(cursors[0].getEntryID());
+    }
+
+    private boolean align(long entryID)
+    {
+      long target = entryID;
+      int nbAgreeing = 1;
+      int i = 1;
+      while (nbAgreeing < cursors.length)
+      {
+        final EntryIDCursor cursor = cursors[i];
+        if (!cursor.skipTo(target))
+        {
+          return exhausted();
+        }
+        if (cursor.getEntryID() == target)
+        {
+          nbAgreeing++;
+        }
+        else
+        {
+          target = cursor.getEntryID();
+          nbAgreeing = 1;
+        }
+        i = (i + 1) % cursors.length;
+      }
+      defined = true;
+      return true;
+    }
+
+    private boolean exhausted()
+    {
+      exhausted = true;
+      defined = false;
+      return false;
+    }
+
+    @Override
+    boolean isDefined()
+    {
+      return defined;
+    }
+
+    @Override
+    long getEntryID()
+    {
+      if (!defined)
+      {
+        throw new NoSuchElementException();
+      }
+      return cursors[0].getEntryID();
+    }
+
+    @Override
+    long getMaximumSize()
+    {
+      long size = Long.MAX_VALUE;
+      for (EntryIDCursor cursor : cursors)
+      {
+        size = Math.min(size, cursor.getMaximumSize());
+      }
+      return size;
+    }
+
+    @Override
+    boolean isMaximumSizeExact()
+    {
+      return false;
+    }
+
+    @Override
+    long getEstimatedHeapSize()
+    {
+      return sumEstimatedHeapSizes(Arrays.asList(cursors));
+    }
+
+    @Override
+    public void close()
+    {
+      Utils.closeSilently(cursors);
+    }
+  }
+
+  /** K-way merge of the cursors, ordered by their current entry ID. */
+  private static final class UnionCursor extends EntryIDCursor
+  {
+    private final List<EntryIDCursor> cursors;
+    private final PriorityQueue<EntryIDCursor> heads;
+    private boolean started;
+    private boolean defined;
+    private long current;
+
+    private UnionCursor(List<EntryIDCursor> cursors)
+    {
+      this.cursors = cursors;
+      this.heads = new PriorityQueue<>(Math.max(1, cursors.size()), BY_ENTRY_ID);
+    }
+
+    @Override
+    boolean next()
+    {
+      if (!started)
+      {
+        start(Long.MIN_VALUE);
+      }
+      else if (defined)
+      {
+        // Move all the cursors positioned on the current entry ID
+        while (!heads.isEmpty() && heads.peek().getEntryID() == current)
+        {
+          final EntryIDCursor cursor = heads.poll();
+          if (cursor.next())
+          {
+            heads.add(cursor);
+          }
+        }
+      }
+      return updateCurrent();
+    }
+
+    @Override
+    boolean skipTo(long entryID)
+    {
+      if (defined && current >= entryID)
+      {
+        return true;
+      }
+      if (!started)
+      {
+        start(entryID);
+      }
+      else
+      {
+        while (!heads.isEmpty() && heads.peek().getEntryID() < entryID)
+        {
+          final EntryIDCursor cursor = heads.poll();
+          if (cursor.skipTo(entryID))
+          {
+            heads.add(cursor);
+          }
+        }
+      }
+      return updateCurrent();
+    }
+
+    private void start(long entryID)
+    {
+      started = true;
+      for (EntryIDCursor cursor : cursors)
+      {
+        if (cursor.skipTo(entryID))
+        {
+          heads.add(cursor);
+        }
+      }
+    }
+
+    private boolean updateCurrent()
+    {
+      defined = !heads.isEmpty();
+      if (defined)
+      {
+        current = heads.peek().getEntryID();
+      }
+      return defined;
+    }
+
+    @Override
+    boolean isDefined()
+    {
+      return defined;
+    }
+
+    @Override
+    long getEntryID()
+    {
+      if (!defined)
+      {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    @Override
+    long getMaximumSize()
+    {
+      long size = 0;
+      for (EntryIDCursor cursor : cursors)
+      {
+        size += cursor.getMaximumSize();
+        if (size < 0)
+        {
+          return Long.MAX_VALUE;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    boolean isMaximumSizeExact()
+    {
+      return false;
+    }
+
+    @Override
+    long getEstimatedHeapSize()
+    {
+      return sumEstimatedHeapSizes(cursors);
+    }
+
+    @Override
+    public void close()
+    {
+      Utils.closeSilently(cursors);
+    }
+  }
+
+  private static long sumEstimatedHeapSizes(List<EntryIDCursor> cursors)
+  {
+    long size = 0;
+    for (EntryIDCursor cursor : cursors)
+    {
+      size += cursor.getEstimatedHeapSize();
+    }
+    return size;
+  }
+}
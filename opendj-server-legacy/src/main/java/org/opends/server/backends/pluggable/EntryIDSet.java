@@ -32,6 +32,7 @@ import org.forgerock.opendj.ldap.ByteStringBuilder;
 import org.forgerock.util.Reject;
 
 import com.forgerock.opendj.util.Iterators;
+import com.forgerock.opendj.util.PackedLong;
 import org.opends.server.types.CryptoManagerException;
 import org.opends.server.crypto.CryptoSuite;
 
@@ -43,6 +44,7 @@ final class EntryIDSet implements Iterable<EntryID>
 {
   public static final EntryIDSetCodec CODEC_V1 = new EntryIDSetCodecV1();
   public static final EntryIDSetCodec CODEC_V2 = new EntryIDSetCodecV2();
+  public static final EntryIDSetCodec CODEC_V4 = new EntryIDSetCodecV4();
 
   private static final ByteSequence NO_KEY = ByteString.valueOfUtf8("<none>");
   private static final long[] EMPTY_LONG_ARRAY = new long[0];
@@ -272,6 +274,113 @@ final class EntryIDSet implements Iterable<EntryID>
     }
   }
 
+  /**
+   * Concrete implementation representing a set of EntryIDs held in a compressed {@link EntryIDBitmap}. Intersections,
+   * unions and differences with other bitmap backed sets are performed directly on the compressed containers.
+   */
+  private static final class BitmapImpl implements EntryIDSetImplementor
+  {
+    private EntryIDBitmap bitmap;
+    /** Lazily computed array view of the bitmap, reset on every modification. */
+    private long[] entryIDs;
+
+    BitmapImpl(EntryIDBitmap bitmap)
+    {
+      this.bitmap = checkNotNull(bitmap, "bitmap must not be null");
+    }
+
+    @Override
+    public long size()
+    {
+      return bitmap.cardinality();
+    }
+
+    @Override
+    public void toString(StringBuilder buffer)
+    {
+      buffer.append("[COUNT:").append(size()).append("]");
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return true;
+    }
+
+    @Override
+    public boolean add(EntryID entryID)
+    {
+      return changed(bitmap.add(entryID.longValue()));
+    }
+
+    @Override
+    public boolean remove(EntryID entryID)
+    {
+      return changed(bitmap.remove(entryID.longValue()));
+    }
+
+    @Override
+    public boolean contains(EntryID entryID)
+    {
+      return bitmap.contains(entryID.longValue());
+    }
+
+    @Override
+    public void addAll(EntryIDSet that)
+    {
+      if (that.size() != 0)
+      {
+        bitmap = EntryIDBitmap.or(bitmap, toBitmap(that));
+        changed(true);
+      }
+    }
+
+    @Override
+    public void removeAll(EntryIDSet that)
+    {
+      if (that.size() != 0 && compareForOverlap(getRange(), that.getRange()) == 0)
+      {
+        bitmap = EntryIDBitmap.andNot(bitmap, toBitmap(that));
+        changed(true);
+      }
+    }
+
+    private boolean changed(boolean changed)
+    {
+      if (changed)
+      {
+        entryIDs = null;
+      }
+      return changed;
+    }
+
+    @Override
+    public Iterator<EntryID> iterator()
+    {
+      return bitmap.iterator();
+    }
+
+    @Override
+    public long[] getRange()
+    {
+      if (!bitmap.isEmpty())
+      {
+        return new long[] { bitmap.first(), bitmap.last() };
+      }
+      return NO_ENTRY_IDS_RANGE;
+    }
+
+    @Override
+    public long[] getIDs()
+    {
+      if (entryIDs == null)
+      {
+        entryIDs = bitmap.toLongArray();
+      }
+      return entryIDs;
+    }
+  }
+
   /**
    * Concrete implementation where the EntryIDs are not defined, for example when the index entry
    * limit has been exceeded.
@@ -539,7 +648,85 @@ final class EntryIDSet implements Iterable<EntryID>
   }
 
   /**
-   * Decorate a V1 or V2 codec with encryption. When writing EntryIDSets to disk,
+   * Compressed bitmap EntryIDSet codec implementation. Defined sets are stored as an {@link EntryIDBitmap}, unless the
+   * delta encoding used by {@link EntryIDSetCodecV2} is smaller, which is usually the case for small and sparse sets.
+   * Decoded bitmaps are kept compressed in memory so that filter evaluation can intersect and merge them without
+   * expanding them into arrays. The first byte of an encoded value is never zero so that this codec can be decorated
+   * by {@link EntryIDSetCodecV3}.
+   */
+  private static final class EntryIDSetCodecV4 implements EntryIDSetCodec
+  {
+    private static final byte DELTA_SET = 0x01;
+    private static final byte BITMAP_SET = 0x02;
+    private static final byte UNDEFINED_SET = (byte) 0xFF;
+
+    @Override
+    public ByteString encode(EntryIDSet idSet)
+    {
+      checkNotNull(idSet, "idSet must not be null");
+      if (!idSet.isDefined())
+      {
+        return ByteString.valueOfBytes(new byte[] { UNDEFINED_SET });
+      }
+
+      final EntryIDBitmap bitmap = toBitmap(idSet);
+      final int bitmapSize = bitmap.getSerializedSize();
+      // The delta encoding needs at least one byte per ID: do not compute its size when it cannot be smaller.
+      final int deltaSize = bitmapSize < idSet.size() ? Integer.MAX_VALUE : getDeltaEncodedSize(idSet.getIDs());
+      final ByteStringBuilder builder = new ByteStringBuilder(1 + Math.min(bitmapSize, deltaSize));
+      if (deltaSize <= bitmapSize)
+      {
+        builder.appendByte(DELTA_SET);
+        builder.appendCompactUnsigned(idSet.size());
+        long basis = 0;
+        for (long value : idSet.getIDs())
+        {
+          builder.appendCompactUnsigned(value - basis);
+          basis = value;
+        }
+      }
+      else
+      {
+        bitmap.appendTo(builder.appendByte(BITMAP_SET));
+      }
+      return ByteString.wrap(builder.getBackingArray(), 0, builder.length());
+    }
+
+    @Override
+    public EntryIDSet decode(ByteSequence key, ByteString value)
+    {
+      checkNotNull(key, "key must not be null");
+      checkNotNull(value, "value must not be null");
+      final ByteSequenceReader reader = value.asReader();
+      final byte type = reader.readByte();
+      switch (type)
+      {
+      case UNDEFINED_SET:
+        return newUndefinedSetWithKey(key);
+      case BITMAP_SET:
+        return new EntryIDSet(new BitmapImpl(EntryIDBitmap.readFrom(reader)));
+      case DELTA_SET:
+        return newDefinedSet(EntryIDSetCodecV2.decodeRaw(reader, reader.readCompactUnsignedInt()));
+      default:
+        throw new IllegalArgumentException("Unknown encoded EntryIDSet type " + type);
+      }
+    }
+
+    private static int getDeltaEncodedSize(long[] ids)
+    {
+      int size = PackedLong.getEncodedSize(ids.length);
+      long basis = 0;
+      for (long value : ids)
+      {
+        size += PackedLong.getEncodedSize(value - basis);
+        basis = value;
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Decorate a V1, V2 or V4 codec with encryption. When writing EntryIDSets to disk,
    * prepend two bytes, {0, 1} to mark them as encrypted.
    * The first is tag zero (unused in other encodings), followed by a byte
    * indicating version 1 of encryption.
@@ -628,6 +815,15 @@ final class EntryIDSet implements Iterable<EntryID>
     return new EntryIDSet(new DefinedImpl(entryIDs));
   }
 
+  private static EntryIDBitmap toBitmap(EntryIDSet idSet)
+  {
+    if (idSet.concreteImpl instanceof BitmapImpl)
+    {
+      return ((BitmapImpl) idSet.concreteImpl).bitmap;
+    }
+    return EntryIDBitmap.valueOf(idSet.getIDs());
+  }
+
   private static long[] intersection(long[] set1, long[] set2)
   {
     long[] target = new long[Math.min(set1.length, set2.length)];
@@ -689,6 +885,16 @@ final class EntryIDSet implements Iterable<EntryID>
       return newUndefinedSet();
     }
 
+    if (areAllBitmaps(sets))
+    {
+      EntryIDBitmap union = EntryIDBitmap.newEmptyBitmap();
+      for (EntryIDSet l : sets)
+      {
+        union = EntryIDBitmap.or(union, ((BitmapImpl) l.concreteImpl).bitmap);
+      }
+      return new EntryIDSet(new BitmapImpl(union));
+    }
+
     boolean needSort = false;
     long[] n = new long[count];
     int pos = 0;
@@ -723,6 +929,18 @@ final class EntryIDSet implements Iterable<EntryID>
     return newDefinedSet(Arrays.copyOf(n1, j));
   }
 
+  private static boolean areAllBitmaps(List<EntryIDSet> sets)
+  {
+    for (EntryIDSet l : sets)
+    {
+      if (!(l.concreteImpl instanceof BitmapImpl))
+      {
+        return false;
+      }
+    }
+    return !sets.isEmpty();
+  }
+
   private EntryIDSetImplementor concreteImpl;
 
   private EntryIDSet(EntryIDSetImplementor concreteImpl)
@@ -802,6 +1020,22 @@ final class EntryIDSet implements Iterable<EntryID>
     return Arrays.copyOf(entryIDs, entryIDs.length);
   }
 
+  /**
+   * Returns an estimation of the memory used to hold the IDs of this set.
+   *
+   * @return The estimated size in bytes, zero if this set is undefined.
+   */
+  long getEstimatedHeapSize()
+  {
+    if (concreteImpl instanceof BitmapImpl)
+    {
+      final BitmapImpl bitmapImpl = (BitmapImpl) concreteImpl;
+      final long arrayViewSize = bitmapImpl.entryIDs != null ? bitmapImpl.entryIDs.length * 8L : 0;
+      return bitmapImpl.bitmap.getSerializedSize() + arrayViewSize;
+    }
+    return isDefined() ? size() * 8 : 0;
+  }
+
   /**
    * Determine whether this set of IDs is defined.
    *
@@ -889,7 +1123,10 @@ final class EntryIDSet implements Iterable<EntryID>
     checkNotNull(that, "that must not be null");
     if (!concreteImpl.isDefined())
     {
-      if ( that.isDefined() ) {
+      if ( that.concreteImpl instanceof BitmapImpl ) {
+        concreteImpl = new BitmapImpl(EntryIDBitmap.or(EntryIDBitmap.newEmptyBitmap(),
+            ((BitmapImpl) that.concreteImpl).bitmap));
+      } else if ( that.isDefined() ) {
         // NOTE: It's ok to share the same array instance here thanks to the copy-on-write
         // performed by the implementation.
         concreteImpl = new DefinedImpl(that.getIDs());
@@ -904,7 +1141,12 @@ final class EntryIDSet implements Iterable<EntryID>
     }
 
     final boolean thatSetOverlap = compareForOverlap(getRange(), that.getRange()) == 0;
-    if (thatSetOverlap)
+    if (thatSetOverlap && concreteImpl instanceof BitmapImpl && that.concreteImpl instanceof BitmapImpl)
+    {
+      concreteImpl = new BitmapImpl(
+          EntryIDBitmap.and(((BitmapImpl) concreteImpl).bitmap, ((BitmapImpl) that.concreteImpl).bitmap));
+    }
+    else if (thatSetOverlap)
     {
       concreteImpl = new DefinedImpl(intersection(concreteImpl.getIDs(), that.getIDs()));
     }
@@ -0,0 +1,291 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.server.backends.pluggable.OnDiskMergeImporter.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.OnDiskMergeImporter.BufferPool;
+import org.opends.server.backends.pluggable.OnDiskMergeImporter.ExternalSortChunk;
+import org.opends.server.backends.pluggable.OnDiskMergeImporter.SequentialCursorDecorator;
+import org.opends.server.backends.pluggable.spi.SequentialCursor;
+
+/**
+ * Sorts the entry IDs of a search by their encoded sort keys within a bounded amount of memory.
+ * <p>
+ * When only the first entries of the sorted list are needed, as for a page of results or a VLV request by offset, the
+ * sorter only retains these entries: every added entry sorting after them is discarded, so that the memory used does
+ * not depend on the number of matching entries. Otherwise, the entries are sorted in memory until the memory budget is
+ * reached, then they are spilled to sorted runs in a temporary file, which are merged when the entries are read back.
+ */
+final class EntryIDSorter implements Closeable
+{
+  /** Approximate heap size of a sorted entry, in addition to its key: tree node, byte strings and arrays. */
+  private static final int ENTRY_OVERHEAD = 128;
+  /** Smallest buffer used to sort the runs, so that a tiny memory budget does not create one run per entry. */
+  private static final int MIN_BUFFER_SIZE = 256 * 1024;
+
+  private final String name;
+  private final File tempDir;
+  private final long memoryBudget;
+  private final int maxRetained;
+  /** The entries sorted in memory, or {@code null} once they have been spilled. */
+  private TreeMap<ByteString, ByteString> sortedEntries = new TreeMap<>();
+  private long memoryUsed;
+  private long count;
+  private File runsDir;
+  private BufferPool bufferPool;
+  private ExternalSortChunk runs;
+
+  /**
+   * Creates a new sorter.
+   *
+   * @param name
+   *          the name of the sorter, used to name its temporary files
+   * @param tempDir
+   *          the directory where the sorted runs are written if the entries do not fit in memory
+   * @param memoryBudget
+   *          the amount of memory which may be used to sort the entries
+   * @param maxRetained
+   *          the number of entries to retain from the start of the sorted list, {@link Integer#MAX_VALUE} to retain
+   *          all of them
+   */
+  EntryIDSorter(String name, File tempDir, long memoryBudget, int maxRetained)
+  {
+    this.name = name;
+    this.tempDir = tempDir;
+    this.memoryBudget = memoryBudget;
+    this.maxRetained = Math.max(1, maxRetained);
+  }
+
+  /**
+   * Adds an entry to sort.
+   *
+   * @param sortKey
+   *          the sort key of the entry, which must be unique, typically because it ends with the entry ID
+   * @param entryID
+   *          the ID of the entry
+   * @throws IOException
+   *           if the entries cannot be spilled to the temporary file
+   */
+  void add(ByteString sortKey, EntryID entryID) throws IOException
+  {
+    count++;
+    if (runs != null)
+    {
+      runs.put(sortKey, entryID.toByteString());
+      return;
+    }
+
+    if (sortedEntries.size() >= maxRetained)
+    {
+      // Top-K: the entry is only retained if it sorts before the last retained one, which it then replaces.
+      final Map.Entry<ByteString, ByteString> last = sortedEntries.lastEntry();
+      if (sortKey.compareTo(last.getKey()) >= 0)
+      {
+        return;
+      }
+      sortedEntries.pollLastEntry();
+      memoryUsed -= ENTRY_OVERHEAD + last.getKey().length();
+    }
+    sortedEntries.put(sortKey, entryID.toByteString());
+    memoryUsed += ENTRY_OVERHEAD + sortKey.length();
+
+    // Leave the other half of the budget to the buffer sorting the runs.
+    if (memoryUsed > memoryBudget / 2)
+    {
+      spill();
+    }
+  }
+
+  private void spill() throws IOException
+  {
+    tempDir.mkdirs();
+    runsDir = Files.createTempDirectory(tempDir.toPath(), "sort").toFile();
+    final int bufferSize = (int) Math.min(Math.max(memoryBudget / 2, MIN_BUFFER_SIZE), Integer.MAX_VALUE);
+    bufferPool = new BufferPool(1, bufferSize, false);
+    runs = new ExternalSortChunk(runsDir, name, bufferPool, null, null, sameThreadExecutor());
+    for (Map.Entry<ByteString, ByteString> entry : sortedEntries.entrySet())
+    {
+      runs.put(entry.getKey(), entry.getValue());
+    }
+    sortedEntries = null;
+    memoryUsed = 0;
+  }
+
+  /**
+   * Returns the number of entries added to this sorter, including the entries which have not been retained.
+   *
+   * @return the number of entries added to this sorter
+   */
+  long getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Returns whether the entries did not fit in the memory budget and have been spilled to temporary files.
+   *
+   * @return {@code true} if the entries have been spilled to temporary files
+   */
+  boolean isSpilled()
+  {
+    return runs != null;
+  }
+
+  /**
+   * Opens a cursor on the retained entries in sort order. The keys are the sort keys and the values are the entry IDs.
+   * This method must be called only once, after all the entries have been added.
+   *
+   * @return a cursor on the retained entries in sort order
+   */
+  SequentialCursor<ByteString, ByteString> openCursor()
+  {
+    final SequentialCursor<ByteString, ByteString> cursor =
+        runs != null ? runs.flip() : new IteratorCursor(sortedEntries.entrySet().iterator());
+    return new LimitedCursor(cursor, maxRetained);
+  }
+
+  @Override
+  public void close()
+  {
+    sortedEntries = null;
+    if (bufferPool != null)
+    {
+      bufferPool.close();
+    }
+    if (runsDir != null)
+    {
+      recursiveDelete(runsDir);
+    }
+  }
+
+  /** Cursor on the entries sorted in memory. */
+  private static final class IteratorCursor implements SequentialCursor<ByteString, ByteString>
+  {
+    private final Iterator<Map.Entry<ByteString, ByteString>> iterator;
+    private Map.Entry<ByteString, ByteString> current;
+
+    private IteratorCursor(Iterator<Map.Entry<ByteString, ByteString>> iterator)
+    {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean next()
+    {
+      current = iterator.hasNext() ? iterator.next() : null;
+      return current != null;
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return current != null;
+    }
+
+    @Override
+    public ByteString getKey() throws NoSuchElementException
+    {
+      throwIfUndefined();
+      return current.getKey();
+    }
+
+    @Override
+    public ByteString getValue() throws NoSuchElementException
+    {
+      throwIfUndefined();
+      return current.getValue();
+    }
+
+    private void throwIfUndefined()
+    {
+      if (current == null)
+      {
+        throw new NoSuchElementException();
+      }
+    }
+
+    @Override
+    public void delete() throws NoSuchElementException, UnsupportedOperationException
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close()
+    {
+      current = null;
+    }
+  }
+
+  /** Stops after the retained entries, since the merged runs also contain the entries sorting after them. */
+  private static final class LimitedCursor
+      extends SequentialCursorDecorator<SequentialCursor<ByteString, ByteString>, ByteString, ByteString>
+  {
+    private long remaining;
+    private boolean defined;
+
+    private LimitedCursor(SequentialCursor<ByteString, ByteString> delegate, long limit)
+    {
+      super(delegate);
+      this.remaining = limit;
+    }
+
+    @Override
+    public boolean next()
+    {
+      defined = remaining-- > 0 && delegate.next();
+      return defined;
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return defined;
+    }
+
+    @Override
+    public ByteString getKey() throws NoSuchElementException
+    {
+      if (!defined)
+      {
+        throw new NoSuchElementException();
+      }
+      return delegate.getKey();
+    }
+
+    @Override
+    public ByteString getValue() throws NoSuchElementException
+    {
+      if (!defined)
+      {
+        throw new NoSuchElementException();
+      }
+      return delegate.getValue();
+    }
+  }
+}
@@ -16,11 +16,20 @@
  */
 package org.opends.server.backends.pluggable;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.ldap.ByteString;
@@ -34,6 +43,7 @@ import org.opends.server.types.LDIFExportConfig;
 import org.opends.server.util.LDIFException;
 import org.opends.server.util.StaticUtils;
 
+import static org.forgerock.util.Utils.*;
 import static org.opends.messages.BackendMessages.*;
 
 /** Export a backend to LDIF. */
@@ -53,6 +63,10 @@ class ExportJob
   /** The current number of entries skipped. */
   private long skippedCount;
 
+  /** The number of id2entry records encoded by each task of a parallel export. */
+  private static final int PARALLEL_BATCH_SIZE = 256;
+  private static final String EXPORTER_THREAD_NAME = "EXPORTER-%d";
+
   /**
    * Create a new export job.
    *
@@ -171,6 +185,12 @@ class ExportJob
   private void exportContainer(ReadableTransaction txn, EntryContainer entryContainer)
        throws StorageRuntimeException, IOException, LDIFException
   {
+    if (exportConfig.getThreadCount() > 1)
+    {
+      exportContainerInParallel(txn, entryContainer);
+      return;
+    }
+
     ID2Entry id2entry = entryContainer.getID2Entry();
     try (final Cursor<ByteString, ByteString> cursor = txn.openCursor(id2entry.getName()))
     {
@@ -236,6 +256,188 @@ class ExportJob
     }
   }
 
+  /**
+   * Export the entries in a single entry container using several threads. The records of id2entry are still read
+   * sequentially, which is cheap, but they are decoded and encoded as LDIF by batches on the export threads. The
+   * encoded batches are then written in the order they were read, so that the LDIF output is the same as the one of a
+   * single threaded export.
+   */
+  private void exportContainerInParallel(ReadableTransaction txn, EntryContainer entryContainer)
+       throws StorageRuntimeException, IOException, LDIFException
+  {
+    final int threadCount = exportConfig.getThreadCount();
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(threadCount, newThreadFactory(null, EXPORTER_THREAD_NAME, true));
+    // Bounds the memory used by the batches encoded ahead of the one being written
+    final int maxPendingBatches = 2 * threadCount;
+    final Queue<Future<ExportedBatch>> pendingBatches = new ArrayDeque<>(maxPendingBatches);
+    try (final Cursor<ByteString, ByteString> cursor = txn.openCursor(entryContainer.getID2Entry().getName()))
+    {
+      List<EntryID> entryIDs = new ArrayList<>(PARALLEL_BATCH_SIZE);
+      List<ByteString> values = new ArrayList<>(PARALLEL_BATCH_SIZE);
+      while (!exportConfig.isCancelled() && cursor.next())
+      {
+        ByteString key = cursor.getKey();
+        EntryID entryID;
+        try
+        {
+          entryID = new EntryID(key);
+        }
+        catch (Exception e)
+        {
+          if (logger.isTraceEnabled())
+          {
+            logger.traceException(e);
+
+            logger.trace("Malformed id2entry ID %s.%n", StaticUtils.bytesToHex(key));
+          }
+          skippedCount++;
+          continue;
+        }
+
+        if (entryID.longValue() == 0)
+        {
+          // This is the stored entry count.
+          continue;
+        }
+
+        // The storage may reuse the buffer of the value once the cursor moves
+        entryIDs.add(entryID);
+        values.add(ByteString.wrap(cursor.getValue().toByteArray()));
+        if (entryIDs.size() == PARALLEL_BATCH_SIZE)
+        {
+          if (pendingBatches.size() == maxPendingBatches)
+          {
+            writeBatch(pendingBatches.remove());
+          }
+          pendingBatches.add(executor.submit(new ExportBatchTask(entryContainer, entryIDs, values)));
+          entryIDs = new ArrayList<>(PARALLEL_BATCH_SIZE);
+          values = new ArrayList<>(PARALLEL_BATCH_SIZE);
+        }
+      }
+      if (!entryIDs.isEmpty())
+      {
+        pendingBatches.add(executor.submit(new ExportBatchTask(entryContainer, entryIDs, values)));
+      }
+      while (!pendingBatches.isEmpty() && !exportConfig.isCancelled())
+      {
+        writeBatch(pendingBatches.remove());
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Writes a batch of encoded entries once its encoding is complete. */
+  private void writeBatch(Future<ExportedBatch> future) throws StorageRuntimeException, IOException, LDIFException
+  {
+    final ExportedBatch batch;
+    try
+    {
+      batch = future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new StorageRuntimeException(e);
+    }
+    catch (ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      else if (cause instanceof LDIFException)
+      {
+        throw (LDIFException) cause;
+      }
+      else if (cause instanceof StorageRuntimeException)
+      {
+        throw (StorageRuntimeException) cause;
+      }
+      throw new StorageRuntimeException(cause);
+    }
+    exportConfig.getWriter().write(batch.ldif);
+    exportedCount += batch.exportedCount;
+    skippedCount += batch.skippedCount;
+  }
+
+  /** The LDIF encoding of a batch of entries, with the number of entries exported and skipped. */
+  private static final class ExportedBatch
+  {
+    private final String ldif;
+    private final long exportedCount;
+    private final long skippedCount;
+
+    private ExportedBatch(String ldif, long exportedCount, long skippedCount)
+    {
+      this.ldif = ldif;
+      this.exportedCount = exportedCount;
+      this.skippedCount = skippedCount;
+    }
+  }
+
+  /** Decodes a batch of id2entry records and encodes the entries as LDIF. */
+  private final class ExportBatchTask implements Callable<ExportedBatch>
+  {
+    private final EntryContainer entryContainer;
+    private final List<EntryID> entryIDs;
+    private final List<ByteString> values;
+
+    private ExportBatchTask(EntryContainer entryContainer, List<EntryID> entryIDs, List<ByteString> values)
+    {
+      this.entryContainer = entryContainer;
+      this.entryIDs = entryIDs;
+      this.values = values;
+    }
+
+    @Override
+    public ExportedBatch call() throws Exception
+    {
+      final ID2Entry id2entry = entryContainer.getID2Entry();
+      final StringWriter ldif = new StringWriter();
+      long exported = 0;
+      long skipped = 0;
+      try (BufferedWriter writer = new BufferedWriter(ldif))
+      {
+        for (int i = 0; i < entryIDs.size(); i++)
+        {
+          final ByteString value = values.get(i);
+          Entry entry;
+          try
+          {
+            entry = id2entry.entryFromDatabase(value, entryContainer.getRootContainer().getCompressedSchema());
+          }
+          catch (Exception e)
+          {
+            if (logger.isTraceEnabled())
+            {
+              logger.traceException(e);
+
+              logger.trace("Malformed id2entry record for ID %d:%n%s%n",
+                         entryIDs.get(i), StaticUtils.bytesToHex(value));
+            }
+            skipped++;
+            continue;
+          }
+
+          if (entry.toLDIF(exportConfig, writer))
+          {
+            exported++;
+          }
+          else
+          {
+            skipped++;
+          }
+        }
+      }
+      return new ExportedBatch(ldif.toString(), exported, skipped);
+    }
+  }
+
   /** This class reports progress of the export job at fixed intervals. */
   private class ProgressTask extends TimerTask
   {
@@ -119,6 +119,8 @@ class ID2Entry extends AbstractTree
     private static final byte PLAIN_ENTRY = 0x00;
     private static final byte COMPRESS_ENTRY = 0x01;
     private static final byte ENCRYPT_ENTRY = 0x02;
+    /** The entry is compressed by an {@link EntryCompressionCodec}, possibly using a {@link CompressionDictionary}. */
+    private static final byte CODEC_ENTRY = 0x04;
 
     /** The format version for entry encoding. */
     static final byte FORMAT_VERSION_V2 = 0x02;
@@ -234,9 +236,19 @@ class ID2Entry extends AbstractTree
      * ID2ENTRY_VALUE = encoding of Entry as in decodeV1()
      * VERSION_BYTE = 0x2
      * FLAG_BYTE = bit field of OR'ed values indicating post-encoding processing.
-     *     possible meaningful flags are COMPRESS_ENTRY and ENCRYPT_ENTRY.
+     *     possible meaningful flags are COMPRESS_ENTRY, CODEC_ENTRY and ENCRYPT_ENTRY.
      * COMPACT_INTEGER_LENGTH = length of ID2ENTRY_VALUE
      *
+     * When the CODEC_ENTRY flag is set, ID2ENTRY_VALUE is replaced by the sequence
+     *   {CODEC_BYTE, COMPACT_INTEGER_DICTIONARY, COMPRESSED_ID2ENTRY_VALUE}
+     * where
+     *
+     * CODEC_BYTE = identifier of the EntryCompressionCodec which compressed the value
+     * COMPACT_INTEGER_DICTIONARY = identifier of the CompressionDictionary used by the codec, 0 if none
+     *
+     * The attribute values of the returned entry are only decoded when first accessed, so that searches do not decode
+     * the attributes they neither evaluate nor return.
+     *
      * @param bytes A byte array containing the encoded tree value.
      * @param compressedSchema The compressed schema manager to use when decoding.
      * @return The decoded entry.
@@ -257,7 +269,11 @@ class ID2Entry extends AbstractTree
       {
         if (format == PLAIN_ENTRY)
         {
-          return Entry.decode(reader, compressedSchema);
+          return Entry.decodeLazily(bytes.subSequence(reader.position(), bytes.length()), compressedSchema);
+        }
+        if ((format & CODEC_ENTRY) == CODEC_ENTRY)
+        {
+          return decodeCompressed(reader, format, encodedEntryLen, compressedSchema);
         }
         InputStream is = reader.asInputStream();
         if ((format & ENCRYPT_ENTRY) == ENCRYPT_ENTRY)
@@ -282,7 +298,7 @@ class ID2Entry extends AbstractTree
           position += readBytes;
           leftToRead -= readBytes;
         } while (leftToRead > 0 && readBytes > 0);
-        return Entry.decode(ByteString.wrap(data).asReader(), compressedSchema);
+        return Entry.decodeLazily(ByteString.wrap(data), compressedSchema);
       }
       catch (CryptoManagerException cme)
       {
@@ -291,6 +307,46 @@ class ID2Entry extends AbstractTree
       }
     }
 
+    private Entry decodeCompressed(ByteSequenceReader reader, int format, int encodedEntryLen,
+        CompressedSchema compressedSchema) throws CryptoManagerException, DecodeException, DirectoryException,
+        IOException
+    {
+      ByteSequenceReader compressedReader = reader;
+      if ((format & ENCRYPT_ENTRY) == ENCRYPT_ENTRY)
+      {
+        final InputStream is = getCryptoManager().getCipherInputStream(reader.asInputStream());
+        while (compressedEntryBuffer.appendBytes(is, BUFFER_INIT_SIZE) != -1)
+        {
+          // Read the whole compressed value.
+        }
+        compressedReader = compressedEntryBuffer.asReader();
+      }
+      final EntryCompressionCodec codec = EntryCompressionCodec.valueOf(compressedReader.readByte());
+      final CompressionDictionary dictionary =
+          getCompressionDictionary(compressedReader.readCompactUnsignedInt(), compressedSchema);
+      codec.decompress(compressedReader.readByteSequence(compressedReader.remaining()), dictionary, encodedEntryLen,
+          entryBuffer);
+      // The cached buffer is reused: the entry must refer to a copy of it
+      return Entry.decodeLazily(entryBuffer.toByteString(), compressedSchema);
+    }
+
+    private static CompressionDictionary getCompressionDictionary(int dictionaryID, CompressedSchema compressedSchema)
+        throws DecodeException
+    {
+      if (dictionaryID == CompressionDictionary.NO_DICTIONARY)
+      {
+        return null;
+      }
+      final CompressionDictionary dictionary = compressedSchema instanceof PersistentCompressedSchema
+          ? ((PersistentCompressedSchema) compressedSchema).getCompressionDictionary(dictionaryID)
+          : null;
+      if (dictionary == null)
+      {
+        throw DecodeException.error(ERR_UNKNOWN_COMPRESSION_DICTIONARY.get(dictionaryID));
+      }
+      return dictionary;
+    }
+
     private ByteString encode(Entry entry, DataConfig dataConfig) throws DirectoryException
     {
       encodeVolatile(entry, dataConfig);
@@ -300,6 +356,7 @@ class ID2Entry extends AbstractTree
     private void encodeVolatile(Entry entry, DataConfig dataConfig) throws DirectoryException
     {
       entry.encode(entryBuffer, dataConfig.getEntryEncodeConfig());
+      final boolean compressedByCodec = dataConfig.isCompressed() && compressWithCodec(dataConfig);
 
       OutputStream os = encodedBuffer.asOutputStream();
       try
@@ -307,8 +364,13 @@ class ID2Entry extends AbstractTree
         byte[] formatFlags = { FORMAT_VERSION_V2, 0};
         os.write(formatFlags);
         encodedBuffer.appendCompactUnsigned(entryBuffer.length());
-        if (dataConfig.isCompressed())
+        if (compressedByCodec)
         {
+          formatFlags[1] = CODEC_ENTRY;
+        }
+        else if (dataConfig.isCompressed() && dataConfig.getCompressionCodec() == EntryCompressionCodec.DEFLATE)
+        {
+          // Keep the historical format, readable by previous versions
           os = new DeflaterOutputStream(os);
           formatFlags[1] = COMPRESS_ENTRY;
         }
@@ -319,7 +381,7 @@ class ID2Entry extends AbstractTree
         }
         encodedBuffer.setByte(1, formatFlags[1]);
 
-        entryBuffer.copyTo(os);
+        (compressedByCodec ? compressedEntryBuffer : entryBuffer).copyTo(os);
         os.flush();
       }
       catch(CryptoManagerException | IOException e)
@@ -339,6 +401,45 @@ class ID2Entry extends AbstractTree
         }
       }
     }
+
+    /**
+     * Compresses the encoded entry into the compressed entry buffer, unless the configured codec is Deflate, which
+     * uses the historical format.
+     *
+     * @return {@code true} if the entry has been compressed, {@code false} if it must be stored uncompressed or in the
+     *         historical format
+     */
+    private boolean compressWithCodec(DataConfig dataConfig)
+    {
+      final EntryCompressionCodec codec = dataConfig.getCompressionCodec();
+      if (codec == EntryCompressionCodec.DEFLATE)
+      {
+        return false;
+      }
+      final CompressionDictionary dictionary = getCompressionDictionary(codec, dataConfig);
+      compressedEntryBuffer.appendByte(codec.getID());
+      compressedEntryBuffer.appendCompactUnsigned(
+          dictionary != null ? dictionary.getID() : CompressionDictionary.NO_DICTIONARY);
+      codec.compress(entryBuffer, dictionary, compressedEntryBuffer);
+      // Small entries may not be worth compressing
+      return compressedEntryBuffer.length() < entryBuffer.length();
+    }
+
+    private CompressionDictionary getCompressionDictionary(EntryCompressionCodec codec, DataConfig dataConfig)
+    {
+      final CompressedSchema compressedSchema = dataConfig.getEntryEncodeConfig().getCompressedSchema();
+      if (!codec.supportsDictionaries() || !(compressedSchema instanceof PersistentCompressedSchema))
+      {
+        return null;
+      }
+      final PersistentCompressedSchema schema = (PersistentCompressedSchema) compressedSchema;
+      final CompressionDictionary dictionary = schema.getCurrentCompressionDictionary();
+      if (dictionary == null)
+      {
+        schema.addCompressionDictionarySample(entryBuffer);
+      }
+      return dictionary;
+    }
   }
 
   /**
@@ -469,6 +570,28 @@ class ID2Entry extends AbstractTree
     }
   }
 
+  /**
+   * Decodes a record previously read from the entry tree. Unlike {@link #get(ReadableTransaction, EntryID)}, this
+   * method does not need a transaction, so records read by one thread can be decoded by another one.
+   *
+   * @param entryID The entry ID which forms the key of the record.
+   * @param value The value of the record.
+   * @return The decoded entry.
+   * @throws DirectoryException If a problem occurs while decoding the entry.
+   */
+  Entry decode(EntryID entryID, ByteString value) throws DirectoryException
+  {
+    try
+    {
+      return get0(value);
+    }
+    catch (Exception e)
+    {
+      throw new DirectoryException(
+          DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), ERR_ENTRY_DATABASE_CORRUPT.get(entryID));
+    }
+  }
+
   Cursor<EntryID, Entry> openCursor(ReadableTransaction txn)
   {
     return transformKeysAndValues(txn.openCursor(getName()), TO_ENTRY_ID, TO_ENTRY);
@@ -19,7 +19,9 @@ import static org.opends.messages.UtilityMessages.*;
 import static org.opends.server.util.StaticUtils.*;
 import static org.opends.messages.BackendMessages.ERR_IMPORT_DUPLICATE_ENTRY;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -43,9 +45,20 @@ import org.opends.server.types.LDIFImportConfig;
 import org.opends.server.util.LDIFException;
 import org.opends.server.util.LDIFReader;
 
-/** This class specializes the LDIFReader for imports. */
+/**
+ * This class specializes the LDIFReader for imports.
+ * <p>
+ * The LDIF source is cut into chunks of whole records, which several threads can parse concurrently. Cutting the
+ * chunks only requires looking for the blank lines separating the records, so that the threads spend most of their
+ * time parsing the entries rather than waiting for each other.
+ */
 final class ImportLDIFReader extends LDIFReader
 {
+  /** The number of characters read from the LDIF source for each chunk, before cutting it after its last record. */
+  private static final int CHUNK_SIZE = 1024 * 1024;
+  private static final char BYTE_ORDER_MARK = '\uFEFF';
+  private static final String VERSION_PREFIX = "version:";
+
   private final ConcurrentHashMap<DN, CountDownLatch> pendingMap = new ConcurrentHashMap<>();
 
   /**
@@ -81,9 +94,47 @@ final class ImportLDIFReader extends LDIFReader
     }
   }
 
+  /**
+   * A chunk of the LDIF source made of whole records, which can be parsed independently of the other chunks.
+   * <p>
+   * The chunks are cut in the order of the LDIF source, and the records of each chunk are assigned the entry IDs
+   * following the ones of the previous chunk. The entry ID of an entry therefore only depends on its position in the
+   * LDIF source, not on the thread parsing it. The records which are skipped or rejected leave gaps in the entry IDs.
+   */
+  static final class LDIFChunk
+  {
+    private final char[] chars;
+    private final int length;
+    /** The positions of the records in {@link #chars}. */
+    private final int[] recordPositions;
+    /** The line numbers of the records in the LDIF source. */
+    private final long[] recordLineNumbers;
+    private final int nbRecords;
+    private final long firstEntryID;
+    /** The index of the next record to parse. */
+    private int nextRecord;
+
+    private LDIFChunk(char[] chars, int length, int[] recordPositions, long[] recordLineNumbers, int nbRecords,
+        long firstEntryID)
+    {
+      this.chars = chars;
+      this.length = length;
+      this.recordPositions = recordPositions;
+      this.recordLineNumbers = recordLineNumbers;
+      this.nbRecords = nbRecords;
+      this.firstEntryID = firstEntryID;
+    }
+  }
+
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
   private final RootContainer rootContainer;
+  /** The reader of the current LDIF file, {@code null} once all the files have been read. */
+  private BufferedReader ldifReader;
+  /** The characters read after the last record of the previous chunk. */
+  private char[] remainder = new char[0];
+  /** The line number of the first line following the previous chunk. */
+  private long nextLineNumber = 1;
 
   /**
    * Creates a new LDIF reader that will read information from the specified file.
@@ -100,98 +151,273 @@ final class ImportLDIFReader extends LDIFReader
     super(importConfig);
     Reject.ifNull(importConfig, rootContainer);
     this.rootContainer = rootContainer;
+    this.ldifReader = importConfig.getReader();
   }
 
   /**
-   * Reads the next entry from the LDIF source.
+   * Reads the next chunk of the LDIF source. This method is thread-safe, but the chunks it returns must each be parsed
+   * by a single thread.
    *
-   * @return The next entry information read from the LDIF source, or <CODE>null</CODE> if the end of the LDIF
-   *         data is reached of if the import has been cancelled.
-   * @param suffixesMap
-   *          A map of entry containers instances.
+   * @return The next chunk of the LDIF source, or {@code null} if the end of the LDIF data is reached.
    * @throws IOException
    *           If an I/O problem occurs while reading from the file.
-   * @throws LDIFException
-   *           If the information read cannot be parsed as an LDIF entry.
    */
-  public final EntryInformation readEntry(Map<DN, EntryContainer> suffixesMap) throws IOException, LDIFException
+  synchronized LDIFChunk nextChunk() throws IOException
   {
-    final boolean checkSchema = importConfig.validateSchema();
-    while (true)
+    while (ldifReader != null)
     {
-      LinkedList<StringBuilder> lines;
-      DN entryDN;
-      EntryID entryID;
-      final EntryContainer entryContainer;
-      synchronized (this)
+      final char[] chars = Arrays.copyOf(remainder, remainder.length + CHUNK_SIZE);
+      final int length = fill(chars, remainder.length);
+      final int end;
+      if (length < chars.length)
       {
-        // Read the set of lines that make up the next entry.
-        lines = readEntryLines();
-        if (lines == null)
-        {
-          return null;
-        }
-        lastEntryBodyLines = lines;
-        lastEntryHeaderLines = new LinkedList<>();
+        // The end of the file also ends its last record
+        end = length;
+        ldifReader = importConfig.nextReader();
+      }
+      else
+      {
+        end = lastRecordBoundary(chars, length);
+      }
+      remainder = Arrays.copyOfRange(chars, end, length);
+      final LDIFChunk chunk = newChunk(chars, end);
+      if (chunk != null)
+      {
+        return chunk;
+      }
+    }
+    return null;
+  }
 
-        // Read the DN of the entry and see if it is one that should be included
-        // in the import.
-        try
-        {
-          entryDN = readDN(lines);
-        }
-        catch (LDIFException e)
-        {
-          logger.traceException(e);
-          continue;
-        }
+  private int fill(char[] chars, int from) throws IOException
+  {
+    int length = from;
+    while (length < chars.length)
+    {
+      final int nbRead = ldifReader.read(chars, length, chars.length - length);
+      if (nbRead < 0)
+      {
+        break;
+      }
+      length += nbRead;
+    }
+    return length;
+  }
 
-        if (entryDN == null)
+  /** Returns the position following the last blank line, or 0 if there is none. */
+  private static int lastRecordBoundary(char[] chars, int length)
+  {
+    for (int i = length - 1; i > 0; i--)
+    {
+      if (chars[i] == '\n' && (chars[i - 1] == '\n' || (chars[i - 1] == '\r' && i > 1 && chars[i - 2] == '\n')))
+      {
+        return i + 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Locates the records in the first characters of the provided array and assigns them entry IDs.
+   *
+   * @return the chunk holding the records, or {@code null} if there is none
+   */
+  private LDIFChunk newChunk(char[] chars, int length)
+  {
+    int[] recordPositions = new int[64];
+    long[] recordLineNumbers = new long[64];
+    int nbRecords = 0;
+    boolean inRecord = false;
+    boolean isRecordCounted = false;
+    int recordPosition = 0;
+    long recordLineNumber = 0;
+    for (int pos = 0; pos < length; pos = nextLine(chars, pos, length), nextLineNumber++)
+    {
+      final int lineEnd = lineEnd(chars, pos, length);
+      if (lineEnd == pos)
+      {
+        // This is a blank line, ending the current record, if any
+        inRecord = false;
+        continue;
+      }
+      if (!inRecord)
+      {
+        inRecord = true;
+        isRecordCounted = false;
+        recordPosition = pos;
+        recordLineNumber = nextLineNumber;
+      }
+      if (!isRecordCounted && isEntryLine(chars, pos, lineEnd))
+      {
+        if (nbRecords == recordPositions.length)
         {
-          // This should only happen if the LDIF starts with the "version:" line
-          // and has a blank line immediately after that. In that case, simply
-          // read and return the next entry.
-          continue;
+          recordPositions = Arrays.copyOf(recordPositions, nbRecords * 2);
+          recordLineNumbers = Arrays.copyOf(recordLineNumbers, nbRecords * 2);
         }
+        recordPositions[nbRecords] = recordPosition;
+        recordLineNumbers[nbRecords] = recordLineNumber;
+        nbRecords++;
+        isRecordCounted = true;
+      }
+    }
+    if (nbRecords == 0)
+    {
+      return null;
+    }
+    final long firstEntryID = rootContainer.getNextEntryIDs(nbRecords).longValue();
+    return new LDIFChunk(chars, length, recordPositions, recordLineNumbers, nbRecords, firstEntryID);
+  }
+
+  /**
+   * Returns whether the provided line can start an entry, that is whether it is neither a comment, nor a continuation
+   * line, nor the version line which may precede the first entry.
+   */
+  private static boolean isEntryLine(char[] chars, int pos, int lineEnd)
+  {
+    final int start = chars[pos] == BYTE_ORDER_MARK ? pos + 1 : pos;
+    if (start == lineEnd)
+    {
+      return false;
+    }
+    final char c = chars[start];
+    return c != '#' && c != ' ' && c != '\t'
+        && !VERSION_PREFIX.equalsIgnoreCase(new String(chars, start, Math.min(VERSION_PREFIX.length(), lineEnd - start)));
+  }
 
-        entriesRead.incrementAndGet();
+  /** Returns the position of the end of the line starting at the provided position, excluding the line separator. */
+  private static int lineEnd(char[] chars, int pos, int length)
+  {
+    int end = pos;
+    while (end < length && chars[end] != '\n')
+    {
+      end++;
+    }
+    return end > pos && chars[end - 1] == '\r' ? end - 1 : end;
+  }
 
-        final Pair<Boolean, LocalizableMessage> includeResult = importConfig.includeEntry(entryDN);
-        if (!includeResult.getFirst())
-        {
-          logToSkipWriter(lines, includeResult.getSecond());
-          continue;
-        }
-        entryContainer = getEntryContainer(entryDN, suffixesMap);
-        if (entryContainer == null)
-        {
-          logger.trace("Skipping entry %s because the DN is not one that "
-              + "should be included based on a suffix match check.", entryDN);
-          logToSkipWriter(lines, ERR_LDIF_SKIP.get(entryDN));
-          continue;
-        }
-        entryID = rootContainer.getNextEntryID();
+  /** Returns the position of the line following the line starting at the provided position. */
+  private static int nextLine(char[] chars, int pos, int length)
+  {
+    int end = pos;
+    while (end < length && chars[end] != '\n')
+    {
+      end++;
+    }
+    return end + 1;
+  }
 
-        if (!addPending(entryDN))
-        {
-          logger.trace("Skipping entry %s because the DN already exists.", entryDN);
-          logToSkipWriter(lines, ERR_IMPORT_DUPLICATE_ENTRY.get(entryDN));
-          continue;
-        }
+  /**
+   * Reads the next entry from the provided chunk of the LDIF source.
+   *
+   * @param chunk
+   *          The chunk of the LDIF source, as returned by {@link #nextChunk()}.
+   * @param suffixesMap
+   *          A map of entry containers instances.
+   * @return The next entry information read from the chunk, or <CODE>null</CODE> if the end of the chunk is reached.
+   * @throws LDIFException
+   *           If the information read is not valid LDIF.
+   */
+  EntryInformation readEntry(LDIFChunk chunk, Map<DN, EntryContainer> suffixesMap) throws LDIFException
+  {
+    final boolean checkSchema = importConfig.validateSchema();
+    while (chunk.nextRecord < chunk.nbRecords)
+    {
+      final int record = chunk.nextRecord++;
+      final EntryID entryID = new EntryID(chunk.firstEntryID + record);
+      final long lineNumber = chunk.recordLineNumbers[record];
+      final LinkedList<StringBuilder> lines = readRecordLines(chunk, record);
+      // Only used by error messages, which may report the line number of an entry read concurrently
+      lastEntryLineNumber = lineNumber;
+
+      // Read the DN of the entry and see if it is one that should be included
+      // in the import.
+      final DN entryDN;
+      try
+      {
+        entryDN = readDN(lines, new LinkedList<StringBuilder>());
+      }
+      catch (LDIFException e)
+      {
+        logger.traceException(e);
+        continue;
+      }
+
+      entriesRead.incrementAndGet();
+
+      final Pair<Boolean, LocalizableMessage> includeResult = importConfig.includeEntry(entryDN);
+      if (!includeResult.getFirst())
+      {
+        logToSkipWriter(lines, includeResult.getSecond());
+        continue;
+      }
+      final EntryContainer entryContainer = getEntryContainer(entryDN, suffixesMap);
+      if (entryContainer == null)
+      {
+        logger.trace("Skipping entry %s because the DN is not one that "
+            + "should be included based on a suffix match check.", entryDN);
+        logToSkipWriter(lines, ERR_LDIF_SKIP.get(entryDN));
+        continue;
+      }
+      if (!addPending(entryDN))
+      {
+        logger.trace("Skipping entry %s because the DN already exists.", entryDN);
+        logToSkipWriter(lines, ERR_IMPORT_DUPLICATE_ENTRY.get(entryDN));
+        continue;
       }
 
       // Create the entry and see if it is one that should be included in the import
       final Entry entry = createEntry(lines, entryDN, checkSchema);
       if (entry == null
-          || !isIncludedInImport(entry, lines)
+          || !isIncludedInImport(entry, lines, lineNumber)
           || !invokeImportPlugins(entry, lines)
-          || (checkSchema && !isValidAgainstSchema(entry, lines)))
+          || (checkSchema && !isValidAgainstSchema(entry, lines, lineNumber)))
       {
         removePending(entryDN);
         continue;
       }
       return new EntryInformation(entry, entryID, entryContainer);
     }
+    return null;
+  }
+
+  /** Reads the lines of a record, joining the continuation lines and ignoring the comments. */
+  private LinkedList<StringBuilder> readRecordLines(LDIFChunk chunk, int record) throws LDIFException
+  {
+    final char[] chars = chunk.chars;
+    final LinkedList<StringBuilder> lines = new LinkedList<>();
+    StringBuilder lastLine = null;
+    long lineNumber = chunk.recordLineNumbers[record];
+    for (int pos = chunk.recordPositions[record]; pos < chunk.length; pos = nextLine(chars, pos, chunk.length))
+    {
+      final int lineEnd = lineEnd(chars, pos, chunk.length);
+      if (lineEnd == pos)
+      {
+        // This is a blank line, ending the record
+        break;
+      }
+      final char c = chars[pos];
+      if (c == ' ' || c == '\t')
+      {
+        // This is a continuation of the previous line, see LDIFReader.readEntryLines()
+        if (lastLine == null)
+        {
+          LocalizableMessage message =
+              ERR_LDIF_INVALID_LEADING_SPACE.get(lineNumber, new String(chars, pos, lineEnd - pos));
+          logToRejectWriter(lines, message);
+          throw new LDIFException(message, lineNumber, false);
+        }
+        lastLine.append(chars, pos + 1, lineEnd - pos - 1);
+      }
+      else if (c != '#')
+      {
+        // This is a new line, possibly starting with a UTF-8 BOM that Java doesn't skip
+        final int start = c == BYTE_ORDER_MARK ? pos + 1 : pos;
+        lastLine = new StringBuilder(lineEnd - start).append(chars, start, lineEnd - start);
+        lines.add(lastLine);
+      }
+      lineNumber++;
+    }
+    return lines;
   }
 
   private Entry createEntry(List<StringBuilder> lines, DN entryDN, boolean checkSchema)
@@ -223,7 +449,7 @@ final class ImportLDIFReader extends LDIFReader
     return entry;
   }
 
-  private boolean isIncludedInImport(Entry entry, LinkedList<StringBuilder> entryLines)
+  private boolean isIncludedInImport(Entry entry, LinkedList<StringBuilder> entryLines, long lineNumber)
   {
     final DN entryDN = entry.getName();
     try
@@ -239,7 +465,7 @@ final class ImportLDIFReader extends LDIFReader
     catch (Exception e)
     {
       logToSkipWriter(entryLines,
-          ERR_LDIF_COULD_NOT_EVALUATE_FILTERS_FOR_IMPORT.get(entryDN, lastEntryLineNumber, e));
+          ERR_LDIF_COULD_NOT_EVALUATE_FILTERS_FOR_IMPORT.get(entryDN, lineNumber, e));
       return false;
     }
   }
@@ -270,7 +496,7 @@ final class ImportLDIFReader extends LDIFReader
     return true;
   }
 
-  private boolean isValidAgainstSchema(Entry entry, LinkedList<StringBuilder> lines)
+  private boolean isValidAgainstSchema(Entry entry, LinkedList<StringBuilder> lines, long lineNumber)
   {
     final DN entryDN = entry.getName();
     addRDNAttributesIfNecessary(entryDN, entry.getUserAttributes(), entry.getOperationalAttributes());
@@ -280,7 +506,7 @@ final class ImportLDIFReader extends LDIFReader
     LocalizableMessageBuilder invalidReason = new LocalizableMessageBuilder();
     if (!entry.conformsToSchema(null, false, true, false, invalidReason))
     {
-      LocalizableMessage message = ERR_LDIF_SCHEMA_VIOLATION.get(entryDN, lastEntryLineNumber, invalidReason);
+      LocalizableMessage message = ERR_LDIF_SCHEMA_VIOLATION.get(entryDN, lineNumber, invalidReason);
       logToRejectWriter(lines, message);
       return false;
     }
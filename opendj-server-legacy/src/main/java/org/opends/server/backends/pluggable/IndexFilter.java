@@ -16,11 +16,15 @@
  */
 package org.opends.server.backends.pluggable;
 
+import static org.forgerock.util.Utils.*;
 import static org.opends.messages.BackendMessages.*;
 import static org.opends.server.backends.pluggable.EntryIDSet.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.opends.server.backends.pluggable.AttributeIndex.IndexFilterType;
@@ -45,6 +49,48 @@ class IndexFilter
   /** Limit on the number of entry IDs that may be retrieved by cursoring through an index. */
   static final int CURSOR_ENTRY_LIMIT = 100000;
 
+  /**
+   * Number of index keys which can be read for the cost of reading and filtering one candidate entry. Components of
+   * an AND filter expected to read more keys than this ratio allows are not evaluated.
+   */
+  private static final int INDEX_READS_PER_ENTRY_READ = 10;
+
+  /** Orders the components of an AND filter by increasing estimated cost. */
+  private static final Comparator<AndComponent> CHEAPEST_FIRST = new Comparator<AndComponent>()
+  {
+    @Override
+    public int compare(AndComponent c1, AndComponent c2)
+    {
+      return c1.cost.compareTo(c2.cost);
+    }
+  };
+
+  /** A component of an AND filter with its estimated evaluation cost. */
+  private static final class AndComponent
+  {
+    private final SearchFilter filter;
+    /** The index used to evaluate a pair of range components on the same attribute, null for other components. */
+    private final AttributeIndex boundedRangeIndex;
+    private final List<SearchFilter> boundedRange;
+    private final IndexQueryCost cost;
+
+    private AndComponent(SearchFilter filter, IndexQueryCost cost)
+    {
+      this.filter = filter;
+      this.boundedRangeIndex = null;
+      this.boundedRange = null;
+      this.cost = cost;
+    }
+
+    private AndComponent(List<SearchFilter> boundedRange, AttributeIndex boundedRangeIndex, IndexQueryCost cost)
+    {
+      this.filter = SearchFilter.createANDFilter(boundedRange);
+      this.boundedRangeIndex = boundedRangeIndex;
+      this.boundedRange = boundedRange;
+      this.cost = cost;
+    }
+  }
+
   /** The entry container holding the attribute indexes. */
   private final EntryContainer entryContainer;
   private final ReadableTransaction txn;
@@ -94,6 +140,46 @@ class IndexFilter
     return evaluateFilter(searchOp.getFilter());
   }
 
+  /**
+   * Evaluate the search operation against the indexes, without computing the candidate entries as a whole.
+   * <p>
+   * The entry IDs read from the indexes for each component of the AND and OR filters are intersected and merged
+   * while the returned cursor is moved, so that the first candidates are available immediately.
+   *
+   * @return A cursor over the candidate entry IDs, or {@code null} if the indexes cannot restrict the candidates.
+   */
+  EntryIDCursor evaluateLazily()
+  {
+    appendToDebugBuffer("filter=");
+    return evaluateFilterLazily(searchOp.getFilter());
+  }
+
+  private EntryIDCursor evaluateFilterLazily(SearchFilter filter)
+  {
+    switch (filter.getFilterType())
+    {
+      case AND:
+        appendToDebugBuffer("(&");
+        final EntryIDCursor res1 = evaluateLogicalAndFilterLazily(filter);
+        appendToDebugBuffer(")");
+        return res1;
+
+      case OR:
+        appendToDebugBuffer("(|");
+        final EntryIDCursor res2 = evaluateLogicalOrFilterLazily(filter);
+        appendToDebugBuffer(")");
+        return res2;
+
+      default:
+        return toCursor(evaluateFilter(filter));
+    }
+  }
+
+  private static EntryIDCursor toCursor(EntryIDSet set)
+  {
+    return set.isDefined() ? EntryIDCursor.of(set) : null;
+  }
+
   /**
    * Evaluate a search filter against the indexes.
    *
@@ -164,16 +250,86 @@ class IndexFilter
 
   /**
    * Evaluate a logical AND search filter against the indexes.
+   * <p>
+   * The components are evaluated cheapest first according to the statistics of the indexes. Evaluation stops once the
+   * number of candidates is below the threshold, and components which cannot reduce the candidates or would cost more
+   * than filtering the candidates themselves are skipped: entries are always filtered again after being read.
    *
    * @param andFilter The AND search filter to be evaluated.
    * @return A set of entry IDs representing candidate entries.
    */
   private EntryIDSet evaluateLogicalAndFilter(SearchFilter andFilter)
   {
-    // Put the slow range filters (greater-or-equal, less-or-equal)
-    // into a hash map, the faster components (equality, presence, approx)
-    // into one list and the remainder into another list.
+    final List<AndComponent> plan = planLogicalAndFilter(andFilter);
+
+    EntryIDSet results = newUndefinedSet();
+    for (AndComponent component : plan)
+    {
+      if (isBelowFilterThreshold(results))
+      {
+        appendSkippedToDebugBuffer(component, "THRESHOLD");
+      }
+      else if (results.isDefined() && isMoreExpensiveThanFiltering(component.cost, results.size()))
+      {
+        appendSkippedToDebugBuffer(component, "COST");
+      }
+      else
+      {
+        appendToDebugBuffer(component.cost.toString());
+        results.retainAll(evaluateAndComponent(component));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Evaluate a logical AND search filter against the indexes like {@link #evaluateLogicalAndFilter(SearchFilter)}, but
+   * the candidates of the components are intersected lazily. Since the size of the intersection is not known, the
+   * smallest number of candidates of a component is used to decide whether to evaluate the next components.
+   *
+   * @param andFilter The AND search filter to be evaluated.
+   * @return A cursor over the candidate entry IDs, or {@code null} if the indexes cannot restrict the candidates.
+   */
+  private EntryIDCursor evaluateLogicalAndFilterLazily(SearchFilter andFilter)
+  {
+    final List<AndComponent> plan = planLogicalAndFilter(andFilter);
 
+    final List<EntryIDCursor> cursors = new ArrayList<>(plan.size());
+    long maximumSize = Long.MAX_VALUE;
+    for (AndComponent component : plan)
+    {
+      if (!cursors.isEmpty() && maximumSize <= FILTER_CANDIDATE_THRESHOLD)
+      {
+        appendSkippedToDebugBuffer(component, "THRESHOLD");
+      }
+      else if (!cursors.isEmpty() && isMoreExpensiveThanFiltering(component.cost, maximumSize))
+      {
+        appendSkippedToDebugBuffer(component, "COST");
+      }
+      else
+      {
+        appendToDebugBuffer(component.cost.toString());
+        final EntryIDCursor cursor = component.boundedRangeIndex == null
+            ? evaluateFilterLazily(component.filter)
+            : toCursor(evaluateAndComponent(component));
+        if (cursor != null)
+        {
+          cursors.add(cursor);
+          maximumSize = Math.min(maximumSize, cursor.getMaximumSize());
+        }
+      }
+    }
+    return !cursors.isEmpty() ? EntryIDCursor.intersection(cursors) : null;
+  }
+
+  /**
+   * Returns the components of an AND filter in the order they should be evaluated. The statistics of the indexes
+   * decide the order. Without statistics, the order is: the fast components (equality, presence, approx), then the
+   * other non-range components, then the range component pairs like (cn>=A)(cn<=B) and finally the remaining range
+   * components.
+   */
+  private List<AndComponent> planLogicalAndFilter(SearchFilter andFilter)
+  {
     ArrayList<SearchFilter> fastComps = new ArrayList<>();
     ArrayList<SearchFilter> otherComps = new ArrayList<>();
     HashMap<AttributeType, ArrayList<SearchFilter>> rangeComps = new HashMap<>();
@@ -205,26 +361,16 @@ class IndexFilter
       }
     }
 
-    EntryIDSet results = newUndefinedSet();
-    // First, process the fast components.
-    results = applyFiltersUntilThreshold(results, fastComps);
-    // Next, process the other (non-range) components.
-    results = applyFiltersUntilThreshold(results, otherComps);
+    final List<AndComponent> plan = new ArrayList<>(andFilter.getFilterComponents().size());
+    addAndComponents(plan, fastComps);
+    addAndComponents(plan, otherComps);
 
-    if ( isBelowFilterThreshold(results) || rangeComps.isEmpty() ) {
-      return results;
-    }
-
-    // Next, process range component pairs like (cn>=A)(cn<=B).
     ArrayList<SearchFilter> remainComps = new ArrayList<>();
     for (Map.Entry<AttributeType, ArrayList<SearchFilter>> rangeEntry : rangeComps.entrySet())
     {
       ArrayList<SearchFilter> rangeList = rangeEntry.getValue();
       if (rangeList.size() == 2)
       {
-        SearchFilter filter1 = rangeList.get(0);
-        SearchFilter filter2 = rangeList.get(1);
-
         AttributeIndex attributeIndex = entryContainer.getAttributeIndex(rangeEntry.getKey());
         if (attributeIndex == null)
         {
@@ -235,18 +381,10 @@ class IndexFilter
           }
           continue;
         }
-
-        final IndexQueryFactoryImpl indexQueryFactory = new IndexQueryFactoryImpl(txn, attributeIndex);
-        EntryIDSet set = attributeIndex.evaluateBoundedRange(indexQueryFactory, filter1, filter2, buffer, monitor);
-        if(monitor.isFilterUseEnabled() && set.isDefined())
-        {
-          monitor.updateStats(SearchFilter.createANDFilter(rangeList), set.size());
-        }
-        results.retainAll(set);
-        if (isBelowFilterThreshold(results))
-        {
-          return results;
-        }
+        final SearchFilter filter1 = rangeList.get(0);
+        final SearchFilter filter2 = rangeList.get(1);
+        final IndexQueryCost cost = estimateFilterCost(filter1).intersect(estimateFilterCost(filter2));
+        plan.add(new AndComponent(rangeList, attributeIndex, cost));
       }
       else
       {
@@ -254,20 +392,122 @@ class IndexFilter
         remainComps.addAll(rangeList);
       }
     }
+    addAndComponents(plan, remainComps);
+
+    // Stable sort: components with equivalent costs are kept in their default order
+    Collections.sort(plan, CHEAPEST_FIRST);
+    return plan;
+  }
+
+  private void addAndComponents(List<AndComponent> plan, List<SearchFilter> filters)
+  {
+    for (SearchFilter filter : filters)
+    {
+      plan.add(new AndComponent(filter, estimateFilterCost(filter)));
+    }
+  }
+
+  private EntryIDSet evaluateAndComponent(AndComponent component)
+  {
+    if (component.boundedRangeIndex == null)
+    {
+      return evaluateFilter(component.filter);
+    }
 
-    // Finally, process the remaining slow range components.
-    return applyFiltersUntilThreshold(results, remainComps);
+    final List<SearchFilter> rangeList = component.boundedRange;
+    final IndexQueryFactoryImpl indexQueryFactory = new IndexQueryFactoryImpl(txn, component.boundedRangeIndex);
+    EntryIDSet set = component.boundedRangeIndex.evaluateBoundedRange(
+        indexQueryFactory, rangeList.get(0), rangeList.get(1), buffer, monitor);
+    if(monitor.isFilterUseEnabled() && set.isDefined())
+    {
+      monitor.updateStats(component.filter, set.size());
+    }
+    return set;
   }
 
-  private EntryIDSet applyFiltersUntilThreshold(EntryIDSet results, ArrayList<SearchFilter> filters)
+  /**
+   * Indicates whether evaluating a component is pointless because it is expected to return an undefined set or to
+   * read more index keys than the cost of reading and filtering the current candidates.
+   */
+  private static boolean isMoreExpensiveThanFiltering(IndexQueryCost cost, long nbCandidates)
   {
-    for(SearchFilter filter : filters) {
-      if (isBelowFilterThreshold(results)) {
-        return results;
+    return cost.isKnown()
+        && (cost.isUndefined() || cost.getReads() > nbCandidates * INDEX_READS_PER_ENTRY_READ);
+  }
+
+  /**
+   * Estimates the cost of evaluating a search filter against the indexes.
+   *
+   * @param filter The search filter to be estimated.
+   * @return The estimated cost of evaluating the search filter.
+   */
+  private IndexQueryCost estimateFilterCost(SearchFilter filter)
+  {
+    IndexQueryCost cost;
+    switch (filter.getFilterType())
+    {
+    case AND:
+      cost = IndexQueryCost.undefined(0);
+      for (SearchFilter component : filter.getFilterComponents())
+      {
+        cost = cost.intersect(estimateFilterCost(component));
       }
-      results.retainAll(evaluateFilter(filter));
+      return cost;
+
+    case OR:
+      cost = IndexQueryCost.of(0, 0);
+      for (SearchFilter component : filter.getFilterComponents())
+      {
+        cost = cost.union(estimateFilterCost(component));
+      }
+      return cost;
+
+    case EQUALITY:
+      return estimateFilterCost(IndexFilterType.EQUALITY, filter);
+
+    case GREATER_OR_EQUAL:
+      return estimateFilterCost(IndexFilterType.GREATER_OR_EQUAL, filter);
+
+    case SUBSTRING:
+      return estimateFilterCost(IndexFilterType.SUBSTRING, filter);
+
+    case LESS_OR_EQUAL:
+      return estimateFilterCost(IndexFilterType.LESS_OR_EQUAL, filter);
+
+    case PRESENT:
+      return estimateFilterCost(IndexFilterType.PRESENCE, filter);
+
+    case APPROXIMATE_MATCH:
+      return estimateFilterCost(IndexFilterType.APPROXIMATE, filter);
+
+    case NOT:
+      // Not indexed
+      return IndexQueryCost.undefined(0);
+
+    case EXTENSIBLE_MATCH:
+    default:
+      return IndexQueryCost.UNKNOWN;
+    }
+  }
+
+  private IndexQueryCost estimateFilterCost(IndexFilterType indexFilterType, SearchFilter filter)
+  {
+    AttributeIndex attributeIndex = entryContainer.getAttributeIndex(filter.getAttributeType());
+    if (attributeIndex != null)
+    {
+      final IndexQueryFactoryImpl indexQueryFactory = new IndexQueryFactoryImpl(txn, attributeIndex);
+      return AttributeIndex.estimateFilterCost(indexQueryFactory, indexFilterType, filter);
+    }
+    return IndexQueryCost.undefined(0);
+  }
+
+  private void appendSkippedToDebugBuffer(AndComponent component, String reason)
+  {
+    if (buffer != null)
+    {
+      buffer.append("[SKIPPED:").append(reason).append("]").append(component.cost);
+      component.filter.toString(buffer);
     }
-    return results;
   }
 
   static boolean isBelowFilterThreshold(EntryIDSet set)
@@ -275,6 +515,11 @@ class IndexFilter
     return set.isDefined() && set.size() <= FILTER_CANDIDATE_THRESHOLD;
   }
 
+  static boolean isBelowFilterThreshold(EntryIDCursor cursor)
+  {
+    return cursor.getMaximumSize() <= FILTER_CANDIDATE_THRESHOLD;
+  }
+
   /**
    * Evaluate a logical OR search filter against the indexes.
    *
@@ -298,6 +543,30 @@ class IndexFilter
     return newSetFromUnion(candidateSets);
   }
 
+  /**
+   * Evaluate a logical OR search filter against the indexes like {@link #evaluateLogicalOrFilter(SearchFilter)}, but
+   * the candidates of the components are merged lazily.
+   *
+   * @param orFilter The OR search filter to be evaluated.
+   * @return A cursor over the candidate entry IDs, or {@code null} if the indexes cannot restrict the candidates.
+   */
+  private EntryIDCursor evaluateLogicalOrFilterLazily(SearchFilter orFilter)
+  {
+    final List<EntryIDCursor> cursors = new ArrayList<>(orFilter.getFilterComponents().size());
+    for (SearchFilter filter : orFilter.getFilterComponents())
+    {
+      final EntryIDCursor cursor = evaluateFilterLazily(filter);
+      if (cursor == null)
+      {
+        // There is no point continuing.
+        closeSilently(cursors);
+        return null;
+      }
+      cursors.add(cursor);
+    }
+    return EntryIDCursor.union(cursors);
+  }
+
   private EntryIDSet evaluateFilterWithDiagnostic(IndexFilterType indexFilterType, SearchFilter filter)
   {
     if (buffer != null)
@@ -33,4 +33,12 @@ interface IndexQuery
    * @return The non null EntryIDSet as a result of evaluating this query
    */
   EntryIDSet evaluate(LocalizableMessageBuilder debugMessage, StringBuilder indexNameOut);
+
+  /**
+   * Estimates the cost of evaluating this index query from the statistics of the indexes it reads, without reading
+   * the indexes.
+   *
+   * @return The non null estimated cost, possibly {@link IndexQueryCost#UNKNOWN}
+   */
+  IndexQueryCost estimateCost();
 }
@@ -0,0 +1,182 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+/**
+ * Estimated cost of evaluating an {@link IndexQuery}, computed from the {@link IndexStatistics} of the indexes it
+ * reads. The cost is made of the expected number of candidate entry IDs returned and of the expected number of index
+ * keys read. A query which is expected to return an undefined entry ID set has an unbounded number of candidates.
+ */
+final class IndexQueryCost implements Comparable<IndexQueryCost>
+{
+  /** Cost of a query for which no statistics are available. */
+  static final IndexQueryCost UNKNOWN = new IndexQueryCost(-1, -1);
+
+  private static final long UNBOUNDED = Long.MAX_VALUE;
+
+  private final long candidates;
+  private final long reads;
+
+  private IndexQueryCost(long candidates, long reads)
+  {
+    this.candidates = candidates;
+    this.reads = reads;
+  }
+
+  /**
+   * Returns the cost of a query expected to return a defined entry ID set.
+   *
+   * @param candidates
+   *          the expected number of entry IDs returned by the query
+   * @param reads
+   *          the expected number of index keys read by the query
+   * @return the cost of the query
+   */
+  static IndexQueryCost of(long candidates, long reads)
+  {
+    return new IndexQueryCost(Math.max(0, candidates), Math.max(0, reads));
+  }
+
+  /**
+   * Returns the cost of a query expected to return an undefined entry ID set.
+   *
+   * @param reads
+   *          the expected number of index keys read by the query
+   * @return the cost of the query
+   */
+  static IndexQueryCost undefined(long reads)
+  {
+    return new IndexQueryCost(UNBOUNDED, Math.max(0, reads));
+  }
+
+  boolean isKnown()
+  {
+    return candidates >= 0;
+  }
+
+  /**
+   * Indicates whether the query is expected to return an undefined entry ID set.
+   *
+   * @return {@code true} if the query is expected to return an undefined entry ID set
+   */
+  boolean isUndefined()
+  {
+    return candidates == UNBOUNDED;
+  }
+
+  long getCandidates()
+  {
+    return candidates;
+  }
+
+  long getReads()
+  {
+    return reads;
+  }
+
+  /**
+   * Returns the cost of evaluating both queries and intersecting their results.
+   *
+   * @param other
+   *          the cost of the other query
+   * @return the cost of the intersection
+   */
+  IndexQueryCost intersect(IndexQueryCost other)
+  {
+    if (!isKnown() || !other.isKnown())
+    {
+      return UNKNOWN;
+    }
+    return new IndexQueryCost(Math.min(candidates, other.candidates), addCapped(reads, other.reads));
+  }
+
+  /**
+   * Returns the cost of evaluating both queries and merging their results.
+   *
+   * @param other
+   *          the cost of the other query
+   * @return the cost of the union
+   */
+  IndexQueryCost union(IndexQueryCost other)
+  {
+    if (!isKnown() || !other.isKnown())
+    {
+      return UNKNOWN;
+    }
+    return new IndexQueryCost(addCapped(candidates, other.candidates), addCapped(reads, other.reads));
+  }
+
+  private static long addCapped(long a, long b)
+  {
+    final long sum = a + b;
+    return sum < 0 ? UNBOUNDED : sum;
+  }
+
+  /**
+   * Cheapest first: less candidates, then less reads. Unknown costs are ranked after the queries expected to return a
+   * defined entry ID set but before the ones expected to return an undefined entry ID set, which cannot help.
+   */
+  @Override
+  public int compareTo(IndexQueryCost other)
+  {
+    int cmp = Integer.compare(rank(), other.rank());
+    if (cmp == 0)
+    {
+      cmp = Long.compare(candidates, other.candidates);
+    }
+    return cmp != 0 ? cmp : Long.compare(reads, other.reads);
+  }
+
+  private int rank()
+  {
+    if (!isKnown())
+    {
+      return 1;
+    }
+    return isUndefined() ? 2 : 0;
+  }
+
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (this == obj)
+    {
+      return true;
+    }
+    if (obj instanceof IndexQueryCost)
+    {
+      final IndexQueryCost other = (IndexQueryCost) obj;
+      return candidates == other.candidates && reads == other.reads;
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return 31 * (int) (candidates ^ (candidates >>> 32)) + (int) (reads ^ (reads >>> 32));
+  }
+
+  @Override
+  public String toString()
+  {
+    if (!isKnown())
+    {
+      return "[ESTIMATE:UNKNOWN]";
+    }
+    return "[ESTIMATE:" + (isUndefined() ? "LIMIT-EXCEEDED" : candidates) + " READS:" + reads + "]";
+  }
+}
@@ -59,6 +59,12 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
       return newUndefinedSet();
     }
 
+    @Override
+    public IndexQueryCost estimateCost()
+    {
+      return IndexQueryCost.undefined(0);
+    }
+
     @Override
     public String toString()
     {
@@ -98,6 +104,17 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
       return entryIDs;
     }
 
+    @Override
+    public IndexQueryCost estimateCost()
+    {
+      IndexQueryCost cost = IndexQueryCost.undefined(0);
+      for (IndexQuery query : subIndexQueries)
+      {
+        cost = cost.intersect(query.estimateCost());
+      }
+      return cost;
+    }
+
     @Override
     public String toString()
     {
@@ -139,6 +156,17 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
       return newSetFromUnion(candidateSets);
     }
 
+    @Override
+    public IndexQueryCost estimateCost()
+    {
+      IndexQueryCost cost = IndexQueryCost.of(0, 0);
+      for (IndexQuery query : subIndexQueries)
+      {
+        cost = cost.union(query.estimateCost());
+      }
+      return cost;
+    }
+
     @Override
     public String toString()
     {
@@ -150,6 +178,10 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
 
   private static final String PRESENCE_INDEX_KEY = "presence";
   private static final String SEPARATOR = "\n  ";
+  /** A bound of a range query is assumed to select one out of this number of keys of the index. */
+  private static final long RANGE_BOUND_SELECTIVITY = 3;
+  /** Above this ratio of keys exceeding the index entry limit, any key is expected to exceed it. */
+  private static final double UNDEFINED_KEY_RATIO_THRESHOLD = 0.5;
 
   private final ReadableTransaction txn;
   /** The Map containing the string type identifier and the corresponding index. */
@@ -206,6 +238,21 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
           return entrySet;
         }
 
+        @Override
+        public IndexQueryCost estimateCost()
+        {
+          DefaultIndex index = attributeIndex.getNameToIndexes().get(indexID);
+          if (index == null)
+          {
+            index = attributeIndex.getNameToIndexes().get(indexID + AttributeIndex.PROTECTED_INDEX_ID);
+            if (index == null)
+            {
+              return createMatchAllQuery().estimateCost();
+            }
+          }
+          return estimateSingleKeyCost(index);
+        }
+
         @Override
         public String toString()
         {
@@ -235,6 +282,36 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
         return entrySet;
       }
 
+      @Override
+      public IndexQueryCost estimateCost()
+      {
+        final DefaultIndex index = attributeIndex.getNameToIndexes().get(indexID);
+        if (index == null)
+        {
+          return createMatchAllQuery().estimateCost();
+        }
+        if (!index.isTrusted())
+        {
+          return IndexQueryCost.undefined(0);
+        }
+        final IndexStatistics statistics = index.getStatistics();
+        if (statistics == null)
+        {
+          return IndexQueryCost.UNKNOWN;
+        }
+
+        // Without knowledge of the key distribution, assume each bound selects a third of the keys.
+        final long divisor = (lowerBound.length() > 0 ? RANGE_BOUND_SELECTIVITY : 1)
+            * (upperBound.length() > 0 ? RANGE_BOUND_SELECTIVITY : 1);
+        final long nbKeys = statistics.getKeyCount() / divisor;
+        final long nbEntryIDs = statistics.getEntryIDCount() / divisor;
+        if (statistics.getUndefinedKeyCount() / divisor > 0 || nbEntryIDs > IndexFilter.CURSOR_ENTRY_LIMIT)
+        {
+          return IndexQueryCost.undefined(nbKeys);
+        }
+        return IndexQueryCost.of(nbEntryIDs, nbKeys);
+      }
+
       private final EntryIDSet readRange(Index index, ReadableTransaction txn, ByteSequence lower, ByteSequence upper,
           boolean lowerIncluded, boolean upperIncluded)
       {
@@ -371,6 +448,13 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
           return entrySet;
         }
 
+        @Override
+        public IndexQueryCost estimateCost()
+        {
+          final DefaultIndex index = attributeIndex.getNameToIndexes().get(PRESENCE_INDEX_KEY);
+          return index != null ? estimateSingleKeyCost(index) : IndexQueryCost.undefined(0);
+        }
+
         @Override
         public String toString()
         {
@@ -379,6 +463,21 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
       };
   }
 
+  /** Estimates the cost of reading one key of the provided index, assuming it is an average key. */
+  private static IndexQueryCost estimateSingleKeyCost(DefaultIndex index)
+  {
+    final IndexStatistics statistics = index.getStatistics();
+    if (statistics == null || !index.isTrusted())
+    {
+      return IndexQueryCost.UNKNOWN;
+    }
+    if (statistics.getUndefinedKeyRatio() >= UNDEFINED_KEY_RATIO_THRESHOLD)
+    {
+      return IndexQueryCost.undefined(1);
+    }
+    return IndexQueryCost.of(statistics.getAverageEntryIDsPerKey(), 1);
+  }
+
   private static void appendExceptionError(LocalizableMessageBuilder debugMessage, LocalizableMessage msg)
   {
     if (debugMessage != null)
@@ -0,0 +1,244 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+
+/**
+ * Approximate statistics about the keys of an index, used to estimate the cost of index queries.
+ * <p>
+ * The statistics are a histogram of the number of entry IDs per key, where bucket {@code n} counts the keys holding
+ * between {@code 2^n} and {@code 2^(n+1)-1} entry IDs, plus the number of keys which exceeded the index entry limit.
+ * They are maintained incrementally while the index is updated, so they are not transactional: they are only meant to
+ * give an order of magnitude. This class is thread-safe.
+ */
+final class IndexStatistics
+{
+  /** Size recorded for a key which does not exist. */
+  static final long NO_KEY = 0;
+  /** Size recorded for a key which exceeded the index entry limit. */
+  static final long UNDEFINED = -1;
+
+  /** Number of buckets dedicated to defined entry ID sets. */
+  private static final int NB_SIZE_BUCKETS = 32;
+  private static final int UNDEFINED_BUCKET = NB_SIZE_BUCKETS;
+  private static final byte FORMAT_VERSION = 0x01;
+
+  private final AtomicLongArray histogram = new AtomicLongArray(NB_SIZE_BUCKETS + 1);
+  private final AtomicLong nbEntryIDs = new AtomicLong();
+  private volatile boolean modified;
+
+  /**
+   * Returns the size to record for the provided entry ID set.
+   *
+   * @param entryIDSet
+   *          the entry IDs stored for a key, or {@code null} if the key does not exist
+   * @return the size to provide to {@link #recordChange(long, long)}
+   */
+  static long sizeOf(EntryIDSet entryIDSet)
+  {
+    if (entryIDSet == null)
+    {
+      return NO_KEY;
+    }
+    return entryIDSet.isDefined() ? entryIDSet.size() : UNDEFINED;
+  }
+
+  /**
+   * Records the replacement of the entry ID set of a key.
+   *
+   * @param oldSize
+   *          The number of entry IDs previously stored for the key, {@link #NO_KEY} if the key did not exist or
+   *          {@link #UNDEFINED} if it exceeded the index entry limit
+   * @param newSize
+   *          The number of entry IDs now stored for the key, {@link #NO_KEY} if the key has been removed or
+   *          {@link #UNDEFINED} if it exceeded the index entry limit
+   */
+  void recordChange(long oldSize, long newSize)
+  {
+    if (oldSize != NO_KEY)
+    {
+      histogram.decrementAndGet(bucketOf(oldSize));
+      nbEntryIDs.addAndGet(-Math.max(0, oldSize));
+    }
+    if (newSize != NO_KEY)
+    {
+      histogram.incrementAndGet(bucketOf(newSize));
+      nbEntryIDs.addAndGet(Math.max(0, newSize));
+    }
+    modified = true;
+  }
+
+  private static int bucketOf(long size)
+  {
+    if (size == UNDEFINED)
+    {
+      return UNDEFINED_BUCKET;
+    }
+    return size <= 1 ? 0 : Math.min(63 - Long.numberOfLeadingZeros(size), NB_SIZE_BUCKETS - 1);
+  }
+
+  /**
+   * Returns the number of keys in the index, including the ones which exceeded the index entry limit.
+   *
+   * @return the number of keys in the index
+   */
+  long getKeyCount()
+  {
+    long count = 0;
+    for (int i = 0; i < histogram.length(); i++)
+    {
+      count += Math.max(0, histogram.get(i));
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of keys which exceeded the index entry limit.
+   *
+   * @return the number of keys which exceeded the index entry limit
+   */
+  long getUndefinedKeyCount()
+  {
+    return Math.max(0, histogram.get(UNDEFINED_BUCKET));
+  }
+
+  /**
+   * Returns the number of entry IDs stored in the keys which did not exceed the index entry limit.
+   *
+   * @return the number of entry IDs stored in the index
+   */
+  long getEntryIDCount()
+  {
+    return Math.max(0, nbEntryIDs.get());
+  }
+
+  /**
+   * Returns the number of keys having a number of entry IDs in the given histogram bucket.
+   *
+   * @param bucket
+   *          the bucket, where {@code n} stands for sets having between {@code 2^n} and {@code 2^(n+1)-1} entry IDs
+   * @return the number of keys in this bucket
+   */
+  long getKeyCount(int bucket)
+  {
+    return Math.max(0, histogram.get(bucket));
+  }
+
+  /**
+   * Returns the ratio of keys which exceeded the index entry limit.
+   *
+   * @return a ratio between 0 and 1
+   */
+  double getUndefinedKeyRatio()
+  {
+    final long nbKeys = getKeyCount();
+    return nbKeys != 0 ? (double) getUndefinedKeyCount() / nbKeys : 0;
+  }
+
+  /**
+   * Returns the average number of entry IDs stored by the keys which did not exceed the index entry limit.
+   *
+   * @return the average number of entry IDs per key, 0 if the index is empty
+   */
+  long getAverageEntryIDsPerKey()
+  {
+    final long nbDefinedKeys = getKeyCount() - getUndefinedKeyCount();
+    return nbDefinedKeys > 0 ? (getEntryIDCount() + nbDefinedKeys - 1) / nbDefinedKeys : 0;
+  }
+
+  /**
+   * Indicates whether these statistics changed since they were last persisted.
+   *
+   * @return {@code true} if these statistics should be persisted
+   */
+  boolean isModified()
+  {
+    return modified;
+  }
+
+  /**
+   * Appends the binary representation of these statistics and marks them as persisted.
+   *
+   * @param builder
+   *          the builder where to append the statistics
+   * @return the provided builder
+   */
+  ByteStringBuilder appendTo(ByteStringBuilder builder)
+  {
+    modified = false;
+    builder.appendByte(FORMAT_VERSION);
+    builder.appendCompactUnsigned(getEntryIDCount());
+    builder.appendByte(histogram.length());
+    for (int i = 0; i < histogram.length(); i++)
+    {
+      builder.appendCompactUnsigned(getKeyCount(i));
+    }
+    return builder;
+  }
+
+  /**
+   * Reads statistics previously written by {@link #appendTo(ByteStringBuilder)}.
+   *
+   * @param reader
+   *          the reader positioned on the statistics
+   * @return the statistics or {@code null} if they are written in an unknown format
+   */
+  static IndexStatistics readFrom(ByteSequenceReader reader)
+  {
+    if (reader.remaining() == 0 || reader.readByte() != FORMAT_VERSION)
+    {
+      return null;
+    }
+    final IndexStatistics stats = new IndexStatistics();
+    stats.nbEntryIDs.set(reader.readCompactUnsignedLong());
+    final int nbBuckets = reader.readByte();
+    for (int i = 0; i < nbBuckets; i++)
+    {
+      final long count = reader.readCompactUnsignedLong();
+      if (i < stats.histogram.length())
+      {
+        stats.histogram.set(i, count);
+      }
+    }
+    return stats;
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("keys=").append(getKeyCount());
+    sb.append(" ids=").append(getEntryIDCount());
+    sb.append(" limitExceeded=").append(getUndefinedKeyCount());
+    sb.append(" histogram=[");
+    String separator = "";
+    for (int i = 0; i < NB_SIZE_BUCKETS; i++)
+    {
+      final long count = getKeyCount(i);
+      if (count != 0)
+      {
+        sb.append(separator).append(1L << i).append(':').append(count);
+        separator = " ";
+      }
+    }
+    return sb.append("]").toString();
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.messages.BackendMessages.*;
+
+import java.util.Arrays;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DecodeException;
+
+/**
+ * Fast LZ77 compression codec in the spirit of LZ4, favoring decompression speed over compression ratio.
+ * <p>
+ * The compressed data is a list of sequences, each made of a token byte, literal bytes copied as is, and a match
+ * copying previously decompressed bytes:
+ *
+ * <pre>
+ * sequence ::= token [extra literals length] literals [offset [extra match length]]
+ * token    ::= (literals length &lt;&lt; 4) | (match length - 4), 15 meaning the length continues in the next bytes
+ * offset   ::= 2 bytes little endian distance to the start of the match
+ * </pre>
+ *
+ * The last sequence only has literals. Matches can reference the shared dictionary, which is logically placed before
+ * the decompressed data, so that even small entries can refer to the values common to all the entries.
+ */
+final class LZEntryCompressionCodec extends EntryCompressionCodec
+{
+  private static final byte ID = 0x02;
+
+  private static final int MIN_MATCH = 4;
+  private static final int MAX_OFFSET = 0xFFFF;
+  /** The last bytes are always literals, which makes the end of the data easy to detect. */
+  private static final int LAST_LITERALS = 5;
+  /** Matches cannot start in the last bytes of the data. */
+  private static final int MATCH_FIND_LIMIT = 12;
+  private static final int RUN_MASK = 15;
+  private static final int HASH_LOG = 12;
+  private static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+  /** Controls how fast the compressor skips data which does not compress. */
+  private static final int SKIP_TRIGGER = 6;
+
+  /** Compression buffers, reused by each thread. */
+  private static final ThreadLocal<Compressor> COMPRESSORS = new ThreadLocal<Compressor>()
+  {
+    @Override
+    protected Compressor initialValue()
+    {
+      return new Compressor();
+    }
+  };
+
+  @Override
+  byte getID()
+  {
+    return ID;
+  }
+
+  @Override
+  boolean supportsDictionaries()
+  {
+    return true;
+  }
+
+  @Override
+  void compress(ByteSequence data, CompressionDictionary dictionary, ByteStringBuilder output)
+  {
+    final Compressor compressor = COMPRESSORS.get();
+    final int srcLength = data.length();
+    final int start = compressor.reset(dictionary, srcLength);
+    data.copyTo(compressor.window, start);
+
+    final int offset = output.length();
+    output.setLength(offset + maxCompressedLength(srcLength));
+    final int length = compressor.compress(start, start + srcLength, output.getBackingArray(), offset);
+    output.setLength(offset + length);
+  }
+
+  private static int maxCompressedLength(int length)
+  {
+    return length + length / 255 + 16;
+  }
+
+  @Override
+  void decompress(ByteSequence data, CompressionDictionary dictionary, int uncompressedLength,
+      ByteStringBuilder output) throws DecodeException
+  {
+    final byte[] dict = dictionary != null ? dictionary.getBytes() : new byte[0];
+    final int outStart = output.length();
+    output.setLength(outStart + uncompressedLength);
+    final byte[] out = output.getBackingArray();
+    final int outEnd = outStart + uncompressedLength;
+
+    final int inEnd = data.length();
+    int ip = 0;
+    int op = outStart;
+    while (true)
+    {
+      if (ip >= inEnd)
+      {
+        throw corrupted("unexpected end of data");
+      }
+      final int token = data.byteAt(ip++) & 0xFF;
+
+      // Literals
+      int literalLength = token >>> 4;
+      if (literalLength == RUN_MASK)
+      {
+        int b;
+        do
+        {
+          if (ip >= inEnd)
+          {
+            throw corrupted("unexpected end of data");
+          }
+          b = data.byteAt(ip++) & 0xFF;
+          literalLength += b;
+        }
+        while (b == 255);
+      }
+      if (ip + literalLength > inEnd || op + literalLength > outEnd)
+      {
+        throw corrupted("literals out of bounds");
+      }
+      data.subSequence(ip, ip + literalLength).copyTo(out, op);
+      ip += literalLength;
+      op += literalLength;
+      if (ip == inEnd)
+      {
+        break;
+      }
+
+      // Match
+      if (ip + 2 > inEnd)
+      {
+        throw corrupted("unexpected end of data");
+      }
+      final int offset = (data.byteAt(ip) & 0xFF) | (data.byteAt(ip + 1) & 0xFF) << 8;
+      ip += 2;
+      int matchLength = token & RUN_MASK;
+      if (matchLength == RUN_MASK)
+      {
+        int b;
+        do
+        {
+          if (ip >= inEnd)
+          {
+            throw corrupted("unexpected end of data");
+          }
+          b = data.byteAt(ip++) & 0xFF;
+          matchLength += b;
+        }
+        while (b == 255);
+      }
+      matchLength += MIN_MATCH;
+      if (offset == 0 || op + matchLength > outEnd)
+      {
+        throw corrupted("match out of bounds");
+      }
+
+      int ref = op - offset;
+      if (ref < outStart)
+      {
+        // The match starts in the dictionary
+        final int dictPos = dict.length - (outStart - ref);
+        if (dictPos < 0)
+        {
+          throw corrupted("match out of bounds");
+        }
+        final int fromDict = Math.min(matchLength, dict.length - dictPos);
+        System.arraycopy(dict, dictPos, out, op, fromDict);
+        op += fromDict;
+        matchLength -= fromDict;
+        ref = outStart;
+      }
+      if (op - ref >= matchLength)
+      {
+        System.arraycopy(out, ref, out, op, matchLength);
+        op += matchLength;
+      }
+      else
+      {
+        // Overlapping copy, which repeats the last bytes
+        for (int i = 0; i < matchLength; i++)
+        {
+          out[op++] = out[ref++];
+        }
+      }
+    }
+    if (op != outEnd)
+    {
+      throw corrupted("decompressed length mismatch");
+    }
+  }
+
+  private static DecodeException corrupted(String reason)
+  {
+    return DecodeException.error(ERR_CANNOT_DECOMPRESS_ENTRY.get(reason));
+  }
+
+  @Override
+  public String toString()
+  {
+    return "lz";
+  }
+
+  /** Compression state of a thread: the data to compress preceded by the dictionary, and the match finder. */
+  private static final class Compressor
+  {
+    private final int[] hashTable = new int[HASH_TABLE_SIZE];
+    private byte[] window = new byte[1024];
+    /** The dictionary currently copied at the start of the window. */
+    private CompressionDictionary windowDictionary;
+    /** The dictionary whose sequence positions are in {@link #dictionaryHashTable}. */
+    private CompressionDictionary hashedDictionary;
+    private final int[] dictionaryHashTable = new int[HASH_TABLE_SIZE];
+
+    /**
+     * Prepares the window for compressing data.
+     *
+     * @return the position where the data to compress must be copied in the window
+     */
+    private int reset(CompressionDictionary dictionary, int length)
+    {
+      final int dictLength = dictionary != null ? dictionary.getBytes().length : 0;
+      if (window.length < dictLength + length)
+      {
+        window = new byte[Math.max(window.length * 2, dictLength + length)];
+        windowDictionary = null;
+      }
+      if (dictionary == null)
+      {
+        // The data overwrites the dictionary
+        windowDictionary = null;
+        Arrays.fill(hashTable, -1);
+        return 0;
+      }
+      if (windowDictionary != dictionary)
+      {
+        System.arraycopy(dictionary.getBytes(), 0, window, 0, dictLength);
+        windowDictionary = dictionary;
+      }
+      if (hashedDictionary != dictionary)
+      {
+        Arrays.fill(dictionaryHashTable, -1);
+        for (int i = 0; i + MIN_MATCH <= dictLength; i++)
+        {
+          dictionaryHashTable[hash(readInt(window, i))] = i;
+        }
+        hashedDictionary = dictionary;
+      }
+      System.arraycopy(dictionaryHashTable, 0, hashTable, 0, HASH_TABLE_SIZE);
+      return dictLength;
+    }
+
+    private int compress(final int start, final int end, final byte[] out, final int outStart)
+    {
+      int op = outStart;
+      int anchor = start;
+      if (end - start >= MATCH_FIND_LIMIT + 1)
+      {
+        final int matchFindLimit = end - MATCH_FIND_LIMIT;
+        final int matchLimit = end - LAST_LITERALS;
+        int ip = start;
+        while (ip < matchFindLimit)
+        {
+          final int sequence = readInt(window, ip);
+          final int h = hash(sequence);
+          int ref = hashTable[h];
+          hashTable[h] = ip;
+          if (ref < 0 || ip - ref > MAX_OFFSET || readInt(window, ref) != sequence)
+          {
+            ip += 1 + ((ip - anchor) >>> SKIP_TRIGGER);
+            continue;
+          }
+
+          // Extend the match backwards, then forwards
+          while (ip > anchor && ref > 0 && window[ip - 1] == window[ref - 1])
+          {
+            ip--;
+            ref--;
+          }
+          int matchLength = MIN_MATCH;
+          while (ip + matchLength < matchLimit && window[ref + matchLength] == window[ip + matchLength])
+          {
+            matchLength++;
+          }
+
+          op = writeSequence(out, op, anchor, ip - anchor, ip - ref, matchLength);
+          ip += matchLength;
+          anchor = ip;
+          if (ip < matchFindLimit)
+          {
+            hashTable[hash(readInt(window, ip - 2))] = ip - 2;
+          }
+        }
+      }
+      return writeLastLiterals(out, op, anchor, end - anchor) - outStart;
+    }
+
+    private int writeSequence(byte[] out, int op, int literals, int literalLength, int offset, int matchLength)
+    {
+      final int tokenPos = op++;
+      int token;
+      if (literalLength >= RUN_MASK)
+      {
+        token = RUN_MASK << 4;
+        op = writeLength(out, op, literalLength - RUN_MASK);
+      }
+      else
+      {
+        token = literalLength << 4;
+      }
+      System.arraycopy(window, literals, out, op, literalLength);
+      op += literalLength;
+
+      out[op++] = (byte) offset;
+      out[op++] = (byte) (offset >>> 8);
+
+      final int extraMatchLength = matchLength - MIN_MATCH;
+      if (extraMatchLength >= RUN_MASK)
+      {
+        token |= RUN_MASK;
+        op = writeLength(out, op, extraMatchLength - RUN_MASK);
+      }
+      else
+      {
+        token |= extraMatchLength;
+      }
+      out[tokenPos] = (byte) token;
+      return op;
+    }
+
+    private int writeLastLiterals(byte[] out, int op, int literals, int literalLength)
+    {
+      if (literalLength >= RUN_MASK)
+      {
+        out[op++] = (byte) (RUN_MASK << 4);
+        op = writeLength(out, op, literalLength - RUN_MASK);
+      }
+      else
+      {
+        out[op++] = (byte) (literalLength << 4);
+      }
+      System.arraycopy(window, literals, out, op, literalLength);
+      return op + literalLength;
+    }
+
+    private static int writeLength(byte[] out, int op, int length)
+    {
+      int remaining = length;
+      while (remaining >= 255)
+      {
+        out[op++] = (byte) 255;
+        remaining -= 255;
+      }
+      out[op++] = (byte) remaining;
+      return op;
+    }
+
+    private static int readInt(byte[] buffer, int pos)
+    {
+      return (buffer[pos] & 0xFF)
+          | (buffer[pos + 1] & 0xFF) << 8
+          | (buffer[pos + 2] & 0xFF) << 16
+          | (buffer[pos + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence)
+    {
+      return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+  }
+}
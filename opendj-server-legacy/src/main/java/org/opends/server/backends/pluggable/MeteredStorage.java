@@ -0,0 +1,407 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.StorageMetrics.TreeMetrics;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.Importer;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.SequentialCursor;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.StorageStatus;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.UpdateFunction;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.types.BackupConfig;
+import org.opends.server.types.BackupDirectory;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.RestoreConfig;
+
+/**
+ * Decorates a {@link Storage} in order to record the I/O metrics of each of its trees in {@link StorageMetrics}.
+ * Unlike {@link TracedStorage}, it is always enabled: it only increments a few counters per operation.
+ */
+final class MeteredStorage implements Storage
+{
+  /** Decorates a {@link Cursor} in order to record the number and the latency of its steps. */
+  private static final class MeteredCursor implements Cursor<ByteString, ByteString>
+  {
+    private final Cursor<ByteString, ByteString> cursor;
+    private final TreeMetrics metrics;
+
+    private MeteredCursor(final Cursor<ByteString, ByteString> cursor, final TreeMetrics metrics)
+    {
+      this.cursor = cursor;
+      this.metrics = metrics;
+      metrics.cursors.incrementAndGet();
+    }
+
+    private boolean recordStep(final long startNanos, final boolean found)
+    {
+      metrics.cursorLatencies.record(System.nanoTime() - startNanos);
+      metrics.cursorSteps.incrementAndGet();
+      return found;
+    }
+
+    @Override
+    public boolean positionToKey(final ByteSequence key)
+    {
+      final long start = System.nanoTime();
+      return recordStep(start, cursor.positionToKey(key));
+    }
+
+    @Override
+    public boolean positionToKeyOrNext(final ByteSequence key)
+    {
+      final long start = System.nanoTime();
+      return recordStep(start, cursor.positionToKeyOrNext(key));
+    }
+
+    @Override
+    public boolean positionToLastKey()
+    {
+      final long start = System.nanoTime();
+      return recordStep(start, cursor.positionToLastKey());
+    }
+
+    @Override
+    public boolean positionToIndex(final int index)
+    {
+      final long start = System.nanoTime();
+      return recordStep(start, cursor.positionToIndex(index));
+    }
+
+    @Override
+    public boolean next()
+    {
+      final long start = System.nanoTime();
+      return recordStep(start, cursor.next());
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return cursor.isDefined();
+    }
+
+    @Override
+    public ByteString getKey() throws NoSuchElementException
+    {
+      return cursor.getKey();
+    }
+
+    @Override
+    public ByteString getValue() throws NoSuchElementException
+    {
+      final ByteString value = cursor.getValue();
+      metrics.bytesRead.addAndGet(value.length());
+      return value;
+    }
+
+    @Override
+    public void delete() throws NoSuchElementException, UnsupportedOperationException
+    {
+      final long start = System.nanoTime();
+      cursor.delete();
+      metrics.writeLatencies.record(System.nanoTime() - start);
+      metrics.deletes.incrementAndGet();
+    }
+
+    @Override
+    public void close()
+    {
+      cursor.close();
+    }
+  }
+
+  /** Decorates an {@link Importer} in order to record the records and the bytes imported. */
+  private final class MeteredImporter implements Importer
+  {
+    private final Importer importer;
+
+    private MeteredImporter(final Importer importer)
+    {
+      this.importer = importer;
+    }
+
+    @Override
+    public void clearTree(final TreeName name)
+    {
+      importer.clearTree(name);
+    }
+
+    @Override
+    public void put(final TreeName name, final ByteSequence key, final ByteSequence value)
+    {
+      importer.put(name, key, value);
+      final TreeMetrics treeMetrics = metrics.get(name);
+      treeMetrics.writes.incrementAndGet();
+      treeMetrics.bytesWritten.addAndGet(key.length() + value.length());
+    }
+
+    @Override
+    public ByteString read(final TreeName name, final ByteSequence key)
+    {
+      return importer.read(name, key);
+    }
+
+    @Override
+    public SequentialCursor<ByteString, ByteString> openCursor(final TreeName name)
+    {
+      return importer.openCursor(name);
+    }
+
+    @Override
+    public void close()
+    {
+      importer.close();
+    }
+  }
+
+  /** Decorates a {@link ReadableTransaction} in order to record the reads of each tree. */
+  private final class MeteredReadableTransaction implements ReadableTransaction
+  {
+    private final ReadableTransaction txn;
+
+    private MeteredReadableTransaction(final ReadableTransaction txn)
+    {
+      this.txn = txn;
+    }
+
+    @Override
+    public ByteString read(final TreeName name, final ByteSequence key)
+    {
+      return MeteredStorage.this.read(txn, name, key);
+    }
+
+    @Override
+    public Cursor<ByteString, ByteString> openCursor(final TreeName name)
+    {
+      return new MeteredCursor(txn.openCursor(name), metrics.get(name));
+    }
+
+    @Override
+    public long getRecordCount(final TreeName name)
+    {
+      return txn.getRecordCount(name);
+    }
+  }
+
+  /** Decorates a {@link WriteableTransaction} in order to record the reads and writes of each tree. */
+  private final class MeteredWriteableTransaction implements WriteableTransaction
+  {
+    private final WriteableTransaction txn;
+
+    private MeteredWriteableTransaction(final WriteableTransaction txn)
+    {
+      this.txn = txn;
+    }
+
+    @Override
+    public ByteString read(final TreeName name, final ByteSequence key)
+    {
+      return MeteredStorage.this.read(txn, name, key);
+    }
+
+    @Override
+    public Cursor<ByteString, ByteString> openCursor(final TreeName name)
+    {
+      return new MeteredCursor(txn.openCursor(name), metrics.get(name));
+    }
+
+    @Override
+    public long getRecordCount(final TreeName name)
+    {
+      return txn.getRecordCount(name);
+    }
+
+    @Override
+    public void openTree(final TreeName name, final boolean createOnDemand)
+    {
+      txn.openTree(name, createOnDemand);
+    }
+
+    @Override
+    public void deleteTree(final TreeName name)
+    {
+      txn.deleteTree(name);
+    }
+
+    @Override
+    public void put(final TreeName name, final ByteSequence key, final ByteSequence value)
+    {
+      final long start = System.nanoTime();
+      txn.put(name, key, value);
+      recordWrite(metrics.get(name), start, key.length() + value.length());
+    }
+
+    @Override
+    public boolean update(final TreeName name, final ByteSequence key, final UpdateFunction f)
+    {
+      final long start = System.nanoTime();
+      final long[] newValueLength = new long[1];
+      final boolean isUpdated = txn.update(name, key, new UpdateFunction()
+      {
+        @Override
+        public ByteSequence computeNewValue(final ByteSequence oldValue)
+        {
+          final ByteSequence newValue = f.computeNewValue(oldValue);
+          newValueLength[0] = newValue != null ? newValue.length() : 0;
+          return newValue;
+        }
+      });
+      recordWrite(metrics.get(name), start, isUpdated ? key.length() + newValueLength[0] : 0);
+      return isUpdated;
+    }
+
+    @Override
+    public boolean delete(final TreeName name, final ByteSequence key)
+    {
+      final long start = System.nanoTime();
+      final boolean isDeleted = txn.delete(name, key);
+      final TreeMetrics treeMetrics = metrics.get(name);
+      treeMetrics.writeLatencies.record(System.nanoTime() - start);
+      treeMetrics.deletes.incrementAndGet();
+      return isDeleted;
+    }
+
+    private void recordWrite(final TreeMetrics treeMetrics, final long startNanos, final long length)
+    {
+      treeMetrics.writeLatencies.record(System.nanoTime() - startNanos);
+      treeMetrics.writes.incrementAndGet();
+      treeMetrics.bytesWritten.addAndGet(length);
+    }
+  }
+
+  private final Storage storage;
+  private final StorageMetrics metrics;
+
+  MeteredStorage(final Storage storage, final StorageMetrics metrics)
+  {
+    this.storage = storage;
+    this.metrics = metrics;
+  }
+
+  private ByteString read(final ReadableTransaction txn, final TreeName name, final ByteSequence key)
+  {
+    final long start = System.nanoTime();
+    final ByteString value = txn.read(name, key);
+    final TreeMetrics treeMetrics = metrics.get(name);
+    treeMetrics.readLatencies.record(System.nanoTime() - start);
+    treeMetrics.reads.incrementAndGet();
+    if (value != null)
+    {
+      treeMetrics.bytesRead.addAndGet(value.length());
+    }
+    return value;
+  }
+
+  @Override
+  public void open(final AccessMode accessMode) throws Exception
+  {
+    storage.open(accessMode);
+  }
+
+  @Override
+  public <T> T read(final ReadOperation<T> readOperation) throws Exception
+  {
+    return storage.read(new ReadOperation<T>()
+    {
+      @Override
+      public T run(final ReadableTransaction txn) throws Exception
+      {
+        return readOperation.run(new MeteredReadableTransaction(txn));
+      }
+    });
+  }
+
+  @Override
+  public void write(final WriteOperation writeOperation) throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(final WriteableTransaction txn) throws Exception
+      {
+        writeOperation.run(new MeteredWriteableTransaction(txn));
+      }
+    });
+  }
+
+  @Override
+  public Importer startImport() throws ConfigException, StorageRuntimeException
+  {
+    return new MeteredImporter(storage.startImport());
+  }
+
+  @Override
+  public void removeStorageFiles() throws StorageRuntimeException
+  {
+    storage.removeStorageFiles();
+  }
+
+  @Override
+  public StorageStatus getStorageStatus()
+  {
+    return storage.getStorageStatus();
+  }
+
+  @Override
+  public boolean supportsBackupAndRestore()
+  {
+    return storage.supportsBackupAndRestore();
+  }
+
+  @Override
+  public void createBackup(final BackupConfig backupConfig) throws DirectoryException
+  {
+    storage.createBackup(backupConfig);
+  }
+
+  @Override
+  public void removeBackup(final BackupDirectory backupDirectory, final String backupID) throws DirectoryException
+  {
+    storage.removeBackup(backupDirectory, backupID);
+  }
+
+  @Override
+  public void restoreBackup(final RestoreConfig restoreConfig) throws DirectoryException
+  {
+    storage.restoreBackup(restoreConfig);
+  }
+
+  @Override
+  public Set<TreeName> listTrees()
+  {
+    return storage.listTrees();
+  }
+
+  @Override
+  public void close()
+  {
+    storage.close();
+  }
+}
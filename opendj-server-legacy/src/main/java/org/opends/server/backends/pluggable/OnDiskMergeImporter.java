@@ -31,6 +31,7 @@
 package org.opends.server.backends.pluggable;
 
 import static java.nio.channels.FileChannel.*;
+import static java.nio.file.StandardCopyOption.*;
 import static java.nio.file.StandardOpenOption.*;
 import static org.forgerock.util.Utils.*;
 import static org.opends.messages.BackendMessages.*;
@@ -38,8 +39,14 @@ import static org.opends.server.util.DynamicConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 import static org.forgerock.opendj.ldap.ResultCode.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,6 +58,9 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -60,6 +70,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -93,6 +105,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.config.server.ConfigException;
@@ -104,6 +117,7 @@ import org.forgerock.opendj.ldap.schema.UnknownSchemaElementException;
 import org.forgerock.opendj.ldap.spi.Indexer;
 import org.forgerock.opendj.server.config.meta.BackendIndexCfgDefn.IndexType;
 import org.forgerock.opendj.server.config.server.BackendIndexCfg;
+import org.forgerock.opendj.server.config.server.BackendVLVIndexCfg;
 import org.forgerock.opendj.server.config.server.PluggableBackendCfg;
 import org.forgerock.util.Reject;
 import org.forgerock.util.Utils;
@@ -114,12 +128,15 @@ import org.opends.server.backends.pluggable.AttributeIndex.MatchingRuleIndex;
 import org.opends.server.backends.pluggable.CursorTransformer.SequentialCursorAdapter;
 import org.opends.server.backends.pluggable.DN2ID.TreeVisitor;
 import org.opends.server.backends.pluggable.ImportLDIFReader.EntryInformation;
+import org.opends.server.backends.pluggable.ImportLDIFReader.LDIFChunk;
 import org.opends.server.backends.pluggable.OnDiskMergeImporter.BufferPool.MemoryBuffer;
+import org.opends.server.backends.pluggable.OnDiskMergeImporter.ExternalSortChunk.SortedFile;
 import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.Importer;
 import org.opends.server.backends.pluggable.spi.ReadOperation;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
 import org.opends.server.backends.pluggable.spi.SequentialCursor;
+import org.opends.server.backends.pluggable.spi.Storage;
 import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
 import org.opends.server.backends.pluggable.spi.TreeName;
 import org.opends.server.backends.pluggable.spi.UpdateFunction;
@@ -217,14 +234,20 @@ final class OnDiskMergeImporter
         try (final LDIFReaderSource source =
             new LDIFReaderSource(rootContainer, importConfig, PHASE1_IMPORTER_THREAD_NAME, threadCount))
         {
-          final File tempDir = prepareTempDir(backendCfg, importConfig.getTmpDirectory());
-          try (final Importer dbStorage = rootContainer.getStorage().startImport())
+          final File tempDir = getTempDir(backendCfg, importConfig.getTmpDirectory());
+          final ImportCheckpoint checkpoint =
+              newCheckpoint(tempDir, importFingerprint(backendCfg, importConfig), source);
+          boolean keepTempDir = false;
+          try (final ReopenableImporter dbStorage = new ReopenableImporter(rootContainer.getStorage()))
           {
             final Collection<EntryContainer> entryContainers = rootContainer.getEntryContainers();
             final AbstractTwoPhaseImportStrategy importStrategy =
                 new ExternalSortAndImportStrategy(entryContainers, dbStorage, tempDir, bufferPool, sorter);
-            importer = new OnDiskMergeImporter(PHASE2_IMPORTER_THREAD_NAME, importStrategy);
+            importer = new OnDiskMergeImporter(PHASE2_IMPORTER_THREAD_NAME, importStrategy, checkpoint);
+            // Keep the checkpoint if the import fails, so that the next import of the same data resumes from it
+            keepTempDir = checkpoint != null;
             importer.doImport(source);
+            keepTempDir = false;
           }
           finally
           {
@@ -236,22 +259,28 @@ final class OnDiskMergeImporter
               System.gc();
               Runtime.getRuntime().runFinalization();
             }
-            recursiveDelete(tempDir);
+            if (!keepTempDir || !checkpoint.isSaved() || importConfig.isCancelled())
+            {
+              recursiveDelete(tempDir);
+            }
           }
           logger.info(NOTE_IMPORT_PHASE_STATS,
                       importer.getTotalTimeInMillis() / 1000,
                       importer.getPhaseOneTimeInMillis() / 1000,
                       importer.getPhaseTwoTimeInMillis() / 1000);
 
+          final long entriesRead = checkpoint != null ? checkpoint.entriesRead : source.getEntriesRead();
+          final long entriesIgnored = checkpoint != null ? checkpoint.entriesIgnored : source.getEntriesIgnored();
+          final long entriesRejected = checkpoint != null ? checkpoint.entriesRejected : source.getEntriesRejected();
           final long importTime = System.currentTimeMillis() - startTime;
           float rate = 0;
           if (importTime > 0)
           {
-            rate = 1000f * source.getEntriesRead() / importTime;
+            rate = 1000f * entriesRead / importTime;
           }
-          logger.info(NOTE_IMPORT_FINAL_STATUS, source.getEntriesRead(), importer.getImportedCount(), source
-              .getEntriesIgnored(), source.getEntriesRejected(), 0, importTime / 1000, rate);
-          return new LDIFImportResult(source.getEntriesRead(), source.getEntriesRejected(), source.getEntriesIgnored());
+          logger.info(NOTE_IMPORT_FINAL_STATUS, entriesRead, importer.getImportedCount(), entriesIgnored,
+              entriesRejected, 0, importTime / 1000, rate);
+          return new LDIFImportResult(entriesRead, entriesRejected, entriesIgnored);
         }
       }
       catch (IOException e)
@@ -260,6 +289,99 @@ final class OnDiskMergeImporter
       }
     }
 
+    /**
+     * Indicates whether an import of the provided LDIF data can resume from the checkpoint saved by a previous import
+     * which did not complete. In this case, the backend must not be cleared before the import.
+     *
+     * @param backendCfg
+     *          the configuration of the backend
+     * @param importConfig
+     *          the configuration of the import
+     * @return {@code true} if the import will resume from a checkpoint
+     * @throws ConfigException
+     *           if the configuration of the backend indexes cannot be read
+     */
+    static boolean canResumeImport(PluggableBackendCfg backendCfg, LDIFImportConfig importConfig)
+        throws ConfigException
+    {
+      final String fingerprint = importFingerprint(backendCfg, importConfig);
+      return fingerprint != null
+          && ImportCheckpoint.load(getTempDir(backendCfg, importConfig.getTmpDirectory()), fingerprint) != null;
+    }
+
+    /**
+     * Returns the checkpoint to resume the import from, or a new checkpoint if there is none, or {@code null} if the
+     * import cannot be resumed.
+     */
+    private static ImportCheckpoint newCheckpoint(File tempDir, String fingerprint, LDIFReaderSource source)
+        throws InitializationException
+    {
+      if (fingerprint != null)
+      {
+        final ImportCheckpoint checkpoint = ImportCheckpoint.load(tempDir, fingerprint);
+        if (checkpoint != null)
+        {
+          return checkpoint;
+        }
+      }
+      prepareTempDir(tempDir);
+      return fingerprint != null ? new ImportCheckpoint(tempDir, fingerprint, source) : null;
+    }
+
+    /**
+     * Returns a digest of what determines the result of the import: the LDIF files, the import options and the
+     * configuration of the backend indexes, or {@code null} if the import does not read LDIF files and thus cannot be
+     * resumed.
+     */
+    private static String importFingerprint(PluggableBackendCfg backendCfg, LDIFImportConfig importConfig)
+        throws ConfigException
+    {
+      final List<String> ldifFiles = importConfig.getLDIFFiles();
+      if (ldifFiles == null)
+      {
+        return null;
+      }
+      final StringBuilder builder = new StringBuilder();
+      for (String ldifFile : ldifFiles)
+      {
+        final File file = new File(ldifFile).getAbsoluteFile();
+        builder.append(file).append(',').append(file.length()).append(',').append(file.lastModified()).append(';');
+      }
+      builder.append(importConfig.isCompressed()).append(';')
+             .append(importConfig.isEncrypted()).append(';')
+             .append(importConfig.validateSchema()).append(';')
+             .append(importConfig.invokeImportPlugins()).append(';')
+             .append(importConfig.includeObjectClasses()).append(';')
+             .append(importConfig.getIncludeBranches()).append(';')
+             .append(importConfig.getExcludeBranches()).append(';')
+             .append(importConfig.getIncludeFilters()).append(';')
+             .append(importConfig.getExcludeFilters()).append(';')
+             .append(importConfig.getIncludeAttributes()).append(';')
+             .append(importConfig.getExcludeAttributes()).append(';')
+             .append(new TreeSet<>(backendCfg.getBaseDN())).append(';')
+             .append(backendCfg.getIndexEntryLimit()).append(';');
+      for (String indexName : new TreeSet<>(Arrays.asList(backendCfg.listBackendIndexes())))
+      {
+        final BackendIndexCfg index = backendCfg.getBackendIndex(indexName);
+        builder.append(indexName).append(index.getIndexType()).append(index.getIndexExtensibleMatchingRule())
+               .append(index.getIndexEntryLimit()).append(index.getSubstringLength()).append(';');
+      }
+      for (String vlvIndexName : new TreeSet<>(Arrays.asList(backendCfg.listBackendVLVIndexes())))
+      {
+        final BackendVLVIndexCfg vlvIndex = backendCfg.getBackendVLVIndex(vlvIndexName);
+        builder.append(vlvIndexName).append(vlvIndex.getBaseDN()).append(vlvIndex.getScope())
+               .append(vlvIndex.getFilter()).append(vlvIndex.getSortOrder()).append(';');
+      }
+      try
+      {
+        return bytesToHexNoSpace(MessageDigest.getInstance("SHA-256").digest(getBytes(builder.toString())));
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+        throw new RuntimeException(e);
+      }
+    }
+
     private static int getDefaultNumberOfThread()
     {
       final int nbProcessors = Runtime.getRuntime().availableProcessors();
@@ -314,12 +436,46 @@ final class OnDiskMergeImporter
         clearDegradedState(entryContainer, indexesToRebuild);
         logger.info(NOTE_REBUILD_CLEARDEGRADEDSTATE_FINAL_STATUS, rebuildConfig.getRebuildList());
       }
+      else if (rebuildConfig.isOnline())
+      {
+        rebuildIndexOnline(entryContainer, indexesToRebuild, totalEntries);
+      }
       else
       {
         rebuildIndex(entryContainer, rebuildConfig.getTmpDirectory(), indexesToRebuild, totalEntries);
       }
     }
 
+    /** Rebuilds the attribute indexes while the backend remains enabled, without closing the storage. */
+    private void rebuildIndexOnline(EntryContainer entryContainer, Set<String> indexesToRebuild, long totalEntries)
+        throws InitializationException, InterruptedException, ExecutionException
+    {
+      if (indexesToRebuild.isEmpty())
+      {
+        logger.info(NOTE_REBUILD_NOTHING_TO_REBUILD);
+        return;
+      }
+      final Set<String> unsupportedIndexes = new HashSet<>(indexesToRebuild);
+      final List<MatchingRuleIndex> indexes = new ArrayList<>();
+      for (AttributeIndex attributeIndex : entryContainer.getAttributeIndexes())
+      {
+        for (MatchingRuleIndex index : attributeIndex.getNameToIndexes().values())
+        {
+          if (unsupportedIndexes.remove(index.getName().getIndexId()))
+          {
+            indexes.add(index);
+          }
+        }
+      }
+      if (!unsupportedIndexes.isEmpty())
+      {
+        throw new InitializationException(
+            ERR_REBUILD_ONLINE_UNSUPPORTED_INDEX.get(Utils.joinAsString(", ", unsupportedIndexes)));
+      }
+      new OnlineIndexRebuilder(entryContainer, rootContainer.getStorage(), indexes,
+          backendCfg.getOnlineIndexRebuildLatencyBudget(), totalEntries).rebuild();
+    }
+
     private void clearDegradedState(final EntryContainer entryContainer, final Set<String> indexIds)
         throws ExecutionException
     {
@@ -358,7 +514,7 @@ final class OnDiskMergeImporter
 
         final OnDiskMergeImporter importer;
         final File tempDir = prepareTempDir(backendCfg, tmpDirectory);
-        try (final Importer dbStorage = rootContainer.getStorage().startImport())
+        try (final ReopenableImporter dbStorage = new ReopenableImporter(rootContainer.getStorage()))
         {
           final AbstractTwoPhaseImportStrategy strategy =
               new RebuildIndexStrategy(
@@ -605,14 +761,23 @@ final class OnDiskMergeImporter
     private static File prepareTempDir(PluggableBackendCfg backendCfg, String tmpDirectory)
         throws InitializationException
     {
-      final File tempDir =
-          new File(getFileForPath(tmpDirectory != null ? tmpDirectory : DEFAULT_TMP_DIR), backendCfg.getBackendId());
+      final File tempDir = getTempDir(backendCfg, tmpDirectory);
+      prepareTempDir(tempDir);
+      return tempDir;
+    }
+
+    private static File getTempDir(PluggableBackendCfg backendCfg, String tmpDirectory)
+    {
+      return new File(getFileForPath(tmpDirectory != null ? tmpDirectory : DEFAULT_TMP_DIR), backendCfg.getBackendId());
+    }
+
+    private static void prepareTempDir(File tempDir) throws InitializationException
+    {
       recursiveDelete(tempDir);
       if (!tempDir.exists() && !tempDir.mkdirs())
       {
         throw new InitializationException(ERR_IMPORT_CREATE_TMPDIR_ERROR.get(tempDir));
       }
-      return tempDir;
     }
 
     /**
@@ -703,35 +868,15 @@ final class OnDiskMergeImporter
             public Void call() throws Exception
             {
               checkThreadNotInterrupted();
-              EntryInformation entryInfo;
-              while ((entryInfo = reader.readEntry(entryContainers)) != null && !importConfig.isCancelled())
+              LDIFChunk chunk;
+              while ((chunk = reader.nextChunk()) != null && !importConfig.isCancelled())
               {
-                final EntryContainer entryContainer = entryInfo.getEntryContainer();
-                final Entry entry = entryInfo.getEntry();
-                final DN entryDN = entry.getName();
-                final DN parentDN = entryContainer.getParentWithinBase(entryDN);
-
-                if (parentDN != null)
-                {
-                  reader.waitIfPending(parentDN);
-                }
-                try
-                {
-                  entryProcessor.processEntry(entryContainer, entryInfo.getEntryID(), entry);
-                }
-                catch (DirectoryException e)
+                EntryInformation entryInfo;
+                while ((entryInfo = reader.readEntry(chunk, entryContainers)) != null && !importConfig.isCancelled())
                 {
-                  reader.rejectEntry(entry, e.getMessageObject());
+                  processEntry(entryProcessor, entryInfo);
+                  checkThreadNotInterrupted();
                 }
-                catch (Exception e)
-                {
-                  reader.rejectEntry(entry, ERR_EXECUTION_ERROR.get(e));
-                }
-                finally
-                {
-                  reader.removePending(entry.getName());
-                }
-                checkThreadNotInterrupted();
               }
               return null;
             }
@@ -746,6 +891,35 @@ final class OnDiskMergeImporter
       }
     }
 
+    private void processEntry(EntryProcessor entryProcessor, EntryInformation entryInfo) throws InterruptedException
+    {
+      final EntryContainer entryContainer = entryInfo.getEntryContainer();
+      final Entry entry = entryInfo.getEntry();
+      final DN entryDN = entry.getName();
+      final DN parentDN = entryContainer.getParentWithinBase(entryDN);
+
+      if (parentDN != null)
+      {
+        reader.waitIfPending(parentDN);
+      }
+      try
+      {
+        entryProcessor.processEntry(entryContainer, entryInfo.getEntryID(), entry);
+      }
+      catch (DirectoryException e)
+      {
+        reader.rejectEntry(entry, e.getMessageObject());
+      }
+      catch (Exception e)
+      {
+        reader.rejectEntry(entry, ERR_EXECUTION_ERROR.get(e));
+      }
+      finally
+      {
+        reader.removePending(entry.getName());
+      }
+    }
+
     long getEntriesRead()
     {
       return reader.getEntriesRead();
@@ -961,24 +1135,89 @@ final class OnDiskMergeImporter
 
   private final String phase2ThreadNameTemplate;
   private final AtomicLong importedCount = new AtomicLong();
+  /** Progress of the import saved to resume it in case of failure, {@code null} if the import cannot be resumed. */
+  private final ImportCheckpoint checkpoint;
   private long phaseOneTimeMs;
   private long phaseTwoTimeMs;
 
   private OnDiskMergeImporter(String phase2ThreadNameTemplate, AbstractTwoPhaseImportStrategy importStrategy)
+  {
+    this(phase2ThreadNameTemplate, importStrategy, null);
+  }
+
+  private OnDiskMergeImporter(String phase2ThreadNameTemplate, AbstractTwoPhaseImportStrategy importStrategy,
+      ImportCheckpoint checkpoint)
   {
     this.phase2ThreadNameTemplate = phase2ThreadNameTemplate;
     this.importStrategy = importStrategy;
+    this.checkpoint = checkpoint;
   }
 
   private void doImport(final Source source) throws InterruptedException, ExecutionException
   {
     final long phaseOneStartTime = System.currentTimeMillis();
-    final PhaseOneWriteableTransaction transaction = new PhaseOneWriteableTransaction(importStrategy);
-    importedCount.set(0);
+    final Map<TreeName, Chunk> chunks;
+    final Collection<EntryContainer> importedContainers;
+    if (checkpoint != null && checkpoint.isResumed())
+    {
+      // Phase one has already been completed by the import which saved the checkpoint
+      closeSilently(source);
+      chunks = resumePhaseOne();
+      importedContainers = checkpoint.getImportedContainers(importStrategy.entryContainers);
+      importedCount.set(checkpoint.importedCount);
+      importStrategy.afterPhaseOne();
+      logger.info(NOTE_IMPORT_RESUMING, checkpoint.getFile(), checkpoint.getRemainingTrees(),
+          checkpoint.getTreeCount());
+    }
+    else
+    {
+      final PhaseOneWriteableTransaction transaction = new PhaseOneWriteableTransaction(importStrategy);
+      importedCount.set(0);
+      importedContainers = doPhaseOne(source, transaction);
+      if (source.isCancelled())
+      {
+        throw new InterruptedException("Import processing canceled.");
+      }
+      importStrategy.afterPhaseOne();
+      chunks = transaction.getChunks();
+      if (checkpoint != null)
+      {
+        checkpointPhaseOne(chunks, importedContainers);
+      }
+    }
+    phaseOneTimeMs = System.currentTimeMillis() - phaseOneStartTime;
 
-    final ConcurrentMap<EntryContainer, CountDownLatch> importedContainers = new ConcurrentHashMap<>();
+    // Start phase two
+    final long phaseTwoStartTime = System.currentTimeMillis();
+    try (final PhaseTwoProgressReporter progressReporter = new PhaseTwoProgressReporter())
+    {
+      if (checkpoint != null)
+      {
+        doPhaseTwoInBatches(chunks, importedContainers, progressReporter);
+      }
+      else
+      {
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<TreeName, Chunk> treeChunk : chunks.entrySet())
+        {
+          tasks.add(importStrategy.newPhaseTwoTask(treeChunk.getKey(), treeChunk.getValue(), progressReporter));
+        }
+        invokeParallel(phase2ThreadNameTemplate, tasks);
+      }
+    }
 
-    // Start phase one
+    // Finish import
+    for (EntryContainer entryContainer : importedContainers)
+    {
+      importStrategy.afterPhaseTwo(entryContainer);
+    }
+    phaseTwoTimeMs = System.currentTimeMillis() - phaseTwoStartTime;
+  }
+
+  private Collection<EntryContainer> doPhaseOne(final Source source, final PhaseOneWriteableTransaction transaction)
+      throws InterruptedException, ExecutionException
+  {
+    final ConcurrentMap<EntryContainer, CountDownLatch> importedContainers = new ConcurrentHashMap<>();
     try
     {
       source.processAllEntries(new Source.EntryProcessor()
@@ -1015,35 +1254,121 @@ final class OnDiskMergeImporter
     {
       closeSilently(source);
     }
-    phaseOneTimeMs = System.currentTimeMillis() - phaseOneStartTime;
+    return importedContainers.keySet();
+  }
 
-    if (source.isCancelled())
+  /**
+   * Makes the result of phase one durable: the sorted files are synced to disk, the trees which are not sorted (i.e.
+   * id2entry) are flushed into the storage, then the checkpoint is saved.
+   */
+  private void checkpointPhaseOne(Map<TreeName, Chunk> chunks, Collection<EntryContainer> importedContainers)
+      throws InterruptedException, ExecutionException
+  {
+    final List<Callable<Void>> flushTasks = new ArrayList<>();
+    for (Map.Entry<TreeName, Chunk> treeChunk : chunks.entrySet())
     {
-      throw new InterruptedException("Import processing canceled.");
+      final Chunk chunk = treeChunk.getValue();
+      if (chunk instanceof ExternalSortChunk)
+      {
+        try
+        {
+          checkpoint.addSortedTree(treeChunk.getKey(), ((ExternalSortChunk) chunk).sortAndSync());
+        }
+        catch (IOException e)
+        {
+          throw new ExecutionException(e);
+        }
+      }
+      else
+      {
+        flushTasks.add(AbstractTwoPhaseImportStrategy.newFlushTask(chunk));
+        checkpoint.addMergedTree(treeChunk.getKey());
+      }
     }
+    invokeParallel(phase2ThreadNameTemplate, flushTasks);
+    importStrategy.persist(importedContainers);
+    checkpoint.setPhaseOneResult(importedContainers, importedCount.get());
+    saveCheckpoint();
+  }
 
-    importStrategy.afterPhaseOne();
+  /** Rebuilds the phase one chunks from the sorted files listed in the checkpoint. */
+  private Map<TreeName, Chunk> resumePhaseOne() throws ExecutionException
+  {
+    final Map<TreeName, Chunk> chunks = new LinkedHashMap<>();
+    for (Map.Entry<TreeName, SortedFile> sortedTree : checkpoint.sortedTrees.entrySet())
+    {
+      final TreeName treeName = sortedTree.getKey();
+      if (!checkpoint.isMerged(treeName))
+      {
+        try
+        {
+          chunks.put(treeName, importStrategy.newResumedChunk(treeName, sortedTree.getValue()));
+        }
+        catch (IOException e)
+        {
+          throw new ExecutionException(e);
+        }
+      }
+    }
+    return chunks;
+  }
 
-    // Start phase two
-    final long phaseTwoStartTime = System.currentTimeMillis();
-    try (final PhaseTwoProgressReporter progressReporter = new PhaseTwoProgressReporter())
+  /**
+   * Merges the trees by batches of as many trees as there are processors, biggest trees first, and saves the
+   * checkpoint after each batch. A failed import will then resume from the last completed batch.
+   */
+  private void doPhaseTwoInBatches(Map<TreeName, Chunk> chunks, Collection<EntryContainer> importedContainers,
+      PhaseTwoProgressReporter progressReporter) throws InterruptedException, ExecutionException
+  {
+    final List<Map.Entry<TreeName, Chunk>> remaining = new ArrayList<>();
+    for (Map.Entry<TreeName, Chunk> treeChunk : chunks.entrySet())
     {
-      final List<Callable<Void>> tasks = new ArrayList<>();
-      final Set<String> importedBaseDNs = new HashSet<>();
-      for (Map.Entry<TreeName, Chunk> treeChunk : transaction.getChunks().entrySet())
+      if (!checkpoint.isMerged(treeChunk.getKey()))
+      {
+        remaining.add(treeChunk);
+      }
+    }
+    Collections.sort(remaining, new Comparator<Map.Entry<TreeName, Chunk>>()
+    {
+      @Override
+      public int compare(Map.Entry<TreeName, Chunk> e1, Map.Entry<TreeName, Chunk> e2)
+      {
+        return Long.compare(e2.getValue().size(), e1.getValue().size());
+      }
+    });
+
+    final int batchSize = Runtime.getRuntime().availableProcessors();
+    for (int i = 0; i < remaining.size(); i += batchSize)
+    {
+      final List<Map.Entry<TreeName, Chunk>> batch = remaining.subList(i, Math.min(i + batchSize, remaining.size()));
+      final List<Callable<Void>> tasks = new ArrayList<>(batch.size());
+      for (Map.Entry<TreeName, Chunk> treeChunk : batch)
       {
-        importedBaseDNs.add(treeChunk.getKey().getBaseDN());
         tasks.add(importStrategy.newPhaseTwoTask(treeChunk.getKey(), treeChunk.getValue(), progressReporter));
       }
       invokeParallel(phase2ThreadNameTemplate, tasks);
+
+      importStrategy.persist(importedContainers);
+      for (Map.Entry<TreeName, Chunk> treeChunk : batch)
+      {
+        checkpoint.addMergedTree(treeChunk.getKey());
+      }
+      saveCheckpoint();
     }
+  }
 
-    // Finish import
-    for (EntryContainer entryContainer : importedContainers.keySet())
+  private void saveCheckpoint()
+  {
+    try
     {
-      importStrategy.afterPhaseTwo(entryContainer);
+      checkpoint.save();
+      logger.info(NOTE_IMPORT_CHECKPOINT_SAVED, checkpoint.getFile(), checkpoint.getRemainingTrees());
+    }
+    catch (IOException e)
+    {
+      // The previous checkpoint, if any, is still valid: trees merged since then will be merged again on resume
+      logger.warn(WARN_IMPORT_CANNOT_SAVE_CHECKPOINT, checkpoint.getFile(), stackTraceToSingleLineString(e));
     }
-    phaseTwoTimeMs = System.currentTimeMillis() - phaseTwoStartTime;
   }
 
   public long getImportedCount()
@@ -1066,6 +1391,240 @@ final class OnDiskMergeImporter
     return phaseOneTimeMs + phaseTwoTimeMs;
   }
 
+  /**
+   * Progress of an import of LDIF files, saved in the import temporary directory so that an import which did not
+   * complete can be resumed by a new import of the same data. It is saved once phase one is complete, then each time a
+   * batch of trees has been merged into the storage during phase two. It records the files where phase one has sorted
+   * the records of each tree, and the trees which have been merged.
+   * <p>
+   * Merging a tree again after a failure is harmless since {@link Importer#put(TreeName, ByteSequence, ByteSequence)}
+   * overwrites the existing records.
+   */
+  static final class ImportCheckpoint
+  {
+    private static final String FILE_NAME = "import.checkpoint";
+    private static final int FORMAT_VERSION = 1;
+    /** Size of the CRC32 checksum written at the end of the file. */
+    private static final int CHECKSUM_SIZE = 8;
+
+    private final File tempDir;
+    private final String fingerprint;
+    private final boolean resumed;
+    private boolean saved;
+    private long entriesRead;
+    private long entriesIgnored;
+    private long entriesRejected;
+    private long importedCount;
+    /** Tree prefixes of the imported entry containers. */
+    private final Set<String> treePrefixes = new LinkedHashSet<>();
+    /** Imported trees, mapped to the file containing their sorted records or {@code null} for id2entry. */
+    private final Map<TreeName, SortedFile> sortedTrees = new LinkedHashMap<>();
+    private final Set<TreeName> mergedTrees = new HashSet<>();
+    /** Used to get the statistics of the LDIF reader, {@code null} if the checkpoint has been loaded. */
+    private final LDIFReaderSource source;
+
+    ImportCheckpoint(File tempDir, String fingerprint, LDIFReaderSource source)
+    {
+      this(tempDir, fingerprint, source, false);
+    }
+
+    private ImportCheckpoint(File tempDir, String fingerprint, LDIFReaderSource source, boolean resumed)
+    {
+      this.tempDir = tempDir;
+      this.fingerprint = fingerprint;
+      this.source = source;
+      this.resumed = resumed;
+      this.saved = resumed;
+    }
+
+    /**
+     * Loads the checkpoint saved in the provided directory.
+     *
+     * @return the checkpoint, or {@code null} if there is no checkpoint, if it has been saved by an import of other
+     *         data or if it cannot be read
+     */
+    static ImportCheckpoint load(File tempDir, String fingerprint)
+    {
+      final File file = new File(tempDir, FILE_NAME);
+      if (!file.isFile())
+      {
+        return null;
+      }
+      try
+      {
+        final byte[] content = Files.readAllBytes(file.toPath());
+        final int length = content.length - CHECKSUM_SIZE;
+        final CRC32 checksum = new CRC32();
+        if (length > 0)
+        {
+          checksum.update(content, 0, length);
+        }
+        if (length <= 0 || checksum.getValue() != ByteBuffer.wrap(content, length, CHECKSUM_SIZE).getLong())
+        {
+          throw new IOException("invalid checksum");
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, 0, length));
+        if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(fingerprint))
+        {
+          return null;
+        }
+        final ImportCheckpoint checkpoint = new ImportCheckpoint(tempDir, fingerprint, null, true);
+        checkpoint.readFrom(in);
+        return checkpoint;
+      }
+      catch (IOException | IllegalArgumentException e)
+      {
+        logger.warn(WARN_IMPORT_CANNOT_READ_CHECKPOINT, file, stackTraceToSingleLineString(e));
+        return null;
+      }
+    }
+
+    private void readFrom(DataInputStream in) throws IOException
+    {
+      entriesRead = in.readLong();
+      entriesIgnored = in.readLong();
+      entriesRejected = in.readLong();
+      importedCount = in.readLong();
+      for (int i = in.readInt(); i > 0; i--)
+      {
+        treePrefixes.add(in.readUTF());
+      }
+      for (int i = in.readInt(); i > 0; i--)
+      {
+        final TreeName treeName = TreeName.valueOf(in.readUTF());
+        if (in.readBoolean())
+        {
+          mergedTrees.add(treeName);
+        }
+        SortedFile sortedFile = null;
+        if (in.readBoolean())
+        {
+          sortedFile = SortedFile.readFrom(in);
+          if (!mergedTrees.contains(treeName) && !new File(tempDir, sortedFile.fileName).isFile())
+          {
+            throw new FileNotFoundException(new File(tempDir, sortedFile.fileName).getPath());
+          }
+        }
+        sortedTrees.put(treeName, sortedFile);
+      }
+    }
+
+    /**
+     * Saves this checkpoint. The file is replaced atomically, so that the previous checkpoint remains valid if the
+     * save fails.
+     */
+    void save() throws IOException
+    {
+      final ByteArrayOutputStream content = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream(content);
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(fingerprint);
+      writeTo(out);
+      final CRC32 checksum = new CRC32();
+      checksum.update(content.toByteArray());
+      out.writeLong(checksum.getValue());
+
+      final File tmpFile = new File(tempDir, FILE_NAME + ".tmp");
+      try (final FileOutputStream fileOutput = new FileOutputStream(tmpFile))
+      {
+        content.writeTo(fileOutput);
+        fileOutput.getFD().sync();
+      }
+      Files.move(tmpFile.toPath(), getFile().toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+      saved = true;
+    }
+
+    private void writeTo(DataOutputStream out) throws IOException
+    {
+      out.writeLong(entriesRead);
+      out.writeLong(entriesIgnored);
+      out.writeLong(entriesRejected);
+      out.writeLong(importedCount);
+      out.writeInt(treePrefixes.size());
+      for (String treePrefix : treePrefixes)
+      {
+        out.writeUTF(treePrefix);
+      }
+      out.writeInt(sortedTrees.size());
+      for (Map.Entry<TreeName, SortedFile> sortedTree : sortedTrees.entrySet())
+      {
+        out.writeUTF(sortedTree.getKey().toString());
+        out.writeBoolean(mergedTrees.contains(sortedTree.getKey()));
+        out.writeBoolean(sortedTree.getValue() != null);
+        if (sortedTree.getValue() != null)
+        {
+          sortedTree.getValue().writeTo(out);
+        }
+      }
+    }
+
+    File getFile()
+    {
+      return new File(tempDir, FILE_NAME);
+    }
+
+    boolean isResumed()
+    {
+      return resumed;
+    }
+
+    boolean isSaved()
+    {
+      return saved;
+    }
+
+    void setPhaseOneResult(Collection<EntryContainer> importedContainers, long importedCount)
+    {
+      for (EntryContainer entryContainer : importedContainers)
+      {
+        treePrefixes.add(entryContainer.getTreePrefix());
+      }
+      this.importedCount = importedCount;
+      this.entriesRead = source.getEntriesRead();
+      this.entriesIgnored = source.getEntriesIgnored();
+      this.entriesRejected = source.getEntriesRejected();
+    }
+
+    Collection<EntryContainer> getImportedContainers(Map<String, EntryContainer> entryContainers)
+    {
+      final List<EntryContainer> importedContainers = new ArrayList<>(treePrefixes.size());
+      for (String treePrefix : treePrefixes)
+      {
+        importedContainers.add(entryContainers.get(treePrefix));
+      }
+      return importedContainers;
+    }
+
+    void addSortedTree(TreeName treeName, SortedFile sortedFile)
+    {
+      sortedTrees.put(treeName, sortedFile);
+    }
+
+    void addMergedTree(TreeName treeName)
+    {
+      if (!sortedTrees.containsKey(treeName))
+      {
+        sortedTrees.put(treeName, null);
+      }
+      mergedTrees.add(treeName);
+    }
+
+    boolean isMerged(TreeName treeName)
+    {
+      return mergedTrees.contains(treeName);
+    }
+
+    int getTreeCount()
+    {
+      return sortedTrees.size();
+    }
+
+    int getRemainingTrees()
+    {
+      return sortedTrees.size() - mergedTrees.size();
+    }
+  }
+
   /** Create {@link Chunk} depending on the {@link TreeName}. */
   private interface ChunkFactory
   {
@@ -1077,12 +1636,12 @@ final class OnDiskMergeImporter
   {
     protected final Map<String, EntryContainer> entryContainers;
     protected final Executor sorter;
-    protected final Importer importer;
+    protected final ReopenableImporter importer;
     protected final BufferPool bufferPool;
     protected final File tempDir;
 
-    AbstractTwoPhaseImportStrategy(Collection<EntryContainer> entryContainers, Importer importer, File tempDir,
-        BufferPool bufferPool, Executor sorter)
+    AbstractTwoPhaseImportStrategy(Collection<EntryContainer> entryContainers, ReopenableImporter importer,
+        File tempDir, BufferPool bufferPool, Executor sorter)
     {
       this.entryContainers = new HashMap<>(entryContainers.size());
       for (EntryContainer container : entryContainers)
@@ -1098,6 +1657,7 @@ final class OnDiskMergeImporter
     void beforePhaseOne(EntryContainer entryContainer)
     {
       entryContainer.delete(asWriteableTransaction(importer));
+      visitIndexes(entryContainer, initializeEmpty(importer));
       visitIndexes(entryContainer, setTrust(false, importer));
     }
 
@@ -1110,9 +1670,27 @@ final class OnDiskMergeImporter
 
     void afterPhaseTwo(EntryContainer entryContainer)
     {
+      visitIndexes(entryContainer, saveStatistics(importer));
       visitIndexes(entryContainer, setTrust(true, importer));
     }
 
+    /** Persists the records imported so far, along with the statistics of the indexes already imported. */
+    void persist(Collection<EntryContainer> importedContainers)
+    {
+      for (EntryContainer entryContainer : importedContainers)
+      {
+        visitIndexes(entryContainer, saveStatistics(importer));
+      }
+      try
+      {
+        importer.reopen();
+      }
+      catch (ConfigException e)
+      {
+        throw new StorageRuntimeException(e);
+      }
+    }
+
     final Chunk newExternalSortChunk(TreeName treeName) throws Exception
     {
       return new ExternalSortChunk(tempDir, treeName.toString(), bufferPool,
@@ -1120,10 +1698,17 @@ final class OnDiskMergeImporter
           newPhaseTwoCollector(entryContainers.get(treeName.getBaseDN()), treeName), sorter);
     }
 
+    final Chunk newResumedChunk(TreeName treeName, SortedFile sortedFile) throws IOException
+    {
+      return new ExternalSortChunk(tempDir, treeName.toString(), sortedFile,
+          newPhaseTwoCollector(entryContainers.get(treeName.getBaseDN()), treeName));
+    }
+
     final Callable<Void> newChunkCopierTask(TreeName treeName, final Chunk source,
         PhaseTwoProgressReporter progressReporter)
     {
-      return new ChunkCopierTask(progressReporter, source, treeName, importer);
+      final DefaultIndex index = getIndex(entryContainers.get(treeName.getBaseDN()), treeName);
+      return new ChunkCopierTask(progressReporter, source, treeName, importer, index);
     }
 
     final Callable<Void> newDN2IDImporterTask(TreeName treeName, final Chunk source,
@@ -1169,7 +1754,7 @@ final class OnDiskMergeImporter
    */
   private static final class ExternalSortAndImportStrategy extends AbstractTwoPhaseImportStrategy
   {
-    ExternalSortAndImportStrategy(Collection<EntryContainer> entryContainers, Importer importer, File tempDir,
+    ExternalSortAndImportStrategy(Collection<EntryContainer> entryContainers, ReopenableImporter importer, File tempDir,
         BufferPool bufferPool, Executor sorter)
     {
       super(entryContainers, importer, tempDir, bufferPool, sorter);
@@ -1212,7 +1797,7 @@ final class OnDiskMergeImporter
   {
     private final Set<String> indexesToRebuild;
 
-    RebuildIndexStrategy(Collection<EntryContainer> entryContainers, Importer importer, File tempDir,
+    RebuildIndexStrategy(Collection<EntryContainer> entryContainers, ReopenableImporter importer, File tempDir,
         BufferPool bufferPool, Executor sorter, Set<String> indexNames)
     {
       super(entryContainers, importer, tempDir, bufferPool, sorter);
@@ -1229,6 +1814,7 @@ final class OnDiskMergeImporter
     @Override
     void afterPhaseTwo(EntryContainer entryContainer)
     {
+      visitIndexes(entryContainer, visitOnlyIndexes(indexIdIn(indexesToRebuild), saveStatistics(importer)));
       visitIndexes(entryContainer, visitOnlyIndexes(indexIdIn(indexesToRebuild), setTrust(true, importer)));
     }
 
@@ -1443,6 +2029,7 @@ final class OnDiskMergeImporter
     /** Provides buffer used to store and sort chunk of data. */
     private final BufferPool bufferPool;
     /** File containing the regions used to store the data. */
+    private final File file;
     private final FileChannel channel;
     /** Pointer to the next available region in the file, typically at end of file. */
     private final AtomicLong filePosition = new AtomicLong();
@@ -1457,6 +2044,10 @@ final class OnDiskMergeImporter
     private final AtomicInteger nbSortedChunks = new AtomicInteger();
     /** Size approximation of data contained in this chunk. */
     private final AtomicLong size = new AtomicLong();
+    /** Regions of the file sorted by their starting offsets, {@code null} until all the data have been sorted. */
+    private List<Region> regions;
+    /** Whether the file must be kept for resuming the import, see {@link #sortAndSync()}. */
+    private volatile boolean durable;
     /** Active chunk for the current thread. */
     private final ThreadLocal<Chunk> currentChunk = new ThreadLocal<Chunk>()
     {
@@ -1474,11 +2065,27 @@ final class OnDiskMergeImporter
       this.bufferPool = bufferPool;
       this.phaseOneDeduplicator = phaseOneDeduplicator;
       this.phaseTwoDeduplicator = phaseTwoDeduplicator;
-      final File file = new File(tempDir, name.replaceAll("\\W+", "_") + "_" + UUID.randomUUID().toString());
+      this.file = new File(tempDir, name.replaceAll("\\W+", "_") + "_" + UUID.randomUUID().toString());
       this.channel = open(file.toPath(), CREATE_NEW, SPARSE, READ, WRITE);
       this.sorter = new ExecutorCompletionService<>(sortExecutor);
     }
 
+    /** Reopens the sorted file written by a previous import, see {@link #sortAndSync()}. */
+    ExternalSortChunk(File tempDir, String name, SortedFile sortedFile, Collector<?, ByteString> phaseTwoDeduplicator)
+        throws IOException
+    {
+      this.name = name;
+      this.bufferPool = null;
+      this.phaseOneDeduplicator = null;
+      this.phaseTwoDeduplicator = phaseTwoDeduplicator;
+      this.file = new File(tempDir, sortedFile.fileName);
+      this.channel = open(file.toPath(), READ, WRITE);
+      this.sorter = null;
+      this.size.set(sortedFile.size);
+      this.regions = sortedFile.regions;
+      this.durable = true;
+    }
+
     @Override
     public boolean put(final ByteSequence key, final ByteSequence value)
     {
@@ -1499,16 +2106,10 @@ final class OnDiskMergeImporter
     @Override
     public MeteredCursor<ByteString, ByteString> flip()
     {
-      for (Chunk chunk : activeChunks)
-      {
-        sortAndAppendChunkAsync(chunk);
-      }
-
       final List<MeteredCursor<ByteString, ByteString>> cursors = new ArrayList<>();
       try
       {
-        final List<Region> regions = waitTasksTermination(sorter, nbSortedChunks.get());
-        Collections.sort(regions); // Sort regions by their starting offsets.
+        final List<Region> regions = sortRegions();
         long mmapPosition = 0;
         // Create as big as possible memory are (handling 2Gb limit) and create as many cursors as regions from
         // these area.
@@ -1538,7 +2139,7 @@ final class OnDiskMergeImporter
         public void close()
         {
           super.close();
-          if (OperatingSystem.isWindows())
+          if (OperatingSystem.isWindows() && !durable)
           {
             // Windows might not be able to delete the file (see http://bugs.java.com/view_bug.do?bug_id=4715154)
             // To prevent these not deleted files to waste space, we empty it.
@@ -1575,6 +2176,34 @@ final class OnDiskMergeImporter
       return nbSortedChunks.get();
     }
 
+    /**
+     * Sorts all the data put into this chunk, then syncs the file containing them so that they can be read again by
+     * {@link #ExternalSortChunk(File, String, SortedFile, Collector)} after a failure of the import.
+     */
+    SortedFile sortAndSync() throws InterruptedException, ExecutionException, IOException
+    {
+      final List<Region> sortedRegions = sortRegions();
+      channel.force(false);
+      durable = true;
+      return new SortedFile(file.getName(), size.get(), sortedRegions);
+    }
+
+    private synchronized List<Region> sortRegions() throws InterruptedException, ExecutionException
+    {
+      if (regions == null)
+      {
+        for (Chunk chunk : activeChunks)
+        {
+          sortAndAppendChunkAsync(chunk);
+        }
+        activeChunks.clear();
+        final List<Region> sortedRegions = waitTasksTermination(sorter, nbSortedChunks.get());
+        Collections.sort(sortedRegions); // Sort regions by their starting offsets.
+        regions = sortedRegions;
+      }
+      return regions;
+    }
+
     private void sortAndAppendChunkAsync(final Chunk chunk)
     {
       size.addAndGet(chunk.size());
@@ -1624,6 +2253,46 @@ final class OnDiskMergeImporter
       }
     }
 
+    /** Describes the sorted file of an {@link ExternalSortChunk}, as recorded by the {@link ImportCheckpoint}. */
+    static final class SortedFile
+    {
+      private final String fileName;
+      private final long size;
+      private final List<Region> regions;
+
+      SortedFile(String fileName, long size, List<Region> regions)
+      {
+        this.fileName = fileName;
+        this.size = size;
+        this.regions = regions;
+      }
+
+      void writeTo(DataOutputStream out) throws IOException
+      {
+        out.writeUTF(fileName);
+        out.writeLong(size);
+        out.writeInt(regions.size());
+        for (Region region : regions)
+        {
+          out.writeLong(region.offset);
+          out.writeInt(region.size);
+        }
+      }
+
+      static SortedFile readFrom(DataInputStream in) throws IOException
+      {
+        final String fileName = in.readUTF();
+        final long size = in.readLong();
+        final int nbRegions = in.readInt();
+        final List<Region> regions = new ArrayList<>(nbRegions);
+        for (int i = 0; i < nbRegions; i++)
+        {
+          regions.add(new Region(in.readLong(), in.readInt()));
+        }
+        return new SortedFile(fileName, size, regions);
+      }
+    }
+
     /**
      * Store data inside fixed-size byte arrays. Data stored in this chunk are sorted by key during the flip() so that
      * they can be cursored ascendantly. Byte arrays are supplied through a {@link BufferPool}. To allow sort operation,
@@ -2238,20 +2907,26 @@ final class OnDiskMergeImporter
     return new ImporterToChunkAdapter(treeName, importer);
   }
 
-  /** Task to copy one {@link Chunk} into a database tree through an {@link Importer}. */
+  /**
+   * Task to copy one {@link Chunk} into a database tree through an {@link Importer}. When the tree is an attribute
+   * index, the statistics of the index are computed from the copied records.
+   */
   private static final class ChunkCopierTask implements Callable<Void>
   {
     private final PhaseTwoProgressReporter reporter;
     private final TreeName treeName;
     private final Importer destination;
     private final Chunk source;
+    private final DefaultIndex index;
 
-    ChunkCopierTask(PhaseTwoProgressReporter reporter, Chunk source, TreeName treeName, Importer destination)
+    ChunkCopierTask(PhaseTwoProgressReporter reporter, Chunk source, TreeName treeName, Importer destination,
+        DefaultIndex index)
     {
       this.source = source;
       this.treeName = treeName;
       this.destination = destination;
       this.reporter = reporter;
+      this.index = index;
     }
 
     @Override
@@ -2260,12 +2935,56 @@ final class OnDiskMergeImporter
       checkThreadNotInterrupted();
       try (final SequentialCursor<ByteString, ByteString> sourceCursor = trackCursorProgress(reporter, source.flip()))
       {
-        copyIntoChunk(sourceCursor, asChunk(treeName, destination));
+        if (index == null)
+        {
+          copyIntoChunk(sourceCursor, asChunk(treeName, destination));
+        }
+        else
+        {
+          final IndexStatistics statistics = new IndexStatistics();
+          copyIntoChunk(sourceCursor, new IndexStatisticsChunk(index, statistics, asChunk(treeName, destination)));
+          index.setStatistics(statistics);
+        }
       }
       return null;
     }
   }
 
+  /** Records the size of the entry ID sets stored into the decorated {@link Chunk} in the statistics of an index. */
+  private static final class IndexStatisticsChunk implements Chunk
+  {
+    private final DefaultIndex index;
+    private final IndexStatistics statistics;
+    private final Chunk delegate;
+
+    IndexStatisticsChunk(DefaultIndex index, IndexStatistics statistics, Chunk delegate)
+    {
+      this.index = index;
+      this.statistics = statistics;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean put(ByteSequence key, ByteSequence value)
+    {
+      statistics.recordChange(IndexStatistics.NO_KEY,
+          IndexStatistics.sizeOf(index.decodeValue(key, value.toByteString())));
+      return delegate.put(key, value);
+    }
+
+    @Override
+    public MeteredCursor<ByteString, ByteString> flip()
+    {
+      return delegate.flip();
+    }
+
+    @Override
+    public long size()
+    {
+      return delegate.size();
+    }
+  }
+
   /** Task to copy VLV's counter chunks into a database tree. */
   private static final class VLVIndexImporterTask implements Callable<Void>
   {
@@ -2288,7 +3007,20 @@ final class OnDiskMergeImporter
       checkThreadNotInterrupted();
       try (final SequentialCursor<ByteString, ByteString> sourceCursor = trackCursorProgress(reporter, source.flip()))
       {
-        final long nbRecords = copyIntoChunk(sourceCursor, asChunk(vlvIndex.getName(), destination));
+        final Chunk destinationChunk = asChunk(vlvIndex.getName(), destination);
+        final VLVIndex.RangeCountImporter rangeCounts = vlvIndex.newRangeCountImporter(destination);
+        long nbRecords = 0;
+        while (sourceCursor.next())
+        {
+          if (!destinationChunk.put(sourceCursor.getKey(), sourceCursor.getValue()))
+          {
+            throw new IllegalStateException("Destination chunk is full");
+          }
+          rangeCounts.add(sourceCursor.getKey());
+          nbRecords++;
+          checkThreadNotInterrupted();
+        }
+        rangeCounts.flush();
         vlvIndex.importCount(destination, nbRecords);
         return null;
       }
@@ -2358,7 +3090,7 @@ final class OnDiskMergeImporter
       try (final SequentialCursor<ByteString, ByteString> chunkCursor =
                trackCursorProgress(reporter, dn2IdSourceChunk.flip());
            final DnValidationCursorDecorator validatorCursor =
-               new DnValidationCursorDecorator(chunkCursor, id2entry, asWriteableTransaction(importer));
+               new DnValidationCursorDecorator(chunkCursor, dn2id, id2entry, asWriteableTransaction(importer));
            final SequentialCursor<ByteString, ByteString> dn2idCursor =
                dn2id.openCursor(validatorCursor, childrenCountVisitor))
       {
@@ -2380,7 +3112,7 @@ final class OnDiskMergeImporter
       }
       id2count.importPutTotalCount(asImporter(id2CountChunk), Math.max(0, totalNumberOfEntries));
 
-      new ChunkCopierTask(reporter, id2CountChunk, id2count.getName(), importer).call();
+      new ChunkCopierTask(reporter, id2CountChunk, id2count.getName(), importer, null).call();
       return null;
     }
 
@@ -2437,13 +3169,15 @@ final class OnDiskMergeImporter
       SequentialCursorDecorator<SequentialCursor<ByteString, ByteString>, ByteString, ByteString>
   {
     private final LinkedList<ByteString> parentDns = new LinkedList<>();
+    private final DN2ID dn2id;
     private final ID2Entry id2entry;
     private final ReadableTransaction txn;
 
-    DnValidationCursorDecorator(SequentialCursor<ByteString, ByteString> delegate, ID2Entry id2entry,
+    DnValidationCursorDecorator(SequentialCursor<ByteString, ByteString> delegate, DN2ID dn2id, ID2Entry id2entry,
         ReadableTransaction txn)
     {
       super(delegate);
+      this.dn2id = dn2id;
       this.id2entry = id2entry;
       this.txn = txn;
     }
@@ -2481,7 +3215,7 @@ final class OnDiskMergeImporter
     {
       try
       {
-        return id2entry.get(txn, new EntryID(delegate.getValue())).getName().toString();
+        return id2entry.get(txn, dn2id.toEntryID(delegate.getValue())).getName().toString();
       }
       catch (Exception e)
       {
@@ -2614,6 +3348,60 @@ final class OnDiskMergeImporter
     }
   }
 
+  /**
+   * Delegates to an {@link Importer} of the {@link Storage} which can be closed and started again by {@link #reopen()},
+   * so that the records imported so far are persisted. This class is thread-safe, but {@link #reopen()} must not be
+   * called while other threads are using it.
+   */
+  private static final class ReopenableImporter implements Importer
+  {
+    private final Storage storage;
+    private volatile Importer importer;
+
+    ReopenableImporter(Storage storage) throws ConfigException
+    {
+      this.storage = storage;
+      this.importer = storage.startImport();
+    }
+
+    /** Persists the records imported so far by closing the importer, then starts a new one. */
+    void reopen() throws ConfigException
+    {
+      importer.close();
+      importer = storage.startImport();
+    }
+
+    @Override
+    public void clearTree(TreeName treeName)
+    {
+      importer.clearTree(treeName);
+    }
+
+    @Override
+    public void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      importer.put(treeName, key, value);
+    }
+
+    @Override
+    public ByteString read(TreeName treeName, ByteSequence key)
+    {
+      return importer.read(treeName, key);
+    }
+
+    @Override
+    public SequentialCursor<ByteString, ByteString> openCursor(TreeName treeName)
+    {
+      return importer.openCursor(treeName);
+    }
+
+    @Override
+    public void close()
+    {
+      importer.close();
+    }
+  }
+
   /**
    * Write records into a delegated {@link Chunk} after performing a reordering of those records in regards of their key
    * by using a best-effort algorithm. This class is intended to be used when records are initially ordered but might
@@ -2771,7 +3559,7 @@ final class OnDiskMergeImporter
   }
 
   /** Executor delegating the execution of task to the current thread. */
-  private static Executor sameThreadExecutor()
+  static Executor sameThreadExecutor()
   {
     return new Executor()
     {
@@ -3558,7 +4346,7 @@ final class OnDiskMergeImporter
   /** Visitor pattern allowing to process all type of indexes. */
   private interface IndexVisitor
   {
-    void visitAttributeIndex(Index index);
+    void visitAttributeIndex(DefaultIndex index);
 
     void visitVLVIndex(VLVIndex index);
 
@@ -3588,7 +4376,7 @@ final class OnDiskMergeImporter
     }
 
     @Override
-    public void visitAttributeIndex(Index index)
+    public void visitAttributeIndex(DefaultIndex index)
     {
       index.setTrusted(txn, trustValue);
     }
@@ -3622,21 +4410,27 @@ final class OnDiskMergeImporter
     }
 
     @Override
-    public void visitAttributeIndex(Index index)
+    public void visitAttributeIndex(DefaultIndex index)
     {
       deleteTree(index);
+      index.initializeEmpty(asWriteableTransaction(importer));
     }
 
     @Override
     public void visitVLVIndex(VLVIndex index)
     {
       deleteTree(index);
+      index.initializeEmpty(asWriteableTransaction(importer));
     }
 
     @Override
     public void visitSystemIndex(Tree index)
     {
       deleteTree(index);
+      if (index instanceof DN2ID)
+      {
+        ((DN2ID) index).initializeEmpty(asWriteableTransaction(importer));
+      }
     }
 
     private void deleteTree(Tree index)
@@ -3645,6 +4439,81 @@ final class OnDiskMergeImporter
     }
   }
 
+  private static IndexVisitor saveStatistics(Importer importer)
+  {
+    return new StatisticsSaver(asWriteableTransaction(importer));
+  }
+
+  /** Persist the statistics computed for the visited attribute indexes. */
+  private static final class StatisticsSaver implements IndexVisitor
+  {
+    private final WriteableTransaction txn;
+
+    StatisticsSaver(WriteableTransaction txn)
+    {
+      this.txn = txn;
+    }
+
+    @Override
+    public void visitAttributeIndex(DefaultIndex index)
+    {
+      index.saveStatistics(txn);
+    }
+
+    @Override
+    public void visitVLVIndex(VLVIndex index)
+    {
+      // VLV indexes do not store entry ID sets
+    }
+
+    @Override
+    public void visitSystemIndex(Tree index)
+    {
+      // System indexes do not store entry ID sets
+    }
+  }
+
+  private static IndexVisitor initializeEmpty(Importer importer)
+  {
+    return new EmptyIndexInitializer(asWriteableTransaction(importer));
+  }
+
+  /**
+   * Switch the visited (empty) attribute indexes to the entry ID set encoding configured for the backend and reset
+   * their statistics.
+   */
+  private static final class EmptyIndexInitializer implements IndexVisitor
+  {
+    private final WriteableTransaction txn;
+
+    EmptyIndexInitializer(WriteableTransaction txn)
+    {
+      this.txn = txn;
+    }
+
+    @Override
+    public void visitAttributeIndex(DefaultIndex index)
+    {
+      index.initializeEmpty(txn);
+    }
+
+    @Override
+    public void visitVLVIndex(VLVIndex index)
+    {
+      // VLV indexes do not store entry ID sets
+    }
+
+    @Override
+    public void visitSystemIndex(Tree index)
+    {
+      // System indexes do not store entry ID sets, but the DN tree switches to the compact encoding of entry IDs
+      if (index instanceof DN2ID)
+      {
+        ((DN2ID) index).initializeEmpty(txn);
+      }
+    }
+  }
+
   private static IndexVisitor visitOnlyDegraded(IndexVisitor delegate)
   {
     return new DegradedIndexFilter(delegate);
@@ -3661,7 +4530,7 @@ final class OnDiskMergeImporter
     }
 
     @Override
-    public void visitAttributeIndex(Index index)
+    public void visitAttributeIndex(DefaultIndex index)
     {
       if (!index.isTrusted())
       {
@@ -3701,7 +4570,7 @@ final class OnDiskMergeImporter
     }
 
     @Override
-    public void visitAttributeIndex(Index index)
+    public void visitAttributeIndex(DefaultIndex index)
     {
       addIndex(index);
     }
@@ -3836,7 +4705,7 @@ final class OnDiskMergeImporter
     }
 
     @Override
-    public void visitAttributeIndex(Index index)
+    public void visitAttributeIndex(DefaultIndex index)
     {
       if (predicate.matches(index, null))
       {
@@ -0,0 +1,579 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.messages.BackendMessages.*;
+import static org.opends.server.backends.pluggable.EntryIDSet.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.util.Utils;
+import org.opends.server.backends.pluggable.AttributeIndex.MatchingRuleIndex;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.types.Entry;
+import org.opends.server.types.InitializationException;
+
+/**
+ * Rebuilds attribute indexes while the backend remains enabled.
+ * <p>
+ * Each index is rebuilt into a separate tree, while searches and updates keep using its current records. The entries
+ * are scanned in small batches, each one written in its own short transaction so that concurrent operations are never
+ * blocked for long. Meanwhile, every change made to the indexes by concurrent operations is recorded in a
+ * {@link DeltaLog}. Once the scan is over, the recorded changes are reconciled against the current content of the
+ * entries, in rounds, until few enough remain to reconcile them while holding the exclusive lock of the entry
+ * container. The indexes then switch to their rebuilt trees, trusted, before the lock is released, and the trees
+ * holding their previous records are cleared.
+ */
+final class OnlineIndexRebuilder
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  private static final int MIN_BATCH_SIZE = 10;
+  private static final int INITIAL_BATCH_SIZE = 100;
+  private static final int MAX_BATCH_SIZE = 10000;
+  /** Number of changes below which the last changes are reconciled while holding the exclusive lock. */
+  private static final int FINAL_RECONCILIATION_THRESHOLD = 1000;
+  /** Maximum number of reconciliation rounds before the last one, in case changes keep coming faster. */
+  private static final int MAX_RECONCILIATION_ROUNDS = 10;
+  private static final long PROGRESS_INTERVAL_MS = 10000;
+
+  /**
+   * Records the changes made to the indexes being rebuilt by concurrent operations. Only the entry IDs added to or
+   * removed from each key are recorded: they are reconciled against the content of the entries afterwards, whatever
+   * the change was.
+   */
+  static final class DeltaLog
+  {
+    /** An entry ID whose membership to a key of an index must be reconciled. */
+    private static final class Change
+    {
+      private final DefaultIndex index;
+      private final ByteString key;
+      private final long entryID;
+
+      private Change(DefaultIndex index, ByteString key, long entryID)
+      {
+        this.index = index;
+        this.key = key;
+        this.entryID = entryID;
+      }
+    }
+
+    private volatile Queue<Change> changes = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Records the entry IDs added to or removed from a key of an index.
+     *
+     * @param index
+     *          the updated index
+     * @param key
+     *          the updated key
+     * @param deletedIDs
+     *          the entry IDs removed from the key, may be null
+     * @param addedIDs
+     *          the entry IDs added to the key, may be null
+     */
+    void record(DefaultIndex index, ByteString key, EntryIDSet deletedIDs, EntryIDSet addedIDs)
+    {
+      final Queue<Change> queue = changes;
+      record(queue, index, key, deletedIDs);
+      record(queue, index, key, addedIDs);
+    }
+
+    private static void record(Queue<Change> queue, DefaultIndex index, ByteString key, EntryIDSet entryIDs)
+    {
+      if (entryIDs != null && entryIDs.isDefined())
+      {
+        for (EntryID entryID : entryIDs)
+        {
+          queue.add(new Change(index, key, entryID.longValue()));
+        }
+      }
+    }
+
+    /**
+     * Returns the changes recorded so far and starts recording the next ones in a new queue. This method must be
+     * called while holding the exclusive lock of the entry container, so that all the returned changes belong to
+     * committed transactions.
+     */
+    private Queue<Change> swap()
+    {
+      final Queue<Change> recorded = changes;
+      changes = new ConcurrentLinkedQueue<>();
+      return recorded;
+    }
+  }
+
+  private final EntryContainer entryContainer;
+  private final Storage storage;
+  private final Collection<MatchingRuleIndex> indexes;
+  private final long latencyBudgetMs;
+  private final long totalEntries;
+  private final String indexNames;
+  private final DeltaLog deltaLog = new DeltaLog();
+  private int batchSize = INITIAL_BATCH_SIZE;
+  /** Whether the indexes record their changes into the delta log of this rebuild. */
+  private boolean rebuildStarted;
+
+  /**
+   * Creates a new online index rebuilder.
+   *
+   * @param entryContainer
+   *          the entry container holding the indexes
+   * @param storage
+   *          the storage of the entry container
+   * @param indexes
+   *          the indexes to rebuild
+   * @param latencyBudgetMs
+   *          the maximum duration in milliseconds of the write transactions performed by the rebuild
+   * @param totalEntries
+   *          the number of entries in the entry container, used to report progress
+   */
+  OnlineIndexRebuilder(EntryContainer entryContainer, Storage storage, Collection<MatchingRuleIndex> indexes,
+      long latencyBudgetMs, long totalEntries)
+  {
+    this.entryContainer = entryContainer;
+    this.storage = storage;
+    this.indexes = indexes;
+    this.latencyBudgetMs = latencyBudgetMs;
+    this.totalEntries = totalEntries;
+    final List<String> names = new ArrayList<>(indexes.size());
+    for (MatchingRuleIndex index : indexes)
+    {
+      names.add(index.getName().getIndexId());
+    }
+    this.indexNames = Utils.joinAsString(", ", names);
+  }
+
+  /**
+   * Rebuilds the indexes.
+   *
+   * @throws InitializationException
+   *           if one of the indexes is already being rebuilt online
+   * @throws ExecutionException
+   *           if a problem occurs with the storage
+   * @throws InterruptedException
+   *           if the rebuild is interrupted
+   */
+  void rebuild() throws InitializationException, ExecutionException, InterruptedException
+  {
+    final long startTime = System.currentTimeMillis();
+    boolean completed = false;
+    try
+    {
+      startRebuild();
+      final long nbEntriesProcessed = scanEntries(startTime);
+      final Map<MatchingRuleIndex, TreeName> previousTrees = reconcileConcurrentChanges();
+      completed = true;
+      // Changes are still recorded until then, which prevents another online rebuild from reusing the trees
+      clearUnusedTrees(previousTrees);
+
+      final long totalTime = System.currentTimeMillis() - startTime;
+      final float rate = totalTime > 0 ? 1000f * nbEntriesProcessed / totalTime : 0;
+      logger.info(NOTE_REBUILD_ONLINE_COMPLETE, indexNames);
+      logger.info(NOTE_REBUILD_FINAL_STATUS, nbEntriesProcessed, totalTime / 1000, rate);
+    }
+    finally
+    {
+      if (!completed && rebuildStarted)
+      {
+        // The indexes keep using their previous records.
+        // Indexes rebuilt by another online rebuild are left alone.
+        final Map<MatchingRuleIndex, TreeName> rebuiltTrees = new HashMap<>();
+        for (MatchingRuleIndex index : indexes)
+        {
+          rebuiltTrees.put(index, index.stopOnlineRebuild());
+        }
+        clearUnusedTrees(rebuiltTrees);
+      }
+      stopRecordingChanges();
+    }
+  }
+
+  /**
+   * Starts recording the changes made to the indexes and creates the trees they are rebuilt into, with no concurrent
+   * operation in progress.
+   */
+  private void startRebuild() throws InitializationException, ExecutionException
+  {
+    entryContainer.exclusiveLock.lock();
+    try
+    {
+      for (MatchingRuleIndex index : indexes)
+      {
+        if (!index.startRecordingChanges(deltaLog))
+        {
+          throw new InitializationException(ERR_REBUILD_ONLINE_IN_PROGRESS.get(index.getName().getIndexId()));
+        }
+      }
+      rebuildStarted = true;
+      write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (MatchingRuleIndex index : indexes)
+          {
+            index.startOnlineRebuild(txn);
+          }
+        }
+      });
+    }
+    finally
+    {
+      entryContainer.exclusiveLock.unlock();
+    }
+  }
+
+  /** Indexes all the entries, one batch of entry IDs at a time, and returns the number of entries processed. */
+  private long scanEntries(final long startTime) throws ExecutionException, InterruptedException
+  {
+    long nextID = 0;
+    long nbEntriesProcessed = 0;
+    long lastReportTime = startTime;
+    long lastReportCount = 0;
+    for (;;)
+    {
+      final Map<MatchingRuleIndex, Map<ByteString, EntryIDSet>> batch = new HashMap<>();
+      final long[] lastAndCount = readBatch(nextID, batch);
+      if (lastAndCount[1] == 0)
+      {
+        return nbEntriesProcessed;
+      }
+      nextID = lastAndCount[0] + 1;
+      nbEntriesProcessed += lastAndCount[1];
+
+      final long writeStart = System.currentTimeMillis();
+      write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (Map.Entry<MatchingRuleIndex, Map<ByteString, EntryIDSet>> indexKeys : batch.entrySet())
+          {
+            final MatchingRuleIndex index = indexKeys.getKey();
+            for (Map.Entry<ByteString, EntryIDSet> key : indexKeys.getValue().entrySet())
+            {
+              index.rebuildUpdate(txn, key.getKey(), null, key.getValue());
+            }
+          }
+        }
+      });
+      throttle(System.currentTimeMillis() - writeStart);
+
+      final long now = System.currentTimeMillis();
+      if (now - lastReportTime >= PROGRESS_INTERVAL_MS)
+      {
+        final float progressPercent = totalEntries > 0 ? Math.round((100f * nbEntriesProcessed) / totalEntries) : 0;
+        final float rate = 1000f * (nbEntriesProcessed - lastReportCount) / (now - lastReportTime);
+        logger.info(NOTE_REBUILD_PROGRESS_REPORT, progressPercent, nbEntriesProcessed, totalEntries, rate);
+        lastReportTime = now;
+        lastReportCount = nbEntriesProcessed;
+      }
+    }
+  }
+
+  /**
+   * Reads the next batch of entries starting from the provided entry ID and computes their index keys.
+   *
+   * @return the last entry ID read and the number of entries read
+   */
+  private long[] readBatch(final long firstID, final Map<MatchingRuleIndex, Map<ByteString, EntryIDSet>> batch)
+      throws ExecutionException
+  {
+    return read(new ReadOperation<long[]>()
+    {
+      @Override
+      public long[] run(ReadableTransaction txn) throws Exception
+      {
+        final long[] lastAndCount = new long[2];
+        try (final Cursor<EntryID, Entry> cursor = entryContainer.getID2Entry().openCursor(txn))
+        {
+          boolean found = cursor.positionToKeyOrNext(new EntryID(firstID).toByteString());
+          while (found && lastAndCount[1] < batchSize)
+          {
+            final EntryID entryID = cursor.getKey();
+            final Entry entry = cursor.getValue();
+            for (MatchingRuleIndex index : indexes)
+            {
+              addEntryKeys(batch, index, entryID, index.indexEntry(entry));
+            }
+            lastAndCount[0] = entryID.longValue();
+            lastAndCount[1]++;
+            found = cursor.next();
+          }
+        }
+        return lastAndCount;
+      }
+    });
+  }
+
+  private static void addEntryKeys(Map<MatchingRuleIndex, Map<ByteString, EntryIDSet>> batch,
+      MatchingRuleIndex index, EntryID entryID, Set<ByteString> keys)
+  {
+    Map<ByteString, EntryIDSet> indexKeys = batch.get(index);
+    if (indexKeys == null)
+    {
+      // Sort the keys in order to write them sequentially
+      indexKeys = new TreeMap<>();
+      batch.put(index, indexKeys);
+    }
+    for (ByteString key : keys)
+    {
+      EntryIDSet entryIDs = indexKeys.get(key);
+      if (entryIDs == null)
+      {
+        entryIDs = newDefinedSet();
+        indexKeys.put(key, entryIDs);
+      }
+      entryIDs.add(entryID);
+    }
+  }
+
+  /**
+   * Reconciles the changes made by concurrent operations since the rebuild started, then switches the indexes to their
+   * rebuilt trees.
+   *
+   * @return the trees holding the previous records of the indexes
+   */
+  private Map<MatchingRuleIndex, TreeName> reconcileConcurrentChanges() throws ExecutionException, InterruptedException
+  {
+    for (int round = 0; round < MAX_RECONCILIATION_ROUNDS; round++)
+    {
+      final Queue<DeltaLog.Change> changes = swapDeltaLog();
+      if (changes.size() < FINAL_RECONCILIATION_THRESHOLD)
+      {
+        reconcile(changes, false);
+        break;
+      }
+      reconcile(changes, true);
+    }
+
+    entryContainer.exclusiveLock.lock();
+    try
+    {
+      reconcile(deltaLog.swap(), false);
+      write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (MatchingRuleIndex index : indexes)
+          {
+            index.finishOnlineRebuild(txn);
+          }
+        }
+      });
+      final Map<MatchingRuleIndex, TreeName> previousTrees = new HashMap<>();
+      for (MatchingRuleIndex index : indexes)
+      {
+        previousTrees.put(index, index.useRebuiltTree());
+      }
+      return previousTrees;
+    }
+    finally
+    {
+      entryContainer.exclusiveLock.unlock();
+    }
+  }
+
+  private Queue<DeltaLog.Change> swapDeltaLog()
+  {
+    entryContainer.exclusiveLock.lock();
+    try
+    {
+      return deltaLog.swap();
+    }
+    finally
+    {
+      entryContainer.exclusiveLock.unlock();
+    }
+  }
+
+  /**
+   * Makes the membership of each recorded entry ID to its key match the current content of the entry. Entries are
+   * processed in the order of their IDs, one batch per write transaction.
+   */
+  private void reconcile(Queue<DeltaLog.Change> changes, boolean throttled)
+      throws ExecutionException, InterruptedException
+  {
+    if (changes.isEmpty())
+    {
+      return;
+    }
+    logger.info(NOTE_REBUILD_ONLINE_RECONCILING, indexNames, changes.size());
+
+    final TreeMap<Long, Map<MatchingRuleIndex, Set<ByteString>>> changesByID = new TreeMap<>();
+    for (DeltaLog.Change change : changes)
+    {
+      Map<MatchingRuleIndex, Set<ByteString>> keysByIndex = changesByID.get(change.entryID);
+      if (keysByIndex == null)
+      {
+        keysByIndex = new HashMap<>();
+        changesByID.put(change.entryID, keysByIndex);
+      }
+      // Only the indexes being rebuilt record their changes
+      final MatchingRuleIndex index = (MatchingRuleIndex) change.index;
+      Set<ByteString> keys = keysByIndex.get(index);
+      if (keys == null)
+      {
+        keys = new HashSet<>();
+        keysByIndex.put(index, keys);
+      }
+      keys.add(change.key);
+    }
+
+    while (!changesByID.isEmpty())
+    {
+      final List<Map.Entry<Long, Map<MatchingRuleIndex, Set<ByteString>>>> batch = new ArrayList<>();
+      while (!changesByID.isEmpty() && batch.size() < batchSize)
+      {
+        batch.add(changesByID.pollFirstEntry());
+      }
+
+      final long writeStart = System.currentTimeMillis();
+      write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (Map.Entry<Long, Map<MatchingRuleIndex, Set<ByteString>>> entryChanges : batch)
+          {
+            final EntryID entryID = new EntryID(entryChanges.getKey());
+            final EntryIDSet entryIDs = newDefinedSet(entryID.longValue());
+            final Entry entry = entryContainer.getID2Entry().get(txn, entryID);
+            for (Map.Entry<MatchingRuleIndex, Set<ByteString>> indexKeys : entryChanges.getValue().entrySet())
+            {
+              final MatchingRuleIndex index = indexKeys.getKey();
+              final Set<ByteString> entryKeys = entry != null ? index.indexEntry(entry) : null;
+              for (ByteString key : indexKeys.getValue())
+              {
+                if (entryKeys != null && entryKeys.contains(key))
+                {
+                  index.rebuildUpdate(txn, key, null, entryIDs);
+                }
+                else
+                {
+                  index.rebuildUpdate(txn, key, entryIDs, null);
+                }
+              }
+            }
+          }
+        }
+      });
+      if (throttled)
+      {
+        throttle(System.currentTimeMillis() - writeStart);
+      }
+    }
+  }
+
+  /**
+   * Adapts the size of the next batch so that write transactions stay within the latency budget, then pauses as long
+   * as the last write transaction took in order to leave room for concurrent operations.
+   */
+  private void throttle(long writeTimeMs) throws InterruptedException
+  {
+    if (writeTimeMs > latencyBudgetMs)
+    {
+      batchSize = Math.max(MIN_BATCH_SIZE, batchSize / 2);
+    }
+    else if (writeTimeMs < latencyBudgetMs / 2)
+    {
+      batchSize = Math.min(MAX_BATCH_SIZE, batchSize + INITIAL_BATCH_SIZE);
+    }
+    if (writeTimeMs > 0)
+    {
+      Thread.sleep(writeTimeMs);
+    }
+  }
+
+  /** Removes the records of the trees not used by the indexes anymore. Failing to do so only wastes space. */
+  private void clearUnusedTrees(final Map<MatchingRuleIndex, TreeName> unusedTrees)
+  {
+    try
+    {
+      write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (Map.Entry<MatchingRuleIndex, TreeName> unusedTree : unusedTrees.entrySet())
+          {
+            if (unusedTree.getValue() != null)
+            {
+              unusedTree.getKey().clearUnusedTree(txn, unusedTree.getValue());
+            }
+          }
+        }
+      });
+    }
+    catch (ExecutionException e)
+    {
+      logger.traceException(e);
+    }
+  }
+
+  private void stopRecordingChanges()
+  {
+    for (MatchingRuleIndex index : indexes)
+    {
+      index.stopRecordingChanges(deltaLog);
+    }
+  }
+
+  private <T> T read(ReadOperation<T> readOperation) throws ExecutionException
+  {
+    try
+    {
+      return storage.read(readOperation);
+    }
+    catch (Exception e)
+    {
+      throw new ExecutionException(e);
+    }
+  }
+
+  private void write(WriteOperation writeOperation) throws ExecutionException
+  {
+    try
+    {
+      storage.write(writeOperation);
+    }
+    catch (Exception e)
+    {
+      throw new ExecutionException(e);
+    }
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.messages.BackendMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.api.EntryCache;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+
+/**
+ * Decodes the candidate entries of a search and evaluates the search filter against them on a bounded pool of
+ * threads, while the thread processing the search keeps reading the candidates from the storage.
+ * <p>
+ * Candidates are grouped in batches which are processed concurrently, and the matching entries are returned in the
+ * order the candidates were added. The number of batches in flight is bounded, so that a search going through the
+ * whole backend never holds more than a few batches in memory. Storage is only accessed by the thread processing the
+ * search, since transactions are not meant to be shared between threads.
+ * <p>
+ * This class is not thread-safe: it must only be used by the thread processing the search.
+ */
+final class ParallelEntryFilter implements Closeable
+{
+  /** Number of candidates processed by each task. */
+  private static final int BATCH_SIZE = 64;
+  /** Number of batches in flight per thread of the pool. */
+  private static final int BATCHES_IN_FLIGHT_PER_THREAD = 2;
+
+  /** A candidate entry which matched the search filter. */
+  static final class Match
+  {
+    private final ByteString cookie;
+    private final Entry entry;
+
+    private Match(ByteString cookie, Entry entry)
+    {
+      this.cookie = cookie;
+      this.entry = entry;
+    }
+
+    /**
+     * Returns the cookie provided with the candidate, used to resume the search from this entry.
+     *
+     * @return the cookie provided with the candidate
+     */
+    ByteString getCookie()
+    {
+      return cookie;
+    }
+
+    Entry getEntry()
+    {
+      return entry;
+    }
+  }
+
+  /** A candidate entry, either already decoded when found in the entry cache, or as read from id2entry. */
+  private static final class Candidate
+  {
+    private final EntryID entryID;
+    private final ByteString cookie;
+    private final Entry cachedEntry;
+    private final ByteString encodedEntry;
+
+    private Candidate(EntryID entryID, ByteString cookie, Entry cachedEntry, ByteString encodedEntry)
+    {
+      this.entryID = entryID;
+      this.cookie = cookie;
+      this.cachedEntry = cachedEntry;
+      this.encodedEntry = encodedEntry;
+    }
+  }
+
+  private final ExecutorService executor;
+  private final int maxBatchesInFlight;
+  private final ID2Entry id2entry;
+  private final EntryCache<?> entryCache;
+  private final String backendID;
+  private final SearchFilter filter;
+  private final boolean manageDsaIT;
+
+  private final Deque<Future<List<Match>>> batchesInFlight = new ArrayDeque<>();
+  private List<Candidate> batch = new ArrayList<>(BATCH_SIZE);
+  private Iterator<Match> matches = Collections.emptyIterator();
+
+  /**
+   * Creates a new parallel entry filter.
+   *
+   * @param executor
+   *          the pool of threads decoding and filtering the entries
+   * @param parallelism
+   *          the number of threads of the pool
+   * @param id2entry
+   *          the entry tree, used to decode the entries
+   * @param entryCache
+   *          the entry cache where to put the decoded entries
+   * @param backendID
+   *          the ID of the backend
+   * @param filter
+   *          the search filter
+   * @param manageDsaIT
+   *          whether the referral entries must be returned as regular entries
+   */
+  ParallelEntryFilter(ExecutorService executor, int parallelism, ID2Entry id2entry, EntryCache<?> entryCache,
+      String backendID, SearchFilter filter, boolean manageDsaIT)
+  {
+    this.executor = executor;
+    this.maxBatchesInFlight = Math.max(1, parallelism * BATCHES_IN_FLIGHT_PER_THREAD);
+    this.id2entry = id2entry;
+    this.entryCache = entryCache;
+    this.backendID = backendID;
+    this.filter = filter;
+    this.manageDsaIT = manageDsaIT;
+  }
+
+  /**
+   * Adds a candidate entry.
+   *
+   * @param entryID
+   *          the ID of the candidate entry
+   * @param cookie
+   *          the cookie returned with the match, if the candidate matches the search filter
+   * @param cachedEntry
+   *          the candidate entry if it was found in the entry cache, or {@code null}
+   * @param encodedEntry
+   *          the candidate entry as read from id2entry if it was not found in the entry cache, or {@code null}
+   */
+  void add(EntryID entryID, ByteString cookie, Entry cachedEntry, ByteString encodedEntry)
+  {
+    batch.add(new Candidate(entryID, cookie, cachedEntry, encodedEntry));
+    if (batch.size() >= BATCH_SIZE)
+    {
+      flush();
+    }
+  }
+
+  /** Submits the candidates added since the last batch was submitted. */
+  void flush()
+  {
+    if (!batch.isEmpty())
+    {
+      final List<Candidate> candidates = batch;
+      batch = new ArrayList<>(BATCH_SIZE);
+      final FutureTask<List<Match>> task = new FutureTask<>(new Callable<List<Match>>()
+      {
+        @Override
+        public List<Match> call() throws Exception
+        {
+          return evaluate(candidates);
+        }
+      });
+      try
+      {
+        executor.execute(task);
+      }
+      catch (RejectedExecutionException e)
+      {
+        // The pool has been shut down after a configuration change: process the batch in this thread.
+        task.run();
+      }
+      batchesInFlight.add(task);
+    }
+  }
+
+  private List<Match> evaluate(List<Candidate> candidates) throws DirectoryException
+  {
+    final List<Match> results = new ArrayList<>();
+    for (Candidate candidate : candidates)
+    {
+      Entry entry = candidate.cachedEntry;
+      if (entry == null)
+      {
+        entry = id2entry.decode(candidate.entryID, candidate.encodedEntry);
+        // Put the entry in the cache making sure not to overwrite a newer copy
+        // that may have been inserted since the time we read the cache.
+        entryCache.putEntryIfAbsent(entry, backendID, candidate.entryID.longValue());
+      }
+      if ((manageDsaIT || entry.getReferralURLs() == null) && filter.matchesEntry(entry))
+      {
+        results.add(new Match(candidate.cookie, entry));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns the next entry matching the search filter, in the order the candidates were added. Unless it is asked to
+   * wait, this method only blocks when the maximum number of batches in flight has been reached, so that the caller
+   * can keep adding candidates while the pool is busy.
+   *
+   * @param wait
+   *          whether to wait for the batches in flight, {@link #flush()} should be called before
+   * @return the next matching entry, or {@code null} if there is none yet (or none at all when waiting)
+   * @throws DirectoryException
+   *           if an entry could not be decoded or filtered
+   */
+  Match next(boolean wait) throws DirectoryException
+  {
+    while (!matches.hasNext())
+    {
+      final Future<List<Match>> head = batchesInFlight.peek();
+      if (head == null
+          || (!wait && !head.isDone() && batchesInFlight.size() < maxBatchesInFlight))
+      {
+        return null;
+      }
+      batchesInFlight.poll();
+      matches = getMatches(head).iterator();
+    }
+    return matches.next();
+  }
+
+  private List<Match> getMatches(Future<List<Match>> future) throws DirectoryException
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+          ERR_INTERRUPTED_ERROR.get(stackTraceToSingleLineString(e)), e);
+    }
+    catch (ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof DirectoryException)
+      {
+        throw (DirectoryException) cause;
+      }
+      String msg = cause.getMessage();
+      if (msg == null)
+      {
+        msg = stackTraceToSingleLineString(cause);
+      }
+      throw new DirectoryException(
+          DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), ERR_UNCHECKED_EXCEPTION.get(msg), cause);
+    }
+  }
+
+  /** Cancels the batches in flight, whose results are no longer needed. */
+  @Override
+  public void close()
+  {
+    for (Future<List<Match>> future : batchesInFlight)
+    {
+      future.cancel(false);
+    }
+    batchesInFlight.clear();
+    batch.clear();
+    matches = Collections.emptyIterator();
+  }
+}
@@ -22,11 +22,14 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.io.ASN1;
 import org.forgerock.opendj.io.ASN1Reader;
 import org.forgerock.opendj.io.ASN1Writer;
+import org.forgerock.opendj.ldap.ByteSequence;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ByteStringBuilder;
 import org.opends.server.api.CompressedSchema;
@@ -54,11 +57,15 @@ final class PersistentCompressedSchema extends CompressedSchema
   private static final String DB_NAME_AD = "compressed_attributes";
   /** The name of the tree used to store compressed object class set definitions. */
   private static final String DB_NAME_OC = "compressed_object_classes";
+  /** The name of the tree used to store entry compression dictionaries. */
+  private static final String DB_NAME_DICTIONARIES = "compressed_dictionaries";
 
   /** The compressed attribute description schema tree. */
   private static final TreeName adTreeName = new TreeName("compressed_schema", DB_NAME_AD);
   /** The compressed object class set schema tree. */
   private static final TreeName ocTreeName = new TreeName("compressed_schema", DB_NAME_OC);
+  /** The entry compression dictionaries tree. */
+  private static final TreeName dictionariesTreeName = new TreeName("compressed_schema", DB_NAME_DICTIONARIES);
 
   /** The storage in which the trees are held. */
   private final Storage storage;
@@ -68,6 +75,14 @@ final class PersistentCompressedSchema extends CompressedSchema
   private final ByteStringBuilder storeObjectClassesWriterBuffer = new ByteStringBuilder();
   private final ASN1Writer storeObjectClassesWriter = ASN1.getWriter(storeObjectClassesWriterBuffer);
 
+  /** The entry compression dictionaries, by identifier. */
+  private final Map<Integer, CompressionDictionary> compressionDictionaries = new ConcurrentHashMap<>();
+  /** The dictionary used to compress new entries, {@code null} until one has been trained. */
+  private volatile CompressionDictionary currentCompressionDictionary;
+  private final Object compressionDictionaryTrainerLock = new Object();
+  /** Collects the samples of the next dictionary, {@code null} if no dictionary must be trained. */
+  private CompressionDictionaryTrainer compressionDictionaryTrainer;
+
   /**
    * Creates a new instance of this compressed schema manager.
    *
@@ -137,6 +152,69 @@ final class PersistentCompressedSchema extends CompressedSchema
     }
   }
 
+  /**
+   * Returns the entry compression dictionary having the provided identifier.
+   *
+   * @param id
+   *          the identifier of the dictionary
+   * @return the dictionary, or {@code null} if there is no dictionary with this identifier
+   */
+  CompressionDictionary getCompressionDictionary(int id)
+  {
+    return compressionDictionaries.get(id);
+  }
+
+  /**
+   * Returns the dictionary to use for compressing new entries.
+   *
+   * @return the dictionary to use for compressing new entries, or {@code null} if no dictionary has been trained yet
+   */
+  CompressionDictionary getCurrentCompressionDictionary()
+  {
+    return currentCompressionDictionary;
+  }
+
+  /**
+   * Provides an encoded entry to train the entry compression dictionary with. Once enough samples have been provided,
+   * the dictionary is trained and stored, then returned by {@link #getCurrentCompressionDictionary()}.
+   *
+   * @param sample
+   *          an encoded entry
+   */
+  void addCompressionDictionarySample(ByteSequence sample)
+  {
+    final CompressionDictionaryTrainer trainer;
+    synchronized (compressionDictionaryTrainerLock)
+    {
+      if (compressionDictionaryTrainer == null || !compressionDictionaryTrainer.addSample(sample))
+      {
+        return;
+      }
+      trainer = compressionDictionaryTrainer;
+      compressionDictionaryTrainer = null;
+    }
+
+    // Only the thread providing the last sample gets here
+    final byte[] bytes = trainer.train();
+    if (bytes == null)
+    {
+      return;
+    }
+    final CompressionDictionary dictionary = new CompressionDictionary(compressionDictionaries.size() + 1, bytes);
+    try
+    {
+      store(dictionariesTreeName, ByteString.valueOfInt(dictionary.getID()).toByteArray(),
+          new ByteStringBuilder(bytes.length).appendBytes(bytes));
+      compressionDictionaries.put(dictionary.getID(), dictionary);
+      currentCompressionDictionary = dictionary;
+    }
+    catch (DirectoryException e)
+    {
+      // Entries will be compressed without dictionary
+      logger.traceException(e);
+    }
+  }
+
   private void load(WriteableTransaction txn, boolean shouldCreate)
       throws StorageRuntimeException, InitializationException
   {
@@ -191,6 +269,42 @@ final class PersistentCompressedSchema extends CompressedSchema
       logger.traceException(e);
       throw new InitializationException(ERR_COMPSCHEMA_CANNOT_DECODE_AD_TOKEN.get(e.getMessage()), e);
     }
+
+    loadCompressionDictionaries(txn, shouldCreate);
+  }
+
+  private void loadCompressionDictionaries(WriteableTransaction txn, boolean shouldCreate)
+  {
+    try
+    {
+      txn.openTree(dictionariesTreeName, shouldCreate);
+      try (Cursor<ByteString, ByteString> cursor = txn.openCursor(dictionariesTreeName))
+      {
+        while (cursor.next())
+        {
+          final CompressionDictionary dictionary =
+              new CompressionDictionary(cursor.getKey().toInt(), cursor.getValue().toByteArray());
+          compressionDictionaries.put(dictionary.getID(), dictionary);
+          if (currentCompressionDictionary == null || currentCompressionDictionary.getID() < dictionary.getID())
+          {
+            currentCompressionDictionary = dictionary;
+          }
+        }
+      }
+    }
+    catch (StorageRuntimeException e)
+    {
+      if (shouldCreate)
+      {
+        throw e;
+      }
+      // Read-only storage created by a previous version, hence without dictionaries
+      logger.traceException(e);
+    }
+    if (shouldCreate && currentCompressionDictionary == null)
+    {
+      compressionDictionaryTrainer = new CompressionDictionaryTrainer();
+    }
   }
 
   private boolean store(final TreeName treeName, final byte[] key, final ByteStringBuilder value)
@@ -16,6 +16,7 @@
  */
 package org.opends.server.backends.pluggable;
 
+import static org.forgerock.util.Utils.*;
 import static org.opends.messages.BackendMessages.*;
 import static org.opends.server.util.StaticUtils.*;
 
@@ -26,6 +27,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -63,6 +66,8 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
 
   /** The tree storage. */
   private final Storage storage;
+  /** The I/O metrics of the trees of the storage. */
+  private final StorageMetrics storageMetrics;
 
   /** The ID of the backend to which this entry root container belongs. */
   private final String backendId;
@@ -82,6 +87,11 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
 
   private final ServerContext serverContext;
 
+  /** The threads decoding and filtering the candidate entries of unindexed searches, created on demand. */
+  private ExecutorService searchExecutor;
+  /** The number of threads of {@link #searchExecutor}. */
+  private int searchParallelism = 1;
+
   /**
    * Creates a new RootContainer object representing a storage.
    *
@@ -90,14 +100,18 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
    *          container.
    * @param serverContext
    *          The server context.
+   * @param storageMetrics
+   *          The I/O metrics recorded by the storage.
    * @param config
    *          The configuration of the backend.
    */
-  RootContainer(String backendID, ServerContext serverContext, Storage storage, PluggableBackendCfg config)
+  RootContainer(String backendID, ServerContext serverContext, Storage storage, StorageMetrics storageMetrics,
+      PluggableBackendCfg config)
   {
     this.backendId = backendID;
     this.serverContext = serverContext;
     this.storage = storage;
+    this.storageMetrics = storageMetrics;
     this.config = config;
 
     getMonitorProvider().enableFilterUseStats(config.isIndexFilterAnalyzerEnabled());
@@ -116,6 +130,16 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
     return storage;
   }
 
+  /**
+   * Returns the I/O metrics of the trees of the storage.
+   *
+   * @return the I/O metrics of the trees of the storage
+   */
+  StorageMetrics getStorageMetrics()
+  {
+    return storageMetrics;
+  }
+
   /**
    * Opens the root container.
    *
@@ -269,6 +293,39 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
     return monitor;
   }
 
+  /**
+   * Returns the pool of threads decoding and filtering the candidate entries of unindexed searches. The pool is
+   * dedicated to this backend, so that expensive searches do not use more threads than configured.
+   *
+   * @return the pool of threads, or {@code null} if unindexed searches are processed by a single thread
+   */
+  synchronized ExecutorService getSearchExecutor()
+  {
+    final int parallelism = config.getUnindexedSearchParallelism();
+    if (parallelism != searchParallelism)
+    {
+      // Searches using the previous pool can complete: they process the remaining candidates by themselves
+      shutdownSearchExecutor();
+      if (parallelism > 1)
+      {
+        searchExecutor = Executors.newFixedThreadPool(parallelism,
+            newThreadFactory(null, "SEARCH-FILTER-" + backendId + "-%d", true));
+      }
+      searchParallelism = parallelism;
+    }
+    return searchExecutor;
+  }
+
+  private synchronized void shutdownSearchExecutor()
+  {
+    if (searchExecutor != null)
+    {
+      searchExecutor.shutdown();
+      searchExecutor = null;
+    }
+    searchParallelism = 1;
+  }
+
   /**
    * Preload the tree cache. There is no preload if the configured preload
    * time limit is zero.
@@ -333,6 +390,7 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
       }
     }
     config.removePluggableChangeListener(this);
+    shutdownSearchExecutor();
     if (storage != null)
     {
       storage.close();
@@ -432,6 +490,18 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
     return new EntryID(nextEntryID.getAndIncrement());
   }
 
+  /**
+   * Assign a range of consecutive entry IDs.
+   *
+   * @param count
+   *          The number of entry IDs to assign.
+   * @return The first assigned entry ID.
+   */
+  EntryID getNextEntryIDs(int count)
+  {
+    return new EntryID(nextEntryID.getAndAdd(count));
+  }
+
   /** Resets the next entry ID counter to zero. This should only be used after clearing all trees. */
   public void resetNextEntryID()
   {
@@ -79,6 +79,27 @@ final class ShardedCounter extends AbstractTree
         CursorTransformer.<ByteString, ByteString, Void> constant(null)));
   }
 
+  /**
+   * Opens a cursor over the counters whose key starts with the provided prefix, in key order. Each counter is read
+   * once, with the sum of all its shards as value.
+   */
+  SequentialCursor<ByteString, Long> openCountersCursor(ReadableTransaction txn, ByteSequence keyPrefix)
+  {
+    return new CountersCursor(openCursor0(txn), keyPrefix);
+  }
+
+  /**
+   * Returns the lowest counter key greater than or equal to the provided key, or {@code null} if there is none. The
+   * counter keys must not be the prefix of one another, otherwise their shards would not sort in the key order.
+   */
+  ByteString getCeilingKey(ReadableTransaction txn, ByteSequence key)
+  {
+    try (Cursor<ByteString, Long> cursor = openCursor0(txn))
+    {
+      return cursor.positionToKeyOrNext(key) ? cursor.getKey() : null;
+    }
+  }
+
   private Cursor<ByteString, Long> openCursor0(ReadableTransaction txn)
   {
     return transformKeysAndValues(txn.openCursor(getName()), TO_KEY, TO_LONG);
@@ -204,6 +225,75 @@ final class ShardedCounter extends AbstractTree
     }
   }
 
+  /** Sums the shards of each counter whose key starts with a given prefix. */
+  private static final class CountersCursor implements SequentialCursor<ByteString, Long>
+  {
+    private final Cursor<ByteString, Long> delegate;
+    private final ByteSequence keyPrefix;
+    private boolean initialized;
+    private ByteString key;
+    private long count;
+
+    CountersCursor(Cursor<ByteString, Long> delegate, ByteSequence keyPrefix)
+    {
+      this.delegate = delegate;
+      this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public boolean next()
+    {
+      final boolean onRecord = initialized ? delegate.isDefined() : delegate.positionToKeyOrNext(keyPrefix);
+      initialized = true;
+      if (!onRecord || !delegate.getKey().startsWith(keyPrefix))
+      {
+        key = null;
+        return false;
+      }
+      key = delegate.getKey();
+      count = 0;
+      do
+      {
+        count += delegate.getValue();
+      }
+      while (delegate.next() && key.equals(delegate.getKey()));
+      return true;
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return key != null;
+    }
+
+    @Override
+    public ByteString getKey() throws NoSuchElementException
+    {
+      UniqueKeysCursor.throwIfUndefined(this);
+      return key;
+    }
+
+    @Override
+    public Long getValue() throws NoSuchElementException
+    {
+      UniqueKeysCursor.throwIfUndefined(this);
+      return count;
+    }
+
+    @Override
+    public void delete() throws NoSuchElementException, UnsupportedOperationException
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close()
+    {
+      key = null;
+      delegate.close();
+    }
+  }
+
   /**
    * Cursor that returns unique keys and null values. Ensure that {@link #getKey()} will return a different key after
    * each {@link #next()}.
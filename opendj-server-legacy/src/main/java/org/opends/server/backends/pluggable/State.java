@@ -25,7 +25,9 @@ import java.util.Collections;
 import java.util.EnumSet;
 
 import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteSequenceReader;
 import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
 import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
 import org.opends.server.backends.pluggable.spi.TreeName;
@@ -55,7 +57,22 @@ class State extends AbstractTree
     TRUSTED(0x01),
 
     /** Use compact encoding for indexes' ID storage. */
-    COMPACTED(0x02);
+    COMPACTED(0x02),
+
+    /**
+     * Use compressed bitmap encoding for indexes' ID storage.
+     * @see {@link EntryIDSet.EntryIDSetCodecV4}
+     */
+    BITMAP(0x04),
+
+    /** Maintain the count of records of each key range of a VLV index. */
+    RANGE_COUNTED(0x08),
+
+    /** Use compact encoding for the entry IDs stored in the DN tree. */
+    COMPACT_ENTRY_IDS(0x10),
+
+    /** The records of the index are in its shadow tree, where it was last rebuilt online. */
+    SHADOW_TREE(0x20);
 
     static final EnumSet<IndexFlag> ALL_FLAGS = EnumSet.allOf(IndexFlag.class);
 
@@ -119,7 +136,7 @@ class State extends AbstractTree
       {
         final EnumSet<IndexFlag> currentFlags = decodeFlagsOrGetDefault(oldValue);
         currentFlags.addAll(Arrays.asList(flags));
-        return encodeFlags(currentFlags);
+        return encodeFlags(currentFlags, oldValue);
       }
     });
   }
@@ -140,12 +157,66 @@ class State extends AbstractTree
     return indexState;
   }
 
-  private static ByteString encodeFlags(EnumSet<IndexFlag> flags) {
+  /** Encodes the flags while preserving the index statistics which may follow them in the old value. */
+  private static ByteString encodeFlags(EnumSet<IndexFlag> flags, ByteSequence oldValue) {
     byte value = 0;
     for(IndexFlag flag : flags) {
       value |= flag.mask;
     }
-    return ByteString.valueOfBytes(new byte[] { value });
+    final ByteStringBuilder builder = new ByteStringBuilder().appendByte(value);
+    if (oldValue != null && oldValue.length() > 1) {
+      builder.appendBytes(oldValue.subSequence(1, oldValue.length()));
+    }
+    return builder.toByteString();
+  }
+
+  /**
+   * Fetch the statistics of an index from the tree.
+   * @param txn a non null transaction
+   * @param indexTreeName The tree's name of the index
+   * @return The statistics of the index or null if they have never been persisted.
+   * @throws NullPointerException if txn or index is null
+   * @throws StorageRuntimeException If an error occurs in the storage.
+   */
+  IndexStatistics getIndexStatistics(ReadableTransaction txn, TreeName indexTreeName) throws StorageRuntimeException {
+    checkNotNull(txn, "txn must not be null");
+    checkNotNull(indexTreeName, "indexTreeName must not be null");
+
+    return decodeStatistics(txn.read(getName(), keyForIndex(indexTreeName)));
+  }
+
+  private static IndexStatistics decodeStatistics(ByteSequence value) {
+    if (value == null || value.length() <= 1) {
+      return null;
+    }
+    final ByteSequenceReader reader = value.asReader();
+    reader.skip(1);
+    return IndexStatistics.readFrom(reader);
+  }
+
+  /**
+   * Persist the statistics of an index in the tree, next to its flags.
+   * @param txn a non null transaction
+   * @param indexTreeName The tree's name of the index
+   * @param statistics The statistics to persist
+   * @throws NullPointerException if txn, index or statistics is null
+   * @throws StorageRuntimeException If an error occurs in the storage.
+   */
+  void putIndexStatistics(WriteableTransaction txn, TreeName indexTreeName, final IndexStatistics statistics)
+      throws StorageRuntimeException {
+    checkNotNull(txn, "txn must not be null");
+    checkNotNull(indexTreeName, "indexTreeName must not be null");
+    checkNotNull(statistics, "statistics must not be null");
+
+    txn.update(getName(), keyForIndex(indexTreeName), new UpdateFunction()
+    {
+      @Override
+      public ByteSequence computeNewValue(ByteSequence oldValue)
+      {
+        final ByteSequence flags = encodeFlags(decodeFlagsOrGetDefault(oldValue), null);
+        return statistics.appendTo(new ByteStringBuilder().appendBytes(flags)).toByteString();
+      }
+    });
   }
 
   /**
@@ -168,7 +239,7 @@ class State extends AbstractTree
       {
         final EnumSet<IndexFlag> currentFlags = decodeFlagsOrGetDefault(oldValue);
         currentFlags.removeAll(Arrays.asList(flags));
-        return encodeFlags(currentFlags);
+        return encodeFlags(currentFlags, oldValue);
       }
     });
   }
@@ -176,7 +247,9 @@ class State extends AbstractTree
   @Override
   public String valueToString(ByteString value)
   {
-    return joinAsString(" ", decodeFlagsOrGetDefault(value));
+    final String flags = joinAsString(" ", decodeFlagsOrGetDefault(value));
+    final IndexStatistics statistics = decodeStatistics(value);
+    return statistics != null ? flags + " " + statistics : flags;
   }
 
   /**
@@ -0,0 +1,172 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.opends.server.backends.pluggable.spi.TreeName;
+
+/**
+ * The I/O metrics of the trees of a storage, as recorded by {@link MeteredStorage}: the number of operations and of
+ * bytes read and written per tree, along with the latency of the operations. They tell which tree, hence which index,
+ * is responsible for the load or the latency of the storage.
+ */
+final class StorageMetrics
+{
+  /**
+   * Distribution of the latencies of an operation. Bucket {@code n} counts the latencies between {@code 2^(n-1)}
+   * inclusive and {@code 2^n} exclusive microseconds, bucket 0 counting the latencies below one microsecond.
+   */
+  static final class Latencies
+  {
+    private static final int NB_BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records the latency of an operation.
+     *
+     * @param nanos the latency of the operation, in nanoseconds
+     */
+    void record(long nanos)
+    {
+      final long micros = NANOSECONDS.toMicros(nanos);
+      buckets.incrementAndGet(Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), NB_BUCKETS - 1));
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+      {
+        max = maxNanos.get();
+      }
+    }
+
+    long getCount()
+    {
+      return count.get();
+    }
+
+    long getAverageMicros()
+    {
+      final long nb = count.get();
+      return nb != 0 ? NANOSECONDS.toMicros(totalNanos.get() / nb) : 0;
+    }
+
+    long getMaxMicros()
+    {
+      return NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the latencies, which is the upper bound of the bucket where
+     * the percentile falls.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return an upper bound of the percentile of the latencies, in microseconds
+     */
+    long getPercentileMicros(double percentile)
+    {
+      final long threshold = (long) Math.ceil(count.get() * percentile / 100);
+      long cumulated = 0;
+      for (int i = 0; i < NB_BUCKETS; i++)
+      {
+        cumulated += buckets.get(i);
+        if (cumulated >= threshold && cumulated > 0)
+        {
+          return Math.min(1L << i, getMaxMicros());
+        }
+      }
+      return getMaxMicros();
+    }
+
+    @Override
+    public String toString()
+    {
+      return "count:" + getCount() + " avg:" + getAverageMicros() + " p99:" + getPercentileMicros(99)
+          + " max:" + getMaxMicros();
+    }
+  }
+
+  /** The metrics of one tree. */
+  static final class TreeMetrics
+  {
+    final AtomicLong reads = new AtomicLong();
+    final AtomicLong bytesRead = new AtomicLong();
+    final AtomicLong writes = new AtomicLong();
+    final AtomicLong deletes = new AtomicLong();
+    final AtomicLong bytesWritten = new AtomicLong();
+    final AtomicLong cursors = new AtomicLong();
+    final AtomicLong cursorSteps = new AtomicLong();
+    /** Latencies of the point reads. */
+    final Latencies readLatencies = new Latencies();
+    /** Latencies of the puts, updates and deletes. */
+    final Latencies writeLatencies = new Latencies();
+    /** Latencies of the positioning and steps of the cursors. */
+    final Latencies cursorLatencies = new Latencies();
+
+    @Override
+    public String toString()
+    {
+      return "reads:" + reads + " bytes-read:" + bytesRead + " writes:" + writes + " deletes:" + deletes
+          + " bytes-written:" + bytesWritten + " cursors:" + cursors + " cursor-steps:" + cursorSteps
+          + " read-latency-micros:[" + readLatencies + "] write-latency-micros:[" + writeLatencies
+          + "] cursor-latency-micros:[" + cursorLatencies + "]";
+    }
+  }
+
+  private final ConcurrentMap<TreeName, TreeMetrics> treeMetrics = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the metrics of a tree, creating them if needed.
+   *
+   * @param treeName the name of the tree
+   * @return the metrics of the tree
+   */
+  TreeMetrics get(TreeName treeName)
+  {
+    TreeMetrics metrics = treeMetrics.get(treeName);
+    if (metrics == null)
+    {
+      final TreeMetrics newMetrics = new TreeMetrics();
+      metrics = treeMetrics.putIfAbsent(treeName, newMetrics);
+      if (metrics == null)
+      {
+        metrics = newMetrics;
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Returns the metrics of the trees which have been accessed, sorted by tree name.
+   *
+   * @return the metrics of the trees which have been accessed
+   */
+  SortedMap<TreeName, TreeMetrics> getTreeMetrics()
+  {
+    return new TreeMap<>(treeMetrics);
+  }
+}
@@ -24,13 +24,22 @@ import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.util.StaticUtils.*;
 
 import java.io.Closeable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
@@ -56,6 +65,7 @@ import org.opends.server.backends.pluggable.State.IndexFlag;
 import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.Importer;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.SequentialCursor;
 import org.opends.server.backends.pluggable.spi.Storage;
 import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
 import org.opends.server.backends.pluggable.spi.TreeName;
@@ -83,11 +93,35 @@ import org.opends.server.util.StaticUtils;
  * Records do not have a "value" since all required information is held within the key.
  * The entry ID is included in the key as a "tie-breaker" and ensures that keys correspond to one and only one entry.
  * This ensures that all tree updates can be performed using lock-free operations.
+ * <p>
+ * The sorted key space is split into ranges of at most {@link #MAX_RANGE_SIZE} records, each one bounded by a record
+ * key which is greater than or equal to all the keys of the range. Besides the total count of records, the counter tree
+ * holds the count of records of each range, keyed by its bound, so that positioning on the record at a given offset
+ * only walks through the records of a single range. Ranges growing beyond the maximum size are split at their median
+ * record while the entry container is exclusively locked, so the ranges adapt to the distribution of the keys.
  */
 class VLVIndex extends AbstractTree implements ConfigurationChangeListener<BackendVLVIndexCfg>, Closeable
 {
   private static final ByteString COUNT_KEY = ByteString.valueOfUtf8("nbRecords");
 
+  /** The prefix of the keys of the range counts in the counter tree, sorting before {@link #COUNT_KEY}. */
+  private static final ByteString RANGE_COUNT_KEY_PREFIX = ByteString.wrap(new byte[] { 0 });
+
+  /**
+   * The prefix of the keys of the counts of the ranges bounded by the record key following it. Records keys are never
+   * the prefix of one another, so the bounds keep their order once the counter shard id is appended to them.
+   */
+  private static final ByteString BOUNDED_RANGE_COUNT_KEY_PREFIX = ByteString.wrap(new byte[] { 0, 0 });
+
+  /** The key of the count of the last range, holding the records greater than all the range bounds. */
+  private static final ByteString LAST_RANGE_COUNT_KEY = ByteString.wrap(new byte[] { 0, 1 });
+
+  /** The number of records above which a range is split in two. */
+  static final int MAX_RANGE_SIZE = 1024;
+
+  /** The number of records of the ranges written by imports, leaving room for the records added afterwards. */
+  private static final int IMPORTED_RANGE_SIZE = MAX_RANGE_SIZE / 2;
+
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
   /** The VLV vlvIndex configuration. */
@@ -110,6 +144,25 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
    */
   private boolean trusted;
 
+  /**
+   * Whether the count of records of each key range is maintained, which is the case when the index was created or
+   * rebuilt by a version of the server maintaining them.
+   */
+  private volatile boolean rangeCounted;
+
+  /** The count keys of the ranges which have grown beyond {@link #MAX_RANGE_SIZE} records. */
+  private final Set<ByteString> rangesToSplit = Collections.newSetFromMap(new ConcurrentHashMap<ByteString, Boolean>());
+
+  /**
+   * Prevents the key ranges from being split while an update of this index is not committed: the records counted in
+   * the split ranges must not change until the split is committed.
+   */
+  private final ReentrantReadWriteLock rangesLock = new ReentrantReadWriteLock();
+  /** Held by the updates of the entry container until they are committed. */
+  final Lock rangesSharedLock = rangesLock.readLock();
+  /** Held while splitting the key ranges, until the split is committed. */
+  private final Lock rangesExclusiveLock = rangesLock.writeLock();
+
   VLVIndex(final BackendVLVIndexCfg config, final State state, final Storage storage,
       final EntryContainer entryContainer, final WriteableTransaction txn) throws StorageRuntimeException,
       ConfigException
@@ -130,14 +183,20 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     }
 
     this.state = state;
-    this.trusted = state.getIndexFlags(txn, getName()).contains(IndexFlag.TRUSTED);
-    if (!trusted && entryContainer.getHighestEntryID(txn).longValue() == 0)
+    final EnumSet<IndexFlag> flags = state.getIndexFlags(txn, getName());
+    this.trusted = flags.contains(IndexFlag.TRUSTED);
+    this.rangeCounted = flags.contains(IndexFlag.RANGE_COUNTED);
+    if (entryContainer.getHighestEntryID(txn).longValue() == 0)
     {
       /*
        * If there are no entries in the entry container then there is no reason why this vlvIndex
        * can't be upgraded to trusted.
        */
-      setTrusted(txn, true);
+      if (!trusted)
+      {
+        setTrusted(txn, true);
+      }
+      initializeEmpty(txn);
     }
 
     this.config.addChangeListener(this);
@@ -170,11 +229,235 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     counter.delete(txn);
   }
 
+  /**
+   * Starts maintaining the count of records of each key range. It must only be called while the index is empty: when
+   * it is created or when it has just been cleared for a rebuild.
+   *
+   * @param txn
+   *          a non null transaction
+   * @throws StorageRuntimeException
+   *           If an error occurs in the storage.
+   */
+  void initializeEmpty(final WriteableTransaction txn) throws StorageRuntimeException
+  {
+    if (!rangeCounted)
+    {
+      state.addFlagsToIndex(txn, getName(), IndexFlag.RANGE_COUNTED);
+      rangeCounted = true;
+    }
+  }
+
   void importCount(Importer importer, long count)
   {
     counter.importPut(importer, COUNT_KEY, count);
   }
 
+  /**
+   * Returns an object counting the records of each key range while the records of this index are imported, which
+   * must be done in key order.
+   */
+  RangeCountImporter newRangeCountImporter(Importer importer)
+  {
+    return new RangeCountImporter(importer);
+  }
+
+  /**
+   * Counts the records of each key range while they are imported in key order, ending a range every
+   * {@link #IMPORTED_RANGE_SIZE} records.
+   */
+  final class RangeCountImporter
+  {
+    private final Importer importer;
+    private long count;
+
+    private RangeCountImporter(Importer importer)
+    {
+      this.importer = importer;
+    }
+
+    /** Counts a record imported after all the records with a lower key. */
+    void add(ByteString key)
+    {
+      if (++count == IMPORTED_RANGE_SIZE)
+      {
+        importRangeCount(toBoundedRangeCountKey(key));
+      }
+    }
+
+    /** Writes the count of the last range, once all the records have been imported. */
+    void flush()
+    {
+      importRangeCount(LAST_RANGE_COUNT_KEY);
+    }
+
+    private void importRangeCount(ByteString rangeCountKey)
+    {
+      if (rangeCounted)
+      {
+        counter.importPut(importer, rangeCountKey, count);
+      }
+      count = 0;
+    }
+  }
+
+  /** Returns the key of the count of the range bounded by the provided record key. */
+  private static ByteString toBoundedRangeCountKey(final ByteSequence key)
+  {
+    return new ByteStringBuilder(BOUNDED_RANGE_COUNT_KEY_PREFIX.length() + key.length())
+        .appendBytes(BOUNDED_RANGE_COUNT_KEY_PREFIX)
+        .appendBytes(key)
+        .toByteString();
+  }
+
+  /** Returns the key of the count of the range holding the provided record key. */
+  private ByteString getRangeCountKey(final ReadableTransaction txn, final ByteSequence key)
+  {
+    // The range with the lowest bound greater than or equal to the key, if any
+    final ByteString rangeCountKey = counter.getCeilingKey(txn, toBoundedRangeCountKey(key));
+    return rangeCountKey != null && rangeCountKey.startsWith(BOUNDED_RANGE_COUNT_KEY_PREFIX)
+        ? rangeCountKey : LAST_RANGE_COUNT_KEY;
+  }
+
+  /**
+   * Positions the cursor on the first record of the range following the one with the provided count key, or on the
+   * first record of the index when it is {@code null}.
+   */
+  private static boolean positionToRangeStart(final Cursor<ByteString, ByteString> cursor,
+      final ByteString previousRangeCountKey)
+  {
+    if (previousRangeCountKey == null)
+    {
+      return cursor.positionToIndex(0);
+    }
+    final ByteSequence previousBound =
+        previousRangeCountKey.subSequence(BOUNDED_RANGE_COUNT_KEY_PREFIX.length(), previousRangeCountKey.length());
+    if (!cursor.positionToKeyOrNext(previousBound))
+    {
+      return false;
+    }
+    return !previousBound.equals(cursor.getKey()) || cursor.next();
+  }
+
+  /**
+   * Returns whether some key ranges have grown beyond {@link #MAX_RANGE_SIZE} records since they were last split.
+   *
+   * @return {@code true} if {@link #splitRanges()} has some ranges to split
+   */
+  boolean hasRangesToSplit()
+  {
+    return !rangesToSplit.isEmpty();
+  }
+
+  /**
+   * Splits the key ranges which have grown beyond {@link #MAX_RANGE_SIZE} records, until they all hold at most that
+   * many records. The updates of this index wait for the split to be committed, but the searches do not. It does
+   * nothing if another thread is splitting the ranges or if the current thread is updating this index: the ranges are
+   * then split after a later update.
+   *
+   * @throws Exception
+   *           If the ranges cannot be split. They are then split after a later update.
+   */
+  void splitRanges() throws Exception
+  {
+    if (!rangesExclusiveLock.tryLock())
+    {
+      return;
+    }
+    final List<ByteString> ranges = new ArrayList<>(rangesToSplit);
+    rangesToSplit.removeAll(ranges);
+    try
+    {
+      storage.write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          splitRanges(txn, ranges);
+        }
+      });
+    }
+    catch (Exception e)
+    {
+      rangesToSplit.addAll(ranges);
+      throw e;
+    }
+    finally
+    {
+      rangesExclusiveLock.unlock();
+    }
+  }
+
+  private void splitRanges(final WriteableTransaction txn, final Collection<ByteString> ranges)
+  {
+    final Deque<ByteString> toSplit = new ArrayDeque<>(ranges);
+    ByteString rangeCountKey;
+    while ((rangeCountKey = toSplit.poll()) != null)
+    {
+      splitRange(txn, rangeCountKey, toSplit);
+    }
+  }
+
+  /**
+   * Moves the lower half of the records of the provided range to a new range bounded by its median record, if it holds
+   * more than {@link #MAX_RANGE_SIZE} records. The halves still holding too many records are added to the ranges to
+   * split.
+   */
+  private void splitRange(final WriteableTransaction txn, final ByteString rangeCountKey,
+      final Deque<ByteString> toSplit)
+  {
+    ByteString previousRangeCountKey = null;
+    final long count;
+    try (SequentialCursor<ByteString, Long> ranges = counter.openCountersCursor(txn, RANGE_COUNT_KEY_PREFIX))
+    {
+      while (ranges.next() && !ranges.getKey().equals(rangeCountKey))
+      {
+        previousRangeCountKey = ranges.getKey();
+      }
+      if (!ranges.isDefined())
+      {
+        return;
+      }
+      count = ranges.getValue();
+    }
+    if (count <= MAX_RANGE_SIZE)
+    {
+      return;
+    }
+
+    final long lowerCount = count / 2;
+    final ByteString lowerRangeCountKey;
+    try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
+    {
+      if (!positionToRangeStart(cursor, previousRangeCountKey))
+      {
+        return;
+      }
+      for (long i = 1; i < lowerCount; i++)
+      {
+        if (!cursor.next())
+        {
+          return;
+        }
+      }
+      lowerRangeCountKey = toBoundedRangeCountKey(cursor.getKey());
+    }
+    if (lowerRangeCountKey.compareTo(rangeCountKey) >= 0)
+    {
+      // The range holds fewer records than counted: never split it on its own bound
+      return;
+    }
+    counter.addCount(txn, lowerRangeCountKey, lowerCount);
+    counter.addCount(txn, rangeCountKey, -lowerCount);
+    if (lowerCount > MAX_RANGE_SIZE)
+    {
+      toSplit.add(lowerRangeCountKey);
+    }
+    if (count - lowerCount > MAX_RANGE_SIZE)
+    {
+      toSplit.add(rangeCountKey);
+    }
+  }
+
   @Override
   public synchronized boolean isConfigurationChangeAcceptable(final BackendVLVIndexCfg cfg,
       final List<LocalizableMessage> unacceptableReasons)
@@ -448,19 +731,42 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     final Iterator<ByteString> di = iteratorFor(deletedKeys);
     ByteString nextDeletedKey = nextOrNull(di);
 
+    final Set<ByteString> grownRanges = new HashSet<>();
     while (nextAddedKey != null || nextDeletedKey != null)
     {
       if (nextDeletedKey == null || (nextAddedKey != null && nextAddedKey.compareTo(nextDeletedKey) < 0))
       {
         txn.put(getName(), nextAddedKey, toValue());
+        addCount(txn, nextAddedKey, 1, grownRanges);
         nextAddedKey = nextOrNull(ai);
-        counter.addCount(txn, COUNT_KEY, 1);
       }
       else
       {
         txn.delete(getName(), nextDeletedKey);
+        addCount(txn, nextDeletedKey, -1, grownRanges);
         nextDeletedKey = nextOrNull(di);
-        counter.addCount(txn, COUNT_KEY, -1);
+      }
+    }
+    for (ByteString rangeCountKey : grownRanges)
+    {
+      if (counter.getCount(txn, rangeCountKey) > MAX_RANGE_SIZE)
+      {
+        rangesToSplit.add(rangeCountKey);
+      }
+    }
+  }
+
+  private void addCount(final WriteableTransaction txn, final ByteString key, final long delta,
+      final Set<ByteString> grownRanges)
+  {
+    counter.addCount(txn, COUNT_KEY, delta);
+    if (rangeCounted)
+    {
+      final ByteString rangeCountKey = getRangeCountKey(txn, key);
+      counter.addCount(txn, rangeCountKey, delta);
+      if (delta > 0)
+      {
+        grownRanges.add(rangeCountKey);
       }
     }
   }
@@ -548,13 +854,15 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
     {
       final LinkedList<Long> selectedIDs = new LinkedList<>();
-      int targetPosition = 0;
+      // Skip the ranges of keys lower than the assertion, except for the records to return before the target.
+      final int startPosition = Math.max(0, countRecordsInRangesBefore(txn, encodedTargetAssertion) - beforeCount);
+      int targetPosition = startPosition;
 
       // Don't waste cycles looking for an assertion that does not match anything.
-      if (cursor.positionToKeyOrNext(encodedTargetAssertion) && cursor.positionToIndex(0))
+      if (cursor.positionToKeyOrNext(encodedTargetAssertion) && positionToIndex(txn, cursor, startPosition))
       {
         /*
-         * Unfortunately we need to iterate from the start of the index in order to correctly
+         * Unfortunately we need to iterate from the start of the range in order to correctly
          * calculate the target position.
          */
         boolean targetFound = false;
@@ -567,7 +875,7 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
             selectedIDs.add(decodeEntryIDFromVLVKey(key));
             if (encodedTargetAssertion.compareTo(key) > 0)
             {
-              if (targetPosition >= beforeCount)
+              if (targetPosition - startPosition >= beforeCount)
               {
                 // Strip out unwanted results.
                 selectedIDs.removeFirst();
@@ -692,7 +1000,7 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     final int count = 1 + beforeCount + afterCount;
     try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
     {
-      if (cursor.positionToIndex(startPos))
+      if (positionToIndex(txn, cursor, startPos))
       {
         selectedIDs = readRange(cursor, count, debugBuilder);
       }
@@ -705,6 +1013,69 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     return newDefinedSet(selectedIDs); // FIXME not ordered like a defined EntryIDSet expects
   }
 
+  /**
+   * Positions the cursor on the record at the provided index. When the range counts are maintained, the ranges
+   * before the one holding the record are skipped without reading their records.
+   */
+  boolean positionToIndex(final ReadableTransaction txn, final Cursor<ByteString, ByteString> cursor,
+      final int index)
+  {
+    if (!rangeCounted)
+    {
+      return cursor.positionToIndex(index);
+    }
+    try (SequentialCursor<ByteString, Long> ranges = counter.openCountersCursor(txn, RANGE_COUNT_KEY_PREFIX))
+    {
+      ByteString previousRangeCountKey = null;
+      long remaining = index;
+      while (ranges.next())
+      {
+        final long count = ranges.getValue();
+        if (remaining < count)
+        {
+          if (!positionToRangeStart(cursor, previousRangeCountKey))
+          {
+            return false;
+          }
+          for (; remaining > 0; remaining--)
+          {
+            if (!cursor.next())
+            {
+              return false;
+            }
+          }
+          return true;
+        }
+        remaining -= count;
+        previousRangeCountKey = ranges.getKey();
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Returns the number of records in the ranges holding only keys lower than the provided key, or 0 if the range
+   * counts are not maintained.
+   */
+  private int countRecordsInRangesBefore(final ReadableTransaction txn, final ByteSequence key)
+  {
+    if (!rangeCounted)
+    {
+      return 0;
+    }
+    // The records of a range are lower than or equal to its bound
+    final ByteString keyRangeCountKey = toBoundedRangeCountKey(key);
+    long count = 0;
+    try (SequentialCursor<ByteString, Long> ranges = counter.openCountersCursor(txn, RANGE_COUNT_KEY_PREFIX))
+    {
+      while (ranges.next() && ranges.getKey().compareTo(keyRangeCountKey) < 0)
+      {
+        count += ranges.getValue();
+      }
+    }
+    return (int) count;
+  }
+
   private static void addVLVResponseControl(SearchOperation searchOp, int targetPosition, int contentCount,
       int vlvResultCode)
   {
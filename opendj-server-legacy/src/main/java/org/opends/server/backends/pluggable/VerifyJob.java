@@ -16,6 +16,7 @@
  */
 package org.opends.server.backends.pluggable;
 
+import static org.forgerock.util.Utils.*;
 import static org.opends.messages.BackendMessages.*;
 import static org.opends.server.backends.pluggable.DnKeyFormat.*;
 import static org.opends.server.backends.pluggable.SuffixContainer.*;
@@ -25,6 +26,7 @@ import static org.opends.server.util.StaticUtils.*;
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
@@ -36,7 +38,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.ldap.ByteSequence;
@@ -70,10 +78,13 @@ class VerifyJob
 
   /** The number of milliseconds between job progress reports. */
   private final long progressInterval = 10000;
+  /** The number of id2entry records verified by each task when the indexes are verified by several threads. */
+  private static final int PARALLEL_BATCH_SIZE = 256;
+  private static final String VERIFIER_THREAD_NAME = "VERIFIER-%d";
   /** The number of index keys processed. */
-  private long keyCount;
+  private final AtomicLong keyCount = new AtomicLong();
   /** The number of errors found. */
-  private long errorCount;
+  private final AtomicLong errorCount = new AtomicLong();
   /** The number of records that have exceeded the entry limit. */
   private long entryLimitExceededCount;
   /** The number of records that reference more than one entry. */
@@ -273,19 +284,19 @@ class VerifyJob
       float rate = 0;
       if (totalTime > 0)
       {
-        rate = 1000f*keyCount / totalTime;
+        rate = 1000f*keyCount.get() / totalTime;
       }
 
       if (cleanMode)
       {
-        logger.info(NOTE_VERIFY_CLEAN_FINAL_STATUS, keyCount, errorCount, totalTime/1000, rate);
+        logger.info(NOTE_VERIFY_CLEAN_FINAL_STATUS, keyCount.get(), errorCount.get(), totalTime/1000, rate);
 
         if (multiReferenceCount > 0)
         {
           float averageEntryReferences = 0;
-          if (keyCount > 0)
+          if (keyCount.get() > 0)
           {
-            averageEntryReferences = entryReferencesCount/keyCount;
+            averageEntryReferences = entryReferencesCount/keyCount.get();
           }
 
           if (logger.isDebugEnabled())
@@ -299,7 +310,7 @@ class VerifyJob
       }
       else
       {
-        logger.info(NOTE_VERIFY_FINAL_STATUS, keyCount, errorCount, totalTime/1000, rate);
+        logger.info(NOTE_VERIFY_FINAL_STATUS, keyCount.get(), errorCount.get(), totalTime/1000, rate);
         if (!entryLimitMap.isEmpty())
         {
           logger.debug(INFO_VERIFY_ENTRY_LIMIT_STATS_HEADER);
@@ -333,7 +344,7 @@ class VerifyJob
     {
       entryContainer.sharedLock.unlock();
     }
-    return errorCount;
+    return errorCount.get();
   }
 
   /**
@@ -345,9 +356,17 @@ class VerifyJob
    */
   private void iterateID2Entry(ReadableTransaction txn) throws StorageRuntimeException
   {
+    final int threadCount = getThreadCount();
+    final ExecutorService executor = threadCount > 1
+        ? Executors.newFixedThreadPool(threadCount, newThreadFactory(null, VERIFIER_THREAD_NAME, true))
+        : null;
+    // Bounds the memory used by the records waiting to be verified
+    final Deque<Future<Void>> pendingBatches = new LinkedList<>();
     try(final Cursor<ByteString, ByteString> cursor = txn.openCursor(id2entry.getName()))
     {
       long storedEntryCount = id2entry.getRecordCount(txn);
+      List<EntryID> entryIDs = new ArrayList<>(PARALLEL_BATCH_SIZE);
+      List<ByteString> values = new ArrayList<>(PARALLEL_BATCH_SIZE);
       while (cursor.next())
       {
         ByteString key = cursor.getKey();
@@ -360,7 +379,7 @@ class VerifyJob
         }
         catch (Exception e)
         {
-          errorCount++;
+          errorCount.incrementAndGet();
           if (logger.isTraceEnabled())
           {
             logger.traceException(e);
@@ -370,32 +389,133 @@ class VerifyJob
           continue;
         }
 
-        keyCount++;
+        keyCount.incrementAndGet();
 
-        Entry entry;
-        try
+        if (executor == null)
         {
-          entry = id2entry.entryFromDatabase(value, rootContainer.getCompressedSchema());
+          verifyRecord(txn, entryID, value);
+          continue;
         }
-        catch (Exception e)
+
+        // The storage may reuse the buffer of the value once the cursor moves
+        entryIDs.add(entryID);
+        values.add(ByteString.wrap(value.toByteArray()));
+        if (entryIDs.size() == PARALLEL_BATCH_SIZE)
         {
-          errorCount++;
-          if (logger.isTraceEnabled())
+          if (pendingBatches.size() == 2 * threadCount)
           {
-            logger.traceException(e);
-
-            logger.trace("Malformed id2entry record for ID %d:%n%s%n", entryID, StaticUtils.bytesToHex(value));
+            waitFor(pendingBatches.removeFirst());
           }
-          continue;
+          pendingBatches.addLast(executor.submit(new VerifyRecordsTask(entryIDs, values)));
+          entryIDs = new ArrayList<>(PARALLEL_BATCH_SIZE);
+          values = new ArrayList<>(PARALLEL_BATCH_SIZE);
         }
+      }
+      if (!entryIDs.isEmpty())
+      {
+        pendingBatches.addLast(executor.submit(new VerifyRecordsTask(entryIDs, values)));
+      }
+      while (!pendingBatches.isEmpty())
+      {
+        waitFor(pendingBatches.removeFirst());
+      }
+      if (keyCount.get() != storedEntryCount)
+      {
+        errorCount.incrementAndGet();
+        logger.error(ERR_VERIFY_WRONG_ENTRY_COUNT, storedEntryCount, keyCount.get());
+      }
+    }
+    finally
+    {
+      if (executor != null)
+      {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /** Decodes an id2entry record, then checks that the indexes are complete for this entry. */
+  private void verifyRecord(ReadableTransaction txn, EntryID entryID, ByteString value)
+  {
+    Entry entry;
+    try
+    {
+      entry = id2entry.entryFromDatabase(value, rootContainer.getCompressedSchema());
+    }
+    catch (Exception e)
+    {
+      errorCount.incrementAndGet();
+      if (logger.isTraceEnabled())
+      {
+        logger.traceException(e);
 
-        verifyEntry(txn, entryID, entry);
+        logger.trace("Malformed id2entry record for ID %d:%n%s%n", entryID, StaticUtils.bytesToHex(value));
       }
-      if (keyCount != storedEntryCount)
+      return;
+    }
+
+    verifyEntry(txn, entryID, entry);
+  }
+
+  /**
+   * Verifies a batch of id2entry records read by the id2entry scan. Each batch is verified in its own read
+   * transaction, because transactions cannot be shared between threads.
+   */
+  private final class VerifyRecordsTask implements Callable<Void>
+  {
+    private final List<EntryID> entryIDs;
+    private final List<ByteString> values;
+
+    private VerifyRecordsTask(List<EntryID> entryIDs, List<ByteString> values)
+    {
+      this.entryIDs = entryIDs;
+      this.values = values;
+    }
+
+    @Override
+    public Void call() throws Exception
+    {
+      return rootContainer.getStorage().read(new ReadOperation<Void>()
       {
-        errorCount++;
-        logger.error(ERR_VERIFY_WRONG_ENTRY_COUNT, storedEntryCount, keyCount);
+        @Override
+        public Void run(ReadableTransaction txn) throws Exception
+        {
+          for (int i = 0; i < entryIDs.size(); i++)
+          {
+            verifyRecord(txn, entryIDs.get(i), values.get(i));
+          }
+          return null;
+        }
+      });
+    }
+  }
+
+  /** Returns the number of threads verifying the indexes concurrently. */
+  private int getThreadCount()
+  {
+    final int threadCount = verifyConfig.getThreadCount();
+    return threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+  }
+
+  /** Waits for the completion of a verification task, forwarding its failure if any. */
+  private static void waitFor(Future<?> future) throws StorageRuntimeException
+  {
+    try
+    {
+      future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new StorageRuntimeException(e);
+    }
+    catch (ExecutionException e)
+    {
+      if (e.getCause() instanceof StorageRuntimeException)
+      {
+        throw (StorageRuntimeException) e.getCause();
       }
+      throw new StorageRuntimeException(e.getCause());
     }
   }
 
@@ -420,9 +540,18 @@ class VerifyJob
     else if (!attrIndexList.isEmpty())
     {
       AttributeIndex attrIndex = attrIndexList.get(0);
-      for (MatchingRuleIndex index : attrIndex.getNameToIndexes().values())
+      final Collection<MatchingRuleIndex> indexes = attrIndex.getNameToIndexes().values();
+      final int threadCount = Math.min(getThreadCount(), indexes.size());
+      if (threadCount > 1)
       {
-        iterateAttrIndex(txn, index);
+        iterateAttrIndexesInParallel(indexes, threadCount);
+      }
+      else
+      {
+        for (MatchingRuleIndex index : indexes)
+        {
+          iterateAttrIndex(txn, index);
+        }
       }
     }
     else if (!vlvIndexList.isEmpty())
@@ -431,6 +560,48 @@ class VerifyJob
     }
   }
 
+  /**
+   * Checks the cleanliness of the indexes of an attribute concurrently, each one in its own read transaction since
+   * they are independent from each other.
+   */
+  private void iterateAttrIndexesInParallel(Collection<MatchingRuleIndex> indexes, int threadCount)
+      throws StorageRuntimeException
+  {
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(threadCount, newThreadFactory(null, VERIFIER_THREAD_NAME, true));
+    try
+    {
+      final List<Future<Void>> futures = new ArrayList<>(indexes.size());
+      for (final MatchingRuleIndex index : indexes)
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            return rootContainer.getStorage().read(new ReadOperation<Void>()
+            {
+              @Override
+              public Void run(ReadableTransaction txn) throws Exception
+              {
+                iterateAttrIndex(txn, index);
+                return null;
+              }
+            });
+          }
+        }));
+      }
+      for (Future<Void> future : futures)
+      {
+        waitFor(future);
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * Iterate through the entries in DN2ID to perform a check for
    * index cleanliness.
@@ -446,17 +617,17 @@ class VerifyJob
     {
       while (cursor.next())
       {
-        keyCount++;
+        keyCount.incrementAndGet();
 
         final ByteString key = cursor.getKey();
         final EntryID entryID;
         try
         {
-          entryID =  new EntryID(cursor.getValue());
+          entryID = dn2id.toEntryID(cursor.getValue());
         }
         catch (Exception e)
         {
-          errorCount++;
+          errorCount.incrementAndGet();
           logger.trace("File dn2id has malformed ID for DN <%s>", key, e);
           continue;
         }
@@ -470,19 +641,19 @@ class VerifyJob
         }
         catch (Exception e)
         {
-          errorCount++;
+          errorCount.incrementAndGet();
           logger.traceException(e);
           continue;
         }
 
         if (entry == null)
         {
-          errorCount++;
+          errorCount.incrementAndGet();
           logger.error(ERR_VERIFY_DN2ID_UNKNOWN_ID, key, entryID.longValue());
         }
         else if (!key.equals(dnToDNKey(entry.getName(), verifyConfig.getBaseDN().size())))
         {
-          errorCount++;
+          errorCount.incrementAndGet();
           logger.error(ERR_VERIFY_DN2ID_WRONG_ENTRY, key, entry.getName());
         }
       }
@@ -518,7 +689,7 @@ class VerifyJob
     final long currentValue = id2childrenCount.getCount(txn, parent.entryID);
     if (expected != currentValue)
     {
-      errorCount++;
+      errorCount.incrementAndGet();
       logger.error(ERR_VERIFY_ID2COUNT_WRONG_COUNT, parent.baseDN, currentValue, expected);
     }
   }
@@ -533,7 +704,7 @@ class VerifyJob
         if (!id2entry.containsEntryID(txn, entryID))
         {
           logger.error(ERR_VERIFY_ID2COUNT_WRONG_ID, entryID.longValue());
-          errorCount++;
+          errorCount.incrementAndGet();
         }
       }
     }
@@ -547,7 +718,7 @@ class VerifyJob
    * @param index The index containing the key.
    * @param key A key that has exceeded the entry limit.
    */
-  private void incrEntryLimitStats(Index index, ByteString key)
+  private synchronized void incrEntryLimitStats(Index index, ByteString key)
   {
     HashMap<ByteString,Long> hashMap = entryLimitMap.get(index);
     if (hashMap == null)
@@ -572,7 +743,7 @@ class VerifyJob
    *
    * @param entryIDSet The set of entry IDs for the index record.
    */
-  private void updateIndexStats(EntryIDSet entryIDSet)
+  private synchronized void updateIndexStats(EntryIDSet entryIDSet)
   {
     if (!entryIDSet.isDefined())
     {
@@ -621,13 +792,13 @@ class VerifyJob
         catch (Exception e)
         {
           logger.traceException(e);
-          errorCount++;
+          errorCount.incrementAndGet();
           continue;
         }
 
         if (entry == null)
         {
-          errorCount++;
+          errorCount.incrementAndGet();
           logger.error(ERR_VERIFY_UNKNOWN_ID, id, keyDump(vlvIndex, key));
           continue;
         }
@@ -635,7 +806,7 @@ class VerifyJob
         ByteString expectedKey = vlvIndex.toKey(entry, id);
         if (expectedKey.compareTo(key) != 0)
         {
-          errorCount++;
+          errorCount.incrementAndGet();
           logger.error(ERR_VERIFY_ENTRY_NON_MATCHING_KEY, id, keyDump(vlvIndex, expectedKey));
         }
       }
@@ -659,7 +830,7 @@ class VerifyJob
     {
       while (cursor.next())
       {
-        keyCount++;
+        keyCount.incrementAndGet();
 
         final ByteString key = cursor.getKey();
 
@@ -669,13 +840,13 @@ class VerifyJob
           entryIDSet = cursor.getValue();
           if (entryIDSet.size() == 0)
           {
-            errorCount++;
+            errorCount.incrementAndGet();
             logger.error(ERR_VERIFY_EMPTY_IDSET, keyDump(index, key));
           }
         }
         catch (Exception e)
         {
-          errorCount++;
+          errorCount.incrementAndGet();
           logger.traceException(e);
           logger.trace("Malformed ID list: %n%s", keyDump(index, key));
           continue;
@@ -703,13 +874,13 @@ class VerifyJob
             catch (Exception e)
             {
               logger.traceException(e);
-              errorCount++;
+              errorCount.incrementAndGet();
               continue;
             }
 
             if (entry == null)
             {
-              errorCount++;
+              errorCount.incrementAndGet();
               logger.error(ERR_VERIFY_UNKNOWN_REFERENCE, id.longValue(), keyDump(index, key));
               continue;
             }
@@ -758,7 +929,7 @@ class VerifyJob
 
             if (!foundMatchingKey.get())
             {
-              errorCount++;
+              errorCount.incrementAndGet();
               logger.error(ERR_VERIFY_UNEXPECTED_REFERENCE, entry.getName(), keyDump(index, key));
             }
           }
@@ -799,12 +970,12 @@ class VerifyJob
       if (id == null)
       {
         logger.error(ERR_VERIFY_DN2ID_MISSING_KEY, dn);
-        errorCount++;
+        errorCount.incrementAndGet();
       }
       else if (!id.equals(entryID))
       {
         logger.error(ERR_VERIFY_DN2ID_WRONG_ID, id.longValue(), entryID.longValue(), dn);
-        errorCount++;
+        errorCount.incrementAndGet();
       }
     }
     catch (Exception e)
@@ -814,7 +985,7 @@ class VerifyJob
         logger.traceException(e);
         logger.trace("File dn2id has error reading key %s: %s.%n", dn, e.getMessage());
       }
-      errorCount++;
+      errorCount.incrementAndGet();
     }
 
     // Check the parent DN is in dn2id.
@@ -827,7 +998,7 @@ class VerifyJob
         if (id == null)
         {
           logger.error(ERR_VERIFY_DN2ID_MISSING_KEY, parentDN);
-          errorCount++;
+          errorCount.incrementAndGet();
         }
       }
       catch (Exception e)
@@ -837,7 +1008,7 @@ class VerifyJob
           logger.traceException(e);
           logger.trace("File dn2id has error reading key %s: %s.%n", parentDN, e.getMessage());
         }
-        errorCount++;
+        errorCount.incrementAndGet();
       }
     }
   }
@@ -882,7 +1053,7 @@ class VerifyJob
         if (vlvIndex.verifyEntry(txn, entryID, entry))
         {
           logger.error(ERR_VERIFY_MISSING_ENTRY_VLV, entry.getName(), vlvIndex.getName());
-          errorCount++;
+          errorCount.incrementAndGet();
         }
       }
       catch (DirectoryException e)
@@ -893,7 +1064,7 @@ class VerifyJob
           logger.trace("Error checking entry %s against filter or base DN for VLV index %s: %s",
                      entry.getName(), vlvIndex.getName(), e.getMessageObject());
         }
-        errorCount++;
+        errorCount.incrementAndGet();
       }
       catch (StorageRuntimeException e)
       {
@@ -903,7 +1074,7 @@ class VerifyJob
           logger.trace("Error reading VLV index %s for entry %s: %s",
               vlvIndex.getName(), entry.getName(), StaticUtils.getBacktrace(e));
         }
-        errorCount++;
+        errorCount.incrementAndGet();
       }
     }
   }
@@ -929,7 +1100,7 @@ class VerifyJob
       if (cr == ConditionResult.FALSE)
       {
         logger.error(ERR_VERIFY_MISSING_ID, entryID.longValue(), keyDump(index, key));
-        errorCount++;
+        errorCount.incrementAndGet();
       }
       else if (cr == ConditionResult.UNDEFINED)
       {
@@ -944,7 +1115,7 @@ class VerifyJob
 
         logger.trace("Error reading tree: %s%n%s", e.getMessage(), keyDump(index, key));
       }
-      errorCount++;
+      errorCount.incrementAndGet();
     }
   }
 
@@ -1048,7 +1219,7 @@ class VerifyJob
     @Override
     public void run()
     {
-      long latestCount = keyCount;
+      long latestCount = keyCount.get();
       long deltaCount = latestCount - previousCount;
       long latestTime = System.currentTimeMillis();
       long deltaTime = latestTime - previousTime;
@@ -1060,7 +1231,7 @@ class VerifyJob
 
       float rate = 1000f*deltaCount / deltaTime;
 
-      logger.info(NOTE_VERIFY_PROGRESS_REPORT, latestCount, totalCount, errorCount, rate);
+      logger.info(NOTE_VERIFY_PROGRESS_REPORT, latestCount, totalCount, errorCount.get(), rate);
 
       try
       {
@@ -0,0 +1,181 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable.spi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces the durable commits of concurrent write transactions into a single flush of the storage log.
+ * <p>
+ * {@link Storage} implementations using it commit their write transactions without waiting for durability, then call
+ * {@link #awaitDurable()} before returning to the caller. The first caller to arrive becomes the leader: it optionally
+ * waits a little for other commits, then flushes the log once on behalf of all the transactions committed so far,
+ * while the following callers wait for its flush, or for the next one, to complete. Each caller therefore still only
+ * returns once its own transaction is durable, but concurrent callers share the cost of the flushes.
+ */
+public final class GroupCommitter
+{
+  /** Flushes the storage log, making durable all the transactions committed before it is called. */
+  // @FunctionalInterface
+  public interface LogFlusher
+  {
+    /**
+     * Flushes the storage log to persistent storage.
+     *
+     * @throws Exception
+     *           if a problem occurs with the underlying storage engine
+     */
+    void flush() throws Exception;
+  }
+
+  private final LogFlusher flusher;
+  private final long delayNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  /** Signaled each time a flush ends, successfully or not. */
+  private final Condition flushEnded = lock.newCondition();
+  /** Never signaled, used by the leader to wait for more commits while releasing the lock. */
+  private final Condition moreCommits = lock.newCondition();
+  /** The sequence number of the last committed transaction. */
+  private long lastCommitted;
+  /** The sequence number of the last transaction known to be durable. */
+  private long lastDurable;
+  private boolean flushing;
+  private long nbFlushes;
+
+  /**
+   * Creates a new group committer.
+   *
+   * @param flusher
+   *          the function flushing the storage log
+   * @param delay
+   *          how long the leader waits for other commits before flushing the log, 0 to flush immediately and only
+   *          group the commits which arrive while a flush is in progress
+   * @param unit
+   *          the unit of the delay
+   */
+  public GroupCommitter(LogFlusher flusher, long delay, TimeUnit unit)
+  {
+    this.flusher = flusher;
+    this.delayNanos = unit.toNanos(delay);
+  }
+
+  /**
+   * Waits until the transaction committed by the current thread is durable. This method must be called after the
+   * transaction has been committed.
+   *
+   * @throws Exception
+   *           if the storage log cannot be flushed
+   */
+  public void awaitDurable() throws Exception
+  {
+    lock.lock();
+    try
+    {
+      final long committed = ++lastCommitted;
+      while (lastDurable < committed)
+      {
+        if (flushing)
+        {
+          flushEnded.await();
+        }
+        else
+        {
+          flushing = true;
+          try
+          {
+            waitForMoreCommits();
+            flush();
+          }
+          finally
+          {
+            flushing = false;
+            flushEnded.signalAll();
+          }
+        }
+      }
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  private void waitForMoreCommits() throws InterruptedException
+  {
+    long remaining = delayNanos;
+    while (remaining > 0)
+    {
+      remaining = moreCommits.awaitNanos(remaining);
+    }
+  }
+
+  /** Flushes the log without holding the lock, so that other threads can commit meanwhile. */
+  private void flush() throws Exception
+  {
+    final long target = lastCommitted;
+    lock.unlock();
+    try
+    {
+      flusher.flush();
+    }
+    finally
+    {
+      lock.lock();
+    }
+    // If the flush failed, the waiting threads will retry it themselves.
+    lastDurable = target;
+    nbFlushes++;
+  }
+
+  /**
+   * Returns the number of transactions committed through this group committer.
+   *
+   * @return the number of committed transactions
+   */
+  public long getCommitCount()
+  {
+    lock.lock();
+    try
+    {
+      return lastCommitted;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of times the storage log has been flushed by this group committer.
+   *
+   * @return the number of flushes
+   */
+  public long getFlushCount()
+  {
+    lock.lock();
+    try
+    {
+      return nbFlushes;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+}
@@ -4136,6 +4136,13 @@ public final class ConfigConstants
   public static final String ATTR_TASK_EXPORT_WRAP_COLUMN =
        NAME_PREFIX_TASK + "export-wrap-column";
 
+  /**
+   * The name of the attribute in an export task definition that specifies the
+   * number of threads used to decode and encode the exported entries.
+   */
+  public static final String ATTR_TASK_EXPORT_THREAD_COUNT =
+       NAME_PREFIX_TASK + "export-thread-count";
+
   /**
    * The name of the attribute in an export task definition that specifies
    * that operational attributes have to be included.
@@ -4321,6 +4328,13 @@ public final class ConfigConstants
   public static final String ATTR_REBUILD_INDEX_CLEARDEGRADEDSTATE =
       ATTR_REBUILD_INDEX + "-clear-degraded-state";
 
+  /**
+   * The name of the attribute in an rebuild task definition that specifies
+   * whether the indexes are rebuilt while the backend remains enabled.
+   */
+  public static final String ATTR_REBUILD_ONLINE =
+       NAME_PREFIX_TASK + "rebuild-online";
+
 
   /**
    * The name of the attribute in an rebuild task definition that specifies the
@@ -0,0 +1,1030 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ExtensionMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.config.server.ConfigurationChangeListener;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.server.EntryCacheCfg;
+import org.forgerock.opendj.server.config.server.OffHeapEntryCacheCfg;
+import org.forgerock.util.Utils;
+import org.opends.server.api.EntryCache;
+import org.opends.server.api.MonitorData;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ServerContext;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.EntryEncodeConfig;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.util.ServerConstants;
+
+/**
+ * This class defines a Directory Server entry cache storing the encoded entries outside of the Java heap, so that
+ * large caches do not increase the garbage collection pauses.
+ * <p>
+ * Entries are encoded with compressed object classes and attribute descriptions, like the backends store them, and
+ * copied to pages of direct memory. Pages are allocated on demand up to the configured memory size, and each page is
+ * split into chunks of one of the size classes. Entries are stored in the smallest chunk they fit in. When no chunk is
+ * free in a size class, an entry of this class is evicted with the CLOCK algorithm, which approximates LRU by giving a
+ * second chance to the entries read since the clock hand last passed them. Size classes without any page take the
+ * pages of the size class holding the most pages.
+ * <p>
+ * Entries are found with two primitive hash tables, mapping the hash of their DN and their backend and entry ID to the
+ * address of their chunk, so that the on heap memory used by the cache does not depend on the size of the entries.
+ * Entries are decoded each time they are read, with lazily decoded attribute values.
+ */
+public class OffHeapEntryCache
+    extends EntryCache<OffHeapEntryCacheCfg>
+    implements ConfigurationChangeListener<OffHeapEntryCacheCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The size of the pages of direct memory, which is also the maximum size of the cached entries. */
+  private static final int PAGE_SIZE = 1024 * 1024;
+  private static final int MIN_CHUNK_SIZE = 128;
+  /** The ratio between two consecutive size classes, in percent. */
+  private static final int SIZE_CLASS_GROWTH = 125;
+  /** The chunk sizes of the size classes. */
+  private static final int[] CHUNK_SIZES = computeChunkSizes();
+
+  private static final byte FLAG_LIVE = 0x01;
+  private static final byte FLAG_REFERENCED = 0x02;
+
+  /** Layout of the chunks: flags, backend index, entry ID, DN hash, DN length, entry length, DN, entry. */
+  private static final int FLAGS_OFFSET = 0;
+  private static final int BACKEND_OFFSET = 1;
+  private static final int ENTRY_ID_OFFSET = 3;
+  private static final int DN_HASH_OFFSET = 11;
+  private static final int DN_LENGTH_OFFSET = 19;
+  private static final int ENTRY_LENGTH_OFFSET = 23;
+  private static final int HEADER_SIZE = 27;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  /** Encodes entries as the backends do, so that cached entries are as compact as stored entries. */
+  private final EntryEncodeConfig encodeConfig = new EntryEncodeConfig(false, true, true);
+
+  /** The pages of direct memory, {@code null} until they are first needed. */
+  private ByteBuffer[] pages = new ByteBuffer[0];
+  private int nbAllocatedPages;
+  /** The number of allocated pages which are not used by any size class. */
+  private int nbUnusedPages;
+  /** The size class of each page, or -1 for the allocated pages which are not used. */
+  private int[] pageSizeClasses = new int[0];
+  private final SizeClass[] sizeClasses = new SizeClass[CHUNK_SIZES.length];
+
+  /** Maps the hashes of the entry DNs to the addresses of their chunks. */
+  private final LongLongHashMap dnIndex = new LongLongHashMap();
+  /** Maps the backend indexes and entry IDs to the addresses of the chunks. */
+  private final LongLongHashMap idIndex = new LongLongHashMap();
+  private final Map<String, Integer> backendIndexes = new HashMap<>();
+  private final List<String> backendIDs = new ArrayList<>();
+
+  private long maxMemorySize;
+  private long nbEntries;
+  /** The total size of the cached records, excluding the unused end of their chunks. */
+  private long usedSize;
+  private long evictions;
+
+  /** Currently registered configuration object. */
+  private OffHeapEntryCacheCfg registeredConfiguration;
+
+  /**
+   * Creates a new instance of this entry cache. All initialization should be performed in the
+   * {@code initializeEntryCache} method.
+   */
+  public OffHeapEntryCache()
+  {
+    super();
+    setExcludeFilters(new HashSet<SearchFilter>());
+    setIncludeFilters(new HashSet<SearchFilter>());
+    for (int i = 0; i < sizeClasses.length; i++)
+    {
+      sizeClasses[i] = new SizeClass(CHUNK_SIZES[i]);
+    }
+  }
+
+  @Override
+  public void initializeEntryCache(ServerContext serverContext, OffHeapEntryCacheCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    registeredConfiguration = configuration;
+    configuration.addOffHeapChangeListener(this);
+
+    // Read configuration and apply changes.
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_INIT, null, errorMessages);
+    if (!processEntryCacheConfig(configuration, true, errorHandler))
+    {
+      String buffer = Utils.joinAsString(".  ", errorMessages);
+      throw new ConfigException(ERR_OFFHEAPCACHE_CANNOT_INITIALIZE.get(buffer));
+    }
+  }
+
+  @Override
+  public void finalizeEntryCache()
+  {
+    registeredConfiguration.removeOffHeapChangeListener(this);
+    lock.writeLock().lock();
+    try
+    {
+      clearIndexes();
+      // Direct memory is released when the pages are garbage collected
+      pages = new ByteBuffer[0];
+      pageSizeClasses = new int[0];
+      nbAllocatedPages = 0;
+      nbUnusedPages = 0;
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean containsEntry(DN entryDN)
+  {
+    return entryDN != null && getEntryID(entryDN) != -1;
+  }
+
+  @Override
+  public Entry getEntry(DN entryDN)
+  {
+    final byte[] encodedEntry = readEntry(entryDN);
+    if (encodedEntry != null)
+    {
+      try
+      {
+        final Entry entry = Entry.decodeLazily(ByteString.wrap(encodedEntry),
+            DirectoryServer.getDefaultCompressedSchema());
+        // Protect against DNs having the same hash
+        if (entry.getName().equals(entryDN))
+        {
+          cacheHits.getAndIncrement();
+          return entry;
+        }
+      }
+      catch (DirectoryException e)
+      {
+        logger.traceException(e);
+      }
+    }
+    cacheMisses.getAndIncrement();
+    return null;
+  }
+
+  /** Returns a copy of the encoded entry, marking it as recently used, or {@code null} if it is not cached. */
+  private byte[] readEntry(DN entryDN)
+  {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try
+    {
+      final long address = dnIndex.get(hash(entryDN));
+      if (address == LongLongHashMap.NOT_FOUND)
+      {
+        return null;
+      }
+      final ByteBuffer page = pages[pageOf(address)];
+      final int offset = offsetOf(address);
+      // Concurrent readers may set this flag at the same time, which is harmless
+      page.put(offset + FLAGS_OFFSET, (byte) (page.get(offset + FLAGS_OFFSET) | FLAG_REFERENCED));
+      final int dnLength = page.getInt(offset + DN_LENGTH_OFFSET);
+      return readBytes(page, offset + HEADER_SIZE + dnLength, page.getInt(offset + ENTRY_LENGTH_OFFSET));
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public long getEntryID(DN entryDN)
+  {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try
+    {
+      final long address = dnIndex.get(hash(entryDN));
+      if (address != LongLongHashMap.NOT_FOUND && entryDN.equals(readDN(address)))
+      {
+        return pages[pageOf(address)].getLong(offsetOf(address) + ENTRY_ID_OFFSET);
+      }
+      return -1;
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public DN getEntryDN(String backendID, long entryID)
+  {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try
+    {
+      final Integer backendIndex = backendIndexes.get(backendID);
+      if (backendIndex != null)
+      {
+        final long address = idIndex.get(idKey(backendIndex, entryID));
+        if (address != LongLongHashMap.NOT_FOUND)
+        {
+          return readDN(address);
+        }
+      }
+      return null;
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public void putEntry(Entry entry, String backendID, long entryID)
+  {
+    put(entry, backendID, entryID, false);
+  }
+
+  @Override
+  public boolean putEntryIfAbsent(Entry entry, String backendID, long entryID)
+  {
+    return put(entry, backendID, entryID, true);
+  }
+
+  private boolean put(Entry entry, String backendID, long entryID, boolean onlyIfAbsent)
+  {
+    // Encode outside of the lock
+    final ByteStringBuilder encodedEntry = new ByteStringBuilder();
+    try
+    {
+      entry.encode(encodedEntry, encodeConfig);
+    }
+    catch (DirectoryException e)
+    {
+      logger.traceException(e);
+      return false;
+    }
+    final DN dn = entry.getName();
+    final byte[] dnBytes = getBytes(dn.toString());
+    final int recordSize = HEADER_SIZE + dnBytes.length + encodedEntry.length();
+    final long dnHash = hash(dn);
+
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try
+    {
+      final long oldAddress = dnIndex.get(dnHash);
+      if (oldAddress != LongLongHashMap.NOT_FOUND)
+      {
+        if (onlyIfAbsent && dn.equals(readDN(oldAddress)))
+        {
+          return false;
+        }
+        freeChunk(oldAddress);
+      }
+      final int backendIndex = getBackendIndex(backendID);
+      final long idKey = idKey(backendIndex, entryID);
+      final long oldIdAddress = idIndex.get(idKey);
+      if (oldIdAddress != LongLongHashMap.NOT_FOUND)
+      {
+        freeChunk(oldIdAddress);
+      }
+      if (recordSize > PAGE_SIZE || recordSize > maxMemorySize)
+      {
+        // Too large to be cached
+        return false;
+      }
+
+      final long address = allocateChunk(sizeClassOf(recordSize));
+      final ByteBuffer page = pages[pageOf(address)];
+      final int offset = offsetOf(address);
+      page.put(offset + FLAGS_OFFSET, FLAG_LIVE);
+      page.putShort(offset + BACKEND_OFFSET, (short) backendIndex);
+      page.putLong(offset + ENTRY_ID_OFFSET, entryID);
+      page.putLong(offset + DN_HASH_OFFSET, dnHash);
+      page.putInt(offset + DN_LENGTH_OFFSET, dnBytes.length);
+      page.putInt(offset + ENTRY_LENGTH_OFFSET, encodedEntry.length());
+      final ByteBuffer buffer = page.duplicate();
+      buffer.position(offset + HEADER_SIZE);
+      buffer.put(dnBytes);
+      buffer.put(encodedEntry.getBackingArray(), 0, encodedEntry.length());
+
+      dnIndex.put(dnHash, address);
+      idIndex.put(idKey, address);
+      nbEntries++;
+      usedSize += recordSize;
+      return true;
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void removeEntry(DN entryDN)
+  {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try
+    {
+      final long address = dnIndex.get(hash(entryDN));
+      if (address != LongLongHashMap.NOT_FOUND && entryDN.equals(readDN(address)))
+      {
+        freeChunk(address);
+      }
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void clear()
+  {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try
+    {
+      clearIndexes();
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /** Empties the cache, keeping the allocated pages for reuse. */
+  private void clearIndexes()
+  {
+    dnIndex.clear();
+    idIndex.clear();
+    for (SizeClass sizeClass : sizeClasses)
+    {
+      sizeClass.clear();
+    }
+    Arrays.fill(pageSizeClasses, -1);
+    nbUnusedPages = nbAllocatedPages;
+    nbEntries = 0;
+    usedSize = 0;
+  }
+
+  @Override
+  public void clearBackend(String backendID)
+  {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try
+    {
+      final Integer backendIndex = backendIndexes.get(backendID);
+      if (backendIndex == null)
+      {
+        return;
+      }
+      for (SizeClass sizeClass : sizeClasses)
+      {
+        for (int i = 0; i < sizeClass.nbPages; i++)
+        {
+          final int pageIndex = sizeClass.pages[i];
+          final ByteBuffer page = pages[pageIndex];
+          for (int offset = 0; offset + sizeClass.chunkSize <= PAGE_SIZE; offset += sizeClass.chunkSize)
+          {
+            if ((page.get(offset + FLAGS_OFFSET) & FLAG_LIVE) != 0
+                && page.getShort(offset + BACKEND_OFFSET) == backendIndex)
+            {
+              freeChunk(address(pageIndex, offset));
+            }
+          }
+        }
+      }
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void handleLowMemory()
+  {
+    // Entries are stored outside of the heap, and the indexes only use a few bytes per entry:
+    // freeing them would not relieve the heap
+  }
+
+  @Override
+  public boolean isConfigurationAcceptable(EntryCacheCfg configuration, List<LocalizableMessage> unacceptableReasons)
+  {
+    return isConfigurationChangeAcceptable((OffHeapEntryCacheCfg) configuration, unacceptableReasons);
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(OffHeapEntryCacheCfg configuration,
+      List<LocalizableMessage> unacceptableReasons)
+  {
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_ACCEPTABLE, unacceptableReasons, null);
+    processEntryCacheConfig(configuration, false, errorHandler);
+    return errorHandler.getIsAcceptable();
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(OffHeapEntryCacheCfg configuration)
+  {
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_APPLY, null, errorMessages);
+    // Do not apply changes unless this cache is enabled.
+    if (configuration.isEnabled())
+    {
+      processEntryCacheConfig(configuration, true, errorHandler);
+    }
+
+    final ConfigChangeResult changeResult = new ConfigChangeResult();
+    changeResult.setResultCode(errorHandler.getResultCode());
+    changeResult.setAdminActionRequired(errorHandler.getIsAdminActionRequired());
+    changeResult.getMessages().addAll(errorHandler.getErrorMessages());
+    return changeResult;
+  }
+
+  /**
+   * Parses the provided configuration and configure the entry cache.
+   *
+   * @param configuration  The new configuration containing the changes.
+   * @param applyChanges   If true then take into account the new configuration.
+   * @param errorHandler   An handler used to report errors.
+   *
+   * @return  <CODE>true</CODE> if configuration is acceptable,
+   *          or <CODE>false</CODE> otherwise.
+   */
+  public boolean processEntryCacheConfig(OffHeapEntryCacheCfg configuration, boolean applyChanges,
+      EntryCacheCommon.ConfigErrorHandler errorHandler)
+  {
+    final DN newConfigEntryDN = configuration.dn();
+    final Set<SearchFilter> newIncludeFilters = EntryCacheCommon.getFilters(
+        configuration.getIncludeFilter(), ERR_CACHE_INVALID_INCLUDE_FILTER, errorHandler, newConfigEntryDN);
+    final Set<SearchFilter> newExcludeFilters = EntryCacheCommon.getFilters(
+        configuration.getExcludeFilter(), ERR_CACHE_INVALID_EXCLUDE_FILTER, errorHandler, newConfigEntryDN);
+
+    if (applyChanges && errorHandler.getIsAcceptable())
+    {
+      setIncludeFilters(newIncludeFilters);
+      setExcludeFilters(newExcludeFilters);
+      resize(configuration.getMaxMemorySize());
+      registeredConfiguration = configuration;
+    }
+    return errorHandler.getIsAcceptable();
+  }
+
+  /** Applies a new memory size, which empties the cache if the memory size decreases. */
+  private void resize(long newMaxMemorySize)
+  {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try
+    {
+      final int maxPages = (int) Math.min(Integer.MAX_VALUE, Math.max(1, newMaxMemorySize / PAGE_SIZE));
+      if (maxPages < nbAllocatedPages)
+      {
+        nbAllocatedPages = 0;
+        clearIndexes();
+      }
+      pages = Arrays.copyOf(pages, maxPages);
+      final int oldLength = pageSizeClasses.length;
+      pageSizeClasses = Arrays.copyOf(pageSizeClasses, maxPages);
+      if (maxPages > oldLength)
+      {
+        Arrays.fill(pageSizeClasses, oldLength, maxPages, -1);
+      }
+      maxMemorySize = newMaxMemorySize;
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /** Returns the address of a free chunk of the provided size class, evicting an entry if needed. */
+  private long allocateChunk(int sizeClassIndex)
+  {
+    final SizeClass sizeClass = sizeClasses[sizeClassIndex];
+    if (sizeClass.nbFreeChunks == 0)
+    {
+      final int pageIndex = findUnusedPage();
+      if (pageIndex != -1)
+      {
+        assignPage(pageIndex, sizeClassIndex);
+      }
+      else if (sizeClass.nbPages > 0)
+      {
+        evictWithClock(sizeClass);
+      }
+      else
+      {
+        assignPage(reclaimPage(), sizeClassIndex);
+      }
+    }
+    return sizeClass.freeChunks[--sizeClass.nbFreeChunks];
+  }
+
+  /** Returns an allocated page which is not used, allocating it if needed, or -1 if all the memory is used. */
+  private int findUnusedPage()
+  {
+    for (int i = 0; nbUnusedPages > 0 && i < nbAllocatedPages; i++)
+    {
+      if (pageSizeClasses[i] == -1)
+      {
+        nbUnusedPages--;
+        return i;
+      }
+    }
+    if (nbAllocatedPages < pages.length)
+    {
+      if (pages[nbAllocatedPages] == null)
+      {
+        pages[nbAllocatedPages] = ByteBuffer.allocateDirect(PAGE_SIZE);
+      }
+      return nbAllocatedPages++;
+    }
+    return -1;
+  }
+
+  private void assignPage(int pageIndex, int sizeClassIndex)
+  {
+    final SizeClass sizeClass = sizeClasses[sizeClassIndex];
+    final ByteBuffer page = pages[pageIndex];
+    pageSizeClasses[pageIndex] = sizeClassIndex;
+    sizeClass.addPage(pageIndex);
+    // Push the chunks in reverse order, so that they are used in address order
+    for (int offset = (PAGE_SIZE / sizeClass.chunkSize - 1) * sizeClass.chunkSize; offset >= 0;
+        offset -= sizeClass.chunkSize)
+    {
+      page.put(offset + FLAGS_OFFSET, (byte) 0);
+      sizeClass.pushFreeChunk(address(pageIndex, offset));
+    }
+  }
+
+  /**
+   * Evicts the first entry of the provided size class not referenced since the clock hand last passed it, clearing
+   * the references of the entries it passes.
+   */
+  private void evictWithClock(SizeClass sizeClass)
+  {
+    while (true)
+    {
+      final int pageIndex = sizeClass.pages[sizeClass.handPage];
+      final int offset = sizeClass.handOffset;
+      sizeClass.advanceHand();
+
+      final ByteBuffer page = pages[pageIndex];
+      final byte flags = page.get(offset + FLAGS_OFFSET);
+      if ((flags & FLAG_REFERENCED) != 0)
+      {
+        page.put(offset + FLAGS_OFFSET, (byte) (flags & ~FLAG_REFERENCED));
+      }
+      else if ((flags & FLAG_LIVE) != 0)
+      {
+        freeChunk(address(pageIndex, offset));
+        evictions++;
+        return;
+      }
+    }
+  }
+
+  /** Evicts all the entries of a page of the size class holding the most pages, and returns it. */
+  private int reclaimPage()
+  {
+    SizeClass victimClass = sizeClasses[0];
+    for (SizeClass sizeClass : sizeClasses)
+    {
+      if (sizeClass.nbPages > victimClass.nbPages)
+      {
+        victimClass = sizeClass;
+      }
+    }
+    final int pageIndex = victimClass.pages[victimClass.handPage];
+    final ByteBuffer page = pages[pageIndex];
+    for (int offset = 0; offset + victimClass.chunkSize <= PAGE_SIZE; offset += victimClass.chunkSize)
+    {
+      if ((page.get(offset + FLAGS_OFFSET) & FLAG_LIVE) != 0)
+      {
+        freeChunk(address(pageIndex, offset));
+        evictions++;
+      }
+    }
+    victimClass.removePage(pageIndex);
+    return pageIndex;
+  }
+
+  /** Removes the entry stored in the provided chunk from the indexes, and makes the chunk available. */
+  private void freeChunk(long address)
+  {
+    final int pageIndex = pageOf(address);
+    final ByteBuffer page = pages[pageIndex];
+    final int offset = offsetOf(address);
+    final long dnHash = page.getLong(offset + DN_HASH_OFFSET);
+    final long idKey = idKey(page.getShort(offset + BACKEND_OFFSET), page.getLong(offset + ENTRY_ID_OFFSET));
+    dnIndex.remove(dnHash, address);
+    idIndex.remove(idKey, address);
+    page.put(offset + FLAGS_OFFSET, (byte) 0);
+    sizeClasses[pageSizeClasses[pageIndex]].pushFreeChunk(address);
+    nbEntries--;
+    usedSize -= HEADER_SIZE + page.getInt(offset + DN_LENGTH_OFFSET) + page.getInt(offset + ENTRY_LENGTH_OFFSET);
+  }
+
+  private DN readDN(long address)
+  {
+    final ByteBuffer page = pages[pageOf(address)];
+    final int offset = offsetOf(address);
+    final byte[] dnBytes = readBytes(page, offset + HEADER_SIZE, page.getInt(offset + DN_LENGTH_OFFSET));
+    return DN.valueOf(ByteString.wrap(dnBytes).toString());
+  }
+
+  private static byte[] readBytes(ByteBuffer page, int position, int length)
+  {
+    final byte[] bytes = new byte[length];
+    final ByteBuffer buffer = page.duplicate();
+    buffer.position(position);
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private int getBackendIndex(String backendID)
+  {
+    Integer backendIndex = backendIndexes.get(backendID);
+    if (backendIndex == null)
+    {
+      backendIndex = backendIDs.size();
+      backendIndexes.put(backendID, backendIndex);
+      backendIDs.add(backendID);
+    }
+    return backendIndex;
+  }
+
+  private static long idKey(int backendIndex, long entryID)
+  {
+    // Never returns the empty key of the hash map, as backend indexes start at 0
+    return ((long) (backendIndex + 1) << 48) | entryID;
+  }
+
+  private static long hash(DN dn)
+  {
+    final ByteString normalizedDN = dn.toNormalizedByteString();
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < normalizedDN.length(); i++)
+    {
+      hash ^= normalizedDN.byteAt(i) & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+    return hash != LongLongHashMap.EMPTY_KEY ? hash : 1;
+  }
+
+  private static long address(int pageIndex, int offset)
+  {
+    return ((long) pageIndex << 32) | offset;
+  }
+
+  private static int pageOf(long address)
+  {
+    return (int) (address >>> 32);
+  }
+
+  private static int offsetOf(long address)
+  {
+    return (int) address;
+  }
+
+  private static int[] computeChunkSizes()
+  {
+    final List<Integer> sizes = new ArrayList<>();
+    for (int size = MIN_CHUNK_SIZE; size < PAGE_SIZE; size = (size * SIZE_CLASS_GROWTH / 100 + 7) & ~7)
+    {
+      sizes.add(size);
+    }
+    sizes.add(PAGE_SIZE);
+    final int[] chunkSizes = new int[sizes.size()];
+    for (int i = 0; i < chunkSizes.length; i++)
+    {
+      chunkSizes[i] = sizes.get(i);
+    }
+    return chunkSizes;
+  }
+
+  private static int sizeClassOf(int recordSize)
+  {
+    final int index = Arrays.binarySearch(CHUNK_SIZES, recordSize);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  @Override
+  public MonitorData getMonitorData()
+  {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try
+    {
+      long liveChunksSize = 0;
+      for (SizeClass sizeClass : sizeClasses)
+      {
+        liveChunksSize += (long) sizeClass.chunkSize
+            * (sizeClass.nbPages * (PAGE_SIZE / sizeClass.chunkSize) - sizeClass.nbFreeChunks);
+      }
+      final MonitorData monitorData = EntryCacheCommon.getGenericMonitorData(
+          cacheHits.longValue(),
+          cacheMisses.longValue(),
+          usedSize,
+          maxMemorySize,
+          nbEntries,
+          null);
+      monitorData.add("allocatedEntryCacheSize", (long) nbAllocatedPages * PAGE_SIZE);
+      monitorData.add("entryCacheOccupancy", maxMemorySize > 0 ? usedSize * 100D / maxMemorySize : 0D);
+      // Memory of the chunks holding entries which is not used by the entries
+      monitorData.add("entryCacheFragmentation",
+          liveChunksSize > 0 ? (liveChunksSize - usedSize) * 100D / liveChunksSize : 0D);
+      monitorData.add("entryCacheEvictions", evictions);
+      return monitorData;
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      return new MonitorData(0);
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Long getCacheCount()
+  {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try
+    {
+      return nbEntries;
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public String toVerboseString()
+  {
+    StringBuilder sb = new StringBuilder();
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try
+    {
+      for (SizeClass sizeClass : sizeClasses)
+      {
+        for (int i = 0; i < sizeClass.nbPages; i++)
+        {
+          final int pageIndex = sizeClass.pages[i];
+          final ByteBuffer page = pages[pageIndex];
+          for (int offset = 0; offset + sizeClass.chunkSize <= PAGE_SIZE; offset += sizeClass.chunkSize)
+          {
+            if ((page.get(offset + FLAGS_OFFSET) & FLAG_LIVE) != 0)
+            {
+              sb.append(readDN(address(pageIndex, offset)));
+              sb.append(":");
+              sb.append(page.getLong(offset + ENTRY_ID_OFFSET));
+              sb.append(":");
+              sb.append(backendIDs.get(page.getShort(offset + BACKEND_OFFSET)));
+              sb.append(ServerConstants.EOL);
+            }
+          }
+        }
+      }
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+
+    String verboseString = sb.toString();
+    return verboseString.length() > 0 ? verboseString : null;
+  }
+
+  /** The pages holding the chunks of a given size, with their free chunks and their clock hand. */
+  private static final class SizeClass
+  {
+    private final int chunkSize;
+    private int[] pages = new int[4];
+    private int nbPages;
+    private long[] freeChunks = new long[16];
+    private int nbFreeChunks;
+    /** The position of the clock hand: index in {@link #pages} and offset in the page. */
+    private int handPage;
+    private int handOffset;
+
+    private SizeClass(int chunkSize)
+    {
+      this.chunkSize = chunkSize;
+    }
+
+    private void addPage(int pageIndex)
+    {
+      if (nbPages == pages.length)
+      {
+        pages = Arrays.copyOf(pages, nbPages * 2);
+      }
+      pages[nbPages++] = pageIndex;
+    }
+
+    /** Removes the provided page, which must not hold any entry. */
+    private void removePage(int pageIndex)
+    {
+      int i = 0;
+      while (pages[i] != pageIndex)
+      {
+        i++;
+      }
+      pages[i] = pages[--nbPages];
+      handPage = handPage < nbPages ? handPage : 0;
+      handOffset = 0;
+
+      int nbKeptChunks = 0;
+      for (int j = 0; j < nbFreeChunks; j++)
+      {
+        if (pageOf(freeChunks[j]) != pageIndex)
+        {
+          freeChunks[nbKeptChunks++] = freeChunks[j];
+        }
+      }
+      nbFreeChunks = nbKeptChunks;
+    }
+
+    private void pushFreeChunk(long address)
+    {
+      if (nbFreeChunks == freeChunks.length)
+      {
+        freeChunks = Arrays.copyOf(freeChunks, nbFreeChunks * 2);
+      }
+      freeChunks[nbFreeChunks++] = address;
+    }
+
+    private void advanceHand()
+    {
+      handOffset += chunkSize;
+      if (handOffset + chunkSize > PAGE_SIZE)
+      {
+        handOffset = 0;
+        handPage = (handPage + 1) % nbPages;
+      }
+    }
+
+    private void clear()
+    {
+      nbPages = 0;
+      nbFreeChunks = 0;
+      handPage = 0;
+      handOffset = 0;
+    }
+  }
+
+  /** An open addressing hash map of longs with linear probing, which does not create any object per mapping. */
+  private static final class LongLongHashMap
+  {
+    private static final long EMPTY_KEY = 0;
+    private static final long NOT_FOUND = -1;
+
+    private long[] keys = new long[64];
+    private long[] values = new long[64];
+    private int size;
+
+    private long get(long key)
+    {
+      final int mask = keys.length - 1;
+      for (int i = indexOf(key, mask); keys[i] != EMPTY_KEY; i = (i + 1) & mask)
+      {
+        if (keys[i] == key)
+        {
+          return values[i];
+        }
+      }
+      return NOT_FOUND;
+    }
+
+    private void put(long key, long value)
+    {
+      if (2 * (size + 1) > keys.length)
+      {
+        rehash(keys.length * 2);
+      }
+      final int mask = keys.length - 1;
+      int i = indexOf(key, mask);
+      while (keys[i] != EMPTY_KEY && keys[i] != key)
+      {
+        i = (i + 1) & mask;
+      }
+      if (keys[i] == EMPTY_KEY)
+      {
+        keys[i] = key;
+        size++;
+      }
+      values[i] = value;
+    }
+
+    /** Removes the mapping of the provided key, if it maps to the provided value. */
+    private void remove(long key, long value)
+    {
+      final int mask = keys.length - 1;
+      int i = indexOf(key, mask);
+      while (keys[i] != key)
+      {
+        if (keys[i] == EMPTY_KEY)
+        {
+          return;
+        }
+        i = (i + 1) & mask;
+      }
+      if (values[i] != value)
+      {
+        return;
+      }
+      // Shift back the following keys of the probe sequence
+      int hole = i;
+      for (int j = (i + 1) & mask; keys[j] != EMPTY_KEY; j = (j + 1) & mask)
+      {
+        final int home = indexOf(keys[j], mask);
+        if (((j - home) & mask) >= ((j - hole) & mask))
+        {
+          keys[hole] = keys[j];
+          values[hole] = values[j];
+          hole = j;
+        }
+      }
+      keys[hole] = EMPTY_KEY;
+      size--;
+    }
+
+    private void clear()
+    {
+      keys = new long[64];
+      values = new long[64];
+      size = 0;
+    }
+
+    private void rehash(int capacity)
+    {
+      final long[] oldKeys = keys;
+      final long[] oldValues = values;
+      keys = new long[capacity];
+      values = new long[capacity];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++)
+      {
+        if (oldKeys[i] != EMPTY_KEY)
+        {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+
+    private static int indexOf(long key, int mask)
+    {
+      final long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & mask;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.forgerock.opendj.ldap.AddressMask;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.server.TraditionalWorkQueueCfg;
+import org.opends.server.api.ClientConnection;
+import org.opends.server.extensions.TraditionalWorkQueue.Priority;
+import org.opends.server.types.Operation;
+import org.opends.server.types.OperationType;
+
+/**
+ * Assigns a priority to the operations submitted to the traditional work queue, according to the high and low
+ * priority criteria of its configuration. An operation matching any of the high priority criteria has a high
+ * priority, otherwise an operation matching any of the low priority criteria has a low priority, otherwise it has a
+ * normal priority.
+ */
+final class OperationPriorityCriteria
+{
+  /** The criteria of one priority, an operation matching any of them. */
+  private static final class Criteria
+  {
+    private final Set<OperationType> operationTypes;
+    private final Collection<AddressMask> clientAddresses;
+    private final Collection<DN> userBaseDNs;
+    /**
+     * The list of ports is likely to be small and a simple array lookup will be more efficient, avoiding auto-boxing
+     * conversions as well.
+     */
+    private final int[] connectionPorts;
+
+    private Criteria(Collection<? extends Enum<?>> operationTypes, Collection<AddressMask> clientAddresses,
+        Collection<DN> userBaseDNs, Collection<Integer> connectionPorts)
+    {
+      this.operationTypes = toOperationTypes(operationTypes);
+      this.clientAddresses = new ArrayList<>(clientAddresses);
+      this.userBaseDNs = new ArrayList<>(userBaseDNs);
+      this.connectionPorts = new int[connectionPorts.size()];
+      int i = 0;
+      for (Integer port : connectionPorts)
+      {
+        this.connectionPorts[i++] = port;
+      }
+    }
+
+    /** The configured operation types have the names of the operation types, except rename. */
+    private static Set<OperationType> toOperationTypes(Collection<? extends Enum<?>> configuredTypes)
+    {
+      final Set<OperationType> types = EnumSet.noneOf(OperationType.class);
+      for (Enum<?> type : configuredTypes)
+      {
+        types.add("RENAME".equals(type.name()) ? OperationType.MODIFY_DN : OperationType.valueOf(type.name()));
+      }
+      return types;
+    }
+
+    private boolean isEmpty()
+    {
+      return operationTypes.isEmpty() && clientAddresses.isEmpty() && userBaseDNs.isEmpty()
+          && connectionPorts.length == 0;
+    }
+
+    private boolean matches(Operation operation)
+    {
+      if (operationTypes.contains(operation.getOperationType()))
+      {
+        return true;
+      }
+
+      final ClientConnection connection = operation.getClientConnection();
+      if (connection == null)
+      {
+        return false;
+      }
+      if (!clientAddresses.isEmpty())
+      {
+        final InetAddress address = connection.getRemoteAddress();
+        if (address != null && AddressMask.matchesAny(clientAddresses, address))
+        {
+          return true;
+        }
+      }
+      if (connectionPorts.length > 0)
+      {
+        final int port = connection.getServerPort();
+        for (int connectionPort : connectionPorts)
+        {
+          if (connectionPort == port)
+          {
+            return true;
+          }
+        }
+      }
+      if (!userBaseDNs.isEmpty())
+      {
+        final DN userDN = connection.getAuthenticationInfo().getAuthenticationDN();
+        if (userDN != null)
+        {
+          for (DN baseDN : userBaseDNs)
+          {
+            if (userDN.isSubordinateOrEqualTo(baseDN))
+            {
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  private final Criteria highPriorityCriteria;
+  private final Criteria lowPriorityCriteria;
+  /** Whether all the operations have a normal priority, in which case there is nothing to evaluate. */
+  private final boolean allNormalPriority;
+
+  /**
+   * Creates the criteria of the provided work queue configuration.
+   *
+   * @param configuration
+   *          the configuration of the work queue
+   */
+  OperationPriorityCriteria(TraditionalWorkQueueCfg configuration)
+  {
+    highPriorityCriteria = new Criteria(configuration.getHighPriorityOperationType(),
+        configuration.getHighPriorityClientAddress(), configuration.getHighPriorityUserDN(),
+        configuration.getHighPriorityConnectionPort());
+    lowPriorityCriteria = new Criteria(configuration.getLowPriorityOperationType(),
+        configuration.getLowPriorityClientAddress(), configuration.getLowPriorityUserDN(),
+        configuration.getLowPriorityConnectionPort());
+    allNormalPriority = highPriorityCriteria.isEmpty() && lowPriorityCriteria.isEmpty();
+  }
+
+  /**
+   * Returns the priority of the provided operation.
+   *
+   * @param operation
+   *          the operation submitted to the work queue
+   * @return the priority of the operation
+   */
+  Priority getPriority(Operation operation)
+  {
+    if (allNormalPriority)
+    {
+      return Priority.NORMAL;
+    }
+    if (highPriorityCriteria.matches(operation))
+    {
+      return Priority.HIGH;
+    }
+    if (lowPriorityCriteria.matches(operation))
+    {
+      return Priority.LOW;
+    }
+    return Priority.NORMAL;
+  }
+}
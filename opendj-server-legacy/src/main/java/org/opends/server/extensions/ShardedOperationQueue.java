@@ -0,0 +1,338 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opends.server.types.Operation;
+
+/**
+ * A bounded queue of operations split into several lanes, so that the threads submitting operations and the worker
+ * threads do not all contend on the same lock.
+ * <p>
+ * Each thread submits operations to, and takes operations from, the lane chosen from its thread ID: a request
+ * handler thread therefore feeds one lane, which is serviced in priority by the group of worker threads mapped to the
+ * same lane. A worker thread whose lane is empty steals the operations of the other lanes, so that no operation waits
+ * while a worker thread is idle.
+ * <p>
+ * Operations are queued with a priority, each priority having its own lanes: the worker threads always take the
+ * operations of the highest priority first.
+ * <p>
+ * The lanes are lock-free queues. The capacity is enforced by a counter of the operations in the queue, and the worker
+ * threads wait for operations on a semaphore counting them. Only the threads submitting operations to a full queue
+ * take a lock, in order to wait for some capacity.
+ */
+final class ShardedOperationQueue
+{
+  /** An operation waiting in the queue. */
+  static final class QueuedOperation
+  {
+    final Operation operation;
+    /** The priority of the operation, 0 being the highest priority. */
+    final int priority;
+    /** When the operation has been queued, as returned by {@link System#nanoTime()}. */
+    final long queueTimeNanos;
+
+    private QueuedOperation(Operation operation, int priority)
+    {
+      this.operation = operation;
+      this.priority = priority;
+      this.queueTimeNanos = System.nanoTime();
+    }
+  }
+
+  /** The lanes of each priority, highest priority first. */
+  private final List<List<ConcurrentLinkedQueue<QueuedOperation>>> lanes;
+  private final int nbLanesPerPriority;
+  /** The number of operations added to the lanes which have not been taken by a worker thread yet. */
+  private final Semaphore availableOperations = new Semaphore(0);
+  /** The number of operations in the queue, including the operations being added. */
+  private final AtomicInteger size = new AtomicInteger();
+  private volatile int capacity;
+
+  /** The monitor the threads submitting operations to a full queue wait on. */
+  private final Object notFull = new Object();
+  /** The number of threads waiting for capacity. Only changed while holding the lock on {@link #notFull}. */
+  private volatile int nbWaitingProducers;
+
+  /**
+   * Creates a new empty queue.
+   *
+   * @param nbPriorities
+   *          the number of priorities
+   * @param nbLanesPerPriority
+   *          the number of lanes of each priority
+   * @param capacity
+   *          the maximum number of operations in the queue
+   */
+  ShardedOperationQueue(int nbPriorities, int nbLanesPerPriority, int capacity)
+  {
+    this.lanes = new ArrayList<>(nbPriorities);
+    for (int priority = 0; priority < nbPriorities; priority++)
+    {
+      final List<ConcurrentLinkedQueue<QueuedOperation>> priorityLanes = new ArrayList<>(nbLanesPerPriority);
+      for (int i = 0; i < nbLanesPerPriority; i++)
+      {
+        priorityLanes.add(new ConcurrentLinkedQueue<QueuedOperation>());
+      }
+      lanes.add(priorityLanes);
+    }
+    this.nbLanesPerPriority = nbLanesPerPriority;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Adds an operation to the lane of the current thread if the queue is not full.
+   *
+   * @param operation
+   *          the operation to add
+   * @param priority
+   *          the priority of the operation, 0 being the highest priority
+   * @return {@code true} if the operation has been added, {@code false} if the queue is full
+   */
+  boolean offer(Operation operation, int priority)
+  {
+    if (!tryReserve())
+    {
+      return false;
+    }
+    add(operation, priority);
+    return true;
+  }
+
+  /**
+   * Adds an operation to the lane of the current thread, waiting up to the provided timeout for capacity if the queue
+   * is full.
+   *
+   * @param operation
+   *          the operation to add
+   * @param priority
+   *          the priority of the operation, 0 being the highest priority
+   * @param timeout
+   *          how long to wait for capacity
+   * @param unit
+   *          the unit of the timeout
+   * @return {@code true} if the operation has been added, {@code false} if the queue is still full after the timeout
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting
+   */
+  boolean offer(Operation operation, int priority, long timeout, TimeUnit unit) throws InterruptedException
+  {
+    if (!tryReserve())
+    {
+      final long deadline = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (notFull)
+      {
+        nbWaitingProducers++;
+        try
+        {
+          // Check again once registered as waiting, so that a concurrent poll cannot miss this thread
+          while (!tryReserve())
+          {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+            {
+              return false;
+            }
+            NANOSECONDS.timedWait(notFull, remaining);
+          }
+        }
+        finally
+        {
+          nbWaitingProducers--;
+        }
+      }
+    }
+    add(operation, priority);
+    return true;
+  }
+
+  private boolean tryReserve()
+  {
+    while (true)
+    {
+      final int current = size.get();
+      if (current >= capacity)
+      {
+        return false;
+      }
+      if (size.compareAndSet(current, current + 1))
+      {
+        return true;
+      }
+    }
+  }
+
+  private void add(Operation operation, int priority)
+  {
+    lanes.get(priority).get(laneOfCurrentThread()).add(new QueuedOperation(operation, priority));
+    availableOperations.release();
+  }
+
+  /**
+   * Takes the operation of highest priority, from the lane of the current thread first, waiting up to the provided
+   * timeout for an operation if the queue is empty.
+   *
+   * @param timeout
+   *          how long to wait for an operation
+   * @param unit
+   *          the unit of the timeout
+   * @return the operation, or {@code null} if no operation has been submitted before the timeout
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting
+   */
+  QueuedOperation poll(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    if (!availableOperations.tryAcquire(timeout, unit))
+    {
+      return null;
+    }
+
+    // The acquired permit guarantees that an operation has been added. It may be in a lane which has already been
+    // visited if other worker threads took the operations of the lanes visited after, hence the retries.
+    final int lane = laneOfCurrentThread();
+    while (true)
+    {
+      for (List<ConcurrentLinkedQueue<QueuedOperation>> priorityLanes : lanes)
+      {
+        for (int i = 0; i < nbLanesPerPriority; i++)
+        {
+          final QueuedOperation queuedOperation = priorityLanes.get((lane + i) % nbLanesPerPriority).poll();
+          if (queuedOperation != null)
+          {
+            removed(1);
+            return queuedOperation;
+          }
+        }
+      }
+      if (size.get() == 0)
+      {
+        // The operations have been drained
+        return null;
+      }
+      Thread.yield();
+    }
+  }
+
+  private void removed(int nbOperations)
+  {
+    size.addAndGet(-nbOperations);
+    if (nbWaitingProducers > 0)
+    {
+      synchronized (notFull)
+      {
+        notFull.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Removes all the operations of the queue.
+   *
+   * @param operations
+   *          the collection where to add the removed operations
+   */
+  void drainTo(Collection<Operation> operations)
+  {
+    int nbDrained = 0;
+    for (List<ConcurrentLinkedQueue<QueuedOperation>> priorityLanes : lanes)
+    {
+      for (ConcurrentLinkedQueue<QueuedOperation> lane : priorityLanes)
+      {
+        QueuedOperation queuedOperation;
+        while ((queuedOperation = lane.poll()) != null)
+        {
+          operations.add(queuedOperation.operation);
+          nbDrained++;
+        }
+      }
+    }
+    if (nbDrained > 0)
+    {
+      availableOperations.tryAcquire(Math.min(nbDrained, availableOperations.availablePermits()));
+      removed(nbDrained);
+    }
+  }
+
+  /**
+   * Changes the maximum number of operations in the queue. The operations already in the queue are kept even if they
+   * exceed the new capacity.
+   *
+   * @param capacity
+   *          the new maximum number of operations in the queue
+   */
+  void setCapacity(int capacity)
+  {
+    this.capacity = capacity;
+    removed(0);
+  }
+
+  /**
+   * Returns how long the oldest operation of the provided priority has been waiting in the queue.
+   *
+   * @param priority
+   *          the priority of the operations
+   * @return how long the oldest operation of the priority has been waiting, in nanoseconds, or 0 if there are no
+   *         operations of this priority in the queue
+   */
+  long getOldestQueueTimeNanos(int priority)
+  {
+    final long now = System.nanoTime();
+    long oldest = 0;
+    for (ConcurrentLinkedQueue<QueuedOperation> lane : lanes.get(priority))
+    {
+      final QueuedOperation head = lane.peek();
+      if (head != null)
+      {
+        oldest = Math.max(oldest, now - head.queueTimeNanos);
+      }
+    }
+    return oldest;
+  }
+
+  /**
+   * Returns the number of operations in the queue.
+   *
+   * @return the number of operations in the queue
+   */
+  int size()
+  {
+    return size.get();
+  }
+
+  /**
+   * Returns whether the queue is empty.
+   *
+   * @return {@code true} if the queue is empty
+   */
+  boolean isEmpty()
+  {
+    return size.get() == 0;
+  }
+
+  private int laneOfCurrentThread()
+  {
+    return (int) (Thread.currentThread().getId() % nbLanesPerPriority);
+  }
+}
@@ -0,0 +1,911 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ExtensionMessages.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.config.server.ConfigurationChangeListener;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.server.EntryCacheCfg;
+import org.forgerock.opendj.server.config.server.TinyLFUEntryCacheCfg;
+import org.forgerock.util.Utils;
+import org.opends.server.api.EntryCache;
+import org.opends.server.api.MonitorData;
+import org.opends.server.core.ServerContext;
+import org.opends.server.types.CacheEntry;
+import org.opends.server.types.Entry;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.util.ServerConstants;
+
+/**
+ * This class defines a Directory Server entry cache using the W-TinyLFU policy, which keeps the entries accessed the
+ * most frequently, while resisting scans of entries accessed only once.
+ * <p>
+ * The cache is split into shards, each entry belonging to the shard selected by the hash of its DN. Each shard has a
+ * small admission window, where new entries are kept in LRU order, and a main space split into a probation and a
+ * protected segment. Entries leaving the window are only admitted in the main space if they have been accessed more
+ * frequently than the entry they would evict, according to a per shard count-min sketch of the access frequencies.
+ * Entries accessed while in probation are promoted to the protected segment.
+ * <p>
+ * Lookups never block: entries are found through a concurrent map, and the accesses are only recorded in the policy
+ * when the shard lock is immediately available. Updates lock the shard of the entry. The size of the cache is bounded
+ * by both the number of entries and an estimate of their size in memory, which is based on their encoded size for the
+ * attributes which have not been decoded.
+ */
+public class TinyLFUEntryCache
+    extends EntryCache<TinyLFUEntryCacheCfg>
+    implements ConfigurationChangeListener<TinyLFUEntryCacheCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** Shards hold at least this number of entries, so that small caches are not split. */
+  private static final int MIN_SHARD_ENTRIES = 256;
+  /** Shards hold at least this size, so that small caches are not split. */
+  private static final long MIN_SHARD_SIZE = 1024 * 1024;
+  /** Estimated memory used by an entry in addition to its content: DN, attributes and cache node objects. */
+  private static final int ENTRY_OVERHEAD = 256;
+  /** Estimated average size of the entries, used to size the frequency sketches of caches bounded by size. */
+  private static final int AVERAGE_ENTRY_SIZE = 2048;
+  /** Maximum number of entries tracked by the frequency sketch of a shard. */
+  private static final int MAX_SKETCH_ENTRIES = 1 << 20;
+  /** Percentage of each shard dedicated to the admission window. */
+  private static final int WINDOW_PERCENT = 1;
+  /** Percentage of the main space of each shard dedicated to the protected segment. */
+  private static final int PROTECTED_PERCENT = 80;
+  /** Entries held by caches smaller than this are all evicted on low memory, instead of a part of them. */
+  private static final int LOW_MEMORY_MIN_ENTRIES = 1000;
+
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+  private static final int REMOVED = -1;
+  /** The order in which queues are emptied when entries must be evicted regardless of their frequency. */
+  private static final int[] EVICTION_ORDER = { PROBATION, WINDOW, PROTECTED };
+
+  /** The mapping between entry DNs and their corresponding cache nodes. */
+  private final ConcurrentMap<DN, Node> dnMap = new ConcurrentHashMap<>();
+  /** The mapping between backend+ID and their corresponding cache nodes. */
+  private final ConcurrentMap<String, ConcurrentMap<Long, Node>> idMap = new ConcurrentHashMap<>();
+  /** The shards, whose number is a power of two. */
+  private volatile Shard[] shards = new Shard[0];
+
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong admissions = new AtomicLong();
+  private final AtomicLong rejections = new AtomicLong();
+
+  private volatile long maxEntries;
+  private volatile long maxMemorySize;
+
+  /** Currently registered configuration object. */
+  private TinyLFUEntryCacheCfg registeredConfiguration;
+
+  /**
+   * Creates a new instance of this entry cache. All initialization should be performed in the
+   * {@code initializeEntryCache} method.
+   */
+  public TinyLFUEntryCache()
+  {
+    super();
+    setExcludeFilters(new HashSet<SearchFilter>());
+    setIncludeFilters(new HashSet<SearchFilter>());
+  }
+
+  @Override
+  public void initializeEntryCache(ServerContext serverContext, TinyLFUEntryCacheCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    registeredConfiguration = configuration;
+    configuration.addTinyLFUChangeListener(this);
+
+    // Read configuration and apply changes.
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_INIT, null, errorMessages);
+    if (!processEntryCacheConfig(configuration, true, errorHandler))
+    {
+      String buffer = Utils.joinAsString(".  ", errorMessages);
+      throw new ConfigException(ERR_TINYLFUCACHE_CANNOT_INITIALIZE.get(buffer));
+    }
+  }
+
+  @Override
+  public void finalizeEntryCache()
+  {
+    registeredConfiguration.removeTinyLFUChangeListener(this);
+    clear();
+  }
+
+  @Override
+  public boolean containsEntry(DN entryDN)
+  {
+    return entryDN != null && dnMap.containsKey(entryDN);
+  }
+
+  @Override
+  public Entry getEntry(DN entryDN)
+  {
+    final Node node = dnMap.get(entryDN);
+    if (node == null)
+    {
+      final int hash = hash(entryDN);
+      shard(hash).recordAccess(null, hash);
+      cacheMisses.getAndIncrement();
+      return null;
+    }
+    node.shard.recordAccess(node, node.hash);
+    cacheHits.getAndIncrement();
+    return node.cacheEntry.getEntry();
+  }
+
+  @Override
+  public long getEntryID(DN entryDN)
+  {
+    final Node node = dnMap.get(entryDN);
+    return node != null ? node.cacheEntry.getEntryID() : -1;
+  }
+
+  @Override
+  public DN getEntryDN(String backendID, long entryID)
+  {
+    final ConcurrentMap<Long, Node> backendMap = idMap.get(backendID);
+    if (backendMap != null)
+    {
+      final Node node = backendMap.get(entryID);
+      if (node != null)
+      {
+        return node.cacheEntry.getDN();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void putEntry(Entry entry, String backendID, long entryID)
+  {
+    final Node node = newNode(entry, backendID, entryID);
+    node.shard.put(node, false);
+  }
+
+  @Override
+  public boolean putEntryIfAbsent(Entry entry, String backendID, long entryID)
+  {
+    if (dnMap.containsKey(entry.getName()))
+    {
+      return false;
+    }
+    final Node node = newNode(entry, backendID, entryID);
+    return node.shard.put(node, true);
+  }
+
+  private Node newNode(Entry entry, String backendID, long entryID)
+  {
+    final int hash = hash(entry.getName());
+    return new Node(new CacheEntry(entry, backendID, entryID), hash, shard(hash));
+  }
+
+  @Override
+  public void removeEntry(DN entryDN)
+  {
+    final Node node = dnMap.get(entryDN);
+    if (node != null)
+    {
+      node.shard.remove(node);
+    }
+  }
+
+  @Override
+  public void clear()
+  {
+    final Shard[] allShards = shards;
+    for (Shard shard : allShards)
+    {
+      shard.lock.lock();
+    }
+    try
+    {
+      dnMap.clear();
+      idMap.clear();
+      for (Shard shard : allShards)
+      {
+        shard.reset();
+      }
+    }
+    finally
+    {
+      for (Shard shard : allShards)
+      {
+        shard.lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public void clearBackend(String backendID)
+  {
+    final ConcurrentMap<Long, Node> backendMap = idMap.remove(backendID);
+    if (backendMap != null)
+    {
+      for (Node node : backendMap.values())
+      {
+        node.shard.remove(node);
+      }
+    }
+  }
+
+  @Override
+  public void handleLowMemory()
+  {
+    if (dnMap.size() < LOW_MEMORY_MIN_ENTRIES)
+    {
+      clear();
+      return;
+    }
+    // Free about 10% of each shard, starting with the entries least likely to be accessed again
+    for (Shard shard : shards)
+    {
+      shard.evictLeastValuable(10);
+    }
+  }
+
+  @Override
+  public boolean isConfigurationAcceptable(EntryCacheCfg configuration, List<LocalizableMessage> unacceptableReasons)
+  {
+    return isConfigurationChangeAcceptable((TinyLFUEntryCacheCfg) configuration, unacceptableReasons);
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(TinyLFUEntryCacheCfg configuration,
+      List<LocalizableMessage> unacceptableReasons)
+  {
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_ACCEPTABLE, unacceptableReasons, null);
+    processEntryCacheConfig(configuration, false, errorHandler);
+    return errorHandler.getIsAcceptable();
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(TinyLFUEntryCacheCfg configuration)
+  {
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler = EntryCacheCommon.getConfigErrorHandler(
+        EntryCacheCommon.ConfigPhase.PHASE_APPLY, null, errorMessages);
+    // Do not apply changes unless this cache is enabled.
+    if (configuration.isEnabled())
+    {
+      processEntryCacheConfig(configuration, true, errorHandler);
+    }
+
+    final ConfigChangeResult changeResult = new ConfigChangeResult();
+    changeResult.setResultCode(errorHandler.getResultCode());
+    changeResult.setAdminActionRequired(errorHandler.getIsAdminActionRequired());
+    changeResult.getMessages().addAll(errorHandler.getErrorMessages());
+    return changeResult;
+  }
+
+  /**
+   * Parses the provided configuration and configure the entry cache.
+   *
+   * @param configuration  The new configuration containing the changes.
+   * @param applyChanges   If true then take into account the new configuration.
+   * @param errorHandler   An handler used to report errors.
+   *
+   * @return  <CODE>true</CODE> if configuration is acceptable,
+   *          or <CODE>false</CODE> otherwise.
+   */
+  public boolean processEntryCacheConfig(TinyLFUEntryCacheCfg configuration, boolean applyChanges,
+      EntryCacheCommon.ConfigErrorHandler errorHandler)
+  {
+    final DN newConfigEntryDN = configuration.dn();
+    final Set<SearchFilter> newIncludeFilters = EntryCacheCommon.getFilters(
+        configuration.getIncludeFilter(), ERR_CACHE_INVALID_INCLUDE_FILTER, errorHandler, newConfigEntryDN);
+    final Set<SearchFilter> newExcludeFilters = EntryCacheCommon.getFilters(
+        configuration.getExcludeFilter(), ERR_CACHE_INVALID_EXCLUDE_FILTER, errorHandler, newConfigEntryDN);
+
+    if (applyChanges && errorHandler.getIsAcceptable())
+    {
+      setIncludeFilters(newIncludeFilters);
+      setExcludeFilters(newExcludeFilters);
+      resize(configuration.getMaxEntries(), configuration.getMaxMemorySize());
+      registeredConfiguration = configuration;
+    }
+    return errorHandler.getIsAcceptable();
+  }
+
+  /** Applies new size limits, which empties the cache if the number of shards changes. */
+  private synchronized void resize(long newMaxEntries, long newMaxMemorySize)
+  {
+    maxEntries = newMaxEntries;
+    maxMemorySize = newMaxMemorySize;
+
+    final int nbShards = computeNbShards(newMaxEntries, newMaxMemorySize);
+    final Shard[] oldShards = shards;
+    if (oldShards.length == nbShards)
+    {
+      // Entries which no longer fit are evicted right away
+      for (Shard shard : oldShards)
+      {
+        shard.setLimits(newMaxEntries / nbShards, newMaxMemorySize / nbShards);
+      }
+      return;
+    }
+
+    final Shard[] newShards = new Shard[nbShards];
+    for (int i = 0; i < nbShards; i++)
+    {
+      newShards[i] = new Shard(newMaxEntries / nbShards, newMaxMemorySize / nbShards);
+    }
+    shards = newShards;
+    clear();
+  }
+
+  private static int computeNbShards(long maxEntries, long maxMemorySize)
+  {
+    int nbShards = Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors());
+    while (nbShards > 1 && (maxEntries / nbShards < MIN_SHARD_ENTRIES || maxMemorySize / nbShards < MIN_SHARD_SIZE))
+    {
+      nbShards >>= 1;
+    }
+    return nbShards;
+  }
+
+  private Shard shard(int hash)
+  {
+    final Shard[] allShards = shards;
+    return allShards[hash & (allShards.length - 1)];
+  }
+
+  private static int hash(DN dn)
+  {
+    final int h = dn.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  @Override
+  public MonitorData getMonitorData()
+  {
+    try
+    {
+      long size = 0;
+      for (Shard shard : shards)
+      {
+        size += shard.getWeight();
+      }
+      final MonitorData monitorData = EntryCacheCommon.getGenericMonitorData(
+          cacheHits.longValue(),
+          cacheMisses.longValue(),
+          size,
+          maxMemorySize,
+          Long.valueOf(dnMap.size()),
+          (maxEntries != Integer.MAX_VALUE && maxEntries != Long.MAX_VALUE) ? maxEntries : 0);
+      monitorData.add("entryCacheEvictions", evictions.longValue());
+      monitorData.add("entryCacheAdmissions", admissions.longValue());
+      monitorData.add("entryCacheRejections", rejections.longValue());
+      return monitorData;
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      return new MonitorData(0);
+    }
+  }
+
+  @Override
+  public Long getCacheCount()
+  {
+    return Long.valueOf(dnMap.size());
+  }
+
+  @Override
+  public String toVerboseString()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (Node node : dnMap.values())
+    {
+      sb.append(node.cacheEntry.getDN());
+      sb.append(":");
+      sb.append(node.cacheEntry.getEntryID());
+      sb.append(":");
+      sb.append(node.cacheEntry.getBackendID());
+      sb.append(ServerConstants.EOL);
+    }
+
+    String verboseString = sb.toString();
+    return verboseString.length() > 0 ? verboseString : null;
+  }
+
+  /** A cached entry, linked in one of the queues of its shard. */
+  private static final class Node
+  {
+    private final CacheEntry cacheEntry;
+    private final int hash;
+    private final long weight;
+    /** The shard of this node, which may no longer be in use if the cache has been resized. */
+    private final Shard shard;
+    /** The queue holding this node, or {@link #REMOVED}. Guarded by the shard lock, like the links. */
+    private int queue = REMOVED;
+    private Node prev;
+    private Node next;
+
+    /** Creates the sentinel of a queue. */
+    private Node()
+    {
+      cacheEntry = null;
+      hash = 0;
+      weight = 0;
+      shard = null;
+      prev = this;
+      next = this;
+    }
+
+    private Node(CacheEntry cacheEntry, int hash, Shard shard)
+    {
+      this.cacheEntry = cacheEntry;
+      this.hash = hash;
+      this.weight = cacheEntry.getEntry().getEstimatedSize() + ENTRY_OVERHEAD;
+      this.shard = shard;
+    }
+  }
+
+  /** A shard of the cache, with its own queues, frequency sketch and lock. */
+  private final class Shard
+  {
+    private final ReentrantLock lock = new ReentrantLock();
+    /** The sentinels of the window, probation and protected queues, which are LRU ordered. */
+    private final Node[] queues = { new Node(), new Node(), new Node() };
+    private final long[] queueWeights = new long[3];
+    private final long[] queueCounts = new long[3];
+    private FrequencySketch sketch;
+
+    private long maxCount;
+    private long maxWeight;
+    private long windowMaxCount;
+    private long windowMaxWeight;
+    private long protectedMaxCount;
+    private long protectedMaxWeight;
+
+    private Shard(long maxCount, long maxWeight)
+    {
+      setLimits(maxCount, maxWeight);
+    }
+
+    private void setLimits(long maxCount, long maxWeight)
+    {
+      lock.lock();
+      try
+      {
+        this.maxCount = maxCount;
+        this.maxWeight = maxWeight;
+        this.windowMaxCount = Math.max(1, maxCount * WINDOW_PERCENT / 100);
+        this.windowMaxWeight = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+        this.protectedMaxCount = (maxCount - windowMaxCount) * PROTECTED_PERCENT / 100;
+        this.protectedMaxWeight = (maxWeight - windowMaxWeight) * PROTECTED_PERCENT / 100;
+        final long expectedEntries = Math.min(maxCount, maxWeight / AVERAGE_ENTRY_SIZE);
+        this.sketch = new FrequencySketch((int) Math.min(expectedEntries, MAX_SKETCH_ENTRIES));
+        demoteProtected();
+        evict();
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    private long getWeight()
+    {
+      return queueWeights[WINDOW] + queueWeights[PROBATION] + queueWeights[PROTECTED];
+    }
+
+    private long getCount()
+    {
+      return queueCounts[WINDOW] + queueCounts[PROBATION] + queueCounts[PROTECTED];
+    }
+
+    /** Records an access to the provided node, or a miss if it is {@code null}, unless the shard is busy. */
+    private void recordAccess(Node node, int hash)
+    {
+      if (!lock.tryLock())
+      {
+        // Dropping some accesses has little impact on the policy, unlike contending on the lock
+        return;
+      }
+      try
+      {
+        sketch.increment(hash);
+        if (node == null)
+        {
+          return;
+        }
+        switch (node.queue)
+        {
+        case WINDOW:
+        case PROTECTED:
+          unlink(node);
+          link(node.queue, node);
+          break;
+        case PROBATION:
+          unlink(node);
+          link(PROTECTED, node);
+          demoteProtected();
+          break;
+        default:
+          // The node has been removed in the meantime
+          break;
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Adds the provided node to this shard and to the maps. Nodes replaced in the maps are removed from their own
+     * shard after releasing the lock, so that at most one shard lock is held at any time.
+     */
+    private boolean put(Node node, boolean onlyIfAbsent)
+    {
+      Node staleNode = null;
+      Node staleIdNode = null;
+      lock.lock();
+      try
+      {
+        final DN dn = node.cacheEntry.getDN();
+        final Node oldNode;
+        if (onlyIfAbsent)
+        {
+          oldNode = dnMap.putIfAbsent(dn, node);
+          if (oldNode != null)
+          {
+            return false;
+          }
+        }
+        else
+        {
+          oldNode = dnMap.put(dn, node);
+        }
+        sketch.increment(node.hash);
+        if (oldNode != null)
+        {
+          staleNode = removeOrDefer(oldNode);
+        }
+        if (node.weight > maxWeight)
+        {
+          // Too large to be cached
+          dnMap.remove(dn, node);
+          rejections.getAndIncrement();
+          return false;
+        }
+
+        final String backendID = node.cacheEntry.getBackendID();
+        ConcurrentMap<Long, Node> backendMap = idMap.get(backendID);
+        if (backendMap == null)
+        {
+          backendMap = new ConcurrentHashMap<>();
+          final ConcurrentMap<Long, Node> existingMap = idMap.putIfAbsent(backendID, backendMap);
+          if (existingMap != null)
+          {
+            backendMap = existingMap;
+          }
+        }
+        final Node oldIdNode = backendMap.put(node.cacheEntry.getEntryID(), node);
+        if (oldIdNode != null && oldIdNode != oldNode)
+        {
+          // Another entry had the same ID in this backend
+          dnMap.remove(oldIdNode.cacheEntry.getDN(), oldIdNode);
+          staleIdNode = removeOrDefer(oldIdNode);
+        }
+
+        link(WINDOW, node);
+        evict();
+        return true;
+      }
+      finally
+      {
+        lock.unlock();
+        if (staleNode != null)
+        {
+          staleNode.shard.discard(staleNode);
+        }
+        if (staleIdNode != null)
+        {
+          staleIdNode.shard.discard(staleIdNode);
+        }
+      }
+    }
+
+    /** Removes the provided node if it belongs to this shard, otherwise returns it so that the caller removes it. */
+    private Node removeOrDefer(Node node)
+    {
+      if (node.shard == this)
+      {
+        removeNode(node);
+        return null;
+      }
+      return node;
+    }
+
+    /** Removes the provided node, which has already been removed from the DN map. */
+    private void discard(Node node)
+    {
+      lock.lock();
+      try
+      {
+        removeNode(node);
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    private void remove(Node node)
+    {
+      lock.lock();
+      try
+      {
+        if (dnMap.remove(node.cacheEntry.getDN(), node))
+        {
+          removeNode(node);
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /** Unlinks the provided node and removes it from the ID map. It must already be removed from the DN map. */
+    private void removeNode(Node node)
+    {
+      if (node.queue != REMOVED)
+      {
+        unlink(node);
+        node.queue = REMOVED;
+      }
+      final String backendID = node.cacheEntry.getBackendID();
+      final ConcurrentMap<Long, Node> backendMap = idMap.get(backendID);
+      if (backendMap != null)
+      {
+        backendMap.remove(node.cacheEntry.getEntryID(), node);
+      }
+    }
+
+    private void evictNode(Node node)
+    {
+      dnMap.remove(node.cacheEntry.getDN(), node);
+      removeNode(node);
+      evictions.getAndIncrement();
+    }
+
+    /** Moves the least recently used entries of the protected segment to the probation segment while it is full. */
+    private void demoteProtected()
+    {
+      while (queueCounts[PROTECTED] > protectedMaxCount || queueWeights[PROTECTED] > protectedMaxWeight)
+      {
+        final Node node = queues[PROTECTED].next;
+        unlink(node);
+        link(PROBATION, node);
+      }
+    }
+
+    /**
+     * Moves the entries overflowing the window to the main space, provided they are accessed more frequently than the
+     * entries they would evict, then evicts entries until the shard fits in its limits.
+     */
+    private void evict()
+    {
+      while (queueCounts[WINDOW] > windowMaxCount || queueWeights[WINDOW] > windowMaxWeight)
+      {
+        final Node candidate = queues[WINDOW].next;
+        unlink(candidate);
+        link(PROBATION, candidate);
+        admit(candidate);
+      }
+      while (isFull())
+      {
+        evictNode(leastValuable());
+      }
+    }
+
+    private void admit(Node candidate)
+    {
+      while (isFull())
+      {
+        Node victim = queues[PROBATION].next;
+        if (victim == candidate)
+        {
+          victim = queues[PROTECTED].next;
+          if (victim == queues[PROTECTED])
+          {
+            // Nothing left to compete with in the main space
+            break;
+          }
+        }
+        if (sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash))
+        {
+          evictNode(candidate);
+          rejections.getAndIncrement();
+          return;
+        }
+        evictNode(victim);
+      }
+      admissions.getAndIncrement();
+    }
+
+    private boolean isFull()
+    {
+      return getCount() > maxCount || getWeight() > maxWeight;
+    }
+
+    /** Returns the entry least likely to be accessed again, the shard being not empty. */
+    private Node leastValuable()
+    {
+      for (int queue : EVICTION_ORDER)
+      {
+        if (queues[queue].next != queues[queue])
+        {
+          return queues[queue].next;
+        }
+      }
+      throw new IllegalStateException("Empty shard");
+    }
+
+    private void evictLeastValuable(int percent)
+    {
+      lock.lock();
+      try
+      {
+        for (long i = getCount() * percent / 100; i > 0; i--)
+        {
+          evictNode(leastValuable());
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /** Empties the shard, the DN and ID maps having been cleared by the caller holding the lock. */
+    private void reset()
+    {
+      for (int queue = 0; queue < queues.length; queue++)
+      {
+        final Node sentinel = queues[queue];
+        for (Node node = sentinel.next; node != sentinel; node = node.next)
+        {
+          node.queue = REMOVED;
+        }
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        queueWeights[queue] = 0;
+        queueCounts[queue] = 0;
+      }
+    }
+
+    private void link(int queue, Node node)
+    {
+      final Node sentinel = queues[queue];
+      node.queue = queue;
+      node.prev = sentinel.prev;
+      node.next = sentinel;
+      sentinel.prev.next = node;
+      sentinel.prev = node;
+      queueWeights[queue] += node.weight;
+      queueCounts[queue]++;
+    }
+
+    private void unlink(Node node)
+    {
+      node.prev.next = node.next;
+      node.next.prev = node.prev;
+      node.prev = null;
+      node.next = null;
+      queueWeights[node.queue] -= node.weight;
+      queueCounts[node.queue]--;
+    }
+  }
+
+  /**
+   * A count-min sketch estimating the access frequency of the entries with 4 bits counters, which are halved
+   * periodically so that the frequencies reflect the recent accesses.
+   */
+  private static final class FrequencySketch
+  {
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /** Each long holds 16 counters. */
+    private final long[] table;
+    private final int sampleSize;
+    private int size;
+
+    private FrequencySketch(int expectedEntries)
+    {
+      table = new long[Math.max(16, Integer.highestOneBit(Math.max(1, expectedEntries - 1)) << 1)];
+      sampleSize = 10 * table.length;
+    }
+
+    private int frequency(int entryHash)
+    {
+      final int hash = rehash(entryHash);
+      int frequency = 15;
+      for (int i = 0; i < SEEDS.length; i++)
+      {
+        frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offsetOf(hash, i)) & 0xF));
+      }
+      return frequency;
+    }
+
+    private void increment(int entryHash)
+    {
+      final int hash = rehash(entryHash);
+      boolean added = false;
+      for (int i = 0; i < SEEDS.length; i++)
+      {
+        final int index = indexOf(hash, i);
+        final int offset = offsetOf(hash, i);
+        if (((table[index] >>> offset) & 0xF) != 0xF)
+        {
+          table[index] += 1L << offset;
+          added = true;
+        }
+      }
+      if (added && ++size >= sampleSize)
+      {
+        for (int i = 0; i < table.length; i++)
+        {
+          table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size /= 2;
+      }
+    }
+
+    /** Entries of a shard share the bits of their hash selecting the shard, which must not select the counters. */
+    private static int rehash(int hash)
+    {
+      final int h = hash * 0x31848bab;
+      return h ^ (h >>> 14);
+    }
+
+    private int indexOf(int hash, int i)
+    {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return (int) h & (table.length - 1);
+    }
+
+    private static int offsetOf(int hash, int i)
+    {
+      return ((hash >>> (i << 3)) & 0xF) << 2;
+    }
+  }
+}
@@ -18,12 +18,14 @@ package org.opends.server.extensions;
 
 import static org.opends.messages.ConfigMessages.*;
 import static org.opends.messages.CoreMessages.*;
+import static org.opends.server.util.ServerConstants.*;
+import static org.opends.server.util.StaticUtils.*;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -36,6 +38,7 @@ import org.forgerock.opendj.config.server.ConfigurationChangeListener;
 import org.forgerock.opendj.server.config.server.TraditionalWorkQueueCfg;
 import org.opends.server.api.WorkQueue;
 import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ExtendedOperation;
 import org.opends.server.monitors.TraditionalWorkQueueMonitor;
 import org.opends.server.types.CancelRequest;
 import org.forgerock.opendj.config.server.ConfigChangeResult;
@@ -52,6 +55,20 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
 {
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
+  /**
+   * The priorities of the operations in the work queue. The worker threads
+   * always process the operations of the highest priority first.
+   */
+  public enum Priority
+  {
+    /** The operations matching the high priority criteria of the configuration. */
+    HIGH,
+    /** The operations matching none of the criteria of the configuration. */
+    NORMAL,
+    /** The operations matching the low priority criteria, and none of the high priority criteria. */
+    LOW
+  }
+
   /**
    * The maximum number of times to retry getting the next operation from the
    * queue if an unexpected failure occurs.
@@ -70,6 +87,29 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
    */
   private AtomicLong queueFullRejects;
 
+  /** The number of operations submitted to the work queue, per priority. */
+  private AtomicLongArray opsSubmittedPerPriority;
+  /**
+   * The number of operations rejected because the work queue was full or
+   * because they would have waited for too long, per priority.
+   */
+  private AtomicLongArray opsRejectedPerPriority;
+  /** The number of operations picked up by the worker threads, per priority. */
+  private AtomicLongArray opsDequeuedPerPriority;
+  /** The total time the operations picked up have waited in the queue, per priority. */
+  private AtomicLongArray totalQueueTimeNanosPerPriority;
+  /** The maximum time an operation picked up has waited in the queue, per priority. */
+  private AtomicLongArray maxQueueTimeNanosPerPriority;
+
+  /** Assigns a priority to the operations submitted to the work queue. */
+  private volatile OperationPriorityCriteria priorityCriteria;
+
+  /**
+   * The maximum time an operation can wait in the queue before being rejected,
+   * or 0 if the operations can wait indefinitely.
+   */
+  private volatile long maxQueueTimeNanos;
+
   /**
    * Indicates whether one or more of the worker threads needs to be killed at
    * the next convenient opportunity.
@@ -86,7 +126,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
    * The maximum number of pending requests that this work queue will allow
    * before it will start rejecting them.
    */
-  private int maxCapacity;
+  private volatile int maxCapacity;
 
   /**
    * The number of worker threads that should be active (or will be shortly if a
@@ -106,7 +146,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
   private final boolean isBlocking = true;
 
   /** The queue that will be used to actually hold the pending operations. */
-  private LinkedBlockingQueue<Operation> opQueue;
+  private ShardedOperationQueue opQueue;
 
   /** The lock used to provide threadsafe access for the queue, used for non-config changes. */
   private final ReadLock queueReadLock;
@@ -139,6 +179,12 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
       killThreads = false;
       opsSubmitted = new AtomicLong(0);
       queueFullRejects = new AtomicLong(0);
+      final int nbPriorities = Priority.values().length;
+      opsSubmittedPerPriority = new AtomicLongArray(nbPriorities);
+      opsRejectedPerPriority = new AtomicLongArray(nbPriorities);
+      opsDequeuedPerPriority = new AtomicLongArray(nbPriorities);
+      totalQueueTimeNanosPerPriority = new AtomicLongArray(nbPriorities);
+      maxQueueTimeNanosPerPriority = new AtomicLongArray(nbPriorities);
 
       // Register to be notified of any configuration changes.
       configuration.addTraditionalChangeListener(this);
@@ -147,18 +193,14 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
       numWorkerThreads =
           computeNumWorkerThreads(configuration.getNumWorkerThreads());
       maxCapacity = configuration.getMaxWorkQueueCapacity();
+      priorityCriteria = new OperationPriorityCriteria(configuration);
+      maxQueueTimeNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getMaxQueueTime());
 
-      // Create the actual work queue.
-      if (maxCapacity > 0)
-      {
-        opQueue = new LinkedBlockingQueue<>(maxCapacity);
-      }
-      else
-      {
-        // This will never be the case, since the configuration definition
-        // ensures that the capacity is always finite.
-        opQueue = new LinkedBlockingQueue<>();
-      }
+      // Create the actual work queue, with one lane per core at most so that
+      // the request handlers and worker threads do not contend on a single
+      // lock.
+      int nbLanes = Math.max(1, Math.min(numWorkerThreads, Runtime.getRuntime().availableProcessors()));
+      opQueue = new ShardedOperationQueue(nbPriorities, nbLanes, maxCapacity);
 
       // Create the set of worker threads that should be used to service the
       // work queue.
@@ -210,7 +252,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     // they won't be processed because the server is shutting down.
     CancelRequest cancelRequest = new CancelRequest(true, reason);
     ArrayList<Operation> pendingOperations = new ArrayList<>();
-    opQueue.removeAll(pendingOperations);
+    opQueue.drainTo(pendingOperations);
     for (Operation o : pendingOperations)
     {
       try
@@ -277,16 +319,22 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
   @Override
   public void submitOperation(Operation operation) throws DirectoryException
   {
-    submitOperation(operation, isBlocking);
+    Priority priority = priorityCriteria.getPriority(operation);
+    rejectIfQueueTimeExceeded(operation, priority);
+    submitOperation(operation, priority, isBlocking);
   }
 
   @Override
   public boolean trySubmitOperation(Operation operation)
       throws DirectoryException
   {
+    // An operation rejected because of the queue time must not be processed
+    // by the caller instead, so this rejection is not a "queue full" one.
+    Priority priority = priorityCriteria.getPriority(operation);
+    rejectIfQueueTimeExceeded(operation, priority);
     try
     {
-      submitOperation(operation, false);
+      submitOperation(operation, priority, false);
       return true;
     }
     catch (DirectoryException e)
@@ -299,7 +347,49 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     }
   }
 
-  private void submitOperation(Operation operation,
+  /**
+   * Rejects the provided operation if the oldest operation of the same
+   * priority has already been waiting in the queue for longer than the maximum
+   * queue time: the operation would most likely wait as long, and the client
+   * is better served by an early busy result than by a late one.
+   */
+  private void rejectIfQueueTimeExceeded(Operation operation, Priority priority)
+      throws DirectoryException
+  {
+    final long maxQueueTime = maxQueueTimeNanos;
+    if (maxQueueTime > 0
+        && !isExemptFromQueueTime(operation)
+        && opQueue.getOldestQueueTimeNanos(priority.ordinal()) > maxQueueTime)
+    {
+      opsRejectedPerPriority.incrementAndGet(priority.ordinal());
+
+      LocalizableMessage message = WARN_OP_REJECTED_BY_QUEUE_TIME.get(
+          toLowerCase(priority.name()), TimeUnit.NANOSECONDS.toMillis(maxQueueTime));
+      throw new DirectoryException(ResultCode.BUSY, message);
+    }
+  }
+
+  /**
+   * Abandon and unbind operations have no response and release resources, so they are never rejected.
+   * Neither are bind and StartTLS operations: the connection stops reading requests until they complete.
+   */
+  static boolean isExemptFromQueueTime(Operation operation)
+  {
+    switch (operation.getOperationType())
+    {
+    case ABANDON:
+    case UNBIND:
+    case BIND:
+      return true;
+    case EXTENDED:
+      return operation instanceof ExtendedOperation
+          && OID_START_TLS_REQUEST.equals(((ExtendedOperation) operation).getRequestOID());
+    default:
+      return false;
+    }
+  }
+
+  private void submitOperation(Operation operation, Priority priority,
       boolean blockEnqueuingWhenFull) throws DirectoryException
   {
     queueReadLock.lock();
@@ -322,7 +412,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
           // worker threads cannot run, the queue will never empty and allow
           // this thread to proceed. To help things out we can periodically
           // yield the read lock when the queue is full.
-          while (!opQueue.offer(operation, 1, TimeUnit.SECONDS))
+          while (!opQueue.offer(operation, priority.ordinal(), 1, TimeUnit.SECONDS))
           {
             queueReadLock.unlock();
             Thread.yield();
@@ -342,6 +432,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
           Thread.currentThread().interrupt();
 
           queueFullRejects.incrementAndGet();
+          opsRejectedPerPriority.incrementAndGet(priority.ordinal());
 
           LocalizableMessage message = WARN_OP_REJECTED_BY_QUEUE_INTERRUPT.get();
           throw new DirectoryException(ResultCode.BUSY, message);
@@ -349,9 +440,10 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
       }
       else
       {
-        if (!opQueue.offer(operation))
+        if (!opQueue.offer(operation, priority.ordinal()))
         {
           queueFullRejects.incrementAndGet();
+          opsRejectedPerPriority.incrementAndGet(priority.ordinal());
 
           LocalizableMessage message = WARN_OP_REJECTED_BY_QUEUE_FULL.get(maxCapacity);
           throw new DirectoryException(ResultCode.BUSY, message);
@@ -359,6 +451,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
       }
 
       opsSubmitted.incrementAndGet();
+      opsSubmittedPerPriority.incrementAndGet(priority.ordinal());
     }
     finally
     {
@@ -427,10 +520,20 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
 
       while (true)
       {
-        Operation nextOperation = opQueue.poll(5, TimeUnit.SECONDS);
-        if (nextOperation != null)
+        ShardedOperationQueue.QueuedOperation next = opQueue.poll(5, TimeUnit.SECONDS);
+        if (next != null)
         {
-          return nextOperation;
+          final long queueTime = recordQueueTime(next);
+          final long maxQueueTime = maxQueueTimeNanos;
+          if (maxQueueTime <= 0
+              || queueTime <= maxQueueTime
+              || isExemptFromQueueTime(next.operation))
+          {
+            return next.operation;
+          }
+          opsRejectedPerPriority.incrementAndGet(next.priority);
+          rejectExpiredOperation(next.operation, queueTime, maxQueueTime);
+          continue;
         }
 
         // There was no work to do in the specified length of time. Release the
@@ -485,6 +588,43 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     return retryNextOperation(workerThread, numFailures + 1);
   }
 
+  private long recordQueueTime(ShardedOperationQueue.QueuedOperation queuedOperation)
+  {
+    final int priority = queuedOperation.priority;
+    final long queueTime = System.nanoTime() - queuedOperation.queueTimeNanos;
+    opsDequeuedPerPriority.incrementAndGet(priority);
+    totalQueueTimeNanosPerPriority.addAndGet(priority, queueTime);
+    long max;
+    while (queueTime > (max = maxQueueTimeNanosPerPriority.get(priority)))
+    {
+      if (maxQueueTimeNanosPerPriority.compareAndSet(priority, max, queueTime))
+      {
+        break;
+      }
+    }
+    return queueTime;
+  }
+
+  /**
+   * Sends a busy result for an operation which has waited in the queue for
+   * longer than the maximum queue time, instead of processing it: the client
+   * has most likely given up on it already.
+   */
+  private void rejectExpiredOperation(Operation operation, long queueTime, long maxQueueTime)
+  {
+    try
+    {
+      operation.setResultCode(ResultCode.BUSY);
+      operation.appendErrorMessage(WARN_OP_REJECTED_BY_EXPIRED_QUEUE_TIME.get(
+          TimeUnit.NANOSECONDS.toMillis(queueTime), TimeUnit.NANOSECONDS.toMillis(maxQueueTime)));
+      operation.getClientConnection().sendResponse(operation);
+    }
+    finally
+    {
+      operation.operationCompleted();
+    }
+  }
+
   /**
    * Kills this worker thread if needed. This method assumes that the read lock
    * is already taken and ensure that it is taken on exit.
@@ -565,11 +705,72 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     return queueFullRejects.longValue();
   }
 
+  /**
+   * Retrieves the total number of operations of the provided priority that
+   * have been successfully submitted to this work queue since startup.
+   *
+   * @param priority
+   *          The priority of the operations.
+   * @return The total number of operations of the provided priority that have
+   *         been successfully submitted to this work queue since startup.
+   */
+  public long getOpsSubmitted(Priority priority)
+  {
+    return opsSubmittedPerPriority.get(priority.ordinal());
+  }
+
+  /**
+   * Retrieves the total number of operations of the provided priority that
+   * have been rejected, either because the work queue was already at its
+   * maximum capacity, or because they have waited, or would have waited, in
+   * the work queue for longer than the maximum queue time.
+   *
+   * @param priority
+   *          The priority of the operations.
+   * @return The total number of operations of the provided priority that have
+   *         been rejected since startup.
+   */
+  public long getOpsRejected(Priority priority)
+  {
+    return opsRejectedPerPriority.get(priority.ordinal());
+  }
+
+  /**
+   * Retrieves the average time the operations of the provided priority have
+   * waited in the work queue before being picked up by a worker thread.
+   *
+   * @param priority
+   *          The priority of the operations.
+   * @return The average time, in milliseconds, the operations of the provided
+   *         priority have waited in the work queue since startup.
+   */
+  public double getAverageQueueTimeMillis(Priority priority)
+  {
+    final long nbDequeued = opsDequeuedPerPriority.get(priority.ordinal());
+    if (nbDequeued == 0)
+    {
+      return 0;
+    }
+    return totalQueueTimeNanosPerPriority.get(priority.ordinal()) / 1000000.0 / nbDequeued;
+  }
+
+  /**
+   * Retrieves the maximum time an operation of the provided priority has
+   * waited in the work queue before being picked up by a worker thread.
+   *
+   * @param priority
+   *          The priority of the operations.
+   * @return The maximum time, in milliseconds, an operation of the provided
+   *         priority has waited in the work queue since startup.
+   */
+  public long getMaxQueueTimeMillis(Priority priority)
+  {
+    return TimeUnit.NANOSECONDS.toMillis(maxQueueTimeNanosPerPriority.get(priority.ordinal()));
+  }
+
   /**
    * Retrieves the number of pending operations in the queue that have not yet
-   * been picked up for processing. Note that this method is not a constant-time
-   * operation and can be relatively inefficient, so it should be used
-   * sparingly.
+   * been picked up for processing.
    *
    * @return The number of pending operations in the queue that have not yet
    *         been picked up for processing.
@@ -602,6 +803,10 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
         computeNumWorkerThreads(configuration.getNumWorkerThreads());
     int newMaxCapacity = configuration.getMaxWorkQueueCapacity();
 
+    // The new criteria and maximum queue time apply to the operations submitted from now on.
+    priorityCriteria = new OperationPriorityCriteria(configuration);
+    maxQueueTimeNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getMaxQueueTime());
+
     // Apply a change to the number of worker threads if appropriate.
     int currentThreads = workerThreads.size();
     if (newNumThreads != currentThreads)
@@ -639,73 +844,12 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
       }
     }
 
-    // Apply a change to the maximum capacity if appropriate. Since we can't
-    // change capacity on the fly, then we'll have to create a new queue and
-    // transfer any remaining items into it. Any thread that is waiting on the
-    // original queue will time out after at most a few seconds and further
-    // checks will be against the new queue.
+    // Apply a change to the maximum capacity if appropriate. Any pending
+    // requests in excess of a reduced capacity are kept in the queue.
     if (newMaxCapacity != maxCapacity)
     {
-      // First switch the queue with the exclusive lock.
-      queueWriteLock.lock();
-      LinkedBlockingQueue<Operation> oldOpQueue;
-      try
-      {
-        LinkedBlockingQueue<Operation> newOpQueue = null;
-        if (newMaxCapacity > 0)
-        {
-          newOpQueue = new LinkedBlockingQueue<>(newMaxCapacity);
-        }
-        else
-        {
-          newOpQueue = new LinkedBlockingQueue<>();
-        }
-
-        oldOpQueue = opQueue;
-        opQueue = newOpQueue;
-
-        maxCapacity = newMaxCapacity;
-      }
-      finally
-      {
-        queueWriteLock.unlock();
-      }
-
-      // Now resubmit any pending requests - we'll need the shared lock.
-      Operation pendingOperation = null;
-      queueReadLock.lock();
-      try
-      {
-        // We have to be careful when adding any existing pending operations
-        // because the new capacity could be less than what was already
-        // backlogged in the previous queue. If that happens, we may have to
-        // loop a few times to get everything in there.
-        while ((pendingOperation = oldOpQueue.poll()) != null)
-        {
-          opQueue.put(pendingOperation);
-        }
-      }
-      catch (InterruptedException e)
-      {
-        // We cannot handle the interruption here. Cancel pending requests and
-        // re-interrupt this thread.
-        Thread.currentThread().interrupt();
-
-        LocalizableMessage message = WARN_OP_REJECTED_BY_QUEUE_INTERRUPT.get();
-        CancelRequest cancelRequest = new CancelRequest(true, message);
-        if (pendingOperation != null)
-        {
-          pendingOperation.abort(cancelRequest);
-        }
-        while ((pendingOperation = oldOpQueue.poll()) != null)
-        {
-          pendingOperation.abort(cancelRequest);
-        }
-      }
-      finally
-      {
-        queueReadLock.unlock();
-      }
+      opQueue.setCapacity(newMaxCapacity);
+      maxCapacity = newMaxCapacity;
     }
 
     return new ConfigChangeResult();
@@ -0,0 +1,549 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ConfigMessages.*;
+import static org.opends.messages.CoreMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.config.server.ConfigurationChangeListener;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.server.config.server.VirtualThreadWorkQueueCfg;
+import org.opends.server.api.ClientConnection;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.WorkQueue;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.monitors.VirtualThreadWorkQueueMonitor;
+import org.opends.server.types.CancelRequest;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.DisconnectReason;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.Operation;
+
+/**
+ * A work queue processing each operation on its own thread, which is a virtual thread when the JVM supports them,
+ * rather than on a fixed pool of worker threads. Operations blocking on I/O therefore do not limit the number of
+ * operations the server can process concurrently.
+ * <p>
+ * Admission is controlled by limiting the number of operations processed concurrently, globally and per client
+ * connection. The operations which cannot be processed yet are queued per client connection, and the client
+ * connections having queued operations are served in turn, so that a client pipelining many requests cannot delay the
+ * requests of the other clients. When the operation completes, its thread goes on with the next operation to process
+ * if there is one.
+ */
+public class VirtualThreadWorkQueue
+       extends WorkQueue<VirtualThreadWorkQueueCfg>
+       implements ConfigurationChangeListener<VirtualThreadWorkQueueCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The operations of a client connection which are being processed or waiting to be processed. */
+  private static final class ConnectionQueue
+  {
+    private final ClientConnection clientConnection;
+    private final ArrayDeque<Operation> pendingOperations = new ArrayDeque<>();
+    private int nbRunningOperations;
+    /** Whether this connection queue is in the queue of connections having operations ready to be processed. */
+    private boolean isReady;
+
+    private ConnectionQueue(ClientConnection clientConnection)
+    {
+      this.clientConnection = clientConnection;
+    }
+  }
+
+  /** Processes operations until there are no more operations to process. */
+  private final class OperationProcessor implements Runnable
+  {
+    private Operation operation;
+
+    private OperationProcessor(Operation operation)
+    {
+      this.operation = operation;
+    }
+
+    @Override
+    public void run()
+    {
+      while (operation != null)
+      {
+        processOperation(operation);
+        operation = operationCompleted(operation);
+      }
+    }
+  }
+
+  /** The lock guarding all the state of the queue below. */
+  private final Object queueLock = new Object();
+  /** The queues of the connections having operations being processed or waiting to be processed. */
+  private final Map<ClientConnection, ConnectionQueue> connectionQueues = new HashMap<>();
+  /** The queues of the connections having operations which can be processed as soon as possible, in turn. */
+  private final ArrayDeque<ConnectionQueue> readyQueues = new ArrayDeque<>();
+  /** The operations being processed. */
+  private final Set<Operation> runningOperations = new HashSet<>();
+  /** The number of operations waiting to be processed. */
+  private int backlog;
+  private int maxConcurrentOps;
+  private int maxConcurrentOpsPerConnection;
+  private int maxCapacity;
+  private boolean shutdownRequested;
+  /** The number of operations that have been submitted to the work queue for processing. */
+  private long opsSubmitted;
+  /** The number of operations that have been rejected because the work queue was full. */
+  private long queueFullRejects;
+
+  private ExecutorService executor;
+
+  /**
+   * Creates a new instance of this work queue. All initialization should be
+   * performed in the <CODE>initializeWorkQueue</CODE> method.
+   */
+  public VirtualThreadWorkQueue()
+  {
+    // No implementation should be performed here.
+  }
+
+  @Override
+  public void initializeWorkQueue(VirtualThreadWorkQueueCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    initialize(configuration, newExecutor());
+
+    // Create and register a monitor provider for the work queue.
+    try
+    {
+      VirtualThreadWorkQueueMonitor monitor = new VirtualThreadWorkQueueMonitor(this);
+      monitor.initializeMonitorProvider(null);
+      DirectoryServer.registerMonitorProvider(monitor);
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      logger.error(ERR_CONFIG_WORK_QUEUE_CANNOT_CREATE_MONITOR, VirtualThreadWorkQueueMonitor.class, e);
+    }
+  }
+
+  /**
+   * Initializes this work queue, running the operations with the provided executor.
+   *
+   * @param configuration
+   *          the configuration of this work queue
+   * @param executor
+   *          the executor running the operations
+   */
+  void initialize(VirtualThreadWorkQueueCfg configuration, ExecutorService executor)
+  {
+    synchronized (queueLock)
+    {
+      shutdownRequested = false;
+      opsSubmitted = 0;
+      queueFullRejects = 0;
+      maxConcurrentOps = configuration.getMaxConcurrentOps();
+      maxConcurrentOpsPerConnection = configuration.getMaxConcurrentOpsPerConnection();
+      maxCapacity = configuration.getMaxWorkQueueCapacity();
+    }
+    this.executor = executor;
+
+    // Register to be notified of any configuration changes.
+    configuration.addVirtualThreadChangeListener(this);
+  }
+
+  /**
+   * Returns an executor running each task on a new virtual thread, or on a platform thread when the JVM does not
+   * support virtual threads.
+   */
+  private static ExecutorService newExecutor()
+  {
+    try
+    {
+      // Virtual threads are only available from Java 21 on
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (ReflectiveOperationException e)
+    {
+      logger.traceException(e);
+      return Executors.newCachedThreadPool(new DirectoryThread.Factory("Worker Thread"));
+    }
+  }
+
+  @Override
+  public void finalizeWorkQueue(LocalizableMessage reason)
+  {
+    final List<Operation> pendingOperations = new ArrayList<>();
+    final List<Operation> operationsInProgress;
+    synchronized (queueLock)
+    {
+      shutdownRequested = true;
+      for (ConnectionQueue connectionQueue : connectionQueues.values())
+      {
+        pendingOperations.addAll(connectionQueue.pendingOperations);
+        connectionQueue.pendingOperations.clear();
+      }
+      readyQueues.clear();
+      backlog = 0;
+      operationsInProgress = new ArrayList<>(runningOperations);
+    }
+
+    // Send responses to any operations in the pending queue to indicate that
+    // they won't be processed because the server is shutting down.
+    CancelRequest cancelRequest = new CancelRequest(true, reason);
+    for (Operation o : pendingOperations)
+    {
+      try
+      {
+        // The operation has no chance of responding to the cancel
+        // request so avoid waiting for a cancel response.
+        if (o.getCancelResult() == null)
+        {
+          o.abort(cancelRequest);
+        }
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        logger.warn(WARN_QUEUE_UNABLE_TO_CANCEL, o, e);
+      }
+    }
+
+    // Cancel the operations in progress, like the worker threads of the other work queues do.
+    CancelRequest shutdownCancelRequest = new CancelRequest(true, INFO_CANCELED_BY_SHUTDOWN.get());
+    for (Operation o : operationsInProgress)
+    {
+      try
+      {
+        o.cancel(shutdownCancelRequest);
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+      }
+    }
+    executor.shutdown();
+  }
+
+  @Override
+  public void submitOperation(Operation operation) throws DirectoryException
+  {
+    final Operation operationToStart;
+    synchronized (queueLock)
+    {
+      if (shutdownRequested)
+      {
+        throw new DirectoryException(ResultCode.UNAVAILABLE, WARN_OP_REJECTED_BY_SHUTDOWN.get());
+      }
+      if (backlog >= maxCapacity)
+      {
+        queueFullRejects++;
+        throw new DirectoryException(ResultCode.BUSY, WARN_OP_REJECTED_BY_QUEUE_FULL.get(maxCapacity));
+      }
+
+      final ClientConnection clientConnection = operation.getClientConnection();
+      ConnectionQueue connectionQueue = connectionQueues.get(clientConnection);
+      if (connectionQueue == null)
+      {
+        connectionQueue = new ConnectionQueue(clientConnection);
+        connectionQueues.put(clientConnection, connectionQueue);
+      }
+      connectionQueue.pendingOperations.add(operation);
+      backlog++;
+      opsSubmitted++;
+      makeReadyIfPossible(connectionQueue);
+      operationToStart = nextOperationToStart();
+    }
+    if (operationToStart != null)
+    {
+      start(operationToStart);
+    }
+  }
+
+  @Override
+  public boolean trySubmitOperation(Operation operation) throws DirectoryException
+  {
+    try
+    {
+      submitOperation(operation);
+      return true;
+    }
+    catch (DirectoryException e)
+    {
+      if (ResultCode.BUSY == e.getResultCode())
+      {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  /** Must be called while holding the queue lock. */
+  private void makeReadyIfPossible(ConnectionQueue connectionQueue)
+  {
+    if (!connectionQueue.isReady
+        && !connectionQueue.pendingOperations.isEmpty()
+        && connectionQueue.nbRunningOperations < maxConcurrentOpsPerConnection)
+    {
+      connectionQueue.isReady = true;
+      readyQueues.add(connectionQueue);
+    }
+  }
+
+  /** Must be called while holding the queue lock. */
+  private void removeIfUnused(ConnectionQueue connectionQueue)
+  {
+    if (connectionQueue.nbRunningOperations == 0 && connectionQueue.pendingOperations.isEmpty())
+    {
+      connectionQueues.remove(connectionQueue.clientConnection);
+      if (connectionQueue.isReady)
+      {
+        readyQueues.remove(connectionQueue);
+        connectionQueue.isReady = false;
+      }
+    }
+  }
+
+  /**
+   * Takes the next operation to process if the concurrency limits allow it, taking the operations of the ready
+   * connections in turn. Must be called while holding the queue lock.
+   *
+   * @return the operation to process, or {@code null} if no operation can be processed for now
+   */
+  private Operation nextOperationToStart()
+  {
+    while (runningOperations.size() < maxConcurrentOps && !readyQueues.isEmpty())
+    {
+      final ConnectionQueue connectionQueue = readyQueues.poll();
+      connectionQueue.isReady = false;
+      final Operation operation = connectionQueue.pendingOperations.poll();
+      if (operation != null)
+      {
+        backlog--;
+        connectionQueue.nbRunningOperations++;
+        runningOperations.add(operation);
+        // Put the connection back at the end of the queue so that the other connections go first
+        makeReadyIfPossible(connectionQueue);
+        return operation;
+      }
+    }
+    return null;
+  }
+
+  private void start(Operation operation)
+  {
+    Operation operationToStart = operation;
+    while (operationToStart != null)
+    {
+      try
+      {
+        executor.execute(new OperationProcessor(operationToStart));
+        return;
+      }
+      catch (RejectedExecutionException e)
+      {
+        // The executor has been shut down: the operation released by the rejected one must be started in turn
+        logger.traceException(e);
+        final Operation rejectedOperation = operationToStart;
+        operationToStart = operationCompleted(rejectedOperation);
+        rejectedOperation.abort(new CancelRequest(true, WARN_OP_REJECTED_BY_SHUTDOWN.get()));
+      }
+    }
+  }
+
+  /**
+   * Records that the provided operation has been processed, and returns the next operation that the current thread
+   * should process.
+   */
+  private Operation operationCompleted(Operation operation)
+  {
+    synchronized (queueLock)
+    {
+      runningOperations.remove(operation);
+      final ConnectionQueue connectionQueue = connectionQueues.get(operation.getClientConnection());
+      if (connectionQueue != null)
+      {
+        connectionQueue.nbRunningOperations--;
+        makeReadyIfPossible(connectionQueue);
+        removeIfUnused(connectionQueue);
+      }
+      return !shutdownRequested ? nextOperationToStart() : null;
+    }
+  }
+
+  private void processOperation(Operation operation)
+  {
+    try
+    {
+      operation.run();
+      operation.operationCompleted();
+    }
+    catch (Throwable t)
+    {
+      logger.traceException(t);
+      final String threadName = Thread.currentThread().getName();
+      try
+      {
+        LocalizableMessage message =
+            ERR_UNCAUGHT_WORKER_THREAD_EXCEPTION.get(threadName, operation, stackTraceToSingleLineString(t));
+        logger.error(message);
+
+        // Ensure that the client receives some kind of result so that it does
+        // not hang.
+        operation.setResultCode(DirectoryServer.getCoreConfigManager().getServerErrorResultCode());
+        operation.appendErrorMessage(message);
+        operation.getClientConnection().sendResponse(operation);
+        operation.disconnectClient(DisconnectReason.SERVER_ERROR, true, message);
+      }
+      catch (Throwable t2)
+      {
+        logger.traceException(t2);
+      }
+    }
+  }
+
+  /**
+   * Retrieves the total number of operations that have been successfully
+   * submitted to this work queue for processing since server startup.  This
+   * does not include operations that have been rejected for some reason like
+   * the queue already at its maximum capacity.
+   *
+   * @return  The total number of operations that have been successfully
+   *          submitted to this work queue since startup.
+   */
+  public long getOpsSubmitted()
+  {
+    synchronized (queueLock)
+    {
+      return opsSubmitted;
+    }
+  }
+
+  /**
+   * Retrieves the total number of operations that have been rejected because
+   * the work queue was already at its maximum capacity.
+   *
+   * @return  The total number of operations that have been rejected because
+   *          the work queue was already at its maximum capacity.
+   */
+  public long getOpsRejectedDueToQueueFull()
+  {
+    synchronized (queueLock)
+    {
+      return queueFullRejects;
+    }
+  }
+
+  /**
+   * Retrieves the number of pending operations in the queue that have not yet
+   * been picked up for processing.
+   *
+   * @return  The number of pending operations in the queue that have not yet
+   *          been picked up for processing.
+   */
+  public int size()
+  {
+    synchronized (queueLock)
+    {
+      return backlog;
+    }
+  }
+
+  /**
+   * Retrieves the number of operations being processed.
+   *
+   * @return  The number of operations being processed.
+   */
+  public int getNumActiveOperations()
+  {
+    synchronized (queueLock)
+    {
+      return runningOperations.size();
+    }
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(VirtualThreadWorkQueueCfg configuration,
+      List<LocalizableMessage> unacceptableReasons)
+  {
+    return true;
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(VirtualThreadWorkQueueCfg configuration)
+  {
+    final List<Operation> operationsToStart = new ArrayList<>();
+    synchronized (queueLock)
+    {
+      maxConcurrentOps = configuration.getMaxConcurrentOps();
+      maxConcurrentOpsPerConnection = configuration.getMaxConcurrentOpsPerConnection();
+      maxCapacity = configuration.getMaxWorkQueueCapacity();
+
+      // Raising the per connection limit can make more connections ready
+      for (ConnectionQueue connectionQueue : connectionQueues.values())
+      {
+        makeReadyIfPossible(connectionQueue);
+      }
+      if (!shutdownRequested)
+      {
+        Operation operation;
+        while ((operation = nextOperationToStart()) != null)
+        {
+          operationsToStart.add(operation);
+        }
+      }
+    }
+    for (Operation operation : operationsToStart)
+    {
+      start(operation);
+    }
+    return new ConfigChangeResult();
+  }
+
+  @Override
+  public boolean isIdle()
+  {
+    synchronized (queueLock)
+    {
+      return backlog == 0 && runningOperations.isEmpty();
+    }
+  }
+
+  /**
+   * Returns the maximum number of operations processed concurrently, each of them being processed on its own thread.
+   *
+   * @return the maximum number of operations processed concurrently
+   */
+  @Override
+  public int getNumWorkerThreads()
+  {
+    synchronized (queueLock)
+    {
+      return maxConcurrentOps;
+    }
+  }
+}
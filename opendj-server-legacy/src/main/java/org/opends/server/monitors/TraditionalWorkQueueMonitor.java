@@ -16,6 +16,8 @@
  */
 package org.opends.server.monitors;
 
+import static org.opends.server.util.StaticUtils.*;
+
 import java.util.concurrent.TimeUnit;
 
 import org.forgerock.opendj.config.server.ConfigException;
@@ -23,11 +25,14 @@ import org.opends.server.api.MonitorData;
 import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
 import org.opends.server.api.MonitorProvider;
 import org.opends.server.extensions.TraditionalWorkQueue;
+import org.opends.server.extensions.TraditionalWorkQueue.Priority;
 import org.opends.server.types.InitializationException;
 
 /**
  * This class defines a Directory Server monitor that can be used to provide
- * information about the state of the work queue.
+ * information about the state of the work queue, including the number of
+ * requests rejected and the time spent in the queue by the requests of each
+ * priority.
  */
 public class TraditionalWorkQueueMonitor
        extends MonitorProvider<MonitorProviderCfg>
@@ -54,6 +59,30 @@ public class TraditionalWorkQueueMonitor
    */
   public static final String ATTR_OPS_REJECTED_QUEUE_FULL = "requestsRejectedDueToQueueFull";
 
+  /**
+   * The suffix of the monitor attributes that provide the total number of
+   * requests of each priority submitted, prefixed by the priority name.
+   */
+  public static final String ATTR_SUFFIX_PRIORITY_OPS_SUBMITTED = "PriorityRequestsSubmitted";
+  /**
+   * The suffix of the monitor attributes that provide the total number of
+   * requests of each priority rejected, either because the work queue was full
+   * or because of their queue time, prefixed by the priority name.
+   */
+  public static final String ATTR_SUFFIX_PRIORITY_OPS_REJECTED = "PriorityRequestsRejected";
+  /**
+   * The suffix of the monitor attributes that provide the average time the
+   * requests of each priority waited in the work queue, prefixed by the
+   * priority name.
+   */
+  public static final String ATTR_SUFFIX_PRIORITY_AVERAGE_QUEUE_TIME = "PriorityAverageQueueTimeMillis";
+  /**
+   * The suffix of the monitor attributes that provide the maximum time a
+   * request of each priority waited in the work queue, prefixed by the
+   * priority name.
+   */
+  public static final String ATTR_SUFFIX_PRIORITY_MAX_QUEUE_TIME = "PriorityMaxQueueTimeMillis";
+
 
   /** The maximum backlog observed by polling the queue. */
   private int maxBacklog;
@@ -129,12 +158,21 @@ public class TraditionalWorkQueueMonitor
     }
     long averageBacklog = (long) (1.0 * totalBacklog / numPolls);
 
-    final MonitorData monitorAttrs = new MonitorData(5);
+    final Priority[] priorities = Priority.values();
+    final MonitorData monitorAttrs = new MonitorData(5 + 4 * priorities.length);
     monitorAttrs.add(ATTR_CURRENT_BACKLOG, backlog);
     monitorAttrs.add(ATTR_AVERAGE_BACKLOG, averageBacklog);
     monitorAttrs.add(ATTR_MAX_BACKLOG, maxBacklog);
     monitorAttrs.add(ATTR_OPS_SUBMITTED, workQueue.getOpsSubmitted());
     monitorAttrs.add(ATTR_OPS_REJECTED_QUEUE_FULL, workQueue.getOpsRejectedDueToQueueFull());
+    for (Priority priority : priorities)
+    {
+      final String prefix = toLowerCase(priority.name());
+      monitorAttrs.add(prefix + ATTR_SUFFIX_PRIORITY_OPS_SUBMITTED, workQueue.getOpsSubmitted(priority));
+      monitorAttrs.add(prefix + ATTR_SUFFIX_PRIORITY_OPS_REJECTED, workQueue.getOpsRejected(priority));
+      monitorAttrs.add(prefix + ATTR_SUFFIX_PRIORITY_AVERAGE_QUEUE_TIME, workQueue.getAverageQueueTimeMillis(priority));
+      monitorAttrs.add(prefix + ATTR_SUFFIX_PRIORITY_MAX_QUEUE_TIME, workQueue.getMaxQueueTimeMillis(priority));
+    }
     return monitorAttrs;
   }
 }
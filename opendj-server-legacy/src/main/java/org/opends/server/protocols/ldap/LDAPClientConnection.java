@@ -40,6 +40,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
@@ -421,6 +422,36 @@ public final class LDAPClientConnection extends ClientConnection implements
 
   private final ASN1ByteChannelReader asn1Reader;
   private final int bufferSize;
+
+  /**
+   * The maximum length of time a search result entry or reference can be
+   * delayed before being written to the client.
+   */
+  private static final long MAX_PENDING_MESSAGES_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+  /** The lock used to provide threadsafe access to the pending messages. */
+  private final Lock pendingMessagesLock = new ReentrantLock();
+  /**
+   * The encoded search result entries and references which have not been
+   * written to the client yet, or {@code null} if no search has returned
+   * delayed messages on this connection.
+   */
+  private ByteStringBuilder pendingMessages;
+  /** When the oldest pending message has been delayed, as returned by {@link System#nanoTime()}. */
+  private long pendingMessagesSinceNanos;
+  /** Indicates whether a task writing the pending messages once delayed for too long has been scheduled. */
+  private boolean pendingMessagesFlushScheduled;
+  /**
+   * Writes the pending messages delayed for too long, so that they are not
+   * held back while the search is not returning any further result.
+   */
+  private final Runnable pendingMessagesFlusher = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      flushPendingMessages(true);
+    }
+  };
   private final RedirectingByteChannel saslChannel;
   private final RedirectingByteChannel tlsChannel;
   private volatile ConnectionSecurityProvider saslActiveProvider;
@@ -678,7 +709,7 @@ public final class LDAPClientConnection extends ClientConnection implements
     // if operation processing encounters a run-time exception after sending the
     // response: the worker thread exception handling code will attempt to send
     // an error result to the client indicating that a problem occurred.
-    if (removeOperationInProgress(operation.getMessageID()))
+    if (removeOperationInProgress(operation.getMessageID(), false))
     {
       LDAPMessage message = operationToResponseLDAPMessage(operation);
       if (message != null)
@@ -841,7 +872,8 @@ public final class LDAPClientConnection extends ClientConnection implements
         new SearchResultEntryProtocolOp(searchEntry, ldapVersion);
 
     sendLDAPMessage(new LDAPMessage(searchOperation.getMessageID(),
-        protocolOp, searchEntry.getControls()));
+        protocolOp, searchEntry.getControls()),
+        canDelaySearchResult(searchOperation));
   }
 
   /**
@@ -876,7 +908,25 @@ public final class LDAPClientConnection extends ClientConnection implements
         new SearchResultReferenceProtocolOp(searchReference);
 
     sendLDAPMessage(new LDAPMessage(searchOperation.getMessageID(),
-        protocolOp, searchReference.getControls()));
+        protocolOp, searchReference.getControls()),
+        canDelaySearchResult(searchOperation));
+    return true;
+  }
+
+  /**
+   * Indicates whether the search result entries and references of the
+   * provided search can be delayed. The results of a persistent search are
+   * returned as changes happen, so they must be written immediately.
+   */
+  private boolean canDelaySearchResult(SearchOperation searchOperation)
+  {
+    for (PersistentSearch persistentSearch : getPersistentSearches())
+    {
+      if (persistentSearch.getMessageID() == searchOperation.getMessageID())
+      {
+        return false;
+      }
+    }
     return true;
   }
 
@@ -915,13 +965,27 @@ public final class LDAPClientConnection extends ClientConnection implements
    *          The LDAP message to send to the client.
    */
   private void sendLDAPMessage(LDAPMessage message)
+  {
+    sendLDAPMessage(message, false);
+  }
+
+  /**
+   * Sends the provided LDAP message to the client, possibly delaying it.
+   *
+   * @param message
+   *          The LDAP message to send to the client.
+   * @param canBeDelayed
+   *          Indicates whether the message can be delayed in order to be
+   *          written along with the next messages.
+   */
+  private void sendLDAPMessage(LDAPMessage message, boolean canBeDelayed)
   {
     // Use a thread local writer.
     final ASN1WriterHolder holder = getASN1Writer();
     try
     {
       message.write(holder.writer);
-      holder.buffer.copyTo(saslChannel);
+      writeMessage(holder.buffer, canBeDelayed);
 
       if (logger.isTraceEnabled())
       {
@@ -956,6 +1020,167 @@ public final class LDAPClientConnection extends ClientConnection implements
     }
  }
 
+  /**
+   * Writes the provided encoded message to the client, after the pending
+   * messages.
+   * <p>
+   * Search result entries and references can instead be added to the pending
+   * messages, which are written at once when they fill the write buffer, when
+   * the oldest one has been delayed for too long, or when another message is
+   * written (typically the search result done message). A task scheduled on
+   * the connection handler writes them once the oldest one has been delayed
+   * for too long, in case the search does not return any further result in the
+   * meantime. A search returning many entries then costs one write, and one
+   * TLS record, per buffer instead of per entry. The pending messages are bounded by the buffer size, and
+   * writing them blocks the caller while the client does not read them, like
+   * any other write.
+   *
+   * @param encodedMessage
+   *          The encoded LDAP message to write.
+   * @param canBeDelayed
+   *          Indicates whether the message can be added to the pending
+   *          messages.
+   * @throws IOException
+   *           If a problem occurs while writing to the client.
+   */
+  private void writeMessage(ByteStringBuilder encodedMessage, boolean canBeDelayed) throws IOException
+  {
+    pendingMessagesLock.lock();
+    try
+    {
+      if (pendingMessages == null || pendingMessages.length() == 0)
+      {
+        if (!canBeDelayed)
+        {
+          encodedMessage.copyTo(saslChannel);
+          return;
+        }
+        if (!pendingMessagesFlushScheduled && !schedulePendingMessagesFlush(MAX_PENDING_MESSAGES_DELAY_NANOS))
+        {
+          // The connection handler is being finalized
+          encodedMessage.copyTo(saslChannel);
+          return;
+        }
+        if (pendingMessages == null)
+        {
+          pendingMessages = new ByteStringBuilder(bufferSize);
+        }
+        pendingMessagesSinceNanos = System.nanoTime();
+      }
+
+      pendingMessages.appendBytes(encodedMessage);
+      if (!canBeDelayed
+          || pendingMessages.length() >= bufferSize
+          || System.nanoTime() - pendingMessagesSinceNanos >= MAX_PENDING_MESSAGES_DELAY_NANOS)
+      {
+        writePendingMessages();
+      }
+    }
+    finally
+    {
+      pendingMessagesLock.unlock();
+    }
+  }
+
+  /** Writes the pending messages to the client. Must be called while holding the pending messages lock. */
+  private void writePendingMessages() throws IOException
+  {
+    try
+    {
+      pendingMessages.copyTo(saslChannel);
+    }
+    finally
+    {
+      // Do not keep the memory of an exceptionally large message.
+      pendingMessages.clearAndTruncate((int) Math.min(2L * bufferSize, Integer.MAX_VALUE), bufferSize);
+    }
+  }
+
+  /**
+   * Schedules writing the pending messages after the provided delay. Must be
+   * called while holding the pending messages lock.
+   *
+   * @param delayNanos
+   *          The delay before writing the pending messages, in nanoseconds.
+   * @return {@code true} if writing the pending messages has been scheduled,
+   *         {@code false} if the connection handler is being finalized.
+   */
+  private boolean schedulePendingMessagesFlush(long delayNanos)
+  {
+    pendingMessagesFlushScheduled =
+        connectionHandler.schedulePendingMessagesFlush(pendingMessagesFlusher, delayNanos, TimeUnit.NANOSECONDS);
+    return pendingMessagesFlushScheduled;
+  }
+
+  /**
+   * Writes the pending messages to the client, if any. This is needed when an
+   * operation completes without sending a response, for example when a search
+   * is abandoned, and when a search does not return any further result for a
+   * while, for example an unindexed search rarely matching entries.
+   *
+   * @param onlyIfExpired
+   *          Indicates whether the pending messages must only be written if
+   *          the oldest one has been delayed for too long, in which case
+   *          writing them is scheduled again otherwise.
+   */
+  private void flushPendingMessages(boolean onlyIfExpired)
+  {
+    if (!onlyIfExpired)
+    {
+      pendingMessagesLock.lock();
+    }
+    else if (!pendingMessagesLock.tryLock())
+    {
+      // Another thread is writing to the client, and may be blocked until the
+      // client reads: try again later rather than wait for it. If the
+      // connection handler is being finalized, the connection is closed anyway.
+      connectionHandler.schedulePendingMessagesFlush(
+          pendingMessagesFlusher, MAX_PENDING_MESSAGES_DELAY_NANOS, TimeUnit.NANOSECONDS);
+      return;
+    }
+    try
+    {
+      try
+      {
+        if (onlyIfExpired)
+        {
+          pendingMessagesFlushScheduled = false;
+        }
+        if (pendingMessages == null || pendingMessages.length() == 0 || !connectionValid)
+        {
+          return;
+        }
+        if (onlyIfExpired)
+        {
+          // The messages delayed when this task was scheduled may have been
+          // written since, and the pending messages delayed more recently
+          final long remainingNanos = pendingMessagesSinceNanos + MAX_PENDING_MESSAGES_DELAY_NANOS - System.nanoTime();
+          if (remainingNanos > 0 && schedulePendingMessagesFlush(remainingNanos))
+          {
+            return;
+          }
+        }
+        writePendingMessages();
+      }
+      finally
+      {
+        pendingMessagesLock.unlock();
+      }
+    }
+    catch (ClosedChannelException e)
+    {
+      logger.traceException(e);
+      disconnect(DisconnectReason.IO_ERROR, false,
+          ERR_IO_ERROR_ON_CLIENT_CONNECTION.get(getExceptionMessage(e)));
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      disconnect(DisconnectReason.SERVER_ERROR, false,
+          ERR_UNEXPECTED_EXCEPTION_ON_CLIENT_CONNECTION.get(getExceptionMessage(e)));
+    }
+  }
+
   /**
    * Closes the connection to the client, optionally sending it a
    * message indicating the reason for the closure. Note that the
@@ -1208,6 +1433,24 @@ public final class LDAPClientConnection extends ClientConnection implements
    */
   @Override
   public boolean removeOperationInProgress(int messageID)
+  {
+    return removeOperationInProgress(messageID, true);
+  }
+
+  /**
+   * Removes the provided operation from the set of operations in progress.
+   *
+   * @param messageID
+   *          The message ID of the operation to remove from the set of
+   *          operations in progress.
+   * @param flushPendingMessages
+   *          Indicates whether the pending messages should be written to the
+   *          client, because the operation completes without a response
+   *          which would write them.
+   * @return {@code true} if the operation was found and removed from the
+   *         set of operations in progress, or {@code false} if not.
+   */
+  private boolean removeOperationInProgress(int messageID, boolean flushPendingMessages)
   {
     Operation operation = operationsInProgress.remove(messageID);
     if (operation == null)
@@ -1215,6 +1458,11 @@ public final class LDAPClientConnection extends ClientConnection implements
       return false;
     }
 
+    if (flushPendingMessages)
+    {
+      flushPendingMessages(false);
+    }
+
     if (operation.getOperationType() == OperationType.ABANDON
         && keepStats
         && operation.getResultCode() == ResultCode.CANCELLED)
@@ -26,7 +26,9 @@ import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -208,6 +210,18 @@ public final class LDAPConnectionHandler extends
   private List<Runnable> connectionFinalizerActiveJobQueue;
   private List<Runnable> connectionFinalizerPendingJobQueue;
 
+  /**
+   * Schedules writing the search results delayed by the client connections,
+   * once they have been delayed for too long. Writing them may block while a
+   * client does not read them, so this is neither done by the connection
+   * finalizer nor by this scheduler, which hands the writes to the pending
+   * messages writers: a client which does not read its results only blocks
+   * the thread writing them.
+   */
+  private volatile ScheduledExecutorService pendingMessagesFlusher;
+  /** Writes the search results delayed by the client connections, once scheduled by the flusher. */
+  private volatile ExecutorService pendingMessagesWriters;
+
   /**
    * Creates a new instance of this LDAP connection handler. It must be
    * initialized before it may be used.
@@ -365,6 +379,23 @@ public final class LDAPConnectionHandler extends
       requestHandler.processServerShutdown(finalizeReason);
     }
 
+    // The search results already delayed are still written, the next ones are
+    // written immediately. The flusher only waits for their delay to expire.
+    final ScheduledExecutorService flusher = pendingMessagesFlusher;
+    pendingMessagesFlusher = null;
+    flusher.shutdown();
+    try
+    {
+      flusher.awaitTermination(1, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException e)
+    {
+      logger.traceException(e);
+      Thread.currentThread().interrupt();
+    }
+    pendingMessagesWriters.shutdown();
+    pendingMessagesWriters = null;
+
     // Shutdown the connection finalizer and ensure that any pending
     // unclosed connections are closed.
     synchronized (connectionFinalizerLock)
@@ -651,6 +682,13 @@ public final class LDAPConnectionHandler extends
     connectionFinalizer.scheduleWithFixedDelay(
         new ConnectionFinalizerRunnable(), 100, 100, TimeUnit.MILLISECONDS);
 
+    pendingMessagesFlusher = Executors
+        .newSingleThreadScheduledExecutor(new DirectoryThread.Factory(
+            "LDAP Pending Messages Flusher for connection handler " + toString()));
+    pendingMessagesWriters = Executors
+        .newCachedThreadPool(new DirectoryThread.Factory(
+            "LDAP Pending Messages Writer for connection handler " + toString()));
+
     // Create and start the request handlers.
     requestHandlers = new LDAPRequestHandler[numRequestHandlers];
     for (int i = 0; i < numRequestHandlers; i++)
@@ -1348,6 +1386,52 @@ public final class LDAPConnectionHandler extends
     }
   }
 
+  /**
+   * Schedules writing the search results delayed by a client connection.
+   *
+   * @param r
+   *          The task writing the delayed search results.
+   * @param delay
+   *          The delay before running the task.
+   * @param unit
+   *          The unit of the delay.
+   * @return {@code true} if the task has been scheduled, or {@code false} if
+   *         this connection handler is being finalized.
+   */
+  boolean schedulePendingMessagesFlush(final Runnable r, long delay, TimeUnit unit)
+  {
+    final ScheduledExecutorService flusher = pendingMessagesFlusher;
+    final ExecutorService writers = pendingMessagesWriters;
+    if (flusher != null && writers != null)
+    {
+      try
+      {
+        flusher.schedule(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            try
+            {
+              writers.execute(r);
+            }
+            catch (RejectedExecutionException e)
+            {
+              // This connection handler is being finalized
+              logger.traceException(e);
+            }
+          }
+        }, delay, unit);
+        return true;
+      }
+      catch (RejectedExecutionException e)
+      {
+        logger.traceException(e);
+      }
+    }
+    return false;
+  }
+
   /**
    * Enqueue a connection finalizer which will be invoked after a short delay.
    *
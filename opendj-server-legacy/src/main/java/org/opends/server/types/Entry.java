@@ -3342,6 +3342,57 @@ public class Entry
   public static Entry decode(ByteSequenceReader entryBuffer,
                              CompressedSchema compressedSchema)
          throws DirectoryException
+  {
+    return decode(entryBuffer, compressedSchema, null);
+  }
+
+  /**
+   * Decodes the provided byte string as an entry whose attribute values
+   * are only decoded when they are first accessed.
+   * <p>
+   * The attribute values of the returned entry are sub-sequences of the
+   * provided byte string, which must therefore not be modified
+   * afterwards. Attribute values are decoded lazily only when attribute
+   * descriptions are compressed; otherwise this method is equivalent to
+   * {@link #decode(ByteSequenceReader, CompressedSchema)}.
+   *
+   * @param  encodedEntry      The byte string containing the encoded
+   *                           entry.
+   * @param  compressedSchema  The compressed schema manager to use
+   *                           when decoding tokenized schema
+   *                           elements.
+   *
+   * @return  The decoded entry.
+   *
+   * @throws  DirectoryException  If the provided byte string cannot be
+   *                              decoded as an entry.
+   */
+  public static Entry decodeLazily(ByteString encodedEntry,
+                                   CompressedSchema compressedSchema)
+         throws DirectoryException
+  {
+    return decode(encodedEntry.asReader(), compressedSchema, encodedEntry);
+  }
+
+  /**
+   * Decodes an entry, lazily if the encoded entry is provided.
+   *
+   * @param  entryBuffer       The reader of the encoded entry.
+   * @param  compressedSchema  The compressed schema manager to use
+   *                           when decoding tokenized schema
+   *                           elements.
+   * @param  lazyEncodedEntry  The byte string read by the reader if the
+   *                           attribute values must be lazily decoded,
+   *                           {@code null} otherwise.
+   *
+   * @return  The decoded entry.
+   *
+   * @throws  DirectoryException  If the provided byte array cannot be
+   *                              decoded as an entry.
+   */
+  private static Entry decode(ByteSequenceReader entryBuffer,
+      CompressedSchema compressedSchema, ByteString lazyEncodedEntry)
+         throws DirectoryException
   {
     try
     {
@@ -3400,9 +3451,9 @@ public class Entry
       // Now, we should iterate through the user and operational attributes and
       // decode each one.
       Map<AttributeType, List<Attribute>> userAttributes =
-          decodeAttributes(version, entryBuffer, config);
+          decodeAttributes(version, entryBuffer, config, lazyEncodedEntry);
       Map<AttributeType, List<Attribute>> operationalAttributes =
-          decodeAttributes(version, entryBuffer, config);
+          decodeAttributes(version, entryBuffer, config, lazyEncodedEntry);
 
 
       // We've got everything that we need, so create and return the entry.
@@ -3523,6 +3574,9 @@ public class Entry
    *                     entry.
    * @param  config  The configuration that may be used to control how
    *                 the entry is encoded.
+   * @param  lazyEncodedEntry  The byte string read by the reader if the
+   *                           attribute values must be lazily decoded,
+   *                           {@code null} otherwise.
    *
    * @return  A map of the decoded object classes.
    * @throws  DirectoryException  If a problem occurs while attempting
@@ -3530,7 +3584,7 @@ public class Entry
    */
   private static Map<AttributeType, List<Attribute>>
   decodeAttributes(Byte ver, ByteSequenceReader entryBuffer,
-                   EntryEncodeConfig config) throws DirectoryException
+                   EntryEncodeConfig config, ByteString lazyEncodedEntry) throws DirectoryException
   {
     // Next is the total number of attributes.  It may be a
     // single byte or multiple bytes.
@@ -3539,7 +3593,31 @@ public class Entry
 
     // Now, we should iterate through the attributes and decode each one.
     Map<AttributeType, List<Attribute>> attributes = new LinkedHashMap<>(attrs);
-    if (config.compressAttributeDescriptions())
+    if (config.compressAttributeDescriptions() && lazyEncodedEntry != null)
+    {
+      // Only decode the attribute descriptions, values will be decoded on demand.
+      final CompressedSchema compressedSchema = config.getCompressedSchema();
+      for (int i=0; i < attrs; i++)
+      {
+        if(ver < 0x03)
+        {
+          // Version 2 includes a total attribute length
+          entryBuffer.readBERLength();
+        }
+        AttributeDescription attrDesc = compressedSchema.decodeAttributeDescription(entryBuffer);
+        AttributeType attrType = attrDesc.getAttributeType();
+        LazyAttributeList attrList = (LazyAttributeList) attributes.get(attrType);
+        if (attrList == null)
+        {
+          attrList = new LazyAttributeList(lazyEncodedEntry, compressedSchema);
+          attributes.put(attrType, attrList);
+        }
+        final int valuesPosition = entryBuffer.position();
+        compressedSchema.skipAttributeValues(entryBuffer);
+        attrList.addEncodedAttribute(attrDesc, valuesPosition, entryBuffer.position() - valuesPosition);
+      }
+    }
+    else if (config.compressAttributeDescriptions())
     {
       for (int i=0; i < attrs; i++)
       {
@@ -3679,6 +3757,33 @@ public class Entry
    */
   public boolean toLDIF(LDIFExportConfig exportConfig)
          throws IOException, LDIFException
+  {
+    return toLDIF(exportConfig, exportConfig.getWriter());
+  }
+
+
+  /**
+   * Writes this entry in LDIF form to the provided writer, according
+   * to the provided configuration. This allows several entries to be
+   * encoded concurrently, before being written in order to the writer
+   * of the export configuration.
+   *
+   * @param  exportConfig  The configuration that specifies how the
+   *                       entry should be written.
+   * @param  writer        The writer to which the entry should be
+   *                       written.
+   *
+   * @return  {@code true} if the entry is actually written, or
+   *          {@code false} if it is not for some reason.
+   *
+   * @throws  IOException  If a problem occurs while writing the
+   *                       information.
+   *
+   * @throws  LDIFException  If a problem occurs while trying to
+   *                         determine whether to write the entry.
+   */
+  public boolean toLDIF(LDIFExportConfig exportConfig, BufferedWriter writer)
+         throws IOException, LDIFException
   {
     // See if this entry should be included in the export at all.
     try
@@ -3712,7 +3817,6 @@ public class Entry
 
 
     // Get the information necessary to write the LDIF.
-    BufferedWriter writer     = exportConfig.getWriter();
     int            wrapColumn = exportConfig.getWrapColumn();
     boolean        wrapLines  = wrapColumn > 1;
 
@@ -3911,6 +4015,50 @@ public class Entry
 
 
 
+  /**
+   * Retrieves an estimate of the size of this entry, in bytes, based on
+   * the length of its DN, object classes and attribute values.  The
+   * values which have not been decoded yet are accounted for by their
+   * encoded length, so that estimating the size does not decode them.
+   *
+   * @return  An estimate of the size of this entry.
+   */
+  public long getEstimatedSize()
+  {
+    long size = dn.toString().length();
+    for (ObjectClass oc : objectClasses.keySet())
+    {
+      size += oc.getNameOrOID().length();
+    }
+    size += getEstimatedSize(userAttributes);
+    size += getEstimatedSize(operationalAttributes);
+    return size;
+  }
+
+  private static long getEstimatedSize(Map<AttributeType, List<Attribute>> attributes)
+  {
+    long size = 0;
+    for (List<Attribute> attrList : attributes.values())
+    {
+      if (attrList instanceof LazyAttributeList && !((LazyAttributeList) attrList).isDecoded())
+      {
+        size += ((LazyAttributeList) attrList).getEncodedValuesLength();
+        continue;
+      }
+      for (Attribute a : attrList)
+      {
+        size += a.getAttributeDescription().toString().length();
+        for (ByteString value : a)
+        {
+          size += value.length();
+        }
+      }
+    }
+    return size;
+  }
+
+
+
   /**
    * Retrieves a hash code for this entry.
    *
@@ -87,6 +87,8 @@ public final class LDIFExportConfig extends OperationConfig
 
   /** The column number at which long lines should be wrapped. */
   private int wrapColumn;
+  /** The number of threads used to decode and encode the exported entries. */
+  private int threadCount = 1;
 
   /** The set of base DNs to exclude from the export. */
   private List<DN> excludeBranches;
@@ -816,6 +818,27 @@ public final class LDIFExportConfig extends OperationConfig
     return true;
   }
 
+  /**
+   * Retrieves the number of threads used to decode the exported entries and encode them as LDIF. Regardless of the
+   * number of threads, the entries are written in the same order.
+   *
+   * @return  The number of threads used to export the entries.
+   */
+  public int getThreadCount()
+  {
+    return threadCount;
+  }
+
+  /**
+   * Specifies the number of threads used to decode the exported entries and encode them as LDIF.
+   *
+   * @param  threadCount  The number of threads used to export the entries.
+   */
+  public void setThreadCount(int threadCount)
+  {
+    this.threadCount = threadCount;
+  }
+
   /** Closes any resources that this export config might have open. */
   @Override
   public void close()
@@ -208,6 +208,19 @@ public final class LDIFImportConfig extends OperationConfig
 
 
 
+  /**
+   * Retrieves the paths to the LDIF files with the data to import.
+   *
+   * @return  The paths to the LDIF files with the data to import, or
+   *          {@code null} if the data is not read from LDIF files.
+   */
+  public List<String> getLDIFFiles()
+  {
+    return ldifFiles.isEmpty() ? null : Collections.unmodifiableList(ldifFiles);
+  }
+
+
+
   /**
    * Retrieves the reader that should be used to read the LDIF data.
    * Note that if the LDIF file is compressed and/or encrypted, then
@@ -0,0 +1,175 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.types;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.forgerock.opendj.ldap.AttributeDescription;
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.api.CompressedSchema;
+
+/**
+ * The attributes of an entry having the same attribute type, decoded from the encoded entry the first time they are
+ * accessed.
+ * <p>
+ * The attribute descriptions are decoded upfront, so that the entry knows which attribute types it contains, while the
+ * values are only decoded when the list is accessed, as sub-sequences of the encoded entry. This way, searches do not
+ * pay for decoding the large attributes they neither evaluate nor return.
+ * <p>
+ * Decoding is thread-safe, so that entries shared by several threads, for example through the entry cache, can be
+ * read concurrently. Once decoded, this list is as thread-safe as an {@link ArrayList}.
+ */
+final class LazyAttributeList extends AbstractList<Attribute> implements RandomAccess
+{
+  private final ByteString encodedEntry;
+  private final CompressedSchema compressedSchema;
+  /** The descriptions of the encoded attributes. */
+  private AttributeDescription[] descriptions = new AttributeDescription[1];
+  /** The positions of the encoded values of each attribute in the encoded entry. */
+  private int[] valuesPositions = new int[1];
+  private int nbEncodedAttributes;
+  /** The total length of the encoded values of the attributes. */
+  private long encodedValuesLength;
+  /** The decoded attributes, {@code null} until the list is first accessed. */
+  private volatile List<Attribute> attributes;
+
+  /**
+   * Creates an empty list of attributes encoded in the provided entry.
+   *
+   * @param encodedEntry
+   *          the encoded entry, which must not be modified afterwards
+   * @param compressedSchema
+   *          the compressed schema used to encode the entry
+   */
+  LazyAttributeList(ByteString encodedEntry, CompressedSchema compressedSchema)
+  {
+    this.encodedEntry = encodedEntry;
+    this.compressedSchema = compressedSchema;
+  }
+
+  /**
+   * Adds an encoded attribute to this list. This method must only be called while decoding the entry.
+   *
+   * @param description
+   *          the description of the attribute
+   * @param valuesPosition
+   *          the position of the values of the attribute in the encoded entry
+   * @param valuesLength
+   *          the length of the encoded values of the attribute
+   */
+  void addEncodedAttribute(AttributeDescription description, int valuesPosition, int valuesLength)
+  {
+    if (nbEncodedAttributes == descriptions.length)
+    {
+      descriptions = Arrays.copyOf(descriptions, nbEncodedAttributes * 2);
+      valuesPositions = Arrays.copyOf(valuesPositions, nbEncodedAttributes * 2);
+    }
+    descriptions[nbEncodedAttributes] = description;
+    valuesPositions[nbEncodedAttributes] = valuesPosition;
+    encodedValuesLength += valuesLength;
+    nbEncodedAttributes++;
+  }
+
+  /**
+   * Indicates whether the attributes of this list have been decoded.
+   *
+   * @return {@code true} if the attributes have been decoded
+   */
+  boolean isDecoded()
+  {
+    return attributes != null;
+  }
+
+  /**
+   * Returns the total length of the encoded values of the attributes of this list. It is a good estimate of the size
+   * of the attributes as long as they have not been decoded, and possibly modified.
+   *
+   * @return the total length of the encoded values
+   */
+  long getEncodedValuesLength()
+  {
+    return encodedValuesLength;
+  }
+
+  private List<Attribute> attributes()
+  {
+    List<Attribute> result = attributes;
+    if (result == null)
+    {
+      synchronized (this)
+      {
+        result = attributes;
+        if (result == null)
+        {
+          result = decode();
+          attributes = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private List<Attribute> decode()
+  {
+    final List<Attribute> result = new ArrayList<>(nbEncodedAttributes);
+    final ByteSequenceReader reader = encodedEntry.asReader();
+    for (int i = 0; i < nbEncodedAttributes; i++)
+    {
+      reader.position(valuesPositions[i]);
+      result.add(compressedSchema.decodeAttributeValues(reader, descriptions[i]));
+    }
+    return result;
+  }
+
+  @Override
+  public Attribute get(int index)
+  {
+    return attributes().get(index);
+  }
+
+  @Override
+  public int size()
+  {
+    final List<Attribute> decoded = attributes;
+    return decoded != null ? decoded.size() : nbEncodedAttributes;
+  }
+
+  @Override
+  public Attribute set(int index, Attribute attribute)
+  {
+    return attributes().set(index, attribute);
+  }
+
+  @Override
+  public void add(int index, Attribute attribute)
+  {
+    attributes().add(index, attribute);
+    modCount++;
+  }
+
+  @Override
+  public Attribute remove(int index)
+  {
+    final Attribute removed = attributes().remove(index);
+    modCount++;
+    return removed;
+  }
+}
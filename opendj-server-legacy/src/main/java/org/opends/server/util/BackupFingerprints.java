@@ -0,0 +1,463 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.util;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.opends.server.util.ServerConstants.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The fingerprints of the files of a backup, allowing an incremental backup to only archive the parts of the files
+ * which changed since the backup it is based on.
+ * <p>
+ * Each file is split into segments of {@link #SEGMENT_SIZE} bytes and each segment is fingerprinted with a digest of
+ * its content. The fingerprints are kept in a text file next to the archive file of the backup, which digest is
+ * recorded in the backup descriptor so that a damaged fingerprints file is never trusted.
+ */
+final class BackupFingerprints
+{
+  /** The size of the segments of the files. */
+  static final int SEGMENT_SIZE = 1024 * 1024;
+
+  /** The suffix appended to the archive file name to get the name of the fingerprints file. */
+  static final String FILE_SUFFIX = ".fingerprints";
+
+  /** The algorithm of the digests fingerprinting the segments and the fingerprints file itself. */
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+
+  /** The number of bytes of the segment digests which are kept. */
+  private static final int FINGERPRINT_LENGTH = 16;
+
+  /**
+   * Files modified less than this number of milliseconds before the backup started do not record their modification
+   * time: a later change may not move it forward on file systems with a coarse timestamp granularity.
+   */
+  private static final long MODIFICATION_TIME_GRANULARITY = 2000;
+
+  /** The header of the fingerprints file, followed by the segment size. */
+  private static final String HEADER = "segment-size ";
+
+  /** The fingerprint of a single file. */
+  static final class FileFingerprint
+  {
+    private final long length;
+    /** The last modification time of the file, or -1 if it cannot be relied upon. */
+    private final long lastModified;
+    private final String[] segments;
+
+    private FileFingerprint(long length, long lastModified, String[] segments)
+    {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.segments = segments;
+    }
+
+    long getLength()
+    {
+      return length;
+    }
+
+    int getSegmentCount()
+    {
+      return segments.length;
+    }
+
+    /**
+     * Returns whether the file is unchanged according to its length and its last modification time, without looking
+     * at its content.
+     */
+    boolean hasSameLengthAndModificationTime(long length, long lastModified)
+    {
+      return this.lastModified != -1 && this.length == length && this.lastModified == lastModified;
+    }
+
+    /**
+     * Returns the indexes of the segments of this file which differ from the provided older fingerprint of the same
+     * file, in increasing order.
+     */
+    List<Integer> getChangedSegments(FileFingerprint older)
+    {
+      final List<Integer> changed = new ArrayList<>();
+      for (int i = 0; i < segments.length; i++)
+      {
+        if (i >= older.segments.length || !segments[i].equals(older.segments[i]))
+        {
+          changed.add(i);
+        }
+      }
+      return changed;
+    }
+
+    /** Replaces the fingerprint of a segment, after its content has been read again. */
+    void setSegment(int index, String fingerprint)
+    {
+      segments[index] = fingerprint;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "FileFingerprint [length=" + length + ", lastModified=" + lastModified
+          + ", segments=" + segments.length + "]";
+    }
+  }
+
+  /** Computes the fingerprint of a file while its content is streamed, for example to the archive. */
+  static final class StreamingFingerprinter
+  {
+    private final long lastModified;
+    private final List<String> segments = new ArrayList<>();
+    private final MessageDigest digest = newDigest();
+    private long length;
+    private int segmentLength;
+
+    /**
+     * Creates a fingerprinter for a file.
+     *
+     * @param lastModified
+     *          the last modification time of the file, read before its content
+     * @param backupStartTime
+     *          the time at which the backup started
+     */
+    StreamingFingerprinter(long lastModified, long backupStartTime)
+    {
+      this.lastModified = reliableModificationTime(lastModified, backupStartTime);
+    }
+
+    /** Adds the provided bytes, which follow the bytes already added, to the fingerprint. */
+    void update(byte[] buffer, int offset, int len)
+    {
+      while (len > 0)
+      {
+        final int n = Math.min(len, SEGMENT_SIZE - segmentLength);
+        digest.update(buffer, offset, n);
+        segmentLength += n;
+        length += n;
+        offset += n;
+        len -= n;
+        if (segmentLength == SEGMENT_SIZE)
+        {
+          endSegment();
+        }
+      }
+    }
+
+    private void endSegment()
+    {
+      segments.add(toFingerprint(digest.digest()));
+      segmentLength = 0;
+    }
+
+    /** Returns the fingerprint of all the bytes added so far. */
+    FileFingerprint getFingerprint()
+    {
+      if (segmentLength > 0)
+      {
+        endSegment();
+      }
+      return new FileFingerprint(length, lastModified, segments.toArray(new String[segments.size()]));
+    }
+  }
+
+  private final Map<String, FileFingerprint> files = new LinkedHashMap<>();
+
+  /**
+   * Returns the fingerprint of a file.
+   *
+   * @param relativePath
+   *          the path of the file, relative to the directory of the backed up entity
+   * @return the fingerprint of the file, or {@code null} if the file was not part of the backup
+   */
+  FileFingerprint get(String relativePath)
+  {
+    return files.get(relativePath);
+  }
+
+  /**
+   * Records the fingerprint of a file.
+   *
+   * @param relativePath
+   *          the path of the file, relative to the directory of the backed up entity
+   * @param fingerprint
+   *          the fingerprint of the file
+   */
+  void put(String relativePath, FileFingerprint fingerprint)
+  {
+    files.put(relativePath, fingerprint);
+  }
+
+  /**
+   * Computes the fingerprint of the first bytes of a file, the segments being read and hashed in parallel.
+   *
+   * @param file
+   *          the file to fingerprint
+   * @param length
+   *          the number of bytes of the file to fingerprint, read beforehand with the modification time
+   * @param lastModified
+   *          the last modification time of the file, read before its content
+   * @param backupStartTime
+   *          the time at which the backup started
+   * @param executor
+   *          the executor hashing the segments
+   * @return the fingerprint of the file
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  static FileFingerprint fingerprint(Path file, long length, long lastModified, long backupStartTime,
+      ExecutorService executor) throws IOException
+  {
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      final int nbSegments = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+      final List<Future<String>> futures = new ArrayList<>(nbSegments);
+      try
+      {
+        for (int i = 0; i < nbSegments; i++)
+        {
+          final long offset = (long) i * SEGMENT_SIZE;
+          final int segmentLength = (int) Math.min(SEGMENT_SIZE, length - offset);
+          futures.add(executor.submit(new Callable<String>()
+          {
+            @Override
+            public String call() throws IOException
+            {
+              return hashSegment(channel, offset, segmentLength);
+            }
+          }));
+        }
+        final String[] segments = new String[nbSegments];
+        for (int i = 0; i < nbSegments; i++)
+        {
+          segments[i] = waitFor(futures.get(i));
+        }
+        return new FileFingerprint(length, reliableModificationTime(lastModified, backupStartTime), segments);
+      }
+      finally
+      {
+        // Do not leave tasks reading a closed channel
+        for (Future<String> future : futures)
+        {
+          future.cancel(false);
+        }
+      }
+    }
+  }
+
+  private static String hashSegment(FileChannel channel, long offset, int length) throws IOException
+  {
+    final MessageDigest digest = newDigest();
+    final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    long position = offset;
+    final long end = offset + length;
+    while (position < end)
+    {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - position));
+      final int n = channel.read(buffer, position);
+      if (n < 0)
+      {
+        // The file has been truncated since its length was read: the fingerprint will not match anything
+        break;
+      }
+      digest.update(buffer.array(), 0, n);
+      position += n;
+    }
+    return toFingerprint(digest.digest());
+  }
+
+  private static String waitFor(Future<String> future) throws IOException
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    catch (ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Computes the fingerprint of a single segment from its content.
+   *
+   * @param buffer
+   *          the buffer holding the content of the segment
+   * @param length
+   *          the length of the segment
+   * @return the fingerprint of the segment
+   */
+  static String fingerprintSegment(byte[] buffer, int length)
+  {
+    final MessageDigest digest = newDigest();
+    digest.update(buffer, 0, length);
+    return toFingerprint(digest.digest());
+  }
+
+  private static long reliableModificationTime(long lastModified, long backupStartTime)
+  {
+    return lastModified >= backupStartTime - MODIFICATION_TIME_GRANULARITY ? -1 : lastModified;
+  }
+
+  private static String toFingerprint(byte[] digest)
+  {
+    return bytesToHexNoSpace(Arrays.copyOf(digest, FINGERPRINT_LENGTH));
+  }
+
+  private static MessageDigest newDigest()
+  {
+    try
+    {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      // Every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Writes these fingerprints to a file.
+   *
+   * @param file
+   *          the file to write
+   * @return the digest of the written file, to be checked when reading it back
+   * @throws IOException
+   *           if the file cannot be written
+   */
+  String write(File file) throws IOException
+  {
+    final MessageDigest digest = newDigest();
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+        new DigestOutputStream(Files.newOutputStream(file.toPath()), digest), UTF_8)))
+    {
+      writer.write(HEADER + SEGMENT_SIZE);
+      writer.write(EOL);
+      for (Map.Entry<String, FileFingerprint> entry : files.entrySet())
+      {
+        final FileFingerprint fingerprint = entry.getValue();
+        writer.write(fingerprint.length + " " + fingerprint.lastModified + " ");
+        writer.write(fingerprint.segments.length == 0 ? "-" : join(fingerprint.segments));
+        writer.write(" " + entry.getKey());
+        writer.write(EOL);
+      }
+    }
+    return bytesToHexNoSpace(digest.digest());
+  }
+
+  private static String join(String[] segments)
+  {
+    final StringBuilder builder = new StringBuilder(segments.length * (FINGERPRINT_LENGTH * 2 + 1));
+    for (String segment : segments)
+    {
+      if (builder.length() > 0)
+      {
+        builder.append(',');
+      }
+      builder.append(segment);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Reads the fingerprints written to a file by a previous backup.
+   *
+   * @param file
+   *          the file to read
+   * @param expectedDigest
+   *          the digest of the file returned when it was written
+   * @return the fingerprints read from the file
+   * @throws IOException
+   *           if the file cannot be read, has been modified, or was written with another segment size
+   */
+  static BackupFingerprints read(File file, String expectedDigest) throws IOException
+  {
+    final BackupFingerprints fingerprints = new BackupFingerprints();
+    final MessageDigest digest = newDigest();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new DigestInputStream(Files.newInputStream(file.toPath()), digest), UTF_8)))
+    {
+      final String header = reader.readLine();
+      if (header == null || !header.equals(HEADER + SEGMENT_SIZE))
+      {
+        throw new IOException("Unsupported fingerprints file header: " + header);
+      }
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        final String[] fields = line.split(" ", 4);
+        if (fields.length != 4)
+        {
+          throw new IOException("Malformed fingerprints file line: " + line);
+        }
+        final String[] segments = "-".equals(fields[2]) ? new String[0] : fields[2].split(",");
+        fingerprints.put(fields[3],
+            new FileFingerprint(Long.parseLong(fields[0]), Long.parseLong(fields[1]), segments));
+      }
+    }
+    catch (NumberFormatException e)
+    {
+      throw new IOException(e);
+    }
+    if (!bytesToHexNoSpace(digest.digest()).equals(expectedDigest))
+    {
+      throw new IOException("The fingerprints file " + file + " has been modified since it was written");
+    }
+    return fingerprints;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "BackupFingerprints [files=" + files.keySet() + "]";
+  }
+}
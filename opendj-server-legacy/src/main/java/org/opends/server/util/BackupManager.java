@@ -18,6 +18,7 @@ package org.opends.server.util;
 
 import static java.util.Collections.*;
 
+import static org.forgerock.util.Utils.newThreadFactory;
 import static org.opends.messages.BackendMessages.*;
 import static org.opends.messages.UtilityMessages.*;
 import static org.opends.server.util.ServerConstants.*;
@@ -35,10 +36,16 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -50,6 +57,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
@@ -72,6 +81,8 @@ import org.opends.server.types.CryptoManager;
 import org.opends.server.types.CryptoManagerException;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.RestoreConfig;
+import org.opends.server.util.BackupFingerprints.FileFingerprint;
+import org.opends.server.util.BackupFingerprints.StreamingFingerprinter;
 
 /**
  * A backup manager for any entity that is backupable (backend, storage).
@@ -110,6 +121,31 @@ public class BackupManager
    */
   private static final String ZIPENTRY_EMPTY_PLACEHOLDER = "empty.placeholder";
 
+  /**
+   * The name of the entry in an incremental backup archive file
+   * containing a list of files of which only the segments changed since
+   * the previous backup are archived, with their new length.
+   */
+  private static final String ZIPENTRY_CHANGED_SEGMENTS = "segments.txt";
+
+  /**
+   * The separator between the file name and the segment index in the
+   * name of the archive entries holding a single segment of a file.
+   */
+  private static final String SEGMENT_ENTRY_SEPARATOR = "#segment-";
+
+  /**
+   * The name of the property that holds the name of the file containing
+   * the fingerprints of the backed up files.
+   */
+  private static final String PROPERTY_FINGERPRINTS_FILENAME = "fingerprints_filename";
+
+  /**
+   * The name of the property that holds the digest of the file containing
+   * the fingerprints of the backed up files.
+   */
+  private static final String PROPERTY_FINGERPRINTS_DIGEST = "fingerprints_digest";
+
   /** The backend ID. */
   private final String backendID;
 
@@ -508,6 +544,18 @@ public class BackupManager
     private String latestFileName;
     private long latestFileSize;
 
+    /**
+     * The fingerprints of the files of the base backup, or {@code null} if
+     * the base backup has none and unchanged files are identified by the
+     * name and size of the latest log file.
+     */
+    private final BackupFingerprints baseFingerprints;
+    /** The fingerprints of the files of this backup. */
+    private final BackupFingerprints fingerprints = new BackupFingerprints();
+    /** Whether the fingerprints of all the files of this backup are known. */
+    private boolean fingerprintsComplete = true;
+    private final long startTime = System.currentTimeMillis();
+
     private final HashSet<String> dependencies;
 
     private final String backendID;
@@ -525,10 +573,43 @@ public class BackupManager
         Map<String, String> properties = backupParams.baseBackupInfo.getBackupProperties();
         latestFileName = properties.get(PROPERTY_LAST_LOGFILE_NAME);
         latestFileSize = Long.parseLong(properties.get(PROPERTY_LAST_LOGFILE_SIZE));
+        baseFingerprints = readBaseFingerprints(properties);
+      }
+      else
+      {
+        baseFingerprints = null;
       }
       archiveFilename = BACKUP_BASE_FILENAME + backendID + "-" +  backupParams.backupID;
     }
 
+    private BackupFingerprints readBaseFingerprints(Map<String, String> properties)
+    {
+      String fingerprintsFilename = properties.get(PROPERTY_FINGERPRINTS_FILENAME);
+      if (fingerprintsFilename == null)
+      {
+        // The base backup was created before fingerprints were recorded.
+        return null;
+      }
+      File fingerprintsFile = new File(newBackupParams.backupDir.getPath(), fingerprintsFilename);
+      try
+      {
+        return BackupFingerprints.read(fingerprintsFile, properties.get(PROPERTY_FINGERPRINTS_DIGEST));
+      }
+      catch (IOException e)
+      {
+        logger.traceException(e);
+        logger.warn(WARN_BACKUP_CANNOT_READ_FINGERPRINTS, fingerprintsFile, newBackupParams.incrementalBaseID,
+            newBackupParams.backupID, stackTraceToSingleLineString(e));
+        // Archive every file in full: it is slower, but always correct.
+        return new BackupFingerprints();
+      }
+    }
+
+    boolean hasBaseFingerprints()
+    {
+      return baseFingerprints != null;
+    }
+
     String getArchiveFilename()
     {
       return archiveFilename;
@@ -554,6 +635,7 @@ public class BackupManager
 
     void updateBackupDirectory() throws DirectoryException
     {
+      writeFingerprints();
       BackupInfo backupInfo = createDescriptorForBackup();
       try
       {
@@ -570,6 +652,34 @@ public class BackupManager
       }
     }
 
+    /**
+     * Writes the fingerprints of the files of this backup next to its
+     * archive file, for the next incremental backup to use.
+     */
+    private void writeFingerprints()
+    {
+      if (!fingerprintsComplete)
+      {
+        return;
+      }
+      String fingerprintsFilename = archiveFilename + BackupFingerprints.FILE_SUFFIX;
+      File fingerprintsFile = new File(getBackupPath(), fingerprintsFilename);
+      try
+      {
+        String digest = fingerprints.write(fingerprintsFile);
+        newBackupParams.putProperty(PROPERTY_FINGERPRINTS_FILENAME, fingerprintsFilename);
+        newBackupParams.putProperty(PROPERTY_FINGERPRINTS_DIGEST, digest);
+      }
+      catch (IOException e)
+      {
+        // The backup remains usable, only the next incremental backup will be bigger.
+        logger.traceException(e);
+        logger.warn(WARN_BACKUP_CANNOT_WRITE_FINGERPRINTS, fingerprintsFile, getBackupID(),
+            stackTraceToSingleLineString(e));
+        fingerprintsFile.delete();
+      }
+    }
+
     /** Create a descriptor for the backup. */
     private BackupInfo createDescriptorForBackup()
     {
@@ -674,10 +784,32 @@ public class BackupManager
         throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), message, e);
       }
 
+      String fingerprintsFilename = backupInfo.getBackupProperties().get(PROPERTY_FINGERPRINTS_FILENAME);
+      if (fingerprintsFilename != null)
+      {
+        new File(backupDir.getPath(), fingerprintsFilename).delete();
+      }
       return archiveFile.delete();
     }
   }
 
+  /** A file of which only the changed segments are written in an incremental backup archive. */
+  private static final class ChangedFile
+  {
+    private final Path file;
+    private final String relativePath;
+    private final FileFingerprint fingerprint;
+    private final List<Integer> changedSegments;
+
+    ChangedFile(Path file, String relativePath, FileFingerprint fingerprint, List<Integer> changedSegments)
+    {
+      this.file = file;
+      this.relativePath = relativePath;
+      this.fingerprint = fingerprint;
+      this.changedSegments = changedSegments;
+    }
+  }
+
   /** Represents a writer of a backup archive. */
   private static final class BackupArchiveWriter implements Closeable {
     private final ZipOutputStream zipOutputStream;
@@ -719,6 +851,9 @@ public class BackupManager
 
       cryptoMethod.updateHashWith(relativePath);
 
+      // Read the modification time first, so that changes made while the file is read show up next time
+      StreamingFingerprinter fingerprinter =
+          new StreamingFingerprinter(file.toFile().lastModified(), archive.startTime);
       long totalBytesRead = 0;
       try (InputStream inputStream = new FileInputStream(file.toFile())) {
         byte[] buffer = new byte[8192];
@@ -726,11 +861,13 @@ public class BackupManager
         while (bytesRead > 0 && !backupConfig.isCancelled())
         {
           cryptoMethod.updateHashWith(buffer, 0, bytesRead);
+          fingerprinter.update(buffer, 0, bytesRead);
           zipOutputStream.write(buffer, 0, bytesRead);
           totalBytesRead += bytesRead;
           bytesRead = inputStream.read(buffer);
         }
       }
+      archive.fingerprints.put(relativePath, fingerprinter.getFingerprint());
 
       zipOutputStream.closeEntry();
       logger.info(NOTE_BACKUP_ARCHIVED_FILE, zipEntry.getName());
@@ -814,17 +951,22 @@ public class BackupManager
 
       if (!unchangedFilenames.isEmpty())
       {
-        writeUnchangedFilenames(unchangedFilenames);
+        // The content of these files has not been read: the next incremental backups
+        // will keep on relying on the log files names until the next full backup.
+        archive.fingerprintsComplete = false;
+        writeDependentFilenames(unchangedFilenames, ZIPENTRY_UNCHANGED_LOGFILES);
       }
     }
 
-    /** Writes the list of unchanged files names in a file as new entry in the archive. */
-    private void writeUnchangedFilenames(List<String> unchangedList) throws DirectoryException
+    /**
+     * Writes a list of files to be restored from the base backup in a file as
+     * new entry in the archive.
+     */
+    private void writeDependentFilenames(List<String> lines, String zipEntryName) throws DirectoryException
     {
-      String zipEntryName = ZIPENTRY_UNCHANGED_LOGFILES;
       try
       {
-        writeStrings(unchangedList, zipEntryName, archive.cryptoEngine);
+        writeStrings(lines, zipEntryName, archive.cryptoEngine);
       }
       catch (IOException e)
       {
@@ -841,29 +983,193 @@ public class BackupManager
     void writeChangedFiles(Path rootDirectory, ListIterator<Path> files, BackupConfig backupConfig)
         throws DirectoryException
     {
+        while (files.hasNext() && !backupConfig.isCancelled())
+        {
+          writeChangedFile(rootDirectory, files.next(), backupConfig);
+        }
+    }
+
+    private void writeChangedFile(Path rootDirectory, Path file, BackupConfig backupConfig)
+        throws DirectoryException
+    {
+      String relativePath = rootDirectory.relativize(file).toString();
+      try
+      {
+        archive.latestFileSize = writeFile(file, relativePath, archive.cryptoEngine, backupConfig);
+        archive.latestFileName = relativePath;
+      }
+      catch (FileNotFoundException e)
+      {
+        // The file may have been deleted by a cleaner (i.e. for JE storage) since we started.
+        // The backupable entity is responsible for handling the changes through the files list iterator
+        logger.traceException(e);
+      }
+      catch (IOException e)
+      {
+        throw cannotWriteArchiveFile(relativePath, e);
+      }
+    }
+
+    /**
+     * Writes the files of an incremental backup whose base backup has
+     * fingerprints: only the segments of the files which changed since the
+     * base backup are archived.
+     * <p>
+     * The files are fingerprinted first, their segments being read and
+     * hashed in parallel. The unchanged files are listed in the
+     * "unchanged.txt" entry and the partially changed files in the
+     * "segments.txt" entry, then come the changed segments and the new files.
+     */
+    void writeChangedSegments(Path rootDirectory, ListIterator<Path> files, BackupConfig backupConfig)
+        throws DirectoryException
+    {
+      List<String> unchangedFilenames = new ArrayList<>();
+      List<ChangedFile> changedFiles = new ArrayList<>();
+      List<Path> newFiles = new ArrayList<>();
+      ExecutorService hashers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          newThreadFactory(null, "Backup fingerprinter %d", true));
+      try
+      {
         while (files.hasNext() && !backupConfig.isCancelled())
         {
           Path file = files.next();
           String relativePath = rootDirectory.relativize(file).toString();
+          FileFingerprint baseFingerprint = archive.baseFingerprints.get(relativePath);
+          if (baseFingerprint == null)
+          {
+            newFiles.add(file);
+            continue;
+          }
           try
           {
-            archive.latestFileSize = writeFile(file, relativePath, archive.cryptoEngine, backupConfig);
-            archive.latestFileName = relativePath;
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            long length = Files.size(file);
+            FileFingerprint fingerprint = baseFingerprint.hasSameLengthAndModificationTime(length, lastModified)
+                ? baseFingerprint
+                : BackupFingerprints.fingerprint(file, length, lastModified, archive.startTime, hashers);
+            List<Integer> changedSegments = fingerprint.getChangedSegments(baseFingerprint);
+            if (changedSegments.isEmpty() && length == baseFingerprint.getLength())
+            {
+              logger.info(NOTE_BACKUP_FILE_UNCHANGED, relativePath);
+              unchangedFilenames.add(relativePath);
+              archive.fingerprints.put(relativePath, fingerprint);
+            }
+            else
+            {
+              changedFiles.add(new ChangedFile(file, relativePath, fingerprint, changedSegments));
+            }
           }
-          catch (FileNotFoundException e)
+          catch (NoSuchFileException e)
           {
             // The file may have been deleted by a cleaner (i.e. for JE storage) since we started.
-            // The backupable entity is responsible for handling the changes through the files list iterator
             logger.traceException(e);
           }
           catch (IOException e)
           {
-            logger.traceException(e);
-            throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
-                 ERR_BACKUP_CANNOT_WRITE_ARCHIVE_FILE.get(relativePath, archive.getBackupID(),
-                     stackTraceToSingleLineString(e)), e);
+            throw cannotWriteArchiveFile(relativePath, e);
           }
         }
+      }
+      finally
+      {
+        hashers.shutdownNow();
+      }
+
+      if (!unchangedFilenames.isEmpty())
+      {
+        writeDependentFilenames(unchangedFilenames, ZIPENTRY_UNCHANGED_LOGFILES);
+      }
+      if (!changedFiles.isEmpty())
+      {
+        List<String> lines = new ArrayList<>(changedFiles.size());
+        for (ChangedFile changedFile : changedFiles)
+        {
+          lines.add(changedFile.fingerprint.getLength() + " " + changedFile.relativePath);
+        }
+        writeDependentFilenames(lines, ZIPENTRY_CHANGED_SEGMENTS);
+      }
+
+      byte[] buffer = new byte[BackupFingerprints.SEGMENT_SIZE];
+      for (ChangedFile changedFile : changedFiles)
+      {
+        if (backupConfig.isCancelled())
+        {
+          return;
+        }
+        writeSegments(changedFile, buffer, backupConfig);
+      }
+      for (Path file : newFiles)
+      {
+        if (backupConfig.isCancelled())
+        {
+          return;
+        }
+        writeChangedFile(rootDirectory, file, backupConfig);
+      }
+    }
+
+    /** Writes each changed segment of a file to a new entry in the archive. */
+    private void writeSegments(ChangedFile changedFile, byte[] buffer, BackupConfig backupConfig)
+        throws DirectoryException
+    {
+      FileFingerprint fingerprint = changedFile.fingerprint;
+      try (FileChannel channel = FileChannel.open(changedFile.file, StandardOpenOption.READ))
+      {
+        for (int index : changedFile.changedSegments)
+        {
+          if (backupConfig.isCancelled())
+          {
+            return;
+          }
+          long offset = (long) index * BackupFingerprints.SEGMENT_SIZE;
+          int length = readFully(channel, offset,
+              (int) Math.min(BackupFingerprints.SEGMENT_SIZE, fingerprint.getLength() - offset), buffer);
+
+          String zipEntryName = changedFile.relativePath + SEGMENT_ENTRY_SEPARATOR + index;
+          zipOutputStream.putNextEntry(new ZipEntry(zipEntryName));
+          cryptoEngine.updateHashWith(zipEntryName);
+          cryptoEngine.updateHashWith(buffer, 0, length);
+          zipOutputStream.write(buffer, 0, length);
+          zipOutputStream.closeEntry();
+
+          // The next backup must compare with the content actually archived
+          fingerprint.setSegment(index, BackupFingerprints.fingerprintSegment(buffer, length));
+        }
+        archive.fingerprints.put(changedFile.relativePath, fingerprint);
+        logger.info(NOTE_BACKUP_ARCHIVED_FILE_SEGMENTS, changedFile.changedSegments.size(),
+            fingerprint.getSegmentCount(), changedFile.relativePath);
+      }
+      catch (NoSuchFileException e)
+      {
+        // The file may have been deleted by a cleaner (i.e. for JE storage) since it was fingerprinted.
+        logger.traceException(e);
+      }
+      catch (IOException e)
+      {
+        throw cannotWriteArchiveFile(changedFile.relativePath, e);
+      }
+    }
+
+    private int readFully(FileChannel channel, long offset, int length, byte[] buffer) throws IOException
+    {
+      ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+      while (byteBuffer.hasRemaining())
+      {
+        if (channel.read(byteBuffer, offset + byteBuffer.position()) < 0)
+        {
+          // The file has been truncated since it was fingerprinted
+          break;
+        }
+      }
+      return byteBuffer.position();
+    }
+
+    private DirectoryException cannotWriteArchiveFile(String relativePath, IOException e)
+    {
+      logger.traceException(e);
+      return new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+          ERR_BACKUP_CANNOT_WRITE_ARCHIVE_FILE.get(relativePath, archive.getBackupID(),
+              stackTraceToSingleLineString(e)), e);
     }
 
     private ZipOutputStream open(String backupPath, String archiveFilename) throws DirectoryException
@@ -931,6 +1237,8 @@ public class BackupManager
     private final File archiveFile;
     private final String identifier;
     private final BackupInfo backupInfo;
+    /** The length of the files of which only the changed segments are in the archive. */
+    private final Map<String, Long> segmentedFiles = new HashMap<>();
 
     BackupArchiveReader(String identifier, ExistingBackupArchive archive)
     {
@@ -950,12 +1258,13 @@ public class BackupManager
 
     /**
      * Obtains the set of files in a backup that are unchanged from its
-     * dependent backup or backups.
+     * dependent backup or backups, or of which only the changed segments
+     * are in the backup.
      * <p>
-     * The file set is stored as as the first entry in the archive file.
+     * The file sets are stored as the first entries in the archive file.
      *
-     * @return The set of files that are listed in "unchanged.txt" file
-     *         of the archive.
+     * @return The set of files that are listed in "unchanged.txt" and
+     *         "segments.txt" files of the archive.
      * @throws DirectoryException
      *          If an error occurs.
      */
@@ -969,10 +1278,18 @@ public class BackupManager
         ZipEntry zipEntry = zipStream.getNextEntry();
         while (zipEntry != null)
         {
-          // We are looking for the entry containing the list of unchanged files.
+          // We are looking for the entries containing the lists of files.
           if (ZIPENTRY_UNCHANGED_LOGFILES.equals(zipEntry.getName()))
           {
             hashSet.addAll(readAllLines(zipStream));
+          }
+          else if (ZIPENTRY_CHANGED_SEGMENTS.equals(zipEntry.getName()))
+          {
+            hashSet.addAll(parseSegmentedFiles(readAllLines(zipStream)).keySet());
+          }
+          else if (!hashSet.isEmpty())
+          {
+            // Files lists are always written before the files.
             break;
           }
           zipEntry = zipStream.getNextEntry();
@@ -1036,10 +1353,23 @@ public class BackupManager
               continue;
             }
 
+            String fileName = zipEntryName;
+            int segmentIndex = -1;
+            int separator = zipEntryName.lastIndexOf(SEGMENT_ENTRY_SEPARATOR);
+            if (separator != -1 && segmentedFiles.containsKey(zipEntryName.substring(0, separator)))
+            {
+              fileName = zipEntryName.substring(0, separator);
+              segmentIndex = Integer.parseInt(zipEntryName.substring(separator + SEGMENT_ENTRY_SEPARATOR.length()));
+            }
+
             boolean mustRestoreOnDisk = !restoreConfig.verifyOnly()
-                && (filesToRestore.isEmpty() || filesToRestore.contains(zipEntryName));
+                && (filesToRestore.isEmpty() || filesToRestore.contains(fileName));
 
-            if (mustRestoreOnDisk)
+            if (mustRestoreOnDisk && segmentIndex != -1)
+            {
+              restoreSegment(zipEntryName, fileName, segmentIndex, zipStream, restoreDir, restoreConfig);
+            }
+            else if (mustRestoreOnDisk)
             {
               restoreZipEntry(zipEntryName, zipStream, restoreDir, restoreConfig);
             }
@@ -1051,6 +1381,78 @@ public class BackupManager
             zipEntry = zipStream.getNextEntry();
           }
       }
+
+      if (!restoreConfig.verifyOnly() && !restoreConfig.isCancelled())
+      {
+        truncateSegmentedFiles(restoreDir, filesToRestore);
+      }
+    }
+
+    /**
+     * Writes a segment of a file over the content of the file restored from
+     * the dependent backups.
+     */
+    private void restoreSegment(String zipEntryName, String fileName, int segmentIndex, ZipInputStream zipStream,
+        Path restoreDir, RestoreConfig restoreConfig) throws IOException, DirectoryException
+    {
+      try (RandomAccessFile file = openSegmentedFile(restoreDir, fileName))
+      {
+        file.seek((long) segmentIndex * BackupFingerprints.SEGMENT_SIZE);
+        cryptoEngine.updateHashWith(zipEntryName);
+        long totalBytesRead = restoreFile(zipStream, Channels.newOutputStream(file.getChannel()), restoreConfig);
+        logger.info(NOTE_BACKUP_RESTORED_FILE, zipEntryName, totalBytesRead);
+      }
+    }
+
+    /**
+     * Sets the files of which only the changed segments are in the archive
+     * to the length they had at backup time.
+     */
+    private void truncateSegmentedFiles(Path restoreDir, Set<String> filesToRestore)
+        throws IOException, DirectoryException
+    {
+      for (Map.Entry<String, Long> segmentedFile : segmentedFiles.entrySet())
+      {
+        if (filesToRestore.isEmpty() || filesToRestore.contains(segmentedFile.getKey()))
+        {
+          try (RandomAccessFile file = openSegmentedFile(restoreDir, segmentedFile.getKey()))
+          {
+            file.setLength(segmentedFile.getValue());
+          }
+        }
+      }
+    }
+
+    private RandomAccessFile openSegmentedFile(Path restoreDir, String fileName)
+        throws IOException, DirectoryException
+    {
+      Path fileToRestore = restoreDir.resolve(fileName);
+      if (!Files.exists(fileToRestore))
+      {
+        // The file should have been restored from the dependent backups.
+        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+            ERR_BACKUP_CANNOT_RESTORE_SEGMENTS.get(fileName, identifier));
+      }
+      return new RandomAccessFile(fileToRestore.toFile(), "rw");
+    }
+
+    /** Parses the lines of the "segments.txt" entry, made of a file length followed by its name. */
+    private Map<String, Long> parseSegmentedFiles(List<String> lines) throws IOException
+    {
+      Map<String, Long> files = new HashMap<>();
+      for (String line : lines)
+      {
+        int space = line.indexOf(' ');
+        try
+        {
+          files.put(line.substring(space + 1), Long.parseLong(line.substring(0, space)));
+        }
+        catch (IndexOutOfBoundsException | NumberFormatException e)
+        {
+          throw new IOException("Malformed line in " + ZIPENTRY_CHANGED_SEGMENTS + ": " + line, e);
+        }
+      }
+      return files;
     }
 
     /**
@@ -1067,16 +1469,20 @@ public class BackupManager
         return Pair.of(true, zipStream.getNextEntry());
       }
 
-      if (ZIPENTRY_UNCHANGED_LOGFILES.equals(zipEntryName))
+      if (ZIPENTRY_UNCHANGED_LOGFILES.equals(zipEntryName) || ZIPENTRY_CHANGED_SEGMENTS.equals(zipEntryName))
       {
-        // This entry is treated specially. It is never restored,
-        // and its hash is computed on the strings, not the bytes.
+        // These entries are treated specially. They are never restored,
+        // and their hash is computed on the strings, not the bytes.
         cryptoEngine.updateHashWith(zipEntryName);
         List<String> lines = readAllLines(zipStream);
         for (String line : lines)
         {
           cryptoEngine.updateHashWith(line);
         }
+        if (ZIPENTRY_CHANGED_SEGMENTS.equals(zipEntryName))
+        {
+          segmentedFiles.putAll(parseSegmentedFiles(lines));
+        }
         return Pair.of(true, zipStream.getNextEntry());
       }
       return Pair.of(false, null);
@@ -1196,6 +1602,11 @@ public class BackupManager
    * file containing a list of all the log files that are unchanged since the
    * previous backup. The remaining zip entries are the log files themselves,
    * which, for an incremental, only include those files that have changed.
+   * <p>
+   * The fingerprints of the files are recorded next to the zip file. When an
+   * incremental backup is based on a backup with fingerprints, the files
+   * whose content changed are split in segments, and only the segments which
+   * changed are archived, after a text file listing these files.
    *
    * @param backupable
    *          The underlying entity (storage, backend) to be backed up.
@@ -1216,10 +1627,17 @@ public class BackupManager
     {
       if (files.hasNext())
       {
-        if (backupParams.isIncremental) {
-          archiveWriter.writeUnchangedFiles(rootDirectory, files, backupConfig);
+        if (newArchive.hasBaseFingerprints())
+        {
+          archiveWriter.writeChangedSegments(rootDirectory, files, backupConfig);
+        }
+        else
+        {
+          if (backupParams.isIncremental) {
+            archiveWriter.writeUnchangedFiles(rootDirectory, files, backupConfig);
+          }
+          archiveWriter.writeChangedFiles(rootDirectory, files, backupConfig);
         }
-        archiveWriter.writeChangedFiles(rootDirectory, files, backupConfig);
       }
       else {
         archiveWriter.writeEmptyPlaceHolder();
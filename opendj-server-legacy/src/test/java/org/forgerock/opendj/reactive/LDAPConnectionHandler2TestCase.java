@@ -0,0 +1,215 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.forgerock.opendj.reactive;
+
+import static org.mockito.Mockito.*;
+import static org.opends.server.types.NullOutputStream.nullPrintStream;
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.LDAPListener;
+import org.forgerock.opendj.server.config.meta.LDAPConnectionHandlerCfgDefn;
+import org.forgerock.opendj.server.config.server.LDAPConnectionHandlerCfg;
+import org.forgerock.util.Options;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.api.ConnectionHandler;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ServerContext;
+import org.opends.server.extensions.InitializationUtils;
+import org.opends.server.protocols.ldap.ExtendedResponseProtocolOp;
+import org.opends.server.protocols.ldap.LDAPConstants;
+import org.opends.server.tools.RemoteConnection;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.Entry;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.forgerock.opendj.ldap.tools.LDAPSearch;
+
+/** A set of test cases for the LDAP connection handlers created with the default implementation. */
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "ldap" }, sequential = true)
+public class LDAPConnectionHandler2TestCase extends DirectoryServerTestCase
+{
+  private static final String HANDLER_NAME = "Default LDAP Connection Handler";
+  private static final DN HANDLER_DN = DN.valueOf("cn=" + HANDLER_NAME + ",cn=Connection Handlers,cn=config");
+
+  private int port;
+
+  @BeforeClass
+  public void createConnectionHandler() throws Exception
+  {
+    TestCaseUtils.startServer();
+    port = TestCaseUtils.findFreePort();
+    // The java-class property is not set
+    TestCaseUtils.dsconfig(
+        "create-connection-handler",
+        "--handler-name", HANDLER_NAME,
+        "--type", "ldap",
+        "--set", "enabled:true",
+        "--set", "listen-address:127.0.0.1",
+        "--set", "listen-port:" + port,
+        "--set", "allow-start-tls:true",
+        "--set", "key-manager-provider:JKS",
+        "--set", "trust-manager-provider:JKS",
+        "--set", "use-tcp-keep-alive:false",
+        "--set", "use-tcp-no-delay:false");
+    waitUntilListening();
+  }
+
+  @AfterClass(alwaysRun = true)
+  public void deleteConnectionHandler() throws Exception
+  {
+    TestCaseUtils.dsconfig(
+        "delete-connection-handler",
+        "--handler-name", HANDLER_NAME,
+        "-f");
+  }
+
+  private void waitUntilListening() throws Exception
+  {
+    for (int i = 0; i < 100; i++)
+    {
+      try (Socket socket = new Socket("127.0.0.1", port))
+      {
+        return;
+      }
+      catch (IOException e)
+      {
+        Thread.sleep(100);
+      }
+    }
+    fail("The connection handler is not listening on port " + port);
+  }
+
+  private LDAPConnectionHandler2 getConnectionHandler()
+  {
+    for (ConnectionHandler<?> handler : DirectoryServer.getConnectionHandlers())
+    {
+      if (HANDLER_DN.equals(handler.getComponentEntryDN()))
+      {
+        assertTrue(handler instanceof LDAPConnectionHandler2, "Unexpected connection handler " + handler.getClass());
+        return (LDAPConnectionHandler2) handler;
+      }
+    }
+    fail("The connection handler " + HANDLER_DN + " is not registered");
+    return null;
+  }
+
+  @Test
+  public void testDefaultImplementation() throws Exception
+  {
+    assertNotNull(getConnectionHandler());
+  }
+
+  @Test
+  public void testSocketOptionsArePassedToTheListener() throws Exception
+  {
+    Options options = getConnectionHandler().getListenerOptions();
+    assertFalse(options.get(LDAPListener.SO_KEEPALIVE));
+    assertFalse(options.get(LDAPListener.TCP_NO_DELAY));
+    assertTrue(options.get(LDAPListener.SO_REUSE_ADDRESS));
+  }
+
+  @Test
+  public void testSocketOptionChangesRequireRestart() throws Exception
+  {
+    Entry handlerEntry = TestCaseUtils.makeEntry(
+        "dn: cn=LDAP Connection Handler,cn=Connection Handlers,cn=config",
+        "objectClass: top",
+        "objectClass: ds-cfg-connection-handler",
+        "objectClass: ds-cfg-ldap-connection-handler",
+        "cn: LDAP Connection Handler",
+        "ds-cfg-java-class: org.forgerock.opendj.reactive.LDAPConnectionHandler2",
+        "ds-cfg-enabled: true",
+        "ds-cfg-listen-address: 127.0.0.1",
+        "ds-cfg-listen-port: " + TestCaseUtils.findFreePort(),
+        "ds-cfg-use-tcp-keep-alive: true",
+        "ds-cfg-use-tcp-no-delay: true");
+    LDAPConnectionHandler2 handler = new LDAPConnectionHandler2();
+    handler.initializeConnectionHandler(mock(ServerContext.class), getConfiguration(handlerEntry));
+    try
+    {
+      handlerEntry.replaceAttribute(Attributes.create("ds-cfg-use-tcp-keep-alive", "false"));
+      ConfigChangeResult ccr = handler.applyConfigurationChange(getConfiguration(handlerEntry));
+      assertTrue(ccr.adminActionRequired());
+
+      ccr = handler.applyConfigurationChange(getConfiguration(handlerEntry));
+      assertFalse(ccr.adminActionRequired());
+
+      handlerEntry.replaceAttribute(Attributes.create("ds-cfg-use-tcp-no-delay", "false"));
+      ccr = handler.applyConfigurationChange(getConfiguration(handlerEntry));
+      assertTrue(ccr.adminActionRequired());
+    }
+    finally
+    {
+      handler.finalizeConnectionHandler(LocalizableMessage.raw("Test finished"));
+    }
+  }
+
+  private static LDAPConnectionHandlerCfg getConfiguration(Entry handlerEntry) throws Exception
+  {
+    return InitializationUtils.getConfiguration(LDAPConnectionHandlerCfgDefn.getInstance(), handlerEntry);
+  }
+
+  @Test
+  public void testStartTLS() throws Exception
+  {
+    String[] args =
+    {
+      "--noPropertiesFile",
+      "-h", "127.0.0.1",
+      "-p", String.valueOf(port),
+      "-q",
+      "-X",
+      "-D", "cn=Directory Manager",
+      "-w", "password",
+      "-b", "",
+      "-s", "base",
+      "(objectClass=*)"
+    };
+    assertEquals(LDAPSearch.run(nullPrintStream(), System.err, args), 0);
+  }
+
+  @Test(groups = "slow")
+  public void testIdleTimeLimit() throws Exception
+  {
+    TestCaseUtils.dsconfig(
+        "set-global-configuration-prop",
+        "--set", "idle-time-limit:5 seconds");
+    try (RemoteConnection conn = new RemoteConnection("127.0.0.1", port))
+    {
+      conn.bind("cn=Directory Manager", "password");
+
+      ExtendedResponseProtocolOp extendedResponse = conn.readMessage().getExtendedResponseProtocolOp();
+      assertEquals(extendedResponse.getOID(), LDAPConstants.OID_NOTICE_OF_DISCONNECTION);
+      assertNull(conn.readMessage());
+    }
+    finally
+    {
+      TestCaseUtils.dsconfig(
+          "set-global-configuration-prop",
+          "--set", "idle-time-limit:0 seconds");
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.forgerock.opendj.ldap.DN;
+import org.opends.server.DirectoryServerTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential = true)
+public class DN2IDCacheTest extends DirectoryServerTestCase
+{
+  private static final DN BASE_DN = DN.valueOf("dc=example,dc=com");
+  private static final DN PEOPLE = DN.valueOf("ou=People,dc=example,dc=com");
+  private static final DN ORG = DN.valueOf("ou=Org,ou=People,dc=example,dc=com");
+  private static final DN USER = DN.valueOf("uid=user,ou=Org,ou=People,dc=example,dc=com");
+  private static final DN GROUPS = DN.valueOf("ou=Groups,dc=example,dc=com");
+
+  private DN2IDCache cache;
+
+  @BeforeMethod
+  public void setUp()
+  {
+    cache = new DN2IDCache(BASE_DN, 2, 100);
+  }
+
+  @Test
+  public void testCachesUpperLevels()
+  {
+    put(BASE_DN, 1);
+    put(PEOPLE, 2);
+    put(ORG, 3);
+
+    assertThat(cache.get(BASE_DN)).isEqualTo(new EntryID(1));
+    assertThat(cache.get(DN.valueOf("OU=people,DC=Example,DC=com"))).isEqualTo(new EntryID(2));
+    assertThat(cache.get(ORG)).isEqualTo(new EntryID(3));
+    assertThat(cache.get(GROUPS)).isNull();
+    assertThat(cache.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void testDoesNotCacheDeepOrForeignEntries()
+  {
+    put(USER, 4);
+    put(DN.valueOf("dc=other,dc=com"), 5);
+
+    assertThat(cache.get(USER)).isNull();
+    assertThat(cache.get(DN.valueOf("dc=other,dc=com"))).isNull();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDoesNotCacheWhenFull()
+  {
+    cache = new DN2IDCache(BASE_DN, 2, 1);
+    put(PEOPLE, 2);
+    put(GROUPS, 3);
+
+    assertThat(cache.get(PEOPLE)).isEqualTo(new EntryID(2));
+    assertThat(cache.get(GROUPS)).isNull();
+  }
+
+  @Test
+  public void testInvalidateSubtree()
+  {
+    put(BASE_DN, 1);
+    put(PEOPLE, 2);
+    put(ORG, 3);
+    put(GROUPS, 4);
+
+    cache.invalidateSubtree(PEOPLE);
+
+    assertThat(cache.get(BASE_DN)).isEqualTo(new EntryID(1));
+    assertThat(cache.get(PEOPLE)).isNull();
+    assertThat(cache.get(ORG)).isNull();
+    assertThat(cache.get(GROUPS)).isEqualTo(new EntryID(4));
+    assertThat(cache.size()).isEqualTo(2);
+
+    cache.invalidateSubtree(BASE_DN);
+    assertThat(cache.get(BASE_DN)).isNull();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDoesNotCacheEntriesReadBeforeInvalidation()
+  {
+    final long generation = cache.getGeneration();
+    cache.invalidateSubtree(PEOPLE);
+    cache.put(PEOPLE, new EntryID(2), generation);
+
+    assertThat(cache.get(PEOPLE)).isNull();
+  }
+
+  private void put(DN dn, long id)
+  {
+    cache.put(dn, new EntryID(id), cache.getGeneration());
+  }
+}
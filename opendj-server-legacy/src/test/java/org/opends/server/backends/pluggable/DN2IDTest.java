@@ -22,6 +22,7 @@ import static org.opends.server.util.CollectionUtils.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.forgerock.opendj.config.server.ConfigException;
@@ -58,7 +59,9 @@ import org.testng.annotations.Test;
 public class DN2IDTest extends DirectoryServerTestCase
 {
   private final TreeName dn2IDTreeName = new TreeName("base-dn", "index-id");
+  private final TreeName stateTreeName = new TreeName("base-dn", "state");
   private DN baseDN;
+  private State state;
   private DN2ID dn2ID;
   private PDBStorage storage;
 
@@ -79,17 +82,24 @@ public class DN2IDTest extends DirectoryServerTestCase
 
     storage = new PDBStorage(createBackendCfg(), serverContext);
     storage.open(AccessMode.READ_WRITE);
+
+    baseDN = dn("dc=example, dc=com");
+    state = new State(stateTreeName);
+    dn2ID = new DN2ID(dn2IDTreeName, baseDN, state);
+    openTrees();
+  }
+
+  private void openTrees() throws Exception
+  {
     storage.write(new WriteOperation()
     {
       @Override
       public void run(WriteableTransaction txn) throws Exception
       {
-        txn.openTree(dn2IDTreeName, true);
+        state.open(txn, true);
+        dn2ID.open(txn, true);
       }
     });
-
-    baseDN = dn("dc=example, dc=com");
-    dn2ID = new DN2ID(dn2IDTreeName, baseDN);
   }
 
   @AfterMethod
@@ -220,6 +230,64 @@ public class DN2IDTest extends DirectoryServerTestCase
                    get("cn=foofoo,ou=People,dc=example,dc=com"));
   }
 
+  @Test
+  public void testStoresCompactEntryIDsInNewTree() throws Exception
+  {
+    populate();
+
+    assertThat(getFlags()).contains(State.IndexFlag.COMPACT_ENTRY_IDS);
+    assertThat(readValue("cn=dev1,cn=bar,ou=People,dc=example,dc=com").length()).isEqualTo(1);
+    assertThat(get("cn=dev1,cn=bar,ou=People,dc=example,dc=com")).isEqualTo(id(10));
+    assertThat(traverseChildren("cn=bar,ou=People,dc=example,dc=com")).containsExactly(id(9), id(10));
+  }
+
+  @Test
+  public void testKeepsLegacyEntryIDsOfExistingTree() throws Exception
+  {
+    // Simulate a tree populated before the compact encoding was available
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        state.removeFlagsFromIndex(txn, dn2IDTreeName, State.IndexFlag.COMPACT_ENTRY_IDS);
+        txn.put(dn2IDTreeName, DnKeyFormat.dnToDNKey(baseDN, baseDN.size()), id(1).toByteString());
+      }
+    });
+    dn2ID = new DN2ID(dn2IDTreeName, baseDN, state);
+    openTrees();
+    put(dn("ou=People,dc=example,dc=com"), 2);
+
+    assertThat(getFlags()).doesNotContain(State.IndexFlag.COMPACT_ENTRY_IDS);
+    assertThat(readValue("ou=People,dc=example,dc=com").length()).isEqualTo(8);
+    assertThat(get("dc=example,dc=com")).isEqualTo(id(1));
+    assertThat(get("ou=People,dc=example,dc=com")).isEqualTo(id(2));
+  }
+
+  private ByteString readValue(final String dn) throws Exception
+  {
+    return storage.read(new ReadOperation<ByteString>()
+    {
+      @Override
+      public ByteString run(ReadableTransaction txn) throws Exception
+      {
+        return txn.read(dn2IDTreeName, DnKeyFormat.dnToDNKey(dn(dn), baseDN.size()));
+      }
+    });
+  }
+
+  private Set<State.IndexFlag> getFlags() throws Exception
+  {
+    return storage.read(new ReadOperation<Set<State.IndexFlag>>()
+    {
+      @Override
+      public Set<State.IndexFlag> run(ReadableTransaction txn) throws Exception
+      {
+        return state.getIndexFlags(txn, dn2IDTreeName);
+      }
+    });
+  }
+
   private EntryID get(final String dn) throws Exception
   {
     return storage.read(new ReadOperation<EntryID>()
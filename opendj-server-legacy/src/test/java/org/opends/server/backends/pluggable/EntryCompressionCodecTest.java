@@ -0,0 +1,196 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Random;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.opends.server.DirectoryServerTestCase;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential=true)
+public class EntryCompressionCodecTest extends DirectoryServerTestCase
+{
+  @DataProvider
+  public Object[][] codecs()
+  {
+    return new Object[][] { { EntryCompressionCodec.DEFLATE }, { EntryCompressionCodec.LZ } };
+  }
+
+  @Test(dataProvider = "codecs")
+  public void testRoundTrip(EntryCompressionCodec codec) throws Exception
+  {
+    final Random random = new Random(0);
+    final CompressionDictionary dictionary = codec.supportsDictionaries() ? trainDictionary(random) : null;
+    for (int i = 0; i < 100; i++)
+    {
+      assertRoundTrip(codec, null, newEntry(i, random));
+      assertRoundTrip(codec, dictionary, newEntry(i, random));
+    }
+  }
+
+  @Test(dataProvider = "codecs")
+  public void testRoundTripEdgeCases(EntryCompressionCodec codec) throws Exception
+  {
+    final Random random = new Random(0);
+    for (int length : new int[] { 0, 1, 4, 12, 13, 255, 70000 })
+    {
+      assertRoundTrip(codec, null, randomBytes(random, length));
+      assertRoundTrip(codec, null, new byte[length]);
+    }
+  }
+
+  @Test
+  public void testLZWithDictionaryCompressesBetter() throws Exception
+  {
+    final Random random = new Random(0);
+    final CompressionDictionary dictionary = trainDictionary(random);
+
+    int uncompressedSize = 0;
+    int compressedSize = 0;
+    int compressedSizeWithDictionary = 0;
+    for (int i = 0; i < 100; i++)
+    {
+      final byte[] entry = newEntry(1000 + i, random);
+      uncompressedSize += entry.length;
+      compressedSize += compress(EntryCompressionCodec.LZ, null, entry).length();
+      compressedSizeWithDictionary += compress(EntryCompressionCodec.LZ, dictionary, entry).length();
+    }
+    assertThat(compressedSize).isLessThan(uncompressedSize);
+    assertThat(compressedSizeWithDictionary).isLessThan(compressedSize / 2);
+  }
+
+  @Test
+  public void testLZDetectsCorruptedData() throws Exception
+  {
+    final Random random = new Random(0);
+    final CompressionDictionary dictionary = trainDictionary(random);
+    int nbErrors = 0;
+    for (int i = 0; i < 1000; i++)
+    {
+      final byte[] entry = newEntry(i, random);
+      final byte[] compressed = compress(EntryCompressionCodec.LZ, dictionary, entry).toByteArray();
+      compressed[random.nextInt(compressed.length)] ^= 1 + random.nextInt(255);
+      try
+      {
+        EntryCompressionCodec.LZ.decompress(
+            ByteString.wrap(compressed), dictionary, entry.length, new ByteStringBuilder());
+      }
+      catch (DecodeException expected)
+      {
+        nbErrors++;
+      }
+    }
+    // Corruptions are not always detectable, but must never make decompression fail unexpectedly
+    assertThat(nbErrors).isGreaterThan(0);
+  }
+
+  @Test(expectedExceptions = DecodeException.class)
+  public void testLZDetectsTruncatedData() throws Exception
+  {
+    final byte[] entry = newEntry(0, new Random(0));
+    final ByteStringBuilder compressed = compress(EntryCompressionCodec.LZ, null, entry);
+    EntryCompressionCodec.LZ.decompress(
+        compressed.subSequence(0, compressed.length() / 2), null, entry.length, new ByteStringBuilder());
+  }
+
+  @Test
+  public void testValueOfID() throws Exception
+  {
+    assertThat(EntryCompressionCodec.valueOf(EntryCompressionCodec.DEFLATE.getID()))
+        .isSameAs(EntryCompressionCodec.DEFLATE);
+    assertThat(EntryCompressionCodec.valueOf(EntryCompressionCodec.LZ.getID())).isSameAs(EntryCompressionCodec.LZ);
+  }
+
+  @Test(expectedExceptions = DecodeException.class)
+  public void testValueOfUnknownID() throws Exception
+  {
+    EntryCompressionCodec.valueOf((byte) 0x7F);
+  }
+
+  @Test
+  public void testTrainerWithoutCommonContent()
+  {
+    final Random random = new Random(0);
+    final CompressionDictionaryTrainer trainer = new CompressionDictionaryTrainer();
+    while (!trainer.addSample(ByteString.wrap(randomBytes(random, 1024))))
+    {
+      // Collect samples
+    }
+    assertThat(trainer.train()).isNull();
+  }
+
+  private static void assertRoundTrip(EntryCompressionCodec codec, CompressionDictionary dictionary, byte[] data)
+      throws DecodeException
+  {
+    final ByteStringBuilder compressed = new ByteStringBuilder().appendByte(0x42);
+    codec.compress(ByteString.wrap(data), dictionary, compressed);
+
+    final ByteStringBuilder decompressed = new ByteStringBuilder().appendByte(0x24);
+    codec.decompress(compressed.subSequence(1, compressed.length()), dictionary, data.length, decompressed);
+    assertThat(decompressed.subSequence(1, decompressed.length()).toByteArray()).isEqualTo(data);
+  }
+
+  private static ByteStringBuilder compress(EntryCompressionCodec codec, CompressionDictionary dictionary,
+      byte[] data)
+  {
+    final ByteStringBuilder compressed = new ByteStringBuilder();
+    codec.compress(ByteString.wrap(data), dictionary, compressed);
+    return compressed;
+  }
+
+  private static CompressionDictionary trainDictionary(Random random)
+  {
+    final CompressionDictionaryTrainer trainer = new CompressionDictionaryTrainer();
+    int i = 0;
+    while (!trainer.addSample(ByteString.wrap(newEntry(i++, random))))
+    {
+      // Collect samples
+    }
+    final byte[] bytes = trainer.train();
+    assertThat(bytes).isNotNull();
+    assertThat(bytes.length).isLessThanOrEqualTo(CompressionDictionaryTrainer.MAX_DICTIONARY_SIZE);
+    return new CompressionDictionary(1, bytes);
+  }
+
+  /** Returns bytes looking like an encoded inetOrgPerson entry. */
+  private static byte[] newEntry(int i, Random random)
+  {
+    return ("uid=user." + i + ",ou=People,dc=example,dc=com"
+        + "objectClass\0top\0person\0organizationalPerson\0inetOrgPerson"
+        + "uid\0user." + i
+        + "givenName\0Name" + random.nextInt(1000)
+        + "sn\0Surname" + random.nextInt(5000)
+        + "cn\0Name Surname"
+        + "mail\0user." + i + "@example.com"
+        + "telephoneNumber\0+1 " + random.nextInt(999999999)
+        + "l\0City" + random.nextInt(50)
+        + "description\0This is the description for user " + i + ".").getBytes();
+  }
+
+  private static byte[] randomBytes(Random random, int length)
+  {
+    final byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
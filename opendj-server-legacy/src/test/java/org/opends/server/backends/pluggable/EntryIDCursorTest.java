@@ -0,0 +1,156 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static java.util.Arrays.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential=true)
+public class EntryIDCursorTest extends DirectoryServerTestCase
+{
+  @Test
+  public void testEntryIDSetCursor()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.of(EntryIDSet.newDefinedSet(1, 4, 9));
+
+    assertThat(cursor.isDefined()).isFalse();
+    assertThat(cursor.getMaximumSize()).isEqualTo(3);
+    assertThat(toList(cursor)).containsExactly(1L, 4L, 9L);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEntryIDSetCursorRejectsUndefinedSet()
+  {
+    EntryIDCursor.of(EntryIDSet.newUndefinedSet());
+  }
+
+  @Test
+  public void testSkipTo()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.of(2, 4, 6, 8);
+
+    assertThat(cursor.skipTo(5)).isTrue();
+    assertThat(cursor.getEntryID()).isEqualTo(6);
+    assertThat(cursor.skipTo(6)).isTrue();
+    assertThat(cursor.getEntryID()).isEqualTo(6);
+    assertThat(cursor.skipTo(1)).isTrue();
+    assertThat(cursor.getEntryID()).isEqualTo(6);
+    assertThat(cursor.skipTo(9)).isFalse();
+    assertThat(cursor.isDefined()).isFalse();
+  }
+
+  @Test
+  public void testIntersection()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.intersection(asList(
+        EntryIDCursor.of(1, 2, 3, 5, 8, 13, 21),
+        EntryIDCursor.of(2, 3, 4, 5, 6, 7, 8, 21),
+        EntryIDCursor.of(EntryIDSet.newDefinedSet(3, 5, 8, 21, 34))));
+
+    assertThat(cursor.getMaximumSize()).isEqualTo(5);
+    assertThat(toList(cursor)).containsExactly(3L, 5L, 8L, 21L);
+  }
+
+  @Test
+  public void testIntersectionSkipTo()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.intersection(asList(
+        EntryIDCursor.of(1, 3, 5, 7, 9, 11),
+        EntryIDCursor.of(3, 6, 9, 11)));
+
+    assertThat(cursor.skipTo(4)).isTrue();
+    assertThat(cursor.getEntryID()).isEqualTo(9);
+    assertThat(toList(cursor)).containsExactly(11L);
+  }
+
+  @Test
+  public void testIntersectionWithEmptyCursor()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.intersection(asList(
+        EntryIDCursor.of(1, 2, 3),
+        EntryIDCursor.of()));
+
+    assertThat(cursor.next()).isFalse();
+    assertThat(cursor.next()).isFalse();
+  }
+
+  @Test
+  public void testUnion()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.union(asList(
+        EntryIDCursor.of(1, 5, 9),
+        EntryIDCursor.of(),
+        EntryIDCursor.of(2, 5, 10),
+        EntryIDCursor.of(EntryIDSet.newDefinedSet(0, 9))));
+
+    assertThat(cursor.getMaximumSize()).isEqualTo(8);
+    assertThat(toList(cursor)).containsExactly(0L, 1L, 2L, 5L, 9L, 10L);
+  }
+
+  @Test
+  public void testIntersectionOfUnions()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.intersection(asList(
+        EntryIDCursor.union(asList(EntryIDCursor.of(1, 4), EntryIDCursor.of(2, 8))),
+        EntryIDCursor.union(asList(EntryIDCursor.of(2, 3), EntryIDCursor.of(4, 5)))));
+
+    assertThat(toList(cursor)).containsExactly(2L, 4L);
+  }
+
+  @Test
+  public void testUnionSkipTo()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.union(asList(
+        EntryIDCursor.of(1, 5, 9),
+        EntryIDCursor.of(2, 6, 10)));
+
+    assertThat(cursor.skipTo(5)).isTrue();
+    assertThat(cursor.getEntryID()).isEqualTo(5);
+    assertThat(cursor.skipTo(7)).isTrue();
+    assertThat(cursor.getEntryID()).isEqualTo(9);
+    assertThat(toList(cursor)).containsExactly(10L);
+  }
+
+  @Test
+  public void testToLongArray()
+  {
+    final EntryIDCursor cursor = EntryIDCursor.union(asList(
+        EntryIDCursor.of(1, 3, 5),
+        EntryIDCursor.of(2, 4)));
+
+    assertThat(cursor.isMaximumSizeExact()).isFalse();
+    assertThat(cursor.toLongArray(3)).containsExactly(1L, 2L, 3L);
+    assertThat(cursor.toLongArray(3)).containsExactly(4L, 5L);
+  }
+
+  private static List<Long> toList(EntryIDCursor cursor)
+  {
+    final List<Long> entryIDs = new ArrayList<>();
+    while (cursor.next())
+    {
+      entryIDs.add(cursor.getEntryID());
+    }
+    cursor.close();
+    return entryIDs;
+  }
+}
@@ -290,9 +290,76 @@ public class EntryIDSetTest extends DirectoryServerTestCase
     assertIdsEquals(retained, 1, 3, 5, 7, 9);
   }
 
+  @Test
+  public void testCodecV4LargeSets()
+  {
+    final long[] ids = range(1, 100000);
+    final ByteString v4 = CODEC_V4.encode(newDefinedSet(ids));
+    assertThat(v4.length()).isLessThan(CODEC_V2.encode(newDefinedSet(ids)).length() / 10);
+
+    final EntryIDSet decoded = CODEC_V4.decode(KEY, v4);
+    assertThat(decoded.size()).isEqualTo(ids.length);
+    assertThat(decoded.toLongArray()).isEqualTo(ids);
+    assertThat(CODEC_V4.encode(decoded)).isEqualTo(v4);
+  }
+
+  @Test
+  public void testCodecV4SparseSetsAreNotBiggerThanV2()
+  {
+    final EntryIDSet sparse = newDefinedSet(3, 70000, 140000, 1L << 32);
+    assertThat(CODEC_V4.encode(sparse).length()).isLessThanOrEqualTo(CODEC_V2.encode(sparse).length() + 1);
+    assertIdsEquals(CODEC_V4.decode(KEY, CODEC_V4.encode(sparse)), 3, 70000, 140000, 1L << 32);
+  }
+
+  @Test
+  public void testBitmapSetOperations()
+  {
+    final EntryIDSet evens = decodeAsBitmap(range(0, 65536, 2));
+    final EntryIDSet thirds = decodeAsBitmap(range(0, 65536, 3));
+
+    final EntryIDSet retained = decodeAsBitmap(range(0, 65536, 2));
+    retained.retainAll(thirds);
+    assertThat(retained.toLongArray()).isEqualTo(range(0, 65536, 6));
+
+    final EntryIDSet union = newSetFromUnion(Arrays.asList(evens, thirds));
+    assertThat(union.size()).isEqualTo(32768 + 21846 - 10923);
+    assertThat(union.contains(id(9))).isTrue();
+    assertThat(union.contains(id(7))).isFalse();
+
+    final EntryIDSet removed = decodeAsBitmap(range(0, 65536, 2));
+    removed.removeAll(newDefinedSet(range(0, 65536, 4)));
+    assertThat(removed.toLongArray()).isEqualTo(range(2, 65536, 4));
+
+    removed.addAll(newDefinedSet(1, 3));
+    assertThat(removed.add(id(5))).isTrue();
+    assertThat(removed.add(id(5))).isFalse();
+    assertThat(removed.remove(id(1))).isTrue();
+    assertIdsEquals(removed.iterator(), 2, 3, 5, 6, 10);
+  }
+
+  private static EntryIDSet decodeAsBitmap(long[] ids)
+  {
+    return CODEC_V4.decode(KEY, CODEC_V4.encode(newDefinedSet(ids)));
+  }
+
+  private static long[] range(long from, long to)
+  {
+    return range(from, to, 1);
+  }
+
+  private static long[] range(long from, long to, long step)
+  {
+    final long[] ids = new long[(int) ((to - from + step - 1) / step)];
+    for (int i = 0; i < ids.length; i++)
+    {
+      ids[i] = from + i * step;
+    }
+    return ids;
+  }
+
   @DataProvider(name = "codecs")
   public static Object[][] codecs() {
-     return new Object[][] { { CODEC_V1 }, { CODEC_V2 } };
+     return new Object[][] { { CODEC_V1 }, { CODEC_V2 }, { CODEC_V4 } };
   }
 
 }
@@ -0,0 +1,145 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.backends.pluggable.spi.SequentialCursor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential = true)
+public class EntryIDSorterTest extends DirectoryServerTestCase
+{
+  private static final long LARGE_MEMORY_BUDGET = 64 * 1024 * 1024;
+  private static final long TINY_MEMORY_BUDGET = 1;
+
+  private File tempDir;
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    tempDir = TestCaseUtils.createTemporaryDirectory("entryidsorter");
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    recursiveDelete(tempDir);
+  }
+
+  @Test
+  public void testSortsInMemory() throws Exception
+  {
+    try (EntryIDSorter sorter = new EntryIDSorter("test", tempDir, LARGE_MEMORY_BUDGET, Integer.MAX_VALUE))
+    {
+      addShuffled(sorter, 1000);
+
+      assertThat(sorter.isSpilled()).isFalse();
+      assertThat(sorter.getCount()).isEqualTo(1000);
+      assertThat(readEntryIDs(sorter)).isEqualTo(range(1000));
+    }
+  }
+
+  @Test
+  public void testRetainsOnlyTheFirstEntries() throws Exception
+  {
+    try (EntryIDSorter sorter = new EntryIDSorter("test", tempDir, LARGE_MEMORY_BUDGET, 10))
+    {
+      addShuffled(sorter, 1000);
+
+      assertThat(sorter.isSpilled()).isFalse();
+      assertThat(sorter.getCount()).isEqualTo(1000);
+      assertThat(readEntryIDs(sorter)).isEqualTo(range(10));
+    }
+  }
+
+  @Test
+  public void testMergesSortedRunsWhenMemoryBudgetIsExceeded() throws Exception
+  {
+    // Large enough to fill several sort buffers
+    final int nbEntries = 100000;
+    try (EntryIDSorter sorter = new EntryIDSorter("test", tempDir, TINY_MEMORY_BUDGET, Integer.MAX_VALUE))
+    {
+      addShuffled(sorter, nbEntries);
+
+      assertThat(sorter.isSpilled()).isTrue();
+      assertThat(sorter.getCount()).isEqualTo(nbEntries);
+      assertThat(readEntryIDs(sorter)).isEqualTo(range(nbEntries));
+    }
+    assertThat(tempDir.list()).isEmpty();
+  }
+
+  @Test
+  public void testRetainsOnlyTheFirstEntriesOfSortedRuns() throws Exception
+  {
+    try (EntryIDSorter sorter = new EntryIDSorter("test", tempDir, TINY_MEMORY_BUDGET, 5))
+    {
+      addShuffled(sorter, 1000);
+
+      assertThat(sorter.isSpilled()).isTrue();
+      assertThat(sorter.getCount()).isEqualTo(1000);
+      assertThat(readEntryIDs(sorter)).isEqualTo(range(5));
+    }
+  }
+
+  private static void addShuffled(EntryIDSorter sorter, int nbEntries) throws Exception
+  {
+    final List<Long> entryIDs = range(nbEntries);
+    Collections.shuffle(entryIDs, new Random(0));
+    for (long entryID : entryIDs)
+    {
+      // Sort keys end with the entry ID, as VLV keys do
+      sorter.add(ByteString.valueOfLong(entryID), new EntryID(entryID));
+    }
+  }
+
+  private static List<Long> readEntryIDs(EntryIDSorter sorter)
+  {
+    final List<Long> entryIDs = new ArrayList<>();
+    try (SequentialCursor<ByteString, ByteString> cursor = sorter.openCursor())
+    {
+      while (cursor.next())
+      {
+        assertThat(cursor.getKey()).isEqualTo(cursor.getValue());
+        entryIDs.add(cursor.getValue().toLong());
+      }
+    }
+    return entryIDs;
+  }
+
+  private static List<Long> range(int size)
+  {
+    final List<Long> values = new ArrayList<>(size);
+    for (long i = 0; i < size; i++)
+    {
+      values.add(i);
+    }
+    return values;
+  }
+}
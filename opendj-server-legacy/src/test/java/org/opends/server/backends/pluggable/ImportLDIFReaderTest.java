@@ -0,0 +1,171 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.opendj.ldap.DN;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.backends.pluggable.ImportLDIFReader.EntryInformation;
+import org.opends.server.backends.pluggable.ImportLDIFReader.LDIFChunk;
+import org.opends.server.types.LDIFImportConfig;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend" }, sequential = true)
+public class ImportLDIFReaderTest extends DirectoryServerTestCase
+{
+  private static final DN BASE_DN = DN.valueOf("dc=example,dc=com");
+  /** Enough entries for the LDIF to be cut into several chunks. */
+  private static final int NB_ENTRIES = 10000;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @Test
+  public void testEntryIDsDoNotDependOnTheReadingThreads() throws Exception
+  {
+    final Map<DN, Long> entryIDs = readEntryIDs(newLDIF(), 4);
+
+    assertThat(entryIDs).hasSize(NB_ENTRIES + 1);
+    // The version line and the comments do not consume any entry ID
+    assertThat(entryIDs.get(BASE_DN)).isEqualTo(1L);
+    for (int i = 0; i < NB_ENTRIES; i++)
+    {
+      assertThat(entryIDs.get(DN.valueOf("uid=user." + i + ",dc=example,dc=com"))).isEqualTo(i + 2L);
+    }
+    assertThat(readEntryIDs(newLDIF(), 1)).isEqualTo(entryIDs);
+  }
+
+  @Test
+  public void testSkippedEntriesLeaveGapsInEntryIDs() throws Exception
+  {
+    final String ldif = "dn: dc=example,dc=com\n"
+        + "objectClass: domain\n"
+        + "\n"
+        + "dn: dc=other,dc=com\n"
+        + "objectClass: domain\n"
+        + "\n"
+        + "dn: uid=user,dc=example,dc=com\n"
+        + "objectClass: account\n"
+        + "uid: user\n";
+
+    final Map<DN, Long> entryIDs = readEntryIDs(ldif, 2);
+
+    assertThat(entryIDs).hasSize(2);
+    assertThat(entryIDs.get(BASE_DN)).isEqualTo(1L);
+    assertThat(entryIDs.get(DN.valueOf("uid=user,dc=example,dc=com"))).isEqualTo(3L);
+  }
+
+  private String newLDIF()
+  {
+    final StringBuilder ldif = new StringBuilder("version: 1\n\n");
+    ldif.append("dn: dc=example,dc=com\n")
+        .append("objectClass: top\n")
+        .append("objectClass: domain\n")
+        .append("dc: example\n\n");
+    for (int i = 0; i < NB_ENTRIES; i++)
+    {
+      ldif.append("# entry ").append(i).append("\n")
+          .append("dn: uid=user.").append(i).append(",dc=example,dc=com\n")
+          .append("objectClass: top\n")
+          .append("objectClass: person\n")
+          .append("objectClass: organizationalPerson\n")
+          .append("objectClass: inetOrgPerson\n")
+          .append("uid: user.").append(i).append("\n")
+          .append("cn: User ").append(i).append("\n")
+          .append("sn: ").append(i).append("\n")
+          .append("description: a description long enough to be folded on several lines so that the reader has\n")
+          .append("  to join the continuation lines of the entries\n\n");
+    }
+    return ldif.toString();
+  }
+
+  private Map<DN, Long> readEntryIDs(String ldif, int nbThreads) throws Exception
+  {
+    final AtomicLong nextEntryID = new AtomicLong(1);
+    final RootContainer rootContainer = mock(RootContainer.class);
+    when(rootContainer.getNextEntryIDs(anyInt())).thenAnswer(new Answer<EntryID>()
+    {
+      @Override
+      public EntryID answer(InvocationOnMock invocation) throws Throwable
+      {
+        return new EntryID(nextEntryID.getAndAdd((Integer) invocation.getArguments()[0]));
+      }
+    });
+    final Map<DN, EntryContainer> entryContainers = Collections.singletonMap(BASE_DN, mock(EntryContainer.class));
+    final Map<DN, Long> entryIDs = new ConcurrentHashMap<>();
+
+    final LDIFImportConfig importConfig = new LDIFImportConfig(new StringReader(ldif));
+    importConfig.setValidateSchema(false);
+    final ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+    try (final ImportLDIFReader reader = new ImportLDIFReader(importConfig, rootContainer))
+    {
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < nbThreads; i++)
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            LDIFChunk chunk;
+            while ((chunk = reader.nextChunk()) != null)
+            {
+              EntryInformation entryInfo;
+              while ((entryInfo = reader.readEntry(chunk, entryContainers)) != null)
+              {
+                entryIDs.put(entryInfo.getEntry().getName(), entryInfo.getEntryID().longValue());
+                reader.removePending(entryInfo.getEntry().getName());
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures)
+      {
+        future.get();
+      }
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+    return entryIDs;
+  }
+}
@@ -77,6 +77,7 @@ import org.opends.server.backends.pluggable.OnDiskMergeImporter.ExternalSortChun
 import org.opends.server.backends.pluggable.OnDiskMergeImporter.ExternalSortChunk.FileRegion;
 import org.opends.server.backends.pluggable.OnDiskMergeImporter.ExternalSortChunk.InMemorySortedChunk;
 import org.opends.server.backends.pluggable.OnDiskMergeImporter.MeteredCursor;
+import org.opends.server.backends.pluggable.OnDiskMergeImporter.ImportCheckpoint;
 import org.opends.server.backends.pluggable.OnDiskMergeImporter.StrategyImpl;
 import org.opends.server.backends.pluggable.OnDiskMergeImporter.UniqueValueCollector;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
@@ -296,7 +297,8 @@ public class OnDiskMergeImporterTest extends DirectoryServerTestCase
     // When
     try
     {
-      toPairs(new DnValidationCursorDecorator(source, id2entry, mock(ReadableTransaction.class)));
+      toPairs(new DnValidationCursorDecorator(
+          source, mock(DN2ID.class), id2entry, mock(ReadableTransaction.class)));
       fail("Exception expected");
       return null;
     }
@@ -598,6 +600,50 @@ public class OnDiskMergeImporterTest extends DirectoryServerTestCase
     }
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testExternalSortChunkResumedFromSortedFile() throws Exception
+  {
+    final int NB_REGION = 10;
+    final ByteString KEY = ByteString.valueOfUtf8("key");
+    final TreeName treeName = new TreeName("dc=example,dc=com", "test");
+    final File tempDir = TestCaseUtils.createTemporaryDirectory("testExternalSortChunkResumedFromSortedFile");
+    try (final BufferPool bufferPool = new BufferPool(2, 4 + 4 + KEY.length() + 4 + 4, false))
+    {
+      final ExternalSortChunk chunk =
+          new ExternalSortChunk(tempDir, "test", bufferPool, StringConcatCollector.INSTANCE,
+              StringConcatCollector.INSTANCE, new ForkJoinPool());
+      List<ByteString> expected = new ArrayList<>(NB_REGION);
+      for (int i = 0; i < NB_REGION; i++)
+      {
+        final ByteString value = ByteString.valueOfUtf8(String.format("%02d", i));
+        chunk.put(KEY, value);
+        expected.add(value);
+      }
+
+      final ImportCheckpoint checkpoint = new ImportCheckpoint(tempDir, "fingerprint", null);
+      checkpoint.addSortedTree(treeName, chunk.sortAndSync());
+      checkpoint.save();
+
+      assertThat(ImportCheckpoint.load(tempDir, "other fingerprint")).isNull();
+      final ImportCheckpoint loaded = ImportCheckpoint.load(tempDir, "fingerprint");
+      assertThat(loaded).isNotNull();
+      assertThat(loaded.isResumed()).isTrue();
+      assertThat(loaded.getRemainingTrees()).isEqualTo(1);
+
+      final ExternalSortChunk resumed = new ExternalSortChunk(tempDir, "test", loaded.sortedTrees.get(treeName),
+          StringConcatCollector.INSTANCE);
+      try (final SequentialCursor<ByteString, ByteString> cursor = resumed.flip())
+      {
+        assertThat(toPairs(cursor)).containsExactly(Pair.of(KEY, StringConcatCollector.INSTANCE.merge(expected)));
+      }
+
+      loaded.addMergedTree(treeName);
+      loaded.save();
+      assertThat(ImportCheckpoint.load(tempDir, "fingerprint").getRemainingTrees()).isEqualTo(0);
+    }
+  }
+
   private final static List<Pair<ByteString, ByteString>> content(String[]... data)
   {
     final List<Pair<ByteString, ByteString>> content = new ArrayList<>(data.length);
@@ -0,0 +1,177 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DN;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.api.EntryCache;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential = true)
+public class ParallelEntryFilterTest extends DirectoryServerTestCase
+{
+  private static final int NB_ENTRIES = 1000;
+
+  private final List<Entry> entries = new ArrayList<>();
+  private final List<DN> expectedMatches = new ArrayList<>();
+  private ExecutorService executor;
+
+  @BeforeClass
+  public void createEntries() throws Exception
+  {
+    TestCaseUtils.startServer();
+    for (int i = 0; i < NB_ENTRIES; i++)
+    {
+      final boolean matches = i % 3 == 0;
+      entries.add(TestCaseUtils.makeEntry(
+          "dn: cn=entry." + i + ",o=test",
+          "objectClass: top",
+          "objectClass: device",
+          "cn: entry." + i,
+          "description: " + (matches ? "match" : "no match")));
+      if (matches)
+      {
+        expectedMatches.add(entries.get(i).getName());
+      }
+    }
+  }
+
+  @BeforeMethod
+  public void createExecutor()
+  {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterMethod
+  public void shutdownExecutor()
+  {
+    executor.shutdownNow();
+  }
+
+  private ParallelEntryFilter newEntryFilter() throws Exception
+  {
+    return new ParallelEntryFilter(executor, 4, null, mock(EntryCache.class), "userRoot",
+        SearchFilter.createFilterFromString("(description=match)"), false);
+  }
+
+  /** Adds the entries like a search does, returning the matches available after each candidate. */
+  private List<DN> filter(ParallelEntryFilter entryFilter, int from, int to) throws Exception
+  {
+    final List<DN> matches = new ArrayList<>();
+    for (int i = from; i < to; i++)
+    {
+      entryFilter.add(new EntryID(i + 1), ByteString.valueOfUtf8("cookie." + i), entries.get(i), null);
+      ParallelEntryFilter.Match match;
+      while ((match = entryFilter.next(false)) != null)
+      {
+        matches.add(match.getEntry().getName());
+      }
+    }
+    return matches;
+  }
+
+  private static List<DN> waitForAll(ParallelEntryFilter entryFilter) throws Exception
+  {
+    final List<DN> matches = new ArrayList<>();
+    entryFilter.flush();
+    ParallelEntryFilter.Match match;
+    while ((match = entryFilter.next(true)) != null)
+    {
+      matches.add(match.getEntry().getName());
+    }
+    return matches;
+  }
+
+  @Test
+  public void testMatchesAreReturnedInCandidateOrder() throws Exception
+  {
+    try (ParallelEntryFilter entryFilter = newEntryFilter())
+    {
+      final List<DN> matches = filter(entryFilter, 0, NB_ENTRIES);
+      matches.addAll(waitForAll(entryFilter));
+
+      assertThat(matches).isEqualTo(expectedMatches);
+    }
+  }
+
+  @Test
+  public void testMatchesKeepTheirCookie() throws Exception
+  {
+    try (ParallelEntryFilter entryFilter = newEntryFilter())
+    {
+      filter(entryFilter, 0, 3);
+      entryFilter.flush();
+      final ParallelEntryFilter.Match match = entryFilter.next(true);
+
+      assertThat(match.getCookie()).isEqualTo(ByteString.valueOfUtf8("cookie.0"));
+      assertThat(entryFilter.next(true)).isNull();
+    }
+  }
+
+  @Test
+  public void testBatchesRejectedByAShutDownPoolAreProcessedByTheSearchThread() throws Exception
+  {
+    executor.shutdown();
+    try (ParallelEntryFilter entryFilter = newEntryFilter())
+    {
+      final List<DN> matches = filter(entryFilter, 0, NB_ENTRIES);
+      matches.addAll(waitForAll(entryFilter));
+
+      assertThat(matches).isEqualTo(expectedMatches);
+    }
+  }
+
+  @Test
+  public void testPoolShutDownWithBatchesInFlight() throws Exception
+  {
+    try (ParallelEntryFilter entryFilter = newEntryFilter())
+    {
+      final List<DN> matches = filter(entryFilter, 0, NB_ENTRIES / 2);
+      // The batches already submitted are still processed by the pool, the next ones are rejected
+      executor.shutdown();
+      matches.addAll(filter(entryFilter, NB_ENTRIES / 2, NB_ENTRIES));
+      matches.addAll(waitForAll(entryFilter));
+
+      assertThat(matches).isEqualTo(expectedMatches);
+    }
+  }
+
+  @Test
+  public void testCloseDiscardsTheBatchesInFlight() throws Exception
+  {
+    final ParallelEntryFilter entryFilter = newEntryFilter();
+    filter(entryFilter, 0, NB_ENTRIES);
+    entryFilter.close();
+
+    assertThat(entryFilter.next(true)).isNull();
+  }
+}
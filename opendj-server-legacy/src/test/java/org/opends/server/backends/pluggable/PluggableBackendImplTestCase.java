@@ -17,6 +17,7 @@ package org.opends.server.backends.pluggable;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.forgerock.opendj.ldap.ModificationType.*;
+import static org.mockito.AdditionalAnswers.*;
 import static org.mockito.Mockito.*;
 import static org.opends.server.protocols.internal.InternalClientConnection.getRootConnection;
 import static org.opends.server.protocols.internal.Requests.newSearchRequest;
@@ -36,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.DN;
@@ -58,7 +60,9 @@ import org.opends.server.api.LocalBackend.BackendOperation;
 import org.opends.server.backends.RebuildConfig;
 import org.opends.server.backends.RebuildConfig.RebuildMode;
 import org.opends.server.backends.VerifyConfig;
+import org.opends.server.backends.pluggable.AttributeIndex.MatchingRuleIndex;
 import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
 import org.opends.server.backends.pluggable.spi.ReadOperation;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
@@ -66,6 +70,7 @@ import org.opends.server.backends.pluggable.spi.Storage;
 import org.opends.server.backends.pluggable.spi.TreeName;
 import org.opends.server.backends.pluggable.spi.WriteOperation;
 import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.controls.PagedResultsControl;
 import org.opends.server.core.AddOperation;
 import org.opends.server.core.DeleteOperation;
 import org.opends.server.core.ModifyDNOperation;
@@ -73,18 +78,25 @@ import org.opends.server.core.ModifyOperation;
 import org.opends.server.core.SearchOperation;
 import org.opends.server.core.ServerContext;
 import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.protocols.internal.InternalSearchListener;
 import org.opends.server.protocols.internal.InternalSearchOperation;
 import org.opends.server.protocols.internal.SearchRequest;
 import org.opends.server.types.BackupConfig;
 import org.opends.server.types.BackupDirectory;
+import org.opends.server.types.CancelRequest;
+import org.opends.server.types.CanceledOperationException;
+import org.opends.server.types.Control;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.LDIFExportConfig;
 import org.opends.server.types.LDIFImportConfig;
 import org.opends.server.types.Modification;
+import org.opends.server.types.Operation;
+import org.opends.server.types.Privilege;
 import org.opends.server.types.RestoreConfig;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.SearchResultEntry;
+import org.opends.server.types.SearchResultReference;
 import org.opends.server.workflowelement.localbackend.LocalBackendSearchOperation;
 import org.testng.Reporter;
 import org.testng.annotations.AfterClass;
@@ -99,6 +111,7 @@ import org.testng.annotations.Test;
 @Test(groups = { "precommit", "pluggablebackend" }, sequential = true)
 public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg> extends DirectoryServerTestCase
 {
+  private C cfg;
   private BackendImpl<C> backend;
   private List<Entry> topEntries;
   private List<Entry> entries;
@@ -181,6 +194,7 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     when(vlvIndexCfg.getSortOrder()).thenReturn("sn -employeeNumber +uid");
     when(backendCfg.getBackendVLVIndex(backendVlvIndexes[0])).thenReturn(vlvIndexCfg);
 
+    cfg = backendCfg;
     backend = createBackend();
     backend.setBackendID(backendCfg.getBackendId());
     backend.configureBackend(backendCfg, TestCaseUtils.getServerContext());
@@ -925,6 +939,353 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     }
   }
 
+  /** Enough entries for the parallel export to have several batches in flight. */
+  private static final int NB_PARALLEL_EXPORT_ENTRIES = 1500;
+
+  @Test
+  public void testParallelExportLDIFKeepsEntryOrder() throws Exception
+  {
+    DN baseDN = DN.valueOf("ou=Export," + testBaseDN);
+    List<Entry> newEntries = new ArrayList<>();
+    newEntries.add(TestCaseUtils.makeEntry(
+        "dn: " + baseDN,
+        "objectClass: top",
+        "objectClass: organizationalUnit",
+        "ou: Export"));
+    for (int i = 0; i < NB_PARALLEL_EXPORT_ENTRIES; i++)
+    {
+      newEntries.add(TestCaseUtils.makeEntry(
+          "dn: uid=export." + i + "," + baseDN,
+          "objectClass: top",
+          "objectClass: person",
+          "objectClass: organizationalPerson",
+          "objectClass: inetOrgPerson",
+          "uid: export." + i,
+          "cn: Export " + i,
+          "sn: Export"));
+    }
+    addEntriesToBackend(newEntries);
+    try
+    {
+      String ldif = exportLDIF(4);
+      assertThat(ldif).isEqualTo(exportLDIF(1));
+      // Entries are exported in the order of their IDs, which is the order they were added in
+      assertThat(getExportedNames(ldif, baseDN)).isEqualTo(getNames(newEntries));
+    }
+    finally
+    {
+      DeleteOperation op = mock(DeleteOperation.class);
+      for (int i = NB_PARALLEL_EXPORT_ENTRIES; i > 0; i--)
+      {
+        backend.deleteEntry(newEntries.get(i).getName(), op);
+      }
+      backend.deleteEntry(baseDN, op);
+    }
+  }
+
+  private static List<DN> getExportedNames(String ldif, DN baseDN)
+  {
+    List<DN> names = new ArrayList<>();
+    for (String line : ldif.split("\\r?\\n"))
+    {
+      if (line.startsWith("dn: "))
+      {
+        DN name = DN.valueOf(line.substring("dn: ".length()));
+        if (name.isSubordinateOrEqualTo(baseDN))
+        {
+          names.add(name);
+        }
+      }
+    }
+    return names;
+  }
+
+  private String exportLDIF(int threadCount) throws Exception
+  {
+    ByteArrayOutputStream ldifOutputContent = new ByteArrayOutputStream();
+    try (final LDIFExportConfig exportConfig = new LDIFExportConfig(ldifOutputContent))
+    {
+      exportConfig.setIncludeOperationalAttributes(true);
+      exportConfig.setThreadCount(threadCount);
+      backend.exportLDIF(exportConfig);
+    }
+    return ldifOutputContent.toString();
+  }
+
+  @DataProvider
+  protected Object[][] unindexedSearchParallelism()
+  {
+    return new Object[][] { { 1 }, { 4 } };
+  }
+
+  /** Enough entries for the parallel unindexed searches to have several batches in flight. */
+  private static final int NB_UNINDEXED_SEARCH_ENTRIES = 300;
+
+  private DN addUnindexedSearchEntries() throws Exception
+  {
+    DN baseDN = DN.valueOf("ou=Unindexed," + testBaseDN);
+    List<Entry> newEntries = new ArrayList<>();
+    newEntries.add(TestCaseUtils.makeEntry(
+        "dn: " + baseDN,
+        "objectClass: top",
+        "objectClass: organizationalUnit",
+        "ou: Unindexed"));
+    for (int i = 0; i < NB_UNINDEXED_SEARCH_ENTRIES; i++)
+    {
+      newEntries.add(TestCaseUtils.makeEntry(
+          "dn: uid=unindexed." + i + "," + baseDN,
+          "objectClass: top",
+          "objectClass: person",
+          "objectClass: organizationalPerson",
+          "objectClass: inetOrgPerson",
+          "uid: unindexed." + i,
+          "cn: Unindexed " + i,
+          "sn: Unindexed",
+          // description is not indexed
+          "description: " + (i % 2 == 0 ? "even" : "odd")));
+    }
+    addEntriesToBackend(newEntries);
+    return baseDN;
+  }
+
+  private void deleteUnindexedSearchEntries(DN baseDN) throws Exception
+  {
+    DeleteOperation op = mock(DeleteOperation.class);
+    for (int i = 0; i < NB_UNINDEXED_SEARCH_ENTRIES; i++)
+    {
+      backend.deleteEntry(DN.valueOf("uid=unindexed." + i + "," + baseDN), op);
+    }
+    backend.deleteEntry(baseDN, op);
+  }
+
+  private InternalSearchOperation runUnindexedSearch(int parallelism, ClientConnection connection,
+      SearchRequest request, InternalSearchListener listener) throws Exception
+  {
+    when(cfg.getUnindexedSearchParallelism()).thenReturn(parallelism);
+    InternalSearchOperation search = new InternalSearchOperation(connection, -1, -1, request, listener);
+    backend.search(new LocalBackendSearchOperation(search));
+    return search;
+  }
+
+  private static List<DN> getNames(List<? extends Entry> entries)
+  {
+    List<DN> names = new ArrayList<>();
+    for (Entry entry : entries)
+    {
+      names.add(entry.getName());
+    }
+    return names;
+  }
+
+  @Test(dataProvider = "unindexedSearchParallelism")
+  public void testUnindexedSearchReturnsEntriesInDNOrder(int parallelism) throws Exception
+  {
+    DN baseDN = addUnindexedSearchEntries();
+    try
+    {
+      SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, "(description=even)");
+      List<DN> expected = getNames(runUnindexedSearch(1, getRootConnection(), request, null).getSearchEntries());
+      InternalSearchOperation search = runUnindexedSearch(parallelism, getRootConnection(), request, null);
+
+      assertThat(expected).hasSize(NB_UNINDEXED_SEARCH_ENTRIES / 2);
+      assertThat(getNames(search.getSearchEntries())).isEqualTo(expected);
+      assertThat(search.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+    }
+    finally
+    {
+      deleteUnindexedSearchEntries(baseDN);
+    }
+  }
+
+  @Test(dataProvider = "unindexedSearchParallelism")
+  public void testUnindexedSearchPagedResultsCookies(int parallelism) throws Exception
+  {
+    DN baseDN = addUnindexedSearchEntries();
+    try
+    {
+      assertThat(runPagedUnindexedSearch(parallelism, baseDN)).isEqualTo(runPagedUnindexedSearch(1, baseDN));
+    }
+    finally
+    {
+      deleteUnindexedSearchEntries(baseDN);
+    }
+  }
+
+  /** Returns the names of the entries of each page, each followed by the cookie returned with the page. */
+  private List<Object> runPagedUnindexedSearch(int parallelism, DN baseDN) throws Exception
+  {
+    List<Object> pages = new ArrayList<>();
+    ByteString cookie = ByteString.empty();
+    do
+    {
+      SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, "(description=even)")
+          .addControl(new PagedResultsControl(true, 20, cookie));
+      InternalSearchOperation search = runUnindexedSearch(parallelism, getRootConnection(), request, null);
+      cookie = null;
+      for (Control control : search.getResponseControls())
+      {
+        if (control instanceof PagedResultsControl)
+        {
+          cookie = ((PagedResultsControl) control).getCookie();
+        }
+      }
+      assertNotNull(cookie, "The paged results response control is missing");
+      pages.add(getNames(search.getSearchEntries()));
+      pages.add(cookie);
+    }
+    while (cookie.length() > 0);
+    return pages;
+  }
+
+  @Test(dataProvider = "unindexedSearchParallelism")
+  public void testUnindexedSearchLookthroughLimit(int parallelism) throws Exception
+  {
+    DN baseDN = addUnindexedSearchEntries();
+    try
+    {
+      SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, "(description=even)");
+      List<DN> expected = new ArrayList<>();
+      runUnindexedSearch(1, newUnindexedSearchConnection(100, expected), request, null);
+      List<DN> returned = new ArrayList<>();
+      InternalSearchOperation search =
+          runUnindexedSearch(parallelism, newUnindexedSearchConnection(100, returned), request, null);
+
+      assertThat(search.getResultCode()).isEqualTo(ResultCode.ADMIN_LIMIT_EXCEEDED);
+      assertThat(expected).isNotEmpty().hasSize(search.getEntriesSent());
+      assertThat(returned).isEqualTo(expected);
+    }
+    finally
+    {
+      deleteUnindexedSearchEntries(baseDN);
+    }
+  }
+
+  /** Returns a connection allowed to perform unindexed searches, collecting the names of the returned entries. */
+  private ClientConnection newUnindexedSearchConnection(int lookthroughLimit, final List<DN> returnedEntries)
+  {
+    ClientConnection connection = new ClientConnectionStub()
+    {
+      @Override
+      public boolean hasPrivilege(Privilege privilege, Operation operation)
+      {
+        return true;
+      }
+
+      @Override
+      public void sendSearchEntry(SearchOperation searchOperation, SearchResultEntry searchEntry)
+      {
+        returnedEntries.add(searchEntry.getName());
+      }
+    };
+    connection.setLookthroughLimit(lookthroughLimit);
+    return connection;
+  }
+
+  @Test(dataProvider = "unindexedSearchParallelism")
+  public void testUnindexedSearchSizeLimit(int parallelism) throws Exception
+  {
+    DN baseDN = addUnindexedSearchEntries();
+    try
+    {
+      SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, "(description=even)");
+      List<DN> expected = getNames(runUnindexedSearch(1, getRootConnection(), request, null).getSearchEntries());
+      request.setSizeLimit(10);
+      InternalSearchOperation search = runUnindexedSearch(parallelism, getRootConnection(), request, null);
+
+      assertThat(search.getResultCode()).isEqualTo(ResultCode.SIZE_LIMIT_EXCEEDED);
+      assertThat(getNames(search.getSearchEntries())).isEqualTo(expected.subList(0, 10));
+    }
+    finally
+    {
+      deleteUnindexedSearchEntries(baseDN);
+    }
+  }
+
+  @Test(dataProvider = "unindexedSearchParallelism")
+  public void testUnindexedSearchCancel(int parallelism) throws Exception
+  {
+    DN baseDN = addUnindexedSearchEntries();
+    try
+    {
+      final List<DN> returned = new ArrayList<>();
+      InternalSearchListener cancellingListener = new InternalSearchListener()
+      {
+        @Override
+        public void handleInternalSearchEntry(InternalSearchOperation searchOperation, SearchResultEntry searchEntry)
+        {
+          returned.add(searchEntry.getName());
+          if (returned.size() == 5)
+          {
+            searchOperation.abort(new CancelRequest(false, LocalizableMessage.raw("testUnindexedSearchCancel")));
+          }
+        }
+
+        @Override
+        public void handleInternalSearchReference(InternalSearchOperation searchOperation,
+            SearchResultReference searchReference)
+        {
+          // No referrals
+        }
+      };
+      SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, "(description=even)");
+      try
+      {
+        runUnindexedSearch(parallelism, getRootConnection(), request, cancellingListener);
+        fail("The search should have been cancelled");
+      }
+      catch (CanceledOperationException expected)
+      {
+        // The search stops as soon as it is cancelled, even with more entries already filtered
+        assertThat(returned).hasSize(5);
+      }
+    }
+    finally
+    {
+      deleteUnindexedSearchEntries(baseDN);
+    }
+  }
+
+  /** The reconfiguration of the parallelism shuts down the pool, the searches in progress must still complete. */
+  @Test
+  public void testUnindexedSearchWhileParallelismIsReconfigured() throws Exception
+  {
+    DN baseDN = addUnindexedSearchEntries();
+    try
+    {
+      final SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, "(description=even)");
+      List<DN> expected = getNames(runUnindexedSearch(1, getRootConnection(), request, null).getSearchEntries());
+      final List<DN> returned = new ArrayList<>();
+      InternalSearchListener reconfiguringListener = new InternalSearchListener()
+      {
+        @Override
+        public void handleInternalSearchEntry(InternalSearchOperation searchOperation, SearchResultEntry searchEntry)
+        {
+          returned.add(searchEntry.getName());
+          if (returned.size() == 1)
+          {
+            // Shuts down the pool used by this search: the next batches are processed by the search thread
+            when(cfg.getUnindexedSearchParallelism()).thenReturn(2);
+            backend.getRootContainer().getSearchExecutor();
+          }
+        }
+
+        @Override
+        public void handleInternalSearchReference(InternalSearchOperation searchOperation,
+            SearchResultReference searchReference)
+        {
+          // No referrals
+        }
+      };
+      runUnindexedSearch(4, getRootConnection(), request, reconfiguringListener);
+
+      assertThat(returned).isEqualTo(expected);
+    }
+    finally
+    {
+      deleteUnindexedSearchEntries(baseDN);
+    }
+  }
+
   @Test
   public void testExportLDIFAndImportLDIF() throws Exception
   {
@@ -1100,6 +1461,227 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     assertThat(backend.verifyBackend(config)).isEqualTo(0);
   }
 
+  /** Enough entries for the online rebuild to index them in several batches. */
+  private static final int NB_ONLINE_REBUILD_ENTRIES = 150;
+
+  @Test
+  public void testOnlineRebuildWithConcurrentChanges() throws Exception
+  {
+    final List<Entry> rebuildEntries = new ArrayList<>();
+    for (int i = 0; i < NB_ONLINE_REBUILD_ENTRIES; i++)
+    {
+      rebuildEntries.add(newOnlineRebuildEntry(i, "Initial"));
+    }
+    addEntriesToBackend(rebuildEntries);
+    try
+    {
+      final EntryContainer entryContainer = backend.getRootContainer().getEntryContainers().iterator().next();
+      final List<MatchingRuleIndex> indexes = getIndexes(entryContainer, "sn", "uid");
+      final ChangesDuringOnlineRebuild changes = new ChangesDuringOnlineRebuild(
+          backend.getRootContainer().getStorage(), indexes);
+      final Storage rebuildStorage = mock(Storage.class, delegatesTo(backend.getRootContainer().getStorage()));
+      doAnswer(changes).when(rebuildStorage).read(any(ReadOperation.class));
+      doAnswer(changes).when(rebuildStorage).write(any(WriteOperation.class));
+
+      new OnlineIndexRebuilder(entryContainer, rebuildStorage, indexes, 1000, NB_ONLINE_REBUILD_ENTRIES).rebuild();
+
+      assertTrue(changes.changedDuringScan);
+      assertTrue(changes.changedDuringReconciliation);
+      for (MatchingRuleIndex index : indexes)
+      {
+        assertTrue(index.isTrusted());
+        assertThat((Object) index.getRecordsTreeName()).isNotEqualTo(index.getName());
+      }
+      final Map<String, Map<ByteString, String>> onlineRebuiltIndexes = dumpIndexes("sn", "uid");
+
+      // The rebuilt trees are still used once the backend is reopened
+      backend.closeBackend();
+      backend.openBackend();
+      assertThat(dumpIndexes("sn", "uid")).isEqualTo(onlineRebuiltIndexes);
+
+      RebuildConfig rebuildConf = new RebuildConfig();
+      rebuildConf.setBaseDN(testBaseDN);
+      rebuildConf.setRebuildMode(RebuildMode.ALL);
+      backend.closeBackend();
+      backend.rebuildBackend(rebuildConf, TestCaseUtils.getServerContext());
+      backend.openBackend();
+
+      assertThat(dumpIndexes("sn", "uid")).isEqualTo(onlineRebuiltIndexes);
+    }
+    finally
+    {
+      for (int i = 0; i < NB_ONLINE_REBUILD_ENTRIES + 2; i++)
+      {
+        final DN dn = newOnlineRebuildEntry(i, "Initial").getName();
+        if (backend.getEntry(dn) != null)
+        {
+          backend.deleteEntry(dn, mock(DeleteOperation.class));
+        }
+      }
+    }
+  }
+
+  private Entry newOnlineRebuildEntry(int i, String sn) throws Exception
+  {
+    return TestCaseUtils.makeEntry(
+        "dn: uid=rebuild." + i + ",ou=People," + testBaseDN,
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: rebuild." + i,
+        "cn: Rebuild " + i,
+        "sn: " + sn);
+  }
+
+  private void replaceSN(int i, String sn) throws Exception
+  {
+    final Entry oldEntry = backend.getEntry(newOnlineRebuildEntry(i, sn).getName());
+    final Entry newEntry = oldEntry.duplicate(false);
+    final List<Modification> mods = Arrays.asList(new Modification(REPLACE, create("sn", sn)));
+    newEntry.applyModifications(mods);
+
+    ModifyOperation modifyOp = mock(ModifyOperation.class);
+    when(modifyOp.getModifications()).thenReturn(mods);
+    backend.replaceEntry(oldEntry, newEntry, modifyOp);
+  }
+
+  private void deleteOnlineRebuildEntry(int i) throws Exception
+  {
+    backend.deleteEntry(newOnlineRebuildEntry(i, "Initial").getName(), mock(DeleteOperation.class));
+  }
+
+  private static List<MatchingRuleIndex> getIndexes(EntryContainer entryContainer, String... attributeNames)
+  {
+    final List<String> names = Arrays.asList(attributeNames);
+    final List<MatchingRuleIndex> indexes = new ArrayList<>();
+    for (AttributeIndex attribute : entryContainer.getAttributeIndexes())
+    {
+      if (names.contains(attribute.getAttributeType().getNameOrOID()))
+      {
+        indexes.addAll(attribute.getNameToIndexes().values());
+      }
+    }
+    return indexes;
+  }
+
+  /** Returns the entry IDs of each key of the indexes of the provided attributes. */
+  private Map<String, Map<ByteString, String>> dumpIndexes(final String... attributeNames) throws Exception
+  {
+    final EntryContainer entryContainer = backend.getRootContainer().getEntryContainers().iterator().next();
+    return backend.getRootContainer().getStorage().read(new ReadOperation<Map<String, Map<ByteString, String>>>()
+    {
+      @Override
+      public Map<String, Map<ByteString, String>> run(ReadableTransaction txn) throws Exception
+      {
+        final Map<String, Map<ByteString, String>> indexes = new HashMap<>();
+        for (MatchingRuleIndex index : getIndexes(entryContainer, attributeNames))
+        {
+          final Map<ByteString, String> records = new HashMap<>();
+          try (Cursor<ByteString, EntryIDSet> cursor = index.openCursor(txn))
+          {
+            while (cursor.next())
+            {
+              records.put(cursor.getKey(), Arrays.toString(cursor.getValue().toLongArray()));
+            }
+          }
+          indexes.put(index.getName().getIndexId(), records);
+        }
+        return indexes;
+      }
+    });
+  }
+
+  /**
+   * Decorates the storage used by an online rebuild in order to change entries while it is in progress: once the
+   * first batch of entries has been indexed, then once all the entries have been indexed and the first concurrent
+   * changes have been reconciled.
+   */
+  private final class ChangesDuringOnlineRebuild implements Answer<Object>
+  {
+    private final Storage storage;
+    private final List<MatchingRuleIndex> indexes;
+    /** Number of entries returned by the last read, or -1 if the last operation was a write. */
+    private long nbEntriesLastRead = -1;
+    private boolean changedDuringScan;
+    private boolean changedDuringReconciliation;
+
+    private ChangesDuringOnlineRebuild(Storage storage, List<MatchingRuleIndex> indexes)
+    {
+      this.storage = storage;
+      this.indexes = indexes;
+    }
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable
+    {
+      final Object operation = invocation.getArguments()[0];
+      if (operation instanceof ReadOperation)
+      {
+        // The rebuild reads the entries in batches, returning the last entry ID read and the number of entries read
+        final long[] lastAndCount = (long[]) storage.read((ReadOperation<?>) operation);
+        nbEntriesLastRead = lastAndCount[1];
+        return lastAndCount;
+      }
+
+      storage.write((WriteOperation) operation);
+      if (nbEntriesLastRead > 0 && !changedDuringScan)
+      {
+        changedDuringScan = true;
+        assertIndexesStillInUse();
+        replaceSN(0, "Scanned");
+        deleteOnlineRebuildEntry(1);
+        replaceSN(NB_ONLINE_REBUILD_ENTRIES - 1, "Unscanned");
+        deleteOnlineRebuildEntry(NB_ONLINE_REBUILD_ENTRIES - 2);
+        addEntriesToBackend(Arrays.asList(newOnlineRebuildEntry(NB_ONLINE_REBUILD_ENTRIES, "Added")));
+      }
+      else if (nbEntriesLastRead == 0 && !changedDuringReconciliation)
+      {
+        changedDuringReconciliation = true;
+        assertIndexesStillInUse();
+        replaceSN(0, "Reconciled");
+        replaceSN(2, "Reconciled");
+        deleteOnlineRebuildEntry(3);
+        addEntriesToBackend(Arrays.asList(newOnlineRebuildEntry(NB_ONLINE_REBUILD_ENTRIES + 1, "Added")));
+        replaceSN(NB_ONLINE_REBUILD_ENTRIES + 1, "Reconciled");
+      }
+      nbEntriesLastRead = -1;
+      return null;
+    }
+
+    private void assertIndexesStillInUse()
+    {
+      for (MatchingRuleIndex index : indexes)
+      {
+        assertTrue(index.isTrusted());
+        assertEquals(index.getRecordsTreeName(), index.getName());
+      }
+    }
+  }
+
+  @Test
+  public void testParallelVerify() throws Exception
+  {
+    VerifyConfig config = new VerifyConfig();
+    config.setBaseDN(DN.valueOf("dc=test,dc=com"));
+    config.setThreadCount(4);
+    config.addCompleteIndex("dn2id");
+    for (String indexName : backendIndexes.keySet())
+    {
+      config.addCompleteIndex(indexName);
+    }
+    assertThat(backend.verifyBackend(config)).isEqualTo(0);
+
+    for (String indexName : backendIndexes.keySet())
+    {
+      config = new VerifyConfig();
+      config.setBaseDN(DN.valueOf("dc=test,dc=com"));
+      config.setThreadCount(4);
+      config.addCleanIndex(indexName);
+      assertThat(backend.verifyBackend(config)).isEqualTo(0);
+    }
+  }
+
   @Test
   public void testVerifyID2ChildrenCount() throws Exception
   {
@@ -1165,7 +1747,7 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     ServerContext serverContext = TestCaseUtils.getServerContext();
     final Storage storage = backend.configureStorage(backendCfg, serverContext);
     final RootContainer readOnlyContainer =
-        new RootContainer(backend.getBackendID(), serverContext, storage, backendCfg);
+        new RootContainer(backend.getBackendID(), serverContext, storage, new StorageMetrics(), backendCfg);
 
     // Put backend offline so that export LDIF open read-only container
     backend.finalizeBackend();
@@ -0,0 +1,167 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.opendj.config.ConfigurationMock.*;
+import static org.mockito.Mockito.*;
+import static org.opends.server.util.CollectionUtils.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.server.PDBBackendCfg;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.backends.pdb.PDBStorage;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.SequentialCursor;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.core.MemoryQuota;
+import org.opends.server.core.ServerContext;
+import org.opends.server.extensions.DiskSpaceMonitor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend" }, sequential = true)
+public class ShardedCounterTest extends DirectoryServerTestCase
+{
+  private final TreeName counterTreeName = new TreeName("base-dn", "counter");
+  private ShardedCounter counter;
+  private PDBStorage storage;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    ServerContext serverContext = mock(ServerContext.class);
+    when(serverContext.getMemoryQuota()).thenReturn(new MemoryQuota());
+    when(serverContext.getDiskSpaceMonitor()).thenReturn(mock(DiskSpaceMonitor.class));
+
+    storage = new PDBStorage(createBackendCfg(), serverContext);
+    storage.open(AccessMode.READ_WRITE);
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        txn.openTree(counterTreeName, true);
+      }
+    });
+    counter = new ShardedCounter(counterTreeName);
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    storage.close();
+    storage.removeStorageFiles();
+  }
+
+  @Test
+  public void testCountersCursorSumsShardsOfConcurrentUpdates() throws Exception
+  {
+    final ExecutorService executor = Executors.newFixedThreadPool(16);
+    for (int i = 0; i < 1024; i++)
+    {
+      final ByteString key = ByteString.valueOfUtf8((i % 2 == 0 ? "a" : "b") + (i % 8));
+      executor.submit(new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception
+        {
+          addCount(key, 1);
+          return null;
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(readCounters(ByteString.valueOfUtf8("a"))).containsExactly(
+        entry(ByteString.valueOfUtf8("a0"), 128L), entry(ByteString.valueOfUtf8("a2"), 128L),
+        entry(ByteString.valueOfUtf8("a4"), 128L), entry(ByteString.valueOfUtf8("a6"), 128L));
+    assertThat(readCounters(ByteString.valueOfUtf8("b7"))).containsExactly(entry(ByteString.valueOfUtf8("b7"), 128L));
+    assertThat(readCounters(ByteString.valueOfUtf8("c"))).isEmpty();
+  }
+
+  private void addCount(final ByteString key, final long delta) throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        counter.addCount(txn, key, delta);
+      }
+    });
+  }
+
+  private Map<ByteString, Long> readCounters(final ByteString keyPrefix) throws Exception
+  {
+    return storage.read(new ReadOperation<Map<ByteString, Long>>()
+    {
+      @Override
+      public Map<ByteString, Long> run(ReadableTransaction txn) throws Exception
+      {
+        final Map<ByteString, Long> counters = new LinkedHashMap<>();
+        try (SequentialCursor<ByteString, Long> cursor = counter.openCountersCursor(txn, keyPrefix))
+        {
+          while (cursor.next())
+          {
+            counters.put(cursor.getKey(), cursor.getValue());
+          }
+        }
+        return counters;
+      }
+    });
+  }
+
+  private PDBBackendCfg createBackendCfg() throws Exception
+  {
+    String homeDirName = "pdb_sharded_counter_test";
+    PDBBackendCfg backendCfg = mockCfg(PDBBackendCfg.class);
+
+    when(backendCfg.getBackendId()).thenReturn("persTest" + homeDirName);
+    when(backendCfg.getDBDirectory()).thenReturn(homeDirName);
+    when(backendCfg.getDBDirectoryPermissions()).thenReturn("755");
+    when(backendCfg.getDBCacheSize()).thenReturn(0L);
+    when(backendCfg.getDBCachePercent()).thenReturn(20);
+    when(backendCfg.getBaseDN()).thenReturn(newTreeSet(DN.valueOf("dc=test,dc=com")));
+    when(backendCfg.dn()).thenReturn(DN.valueOf("dc=test,dc=com"));
+    when(backendCfg.listBackendIndexes()).thenReturn(new String[0]);
+    when(backendCfg.listBackendVLVIndexes()).thenReturn(new String[0]);
+    return backendCfg;
+  }
+}
@@ -168,6 +168,40 @@ public class StateTest extends DirectoryServerTestCase
     assertThat(getFlags()).containsExactly(COMPACTED);
   }
 
+  @Test
+  public void testStatisticsAreNotDefinedByDefault() throws Exception
+  {
+    addFlags(TRUSTED);
+    assertThat(getStatistics()).isNull();
+  }
+
+  @Test
+  public void testStatisticsArePreservedWhenFlagsChange() throws Exception
+  {
+    addFlags(TRUSTED);
+
+    final IndexStatistics statistics = new IndexStatistics();
+    statistics.recordChange(IndexStatistics.NO_KEY, 1);
+    statistics.recordChange(IndexStatistics.NO_KEY, 5);
+    statistics.recordChange(IndexStatistics.NO_KEY, 6);
+    statistics.recordChange(6, IndexStatistics.UNDEFINED);
+    putStatistics(statistics);
+    assertThat(statistics.isModified()).isFalse();
+
+    removeFlags(TRUSTED);
+    addFlags(BITMAP);
+    assertThat(getFlags()).containsExactly(COMPACTED, BITMAP);
+
+    final IndexStatistics readStatistics = getStatistics();
+    assertThat(readStatistics.getKeyCount()).isEqualTo(3);
+    assertThat(readStatistics.getUndefinedKeyCount()).isEqualTo(1);
+    assertThat(readStatistics.getEntryIDCount()).isEqualTo(6);
+    assertThat(readStatistics.getAverageEntryIDsPerKey()).isEqualTo(3);
+    assertThat(readStatistics.getKeyCount(0)).isEqualTo(1);
+    assertThat(readStatistics.getKeyCount(2)).isEqualTo(1);
+    assertThat(readStatistics.toString()).isEqualTo(statistics.toString());
+  }
+
   private PDBBackendCfg createBackendCfg() throws ConfigException, DirectoryException
   {
     String homeDirName = "pdb_test";
@@ -225,6 +259,30 @@ public class StateTest extends DirectoryServerTestCase
     });
   }
 
+  private void putStatistics(final IndexStatistics statistics) throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        state.putIndexStatistics(txn, indexTreeName, statistics);
+      }
+    });
+  }
+
+  private IndexStatistics getStatistics() throws Exception
+  {
+    return storage.read(new ReadOperation<IndexStatistics>()
+    {
+      @Override
+      public IndexStatistics run(ReadableTransaction txn) throws Exception
+      {
+        return state.getIndexStatistics(txn, indexTreeName);
+      }
+    });
+  }
+
   private IndexFlag[] getFlags() throws Exception
   {
     return storage.read(new ReadOperation<IndexFlag[]>()
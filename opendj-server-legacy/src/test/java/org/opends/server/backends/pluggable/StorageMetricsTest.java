@@ -0,0 +1,75 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.backends.pluggable.StorageMetrics.Latencies;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential = true)
+public class StorageMetricsTest extends DirectoryServerTestCase
+{
+  @Test
+  public void testEmptyLatencies()
+  {
+    final Latencies latencies = new Latencies();
+
+    assertThat(latencies.getCount()).isEqualTo(0);
+    assertThat(latencies.getAverageMicros()).isEqualTo(0);
+    assertThat(latencies.getMaxMicros()).isEqualTo(0);
+    assertThat(latencies.getPercentileMicros(99)).isEqualTo(0);
+  }
+
+  @Test
+  public void testLatencies()
+  {
+    final Latencies latencies = new Latencies();
+    for (int i = 0; i < 99; i++)
+    {
+      latencies.record(MICROSECONDS.toNanos(3));
+    }
+    latencies.record(MILLISECONDS.toNanos(10));
+
+    assertThat(latencies.getCount()).isEqualTo(100);
+    assertThat(latencies.getAverageMicros()).isEqualTo((99 * 3 + 10000) / 100);
+    assertThat(latencies.getMaxMicros()).isEqualTo(10000);
+    // 3 microseconds fall in the [2, 4) bucket
+    assertThat(latencies.getPercentileMicros(50)).isEqualTo(4);
+    assertThat(latencies.getPercentileMicros(99)).isEqualTo(4);
+    assertThat(latencies.getPercentileMicros(100)).isEqualTo(10000);
+  }
+
+  @Test
+  public void testTreeMetricsAreSortedByTreeName()
+  {
+    final StorageMetrics metrics = new StorageMetrics();
+    final TreeName id2entry = new TreeName("dc=example,dc=com", "id2entry");
+    final TreeName dn2id = new TreeName("dc=example,dc=com", "dn2id");
+    metrics.get(id2entry).reads.incrementAndGet();
+    metrics.get(dn2id).reads.incrementAndGet();
+    metrics.get(dn2id).reads.incrementAndGet();
+
+    assertThat(metrics.get(dn2id)).isSameAs(metrics.get(dn2id));
+    assertThat(metrics.getTreeMetrics().keySet()).containsExactly(dn2id, id2entry);
+    assertThat(metrics.getTreeMetrics().get(dn2id).reads.get()).isEqualTo(2);
+  }
+}
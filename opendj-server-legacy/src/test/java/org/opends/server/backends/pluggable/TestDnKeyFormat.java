@@ -478,6 +478,52 @@ public class TestDnKeyFormat extends DirectoryServerTestCase {
     }
   }
 
+  /**
+   * Tests the entry encoding and lazy decoding process with the version 3 encoding.
+   *
+   * @throws Exception
+   *           If the test failed unexpectedly.
+   */
+  @Test(dataProvider = "encodeConfigs")
+  public void testEntryToAndFromDatabaseV3Lazily(EntryEncodeConfig config) throws Exception
+  {
+    ensureServerIsUpAndRunning();
+
+    // Convert the test LDIF string to a byte array
+    byte[] originalLDIFBytes = StaticUtils.getBytes(ldifString);
+
+    try (final LDIFReader reader = new LDIFReader(new LDIFImportConfig(new ByteArrayInputStream(originalLDIFBytes))))
+    {
+      Entry entryBefore;
+      while ((entryBefore = reader.readEntry(false)) != null)
+      {
+        ByteStringBuilder bsb = new ByteStringBuilder();
+        entryBefore.encode(bsb, config);
+        Entry entryAfter = Entry.decodeLazily(bsb.toByteString(), DirectoryServer.getDefaultCompressedSchema());
+        if (config.excludeDN())
+        {
+          entryAfter.setDN(entryBefore.getName());
+        }
+
+        // Accessing a single attribute type must not prevent accessing the others
+        for (AttributeType attrType : entryBefore.getUserAttributes().keySet())
+        {
+          assertThat(entryAfter.getAttribute(attrType)).isEqualTo(entryBefore.getAttribute(attrType));
+          break;
+        }
+        assertEquals(entryBefore, entryAfter);
+
+        // Lazily decoded entries can be modified
+        Entry modified = Entry.decodeLazily(bsb.toByteString(), DirectoryServer.getDefaultCompressedSchema());
+        for (AttributeType attrType : entryBefore.getUserAttributes().keySet())
+        {
+          modified.removeAttribute(attrType);
+        }
+        assertThat(modified.getUserAttributes()).isEmpty();
+      }
+    }
+  }
+
   @DataProvider
   private Object[][] findDnKeyParentData()
   {
@@ -0,0 +1,367 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.opendj.config.ConfigurationMock.*;
+import static org.mockito.AdditionalAnswers.*;
+import static org.mockito.Mockito.*;
+import static org.opends.server.util.CollectionUtils.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.meta.BackendVLVIndexCfgDefn.Scope;
+import org.forgerock.opendj.server.config.server.BackendVLVIndexCfg;
+import org.forgerock.opendj.server.config.server.PDBBackendCfg;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.backends.pdb.PDBStorage;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.core.MemoryQuota;
+import org.opends.server.core.ServerContext;
+import org.opends.server.extensions.DiskSpaceMonitor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend" }, sequential = true)
+public class VLVIndexTest extends DirectoryServerTestCase
+{
+  private static final int NB_RECORDS = 20000;
+  private static final int NB_RECORDS_PER_TXN = 100;
+
+  private PDBStorage storage;
+  /** The storage used by the VLV index to split its ranges. */
+  private Storage vlvIndexStorage;
+  private VLVIndex vlvIndex;
+  /** The keys of the records of the index, in key order. */
+  private final List<ByteString> keys = new ArrayList<>();
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    ServerContext serverContext = mock(ServerContext.class);
+    when(serverContext.getMemoryQuota()).thenReturn(new MemoryQuota());
+    when(serverContext.getDiskSpaceMonitor()).thenReturn(mock(DiskSpaceMonitor.class));
+
+    final EntryContainer entryContainer = mock(EntryContainer.class);
+    when(entryContainer.getTreePrefix()).thenReturn("base-dn");
+    when(entryContainer.getHighestEntryID(any(ReadableTransaction.class))).thenReturn(new EntryID(0));
+
+    final BackendVLVIndexCfg vlvIndexCfg = mock(BackendVLVIndexCfg.class);
+    when(vlvIndexCfg.getName()).thenReturn("people");
+    when(vlvIndexCfg.getBaseDN()).thenReturn(DN.valueOf("dc=test,dc=com"));
+    when(vlvIndexCfg.getFilter()).thenReturn("(objectClass=person)");
+    when(vlvIndexCfg.getScope()).thenReturn(Scope.WHOLE_SUBTREE);
+    when(vlvIndexCfg.getSortOrder()).thenReturn("uid");
+
+    storage = new PDBStorage(createBackendCfg(), serverContext);
+    storage.open(AccessMode.READ_WRITE);
+    vlvIndexStorage = mock(Storage.class, delegatesTo(storage));
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        final State state = new State(new TreeName("base-dn", "state"));
+        state.open(txn, true);
+        vlvIndex = new VLVIndex(vlvIndexCfg, state, vlvIndexStorage, entryContainer, txn);
+        vlvIndex.open(txn, true);
+      }
+    });
+    keys.clear();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    storage.close();
+    storage.removeStorageFiles();
+  }
+
+  /** The ranges which could not be split must be split by the next split. */
+  @Test
+  public void testRangesAreSplitAfterAFailedSplit() throws Exception
+  {
+    final List<ByteString> addedKeys = newSkewedKeys(4 * VLVIndex.MAX_RANGE_SIZE);
+    updateIndexWithoutSplit(new TreeSet<>(addedKeys), null);
+    keys.addAll(addedKeys);
+    assertThat(vlvIndex.hasRangesToSplit()).isTrue();
+
+    doThrow(new StorageRuntimeException("Split failed")).doAnswer(delegatesTo(storage))
+        .when(vlvIndexStorage).write(any(WriteOperation.class));
+    try
+    {
+      vlvIndex.splitRanges();
+      failBecauseExceptionWasNotThrown(StorageRuntimeException.class);
+    }
+    catch (StorageRuntimeException expected)
+    {
+      assertThat(vlvIndex.hasRangesToSplit()).isTrue();
+    }
+
+    vlvIndex.splitRanges();
+    assertThat(vlvIndex.hasRangesToSplit()).isFalse();
+    assertPositionsWalkOneRange();
+  }
+
+  /** Records sharing a long common prefix, like uid=user.N, all fell in the same fixed size prefix range. */
+  @Test
+  public void testPositionToIndexOnlyWalksOneRangeOfSkewedKeys() throws Exception
+  {
+    final List<ByteString> addedKeys = newSkewedKeys(NB_RECORDS);
+    Collections.shuffle(addedKeys, new Random(0));
+    addRecords(addedKeys);
+
+    assertPositionsWalkOneRange();
+  }
+
+  @Test
+  public void testPositionToIndexOnlyWalksOneRangeOfIncreasingKeys() throws Exception
+  {
+    addRecords(newSkewedKeys(NB_RECORDS));
+
+    assertPositionsWalkOneRange();
+  }
+
+  @Test
+  public void testPositionToIndexAfterDeletingRecords() throws Exception
+  {
+    final List<ByteString> addedKeys = newSkewedKeys(NB_RECORDS);
+    Collections.shuffle(addedKeys, new Random(0));
+    addRecords(addedKeys);
+
+    final List<ByteString> deletedKeys = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i += 3)
+    {
+      deletedKeys.add(keys.get(i));
+    }
+    deleteRecords(deletedKeys);
+
+    assertPositionsWalkOneRange();
+  }
+
+  private static List<ByteString> newSkewedKeys(int nbKeys)
+  {
+    final List<ByteString> keys = new ArrayList<>(nbKeys);
+    for (int i = 0; i < nbKeys; i++)
+    {
+      final ByteStringBuilder key = new ByteStringBuilder();
+      VLVIndex.encodeVLVKeyValue(ByteString.valueOfUtf8(String.format("user.%08d", i)), key, false);
+      key.appendLong(i + 1);
+      keys.add(key.toByteString());
+    }
+    return keys;
+  }
+
+  /** Adds the records like updates do, splitting the ranges afterwards like the entry container does. */
+  private void addRecords(final List<ByteString> addedKeys) throws Exception
+  {
+    for (int i = 0; i < addedKeys.size(); i += NB_RECORDS_PER_TXN)
+    {
+      final TreeSet<ByteString> txnKeys =
+          new TreeSet<>(addedKeys.subList(i, Math.min(i + NB_RECORDS_PER_TXN, addedKeys.size())));
+      updateIndex(txnKeys, null);
+    }
+    keys.addAll(addedKeys);
+    Collections.sort(keys);
+  }
+
+  private void deleteRecords(final List<ByteString> deletedKeys) throws Exception
+  {
+    for (int i = 0; i < deletedKeys.size(); i += NB_RECORDS_PER_TXN)
+    {
+      final TreeSet<ByteString> txnKeys =
+          new TreeSet<>(deletedKeys.subList(i, Math.min(i + NB_RECORDS_PER_TXN, deletedKeys.size())));
+      updateIndex(null, txnKeys);
+    }
+    keys.removeAll(new HashSet<>(deletedKeys));
+  }
+
+  private void updateIndex(final TreeSet<ByteString> addedKeys, final TreeSet<ByteString> deletedKeys)
+      throws Exception
+  {
+    updateIndexWithoutSplit(addedKeys, deletedKeys);
+    if (vlvIndex.hasRangesToSplit())
+    {
+      vlvIndex.splitRanges();
+    }
+    assertThat(vlvIndex.hasRangesToSplit()).isFalse();
+  }
+
+  private void updateIndexWithoutSplit(final TreeSet<ByteString> addedKeys, final TreeSet<ByteString> deletedKeys)
+      throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        vlvIndex.updateIndex(txn, addedKeys, deletedKeys);
+      }
+    });
+  }
+
+  private void assertPositionsWalkOneRange() throws Exception
+  {
+    final int[] indexes = { 0, 1, VLVIndex.MAX_RANGE_SIZE, keys.size() / 2, keys.size() - 2, keys.size() - 1 };
+    for (final int index : indexes)
+    {
+      storage.read(new ReadOperation<Void>()
+      {
+        @Override
+        public Void run(ReadableTransaction txn) throws Exception
+        {
+          try (CountingCursor cursor = new CountingCursor(txn.openCursor(vlvIndex.getName())))
+          {
+            assertThat(vlvIndex.positionToIndex(txn, cursor, index)).isTrue();
+            assertThat(cursor.getKey()).isEqualTo(keys.get(index));
+            assertThat(cursor.nbMoves).isLessThanOrEqualTo(VLVIndex.MAX_RANGE_SIZE);
+          }
+          return null;
+        }
+      });
+    }
+    storage.read(new ReadOperation<Void>()
+    {
+      @Override
+      public Void run(ReadableTransaction txn) throws Exception
+      {
+        try (Cursor<ByteString, ByteString> cursor = txn.openCursor(vlvIndex.getName()))
+        {
+          assertThat(vlvIndex.positionToIndex(txn, cursor, keys.size())).isFalse();
+        }
+        return null;
+      }
+    });
+  }
+
+  /** Counts the records the cursor moves through. */
+  private static final class CountingCursor implements Cursor<ByteString, ByteString>
+  {
+    private final Cursor<ByteString, ByteString> delegate;
+    private int nbMoves;
+
+    private CountingCursor(Cursor<ByteString, ByteString> delegate)
+    {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean positionToKey(ByteSequence key)
+    {
+      return delegate.positionToKey(key);
+    }
+
+    @Override
+    public boolean positionToKeyOrNext(ByteSequence key)
+    {
+      return delegate.positionToKeyOrNext(key);
+    }
+
+    @Override
+    public boolean positionToLastKey()
+    {
+      return delegate.positionToLastKey();
+    }
+
+    @Override
+    public boolean positionToIndex(int index)
+    {
+      nbMoves += index;
+      return delegate.positionToIndex(index);
+    }
+
+    @Override
+    public boolean next()
+    {
+      nbMoves++;
+      return delegate.next();
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return delegate.isDefined();
+    }
+
+    @Override
+    public ByteString getKey()
+    {
+      return delegate.getKey();
+    }
+
+    @Override
+    public ByteString getValue()
+    {
+      return delegate.getValue();
+    }
+
+    @Override
+    public void delete()
+    {
+      delegate.delete();
+    }
+
+    @Override
+    public void close()
+    {
+      delegate.close();
+    }
+  }
+
+  private PDBBackendCfg createBackendCfg() throws Exception
+  {
+    String homeDirName = "pdb_vlv_index_test";
+    PDBBackendCfg backendCfg = mockCfg(PDBBackendCfg.class);
+
+    when(backendCfg.getBackendId()).thenReturn("persTest" + homeDirName);
+    when(backendCfg.getDBDirectory()).thenReturn(homeDirName);
+    when(backendCfg.getDBDirectoryPermissions()).thenReturn("755");
+    when(backendCfg.getDBCacheSize()).thenReturn(0L);
+    when(backendCfg.getDBCachePercent()).thenReturn(20);
+    when(backendCfg.getBaseDN()).thenReturn(newTreeSet(DN.valueOf("dc=test,dc=com")));
+    when(backendCfg.dn()).thenReturn(DN.valueOf("dc=test,dc=com"));
+    when(backendCfg.listBackendIndexes()).thenReturn(new String[0]);
+    when(backendCfg.listBackendVLVIndexes()).thenReturn(new String[0]);
+    return backendCfg;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable.spi;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential=true)
+public class GroupCommitterTest extends DirectoryServerTestCase
+{
+  private static final int NB_THREADS = 16;
+  private static final int NB_COMMITS_PER_THREAD = 50;
+
+  /** Simulates a storage log: commits are appended to it, and become durable once flushed. */
+  private static final class FakeLog implements GroupCommitter.LogFlusher
+  {
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicInteger nbFailuresToInject = new AtomicInteger();
+
+    long append()
+    {
+      return appended.incrementAndGet();
+    }
+
+    @Override
+    public void flush() throws Exception
+    {
+      final long target = appended.get();
+      Thread.sleep(1);
+      if (nbFailuresToInject.getAndDecrement() > 0)
+      {
+        throw new StorageRuntimeException("Injected failure");
+      }
+      flushed.set(Math.max(flushed.get(), target));
+    }
+  }
+
+  @Test
+  public void testSingleCommitIsFlushed() throws Exception
+  {
+    final FakeLog log = new FakeLog();
+    final GroupCommitter committer = new GroupCommitter(log, 0, TimeUnit.MILLISECONDS);
+
+    final long position = log.append();
+    committer.awaitDurable();
+
+    assertThat(log.flushed.get()).isGreaterThanOrEqualTo(position);
+    assertThat(committer.getCommitCount()).isEqualTo(1);
+    assertThat(committer.getFlushCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testConcurrentCommitsAreGroupedAndDurable() throws Exception
+  {
+    final FakeLog log = new FakeLog();
+    final GroupCommitter committer = new GroupCommitter(log, 0, TimeUnit.MILLISECONDS);
+
+    runConcurrentCommits(log, committer);
+
+    assertThat(committer.getCommitCount()).isEqualTo(NB_THREADS * NB_COMMITS_PER_THREAD);
+    assertThat(committer.getFlushCount()).isLessThan(NB_THREADS * NB_COMMITS_PER_THREAD);
+  }
+
+  @Test
+  public void testDelayGroupsMoreCommits() throws Exception
+  {
+    final FakeLog log = new FakeLog();
+    final GroupCommitter committer = new GroupCommitter(log, 5, TimeUnit.MILLISECONDS);
+
+    runConcurrentCommits(log, committer);
+
+    assertThat(committer.getFlushCount()).isLessThan(NB_THREADS * NB_COMMITS_PER_THREAD / 4);
+  }
+
+  @Test
+  public void testFailedFlushIsRetried() throws Exception
+  {
+    final FakeLog log = new FakeLog();
+    final GroupCommitter committer = new GroupCommitter(log, 0, TimeUnit.MILLISECONDS);
+
+    log.nbFailuresToInject.set(1);
+    log.append();
+    try
+    {
+      committer.awaitDurable();
+      failBecauseExceptionWasNotThrown(StorageRuntimeException.class);
+    }
+    catch (StorageRuntimeException expected)
+    {
+      assertThat(log.flushed.get()).isEqualTo(0);
+    }
+
+    final long position = log.append();
+    committer.awaitDurable();
+    assertThat(log.flushed.get()).isEqualTo(position);
+  }
+
+  private static void runConcurrentCommits(final FakeLog log, final GroupCommitter committer) throws Exception
+  {
+    final ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS);
+    try
+    {
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < NB_THREADS; i++)
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            for (int j = 0; j < NB_COMMITS_PER_THREAD; j++)
+            {
+              final long position = log.append();
+              committer.awaitDurable();
+              assertThat(log.flushed.get()).isGreaterThanOrEqualTo(position);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures)
+      {
+        future.get();
+      }
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+}
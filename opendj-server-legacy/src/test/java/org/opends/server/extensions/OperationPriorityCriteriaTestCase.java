@@ -0,0 +1,112 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.opends.server.util.CollectionUtils.*;
+
+import java.util.TreeSet;
+
+import org.forgerock.opendj.ldap.AddressMask;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.meta.TraditionalWorkQueueCfgDefn.HighPriorityOperationType;
+import org.forgerock.opendj.server.config.meta.TraditionalWorkQueueCfgDefn.LowPriorityOperationType;
+import org.forgerock.opendj.server.config.server.TraditionalWorkQueueCfg;
+import org.opends.server.api.ClientConnection;
+import org.opends.server.extensions.TraditionalWorkQueue.Priority;
+import org.opends.server.types.AuthenticationInfo;
+import org.opends.server.types.Entry;
+import org.opends.server.types.Operation;
+import org.opends.server.types.OperationType;
+import org.testng.annotations.Test;
+
+/** A set of test cases for the criteria assigning a priority to the operations of the traditional work queue. */
+@SuppressWarnings("javadoc")
+public class OperationPriorityCriteriaTestCase extends ExtensionsTestCase
+{
+  private static TraditionalWorkQueueCfg mockCfg()
+  {
+    TraditionalWorkQueueCfg cfg = mock(TraditionalWorkQueueCfg.class);
+    when(cfg.getHighPriorityOperationType()).thenReturn(new TreeSet<HighPriorityOperationType>());
+    when(cfg.getHighPriorityClientAddress()).thenReturn(new TreeSet<AddressMask>());
+    when(cfg.getHighPriorityUserDN()).thenReturn(new TreeSet<DN>());
+    when(cfg.getHighPriorityConnectionPort()).thenReturn(new TreeSet<Integer>());
+    when(cfg.getLowPriorityOperationType()).thenReturn(new TreeSet<LowPriorityOperationType>());
+    when(cfg.getLowPriorityClientAddress()).thenReturn(new TreeSet<AddressMask>());
+    when(cfg.getLowPriorityUserDN()).thenReturn(new TreeSet<DN>());
+    when(cfg.getLowPriorityConnectionPort()).thenReturn(new TreeSet<Integer>());
+    return cfg;
+  }
+
+  private static Operation mockOperation(OperationType type, int port, String userDN)
+  {
+    ClientConnection connection = mock(ClientConnection.class);
+    when(connection.getServerPort()).thenReturn(port);
+    if (userDN != null)
+    {
+      Entry userEntry = mock(Entry.class);
+      when(userEntry.getName()).thenReturn(DN.valueOf(userDN));
+      when(connection.getAuthenticationInfo()).thenReturn(new AuthenticationInfo(userEntry, false));
+    }
+    else
+    {
+      when(connection.getAuthenticationInfo()).thenReturn(new AuthenticationInfo());
+    }
+    Operation operation = mock(Operation.class);
+    when(operation.getOperationType()).thenReturn(type);
+    when(operation.getClientConnection()).thenReturn(connection);
+    return operation;
+  }
+
+  @Test
+  public void testNoCriteria()
+  {
+    OperationPriorityCriteria criteria = new OperationPriorityCriteria(mockCfg());
+
+    assertThat(criteria.getPriority(mockOperation(OperationType.SEARCH, 389, null))).isEqualTo(Priority.NORMAL);
+  }
+
+  @Test
+  public void testOperationTypes()
+  {
+    TraditionalWorkQueueCfg cfg = mockCfg();
+    when(cfg.getHighPriorityOperationType()).thenReturn(newTreeSet(HighPriorityOperationType.BIND));
+    when(cfg.getLowPriorityOperationType()).thenReturn(newTreeSet(LowPriorityOperationType.RENAME));
+    OperationPriorityCriteria criteria = new OperationPriorityCriteria(cfg);
+
+    assertThat(criteria.getPriority(mockOperation(OperationType.BIND, 389, null))).isEqualTo(Priority.HIGH);
+    assertThat(criteria.getPriority(mockOperation(OperationType.MODIFY_DN, 389, null))).isEqualTo(Priority.LOW);
+    assertThat(criteria.getPriority(mockOperation(OperationType.SEARCH, 389, null))).isEqualTo(Priority.NORMAL);
+  }
+
+  @Test
+  public void testHighPriorityCriteriaWin()
+  {
+    TraditionalWorkQueueCfg cfg = mockCfg();
+    when(cfg.getHighPriorityUserDN()).thenReturn(newTreeSet(DN.valueOf("ou=admins,o=test")));
+    when(cfg.getLowPriorityConnectionPort()).thenReturn(newTreeSet(1389));
+    OperationPriorityCriteria criteria = new OperationPriorityCriteria(cfg);
+
+    assertThat(criteria.getPriority(mockOperation(OperationType.SEARCH, 1389, "uid=admin,ou=admins,o=test")))
+        .isEqualTo(Priority.HIGH);
+    assertThat(criteria.getPriority(mockOperation(OperationType.SEARCH, 1389, "uid=user,ou=people,o=test")))
+        .isEqualTo(Priority.LOW);
+    assertThat(criteria.getPriority(mockOperation(OperationType.SEARCH, 1389, null))).isEqualTo(Priority.LOW);
+    assertThat(criteria.getPriority(mockOperation(OperationType.SEARCH, 389, "uid=user,ou=people,o=test")))
+        .isEqualTo(Priority.NORMAL);
+  }
+}
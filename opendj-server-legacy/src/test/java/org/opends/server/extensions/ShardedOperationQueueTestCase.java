@@ -0,0 +1,175 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.opends.server.types.Operation;
+import org.testng.annotations.Test;
+
+/** A set of test cases for the sharded operation queue of the traditional work queue. */
+@SuppressWarnings("javadoc")
+public class ShardedOperationQueueTestCase extends ExtensionsTestCase
+{
+  @Test
+  public void testCapacity() throws Exception
+  {
+    ShardedOperationQueue queue = new ShardedOperationQueue(1, 4, 2);
+
+    assertThat(queue.offer(mock(Operation.class), 0)).isTrue();
+    assertThat(queue.offer(mock(Operation.class), 0)).isTrue();
+    assertThat(queue.offer(mock(Operation.class), 0)).isFalse();
+    assertThat(queue.offer(mock(Operation.class), 0, 10, MILLISECONDS)).isFalse();
+    assertThat(queue.size()).isEqualTo(2);
+
+    queue.setCapacity(3);
+    assertThat(queue.offer(mock(Operation.class), 0)).isTrue();
+    assertThat(queue.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void testPollStealsFromOtherLanes() throws Exception
+  {
+    final ShardedOperationQueue queue = new ShardedOperationQueue(1, 4, 100);
+    final Set<Operation> submitted = new HashSet<>();
+    ExecutorService producers = Executors.newFixedThreadPool(4);
+    try
+    {
+      List<Future<Operation>> futures = new ArrayList<>();
+      for (int i = 0; i < 20; i++)
+      {
+        futures.add(producers.submit(new Callable<Operation>()
+        {
+          @Override
+          public Operation call() throws Exception
+          {
+            Operation operation = mock(Operation.class);
+            assertThat(queue.offer(operation, 0, 1, SECONDS)).isTrue();
+            return operation;
+          }
+        }));
+      }
+      for (Future<Operation> future : futures)
+      {
+        submitted.add(future.get());
+      }
+    }
+    finally
+    {
+      producers.shutdown();
+    }
+
+    // A single consumer thread takes the operations of all the lanes
+    Set<Operation> taken = new HashSet<>();
+    ShardedOperationQueue.QueuedOperation queuedOperation;
+    while ((queuedOperation = queue.poll(10, MILLISECONDS)) != null)
+    {
+      taken.add(queuedOperation.operation);
+    }
+    assertThat(taken).isEqualTo(submitted);
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testPollWakesUpWaitingProducer() throws Exception
+  {
+    final ShardedOperationQueue queue = new ShardedOperationQueue(1, 2, 1);
+    Operation first = mock(Operation.class);
+    final Operation second = mock(Operation.class);
+    assertThat(queue.offer(first, 0)).isTrue();
+
+    ExecutorService producer = Executors.newSingleThreadExecutor();
+    try
+    {
+      Future<Boolean> offered = producer.submit(new Callable<Boolean>()
+      {
+        @Override
+        public Boolean call() throws Exception
+        {
+          return queue.offer(second, 0, 10, SECONDS);
+        }
+      });
+
+      assertThat(queue.poll(1, SECONDS).operation).isSameAs(first);
+      assertThat(offered.get(10, SECONDS)).isTrue();
+      assertThat(queue.poll(1, SECONDS).operation).isSameAs(second);
+    }
+    finally
+    {
+      producer.shutdown();
+    }
+  }
+
+  @Test
+  public void testPollTakesHighestPriorityFirst() throws Exception
+  {
+    ShardedOperationQueue queue = new ShardedOperationQueue(3, 2, 10);
+    Operation low = mock(Operation.class);
+    Operation normal = mock(Operation.class);
+    Operation high = mock(Operation.class);
+    queue.offer(low, 2);
+    queue.offer(normal, 1);
+    queue.offer(high, 0);
+
+    assertThat(queue.getOldestQueueTimeNanos(0)).isGreaterThanOrEqualTo(0);
+    ShardedOperationQueue.QueuedOperation first = queue.poll(1, SECONDS);
+    assertThat(first.operation).isSameAs(high);
+    assertThat(first.priority).isEqualTo(0);
+    assertThat(queue.poll(1, SECONDS).operation).isSameAs(normal);
+    assertThat(queue.poll(1, SECONDS).operation).isSameAs(low);
+    assertThat(queue.getOldestQueueTimeNanos(2)).isEqualTo(0);
+  }
+
+  @Test
+  public void testOldestQueueTime() throws Exception
+  {
+    ShardedOperationQueue queue = new ShardedOperationQueue(2, 1, 10);
+    queue.offer(mock(Operation.class), 1);
+    Thread.sleep(20);
+
+    assertThat(queue.getOldestQueueTimeNanos(0)).isEqualTo(0);
+    assertThat(queue.getOldestQueueTimeNanos(1)).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  public void testDrain() throws Exception
+  {
+    ShardedOperationQueue queue = new ShardedOperationQueue(2, 3, 10);
+    Operation operation1 = mock(Operation.class);
+    Operation operation2 = mock(Operation.class);
+    queue.offer(operation1, 0);
+    queue.offer(operation2, 1);
+
+    List<Operation> drained = new ArrayList<>();
+    queue.drainTo(drained);
+
+    assertThat(drained).containsOnly(operation1, operation2);
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.poll(10, MILLISECONDS)).isNull();
+  }
+}
@@ -29,6 +29,7 @@ import org.opends.server.protocols.internal.InternalClientConnection;
 import org.opends.server.protocols.internal.InternalSearchOperation;
 import org.opends.server.protocols.internal.SearchRequest;
 import org.opends.server.schema.SchemaConstants;
+import org.opends.server.tools.RemoteConnection;
 import com.forgerock.opendj.ldap.tools.LDAPSearch;
 import org.opends.server.types.Attributes;
 import org.forgerock.opendj.ldap.DN;
@@ -206,5 +207,47 @@ public class TraditionalWorkQueueTestCase
     long stopTime = System.currentTimeMillis();
     assertTrue(stopTime - startTime <= 2000);
   }
-}
 
+  /**
+   * Ensures that a bind request waiting in the queue for longer than the
+   * maximum queue time is still processed: the connection does not read any
+   * other request until the bind completes.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test(groups = { "slow" })
+  public void testExpiredBindIsProcessed() throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+
+    setWorkQueueAttribute("ds-cfg-max-queue-time", "500 ms");
+    try (RemoteConnection conn = new RemoteConnection("localhost", TestCaseUtils.getServerLdapPort()))
+    {
+      // Keep all the worker threads busy for longer than the maximum queue time
+      TraditionalWorkQueue workQueue = (TraditionalWorkQueue) DirectoryServer.getWorkQueue();
+      for (int i = 0; i < workQueue.getNumWorkerThreads(); i++)
+      {
+        SearchRequest request = newSearchRequest(DN.valueOf("o=test"), SearchScope.BASE_OBJECT)
+            .addControl(DelayPreOpPlugin.createDelayControlList(2000));
+        workQueue.submitOperation(
+            new InternalSearchOperation(getRootConnection(), nextOperationID(), nextMessageID(), request));
+      }
+
+      conn.bind("cn=Directory Manager", "password");
+
+      conn.search("o=test", SearchScope.BASE_OBJECT, "(objectClass=*)");
+      assertEquals(conn.readEntries().size(), 1);
+    }
+    finally
+    {
+      setWorkQueueAttribute("ds-cfg-max-queue-time", "0 ms");
+    }
+  }
+
+  private void setWorkQueueAttribute(String attr, String value) throws Exception
+  {
+    ArrayList<Modification> mods = newArrayList(new Modification(REPLACE, Attributes.create(attr, value)));
+    ModifyOperation modifyOperation = getRootConnection().processModify(DN.valueOf("cn=Work Queue,cn=config"), mods);
+    assertEquals(modifyOperation.getResultCode(), ResultCode.SUCCESS);
+  }
+}
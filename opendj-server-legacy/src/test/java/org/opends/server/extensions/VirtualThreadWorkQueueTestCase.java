@@ -0,0 +1,262 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.server.config.server.VirtualThreadWorkQueueCfg;
+import org.mockito.InOrder;
+import org.opends.server.api.ClientConnection;
+import org.opends.server.types.CancelRequest;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Operation;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** A set of test cases for the virtual thread work queue. */
+@SuppressWarnings("javadoc")
+public class VirtualThreadWorkQueueTestCase extends ExtensionsTestCase
+{
+  /** Records the tasks instead of running them, so that the tests decide when they run. */
+  private static final class RecordingExecutor extends AbstractExecutorService
+  {
+    private final List<Runnable> tasks = new ArrayList<>();
+    private boolean isShutdown;
+    private int nbTasksToReject;
+
+    @Override
+    public void execute(Runnable command)
+    {
+      if (nbTasksToReject > 0)
+      {
+        nbTasksToReject--;
+        throw new RejectedExecutionException();
+      }
+      tasks.add(command);
+    }
+
+    private void runTasks()
+    {
+      while (!tasks.isEmpty())
+      {
+        tasks.remove(0).run();
+      }
+    }
+
+    @Override
+    public void shutdown()
+    {
+      isShutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+      isShutdown = true;
+      return tasks;
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+      return isShutdown;
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+      return isShutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+    {
+      return true;
+    }
+  }
+
+  private RecordingExecutor executor;
+
+  @BeforeMethod
+  public void setUp()
+  {
+    executor = new RecordingExecutor();
+  }
+
+  private VirtualThreadWorkQueue newWorkQueue(int maxConcurrentOps, int maxConcurrentOpsPerConnection,
+      int maxCapacity)
+  {
+    VirtualThreadWorkQueue workQueue = new VirtualThreadWorkQueue();
+    workQueue.initialize(newCfg(maxConcurrentOps, maxConcurrentOpsPerConnection, maxCapacity), executor);
+    return workQueue;
+  }
+
+  private static VirtualThreadWorkQueueCfg newCfg(int maxConcurrentOps, int maxConcurrentOpsPerConnection,
+      int maxCapacity)
+  {
+    VirtualThreadWorkQueueCfg cfg = mock(VirtualThreadWorkQueueCfg.class);
+    when(cfg.getMaxConcurrentOps()).thenReturn(maxConcurrentOps);
+    when(cfg.getMaxConcurrentOpsPerConnection()).thenReturn(maxConcurrentOpsPerConnection);
+    when(cfg.getMaxWorkQueueCapacity()).thenReturn(maxCapacity);
+    return cfg;
+  }
+
+  private static Operation newOperation(ClientConnection clientConnection)
+  {
+    Operation operation = mock(Operation.class);
+    when(operation.getClientConnection()).thenReturn(clientConnection);
+    return operation;
+  }
+
+  @Test
+  public void testClientConnectionsAreServedInTurn() throws Exception
+  {
+    VirtualThreadWorkQueue workQueue = newWorkQueue(1, 2, 10);
+    ClientConnection connA = mock(ClientConnection.class);
+    ClientConnection connB = mock(ClientConnection.class);
+    Operation a1 = newOperation(connA);
+    Operation a2 = newOperation(connA);
+    Operation a3 = newOperation(connA);
+    Operation b1 = newOperation(connB);
+
+    workQueue.submitOperation(a1);
+    workQueue.submitOperation(a2);
+    workQueue.submitOperation(a3);
+    workQueue.submitOperation(b1);
+    assertThat(workQueue.getNumActiveOperations()).isEqualTo(1);
+    assertThat(workQueue.size()).isEqualTo(3);
+    assertThat(workQueue.isIdle()).isFalse();
+
+    executor.runTasks();
+
+    InOrder inOrder = inOrder(a1, a2, b1, a3);
+    inOrder.verify(a1).run();
+    inOrder.verify(a2).run();
+    inOrder.verify(b1).run();
+    inOrder.verify(a3).run();
+    assertThat(workQueue.isIdle()).isTrue();
+    assertThat(workQueue.getOpsSubmitted()).isEqualTo(4);
+  }
+
+  @Test
+  public void testConcurrencyLimitPerConnection() throws Exception
+  {
+    VirtualThreadWorkQueue workQueue = newWorkQueue(10, 1, 10);
+    ClientConnection connA = mock(ClientConnection.class);
+    ClientConnection connB = mock(ClientConnection.class);
+
+    workQueue.submitOperation(newOperation(connA));
+    workQueue.submitOperation(newOperation(connA));
+    workQueue.submitOperation(newOperation(connB));
+
+    assertThat(workQueue.getNumActiveOperations()).isEqualTo(2);
+    assertThat(workQueue.size()).isEqualTo(1);
+    assertThat(executor.tasks).hasSize(2);
+
+    executor.runTasks();
+    assertThat(workQueue.isIdle()).isTrue();
+  }
+
+  @Test
+  public void testRejectsOperationsWhenFull() throws Exception
+  {
+    VirtualThreadWorkQueue workQueue = newWorkQueue(1, 1, 1);
+    ClientConnection conn = mock(ClientConnection.class);
+
+    assertThat(workQueue.trySubmitOperation(newOperation(conn))).isTrue();
+    assertThat(workQueue.trySubmitOperation(newOperation(conn))).isTrue();
+    assertThat(workQueue.trySubmitOperation(newOperation(conn))).isFalse();
+    try
+    {
+      workQueue.submitOperation(newOperation(conn));
+      fail("Expected a DirectoryException");
+    }
+    catch (DirectoryException e)
+    {
+      assertThat(e.getResultCode()).isEqualTo(ResultCode.BUSY);
+    }
+    assertThat(workQueue.getOpsRejectedDueToQueueFull()).isEqualTo(2);
+    assertThat(workQueue.getOpsSubmitted()).isEqualTo(2);
+  }
+
+  @Test
+  public void testShutdownAbortsPendingOperations() throws Exception
+  {
+    VirtualThreadWorkQueue workQueue = newWorkQueue(1, 1, 10);
+    ClientConnection conn = mock(ClientConnection.class);
+    Operation running = newOperation(conn);
+    Operation pending = newOperation(conn);
+    workQueue.submitOperation(running);
+    workQueue.submitOperation(pending);
+
+    workQueue.finalizeWorkQueue(LocalizableMessage.raw("shutdown"));
+
+    verify(pending).abort(any(CancelRequest.class));
+    verify(running).cancel(any(CancelRequest.class));
+    assertThat(executor.isShutdown()).isTrue();
+    try
+    {
+      workQueue.submitOperation(newOperation(conn));
+      fail("Expected a DirectoryException");
+    }
+    catch (DirectoryException e)
+    {
+      assertThat(e.getResultCode()).isEqualTo(ResultCode.UNAVAILABLE);
+    }
+
+    // The operation in progress completes, and the pending operation is not processed
+    executor.runTasks();
+    verify(running).run();
+    verify(pending, never()).run();
+    assertThat(workQueue.isIdle()).isTrue();
+  }
+
+  @Test
+  public void testOperationReleasedByARejectedOperationIsStarted() throws Exception
+  {
+    VirtualThreadWorkQueue workQueue = newWorkQueue(1, 1, 10);
+    Operation a1 = newOperation(mock(ClientConnection.class));
+    Operation b1 = newOperation(mock(ClientConnection.class));
+    Operation c1 = newOperation(mock(ClientConnection.class));
+    Operation d1 = newOperation(mock(ClientConnection.class));
+    workQueue.submitOperation(a1);
+    workQueue.submitOperation(b1);
+    workQueue.submitOperation(c1);
+    workQueue.submitOperation(d1);
+
+    // Raising the limit starts b1 and c1, the rejection of b1 then releases d1
+    executor.nbTasksToReject = 1;
+    workQueue.applyConfigurationChange(newCfg(3, 1, 10));
+
+    verify(b1).abort(any(CancelRequest.class));
+    assertThat(workQueue.size()).isEqualTo(0);
+    executor.runTasks();
+    verify(a1).run();
+    verify(b1, never()).run();
+    verify(c1).run();
+    verify(d1).run();
+    assertThat(workQueue.isIdle()).isTrue();
+  }
+}
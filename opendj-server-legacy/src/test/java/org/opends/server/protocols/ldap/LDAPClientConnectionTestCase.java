@@ -0,0 +1,230 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 ForgeRock AS.
+ */
+package org.opends.server.protocols.ldap;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import static org.opends.server.api.plugin.PluginType.*;
+import static org.opends.server.config.ConfigConstants.*;
+import static org.testng.Assert.*;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
+import org.opends.server.api.plugin.PluginResult;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.tools.RemoteConnection;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchResultEntry;
+import org.opends.server.types.operation.SearchEntrySearchOperation;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/** A set of test cases for the client connections of the LDAP connection handler. */
+@SuppressWarnings("javadoc")
+public class LDAPClientConnectionTestCase extends LdapTestCase
+{
+  private static final String STALLED_ENTRY_DN = "uid=stalled,o=test";
+  /** The number of 64KB entries returned to the slow client, enough to fill the socket buffers. */
+  private static final int NB_LARGE_ENTRIES = 100;
+
+  /** Stalls the search before it returns the stalled entry, until released. */
+  private static final class StallSearchPlugin extends InternalDirectoryServerPlugin
+  {
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private StallSearchPlugin() throws Exception
+    {
+      super(DN.valueOf("cn=StallSearchPlugin"), EnumSet.of(SEARCH_RESULT_ENTRY), false);
+    }
+
+    @Override
+    public PluginResult.IntermediateResponse processSearchEntry(SearchEntrySearchOperation searchOperation,
+        SearchResultEntry searchEntry)
+    {
+      if (searchEntry.getName().equals(DN.valueOf(STALLED_ENTRY_DN)))
+      {
+        try
+        {
+          released.await(30, SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return PluginResult.IntermediateResponse.continueOperationProcessing(true);
+    }
+  }
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  private LDAPConnectionHandler startLDAPConnectionHandler(int port) throws Exception
+  {
+    Entry handlerEntry = TestCaseUtils.makeEntry(
+        "dn: cn=Legacy LDAP Connection Handler,cn=Connection Handlers,cn=config",
+        "objectClass: top",
+        "objectClass: ds-cfg-connection-handler",
+        "objectClass: ds-cfg-ldap-connection-handler",
+        "cn: Legacy LDAP Connection Handler",
+        "ds-cfg-java-class: org.opends.server.protocols.ldap.LDAPConnectionHandler",
+        "ds-cfg-enabled: true",
+        "ds-cfg-listen-address: 127.0.0.1",
+        "ds-cfg-allow-ldap-v2: false",
+        "ds-cfg-num-request-handlers: 1",
+        "ds-cfg-allow-start-tls: false",
+        "ds-cfg-use-ssl: false");
+    handlerEntry.addAttribute(Attributes.create(ATTR_LISTEN_PORT, String.valueOf(port)), null);
+    LDAPConnectionHandler handler = new LDAPConnectionHandler();
+    handler.initializeConnectionHandler(DirectoryServer.getInstance().getServerContext(),
+        getConfiguration(handlerEntry));
+    handler.start();
+    return handler;
+  }
+
+  /**
+   * The search results delayed to be written along with the next ones must
+   * still be returned when the search does not return any further result for
+   * a while.
+   */
+  @Test
+  public void testDelayedSearchResultsAreWrittenWhenTheSearchStalls() throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+    addStalledEntry();
+
+    int port = TestCaseUtils.findFreePort();
+    LDAPConnectionHandler handler = startLDAPConnectionHandler(port);
+    StallSearchPlugin plugin = new StallSearchPlugin();
+    DirectoryServer.registerInternalPlugin(plugin);
+    ExecutorService reader = Executors.newSingleThreadExecutor();
+    try (final RemoteConnection conn = new RemoteConnection("127.0.0.1", port))
+    {
+      conn.bind("cn=Directory Manager", "password");
+      conn.search("o=test", SearchScope.WHOLE_SUBTREE, "(objectClass=*)");
+      assertStalledSearchResults(conn, plugin, reader);
+    }
+    finally
+    {
+      plugin.released.countDown();
+      reader.shutdownNow();
+      DirectoryServer.deregisterInternalPlugin(plugin);
+      handler.finalizeConnectionHandler(LocalizableMessage.raw("Test finished"));
+    }
+  }
+
+  /**
+   * A client which does not read its search results must not hold back the
+   * search results delayed for the other clients.
+   */
+  @Test
+  public void testSlowClientDoesNotHoldBackTheDelayedSearchResultsOfOtherClients() throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+    addStalledEntry();
+    char[] description = new char[64 * 1024];
+    Arrays.fill(description, 'x');
+    TestCaseUtils.addEntry("dn: ou=Large Entries,o=test", "objectClass: top", "objectClass: organizationalUnit");
+    for (int i = 0; i < NB_LARGE_ENTRIES; i++)
+    {
+      TestCaseUtils.addEntry(
+          "dn: cn=large" + i + ",ou=Large Entries,o=test",
+          "objectClass: top",
+          "objectClass: device",
+          "cn: large" + i,
+          "description: " + new String(description));
+    }
+
+    int port = TestCaseUtils.findFreePort();
+    LDAPConnectionHandler handler = startLDAPConnectionHandler(port);
+    StallSearchPlugin plugin = new StallSearchPlugin();
+    DirectoryServer.registerInternalPlugin(plugin);
+    ExecutorService reader = Executors.newSingleThreadExecutor();
+    try (RemoteConnection slowConn = new RemoteConnection("127.0.0.1", port);
+        final RemoteConnection conn = new RemoteConnection("127.0.0.1", port))
+    {
+      // Never read the large entries: writing them blocks once the socket buffers are full
+      slowConn.bind("cn=Directory Manager", "password");
+      slowConn.search("ou=Large Entries,o=test", SearchScope.WHOLE_SUBTREE, "(objectClass=*)");
+      Thread.sleep(1000);
+
+      conn.bind("cn=Directory Manager", "password");
+      conn.search("o=test", SearchScope.WHOLE_SUBTREE, "(|(objectClass=organization)(uid=stalled))");
+      assertStalledSearchResults(conn, plugin, reader);
+    }
+    finally
+    {
+      plugin.released.countDown();
+      reader.shutdownNow();
+      DirectoryServer.deregisterInternalPlugin(plugin);
+      handler.finalizeConnectionHandler(LocalizableMessage.raw("Test finished"));
+    }
+  }
+
+  private void addStalledEntry() throws Exception
+  {
+    TestCaseUtils.addEntries(
+        "dn: " + STALLED_ENTRY_DN,
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: stalled",
+        "cn: Stalled",
+        "sn: Stalled");
+  }
+
+  /**
+   * Asserts that the base entry is returned while the search is stalled on
+   * the stalled entry, then that the stalled entry is returned once released.
+   */
+  private void assertStalledSearchResults(final RemoteConnection conn, StallSearchPlugin plugin,
+      ExecutorService reader) throws Exception
+  {
+    Callable<LDAPMessage> readMessage = new Callable<LDAPMessage>()
+    {
+      @Override
+      public LDAPMessage call() throws Exception
+      {
+        return conn.readMessage();
+      }
+    };
+
+    LDAPMessage first = reader.submit(readMessage).get(10, SECONDS);
+    assertEquals(first.getSearchResultEntryProtocolOp().getDN(), DN.valueOf("o=test"));
+
+    Future<LDAPMessage> second = reader.submit(readMessage);
+    plugin.released.countDown();
+    assertEquals(second.get(10, SECONDS).getSearchResultEntryProtocolOp().getDN(), DN.valueOf(STALLED_ENTRY_DN));
+    LDAPMessage done = reader.submit(readMessage).get(10, SECONDS);
+    assertEquals(done.getSearchResultDoneProtocolOp().getResultCode(), LDAPResultCode.SUCCESS);
+  }
+}
@@ -20,14 +20,20 @@ import static org.mockito.Mockito.*;
 import static org.opends.server.util.StaticUtils.*;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.forgerock.opendj.ldap.DN;
 import org.opends.server.DirectoryServerTestCase;
@@ -214,6 +220,67 @@ public class BackupManagerTestCase extends DirectoryServerTestCase
     cleanDirectories(sourceDirectory, backupPath);
   }
 
+  /**
+   * Ensures that an incremental backup only archives the changed segments of a file, and that they are correctly
+   * applied over the file restored from the base backup.
+   */
+  @Test
+  public void testIncrementalBackupOnlyArchivesChangedSegments() throws Exception
+  {
+    Path sourceDirectory = createSourceDirectory("segments");
+    BackupDirectory backupDir = buildBackupDir("segments");
+    BackupManager backupManager = new BackupManager(BACKEND_ID);
+
+    Path volume = sourceDirectory.resolve("volume");
+    byte[] content = new byte[3 * BackupFingerprints.SEGMENT_SIZE + 100];
+    new Random(0).nextBytes(content);
+    createFile(volume, content);
+    Path other = sourceDirectory.resolve("other");
+    createFile(other, StaticUtils.getBytes("other"));
+    List<Path> files = Arrays.asList(volume, other);
+
+    String initialBackupId = BACKUP_ID + "_0";
+    backupManager.createBackup(
+        buildBackupable(sourceDirectory, files), new BackupConfig(backupDir, initialBackupId, true));
+
+    // change the second segment in place and shorten the last one
+    try (RandomAccessFile file = new RandomAccessFile(volume.toFile(), "rw"))
+    {
+      file.seek(BackupFingerprints.SEGMENT_SIZE + 10);
+      file.write(new byte[] { 1, 2, 3 });
+      file.setLength(3 * BackupFingerprints.SEGMENT_SIZE + 10);
+    }
+    byte[] expectedContent = Files.readAllBytes(volume);
+
+    Backupable backupable = buildBackupable(sourceDirectory, files);
+    backupManager.createBackup(backupable, new BackupConfig(backupDir, BACKUP_ID, true));
+
+    assertThat(readEntryNames(new File(backupDir.getPath(), getArchiveFileName(BACKUP_ID)))).containsOnly(
+        "unchanged.txt", "segments.txt", "volume#segment-1", "volume#segment-3");
+
+    Files.delete(volume);
+    Files.delete(other);
+    backupManager.restoreBackup(backupable, new RestoreConfig(backupDir, BACKUP_ID, false));
+
+    assertThat(Files.readAllBytes(volume)).isEqualTo(expectedContent);
+    assertThat(other.toFile()).hasContent("other");
+
+    cleanDirectories(sourceDirectory, backupDir.getPath());
+  }
+
+  private List<String> readEntryNames(File archiveFile) throws Exception
+  {
+    List<String> names = new ArrayList<>();
+    try (ZipInputStream zipStream = new ZipInputStream(new FileInputStream(archiveFile)))
+    {
+      for (ZipEntry entry = zipStream.getNextEntry(); entry != null; entry = zipStream.getNextEntry())
+      {
+        names.add(entry.getName());
+      }
+    }
+    return names;
+  }
+
   @Test
   public void testCreateDirectoryWithNumericSuffix() throws Exception
   {
@@ -295,8 +362,11 @@ public class BackupManagerTestCase extends DirectoryServerTestCase
 
   private Backupable buildBackupable(Path sourceDirectory, int numberOfFiles) throws Exception
   {
-    List<Path> files = createFilesInDirectoryToBackup(sourceDirectory, numberOfFiles);
+    return buildBackupable(sourceDirectory, createFilesInDirectoryToBackup(sourceDirectory, numberOfFiles));
+  }
 
+  private Backupable buildBackupable(Path sourceDirectory, List<Path> files) throws Exception
+  {
     Backupable backupable = mock(Backupable.class);
     when(backupable.getDirectory()).thenReturn(sourceDirectory.toFile());
     when(backupable.getFilesToBackup()).thenReturn(files.listIterator());